@@ -23,6 +23,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -34,6 +36,9 @@ import org.apache.tez.dag.api.TezUncheckedException;
 public class ReflectionUtils {
 
   private static final Map<String, Class<?>> CLAZZ_CACHE = new ConcurrentHashMap<String, Class<?>>();
+  // Keyed by the class followed by the parameter types of the constructor
+  private static final Map<List<Class<?>>, Constructor<?>> CONSTRUCTOR_CACHE =
+      new ConcurrentHashMap<List<Class<?>>, Constructor<?>>();
 
   @Private
   public static Class<?> getClazz(String className) {
@@ -44,6 +49,7 @@ public class ReflectionUtils {
       } catch (ClassNotFoundException e) {
         throw new TezUncheckedException("Unable to load class: " + className, e);
       }
+      CLAZZ_CACHE.put(className, clazz);
     }
     return clazz;
   }
@@ -65,7 +71,7 @@ public class ReflectionUtils {
   private static <T> T getNewInstance(Class<T> clazz, Class<?>[] parameterTypes, Object[] parameters) {
     T instance;
     try {
-      Constructor<T> constructor = clazz.getConstructor(parameterTypes);
+      Constructor<T> constructor = getConstructor(clazz, parameterTypes);
       instance = constructor.newInstance(parameters);
     } catch (InstantiationException e) {
       throw new TezUncheckedException(
@@ -83,6 +89,20 @@ public class ReflectionUtils {
     return instance;
   }
 
+  private static <T> Constructor<T> getConstructor(Class<T> clazz, Class<?>[] parameterTypes)
+      throws NoSuchMethodException {
+    List<Class<?>> key = new ArrayList<Class<?>>(parameterTypes.length + 1);
+    key.add(clazz);
+    key.addAll(Arrays.asList(parameterTypes));
+    @SuppressWarnings("unchecked")
+    Constructor<T> constructor = (Constructor<T>) CONSTRUCTOR_CACHE.get(key);
+    if (constructor == null) {
+      constructor = clazz.getConstructor(parameterTypes);
+      CONSTRUCTOR_CACHE.put(key, constructor);
+    }
+    return constructor;
+  }
+
   @Private
   public static <T> T createClazzInstance(String className) {
     Class<?> clazz = getClazz(className);
@@ -19,16 +19,23 @@
 package org.apache.tez.common;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.ByteString;
 
 import org.apache.commons.logging.Log;
@@ -52,6 +59,36 @@ public class TezUtils {
 
   private static final Log LOG = LogFactory.getLog(TezUtils.class);
 
+  // Number of deserialized payloads kept, so that tasks of the same vertex running one after the
+  // other in a container do not decompress and parse the same payload again
+  private static final int CONF_CACHE_SIZE = 64;
+
+  private static final Cache<ByteString, Configuration> confCache = CacheBuilder.newBuilder()
+      .maximumSize(CONF_CACHE_SIZE).softValues().build();
+
+  // Number of registered base configurations kept. A container works on one DAG at a time, so
+  // this only needs to cover DAGs which are about to run
+  private static final int BASE_CONF_CACHE_SIZE = 16;
+
+  // Base configurations of payloads created with
+  // createUserPayloadFromConf(Configuration, Configuration), by digest
+  private static final Cache<ByteString, Configuration> baseConfs = CacheBuilder.newBuilder()
+      .maximumSize(BASE_CONF_CACHE_SIZE).build();
+
+  // Base configurations which are kept until released, by digest. Used by the AM for the DAGs
+  // which are running or queued, of which there may be more than fit in baseConfs
+  private static final Map<ByteString, PinnedBaseConf> pinnedBaseConfs =
+      new HashMap<ByteString, PinnedBaseConf>();
+
+  private static class PinnedBaseConf {
+    private final Configuration conf;
+    private int refCount;
+
+    PinnedBaseConf(Configuration conf) {
+      this.conf = conf;
+    }
+  }
+
   /**
    * Allows changing the log level for task / AM logging. </p>
    *
@@ -77,17 +114,49 @@ public class TezUtils {
    */
   public static ByteString createByteStringFromConf(Configuration conf) throws IOException {
     Preconditions.checkNotNull(conf, "Configuration must be specified");
-    ByteString.Output os = ByteString.newOutput();
-    DeflaterOutputStream compressOs = new DeflaterOutputStream(os,
-        new Deflater(Deflater.BEST_SPEED));
-    try {
-      writeConfInPB(compressOs, conf);
-    } finally {
-      if (compressOs != null) {
-        compressOs.close();
+    DAGProtos.ConfigurationProto.Builder confProtoBuilder = DAGProtos.ConfigurationProto
+        .newBuilder();
+    Iterator<Map.Entry<String, String>> iter = conf.iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, String> entry = iter.next();
+      addKeyValue(confProtoBuilder, entry.getKey(), entry.getValue());
+    }
+    return compressConfProto(confProtoBuilder.build());
+  }
+
+  /**
+   * Convert a Configuration to compressed ByteString which only carries the differences from
+   * the given base configuration
+   *
+   * @param conf
+   *          : Configuration to be converted
+   * @param baseConf
+   *          : Configuration the differences are computed against
+   * @return PB ByteString (compressed)
+   * @throws java.io.IOException
+   */
+  public static ByteString createByteStringFromConf(Configuration conf, Configuration baseConf)
+      throws IOException {
+    Preconditions.checkNotNull(conf, "Configuration must be specified");
+    Preconditions.checkNotNull(baseConf, "Base Configuration must be specified");
+    DAGProtos.ConfigurationProto.Builder confProtoBuilder = DAGProtos.ConfigurationProto
+        .newBuilder();
+    confProtoBuilder.setBaseConfDigest(computeDigest(toSortedMap(baseConf)));
+    Iterator<Map.Entry<String, String>> iter = conf.iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, String> entry = iter.next();
+      if (!entry.getValue().equals(baseConf.getRaw(entry.getKey()))) {
+        addKeyValue(confProtoBuilder, entry.getKey(), entry.getValue());
       }
     }
-    return os.toByteString();
+    iter = baseConf.iterator();
+    while (iter.hasNext()) {
+      String key = iter.next().getKey();
+      if (conf.getRaw(key) == null) {
+        confProtoBuilder.addRemovedKeys(key);
+      }
+    }
+    return compressConfProto(confProtoBuilder.build());
   }
 
   /**
@@ -102,6 +171,25 @@ public class TezUtils {
     return UserPayload.create(createByteStringFromConf(conf).asReadOnlyByteBuffer());
   }
 
+  /**
+   * Convert a Configuration to a {@link org.apache.tez.dag.api.UserPayload} which only carries
+   * the differences from the given base configuration. </p>
+   *
+   * The payload can only be read where the base configuration is known, which requires it to
+   * be set on the DAG using {@link org.apache.tez.dag.api.DAG#setPayloadBaseConf(Configuration)}.
+   * Descriptors sharing most of their configuration with the DAG then do not each carry a full
+   * copy of it.
+   *
+   * @param conf configuration to be converted
+   * @param baseConf configuration the differences are computed against
+   * @return an instance of {@link org.apache.tez.dag.api.UserPayload}
+   * @throws java.io.IOException
+   */
+  public static UserPayload createUserPayloadFromConf(Configuration conf, Configuration baseConf)
+      throws IOException {
+    return UserPayload.create(createByteStringFromConf(conf, baseConf).asReadOnlyByteBuffer());
+  }
+
   /**
    * Convert a byte string to a Configuration object
    *
@@ -112,13 +200,30 @@ public class TezUtils {
    */
   public static Configuration createConfFromByteString(ByteString byteString) throws IOException {
     Preconditions.checkNotNull(byteString, "ByteString must be specified");
-    // SnappyInputStream uncompressIs = new
-    // SnappyInputStream(byteString.newInput());
-    InflaterInputStream uncompressIs = new InflaterInputStream(byteString.newInput());
-    DAGProtos.ConfigurationProto confProto = DAGProtos.ConfigurationProto.parseFrom(uncompressIs);
-    Configuration conf = new Configuration(false);
-    readConfFromPB(confProto, conf);
-    return conf;
+    Configuration cachedConf = confCache.getIfPresent(byteString);
+    if (cachedConf == null) {
+      // SnappyInputStream uncompressIs = new
+      // SnappyInputStream(byteString.newInput());
+      InflaterInputStream uncompressIs = new InflaterInputStream(byteString.newInput());
+      DAGProtos.ConfigurationProto confProto = DAGProtos.ConfigurationProto.parseFrom(uncompressIs);
+      if (confProto.hasBaseConfDigest()) {
+        Configuration baseConf = getBaseConf(confProto.getBaseConfDigest());
+        if (baseConf == null) {
+          throw new IOException("Base configuration of the payload is not available."
+              + " It needs to be set on the DAG");
+        }
+        cachedConf = new Configuration(baseConf);
+        for (String key : confProto.getRemovedKeysList()) {
+          cachedConf.unset(key);
+        }
+      } else {
+        cachedConf = new Configuration(false);
+      }
+      readConfFromPB(confProto, cachedConf);
+      confCache.put(byteString, cachedConf);
+    }
+    // Callers are free to modify the returned instance
+    return new Configuration(cachedConf);
   }
 
   /**
@@ -135,19 +240,142 @@ public class TezUtils {
   }
 
 
-  private static void writeConfInPB(OutputStream dos, Configuration conf) throws IOException {
-    DAGProtos.ConfigurationProto.Builder confProtoBuilder = DAGProtos.ConfigurationProto
-        .newBuilder();
+  /**
+   * Make a base configuration, serialized using
+   * {@link #createByteStringFromConf(org.apache.hadoop.conf.Configuration)}, available to
+   * payloads created against it
+   *
+   * @param byteString serialized base configuration
+   * @throws java.io.IOException
+   */
+  @InterfaceAudience.Private
+  public static void registerBaseConf(ByteString byteString) throws IOException {
+    Preconditions.checkNotNull(byteString, "ByteString must be specified");
+    DAGProtos.ConfigurationProto confProto = parseConfProto(byteString);
+    ByteString digest = computeDigest(confProto);
+    if (baseConfs.getIfPresent(digest) == null) {
+      Configuration baseConf = new Configuration(false);
+      readConfFromPB(confProto, baseConf);
+      baseConfs.put(digest, baseConf);
+    }
+  }
+
+  /**
+   * Make a base configuration, serialized using
+   * {@link #createByteStringFromConf(org.apache.hadoop.conf.Configuration)}, available to
+   * payloads created against it until it is released with {@link #unpinBaseConf(ByteString)}.
+   * Unlike {@link #registerBaseConf(ByteString)}, the base configuration is not evicted when
+   * others are registered. Every call needs a matching release.
+   *
+   * @param byteString serialized base configuration
+   * @return the digest of the base configuration, to release it with
+   * @throws java.io.IOException
+   */
+  @InterfaceAudience.Private
+  public static ByteString pinBaseConf(ByteString byteString) throws IOException {
+    Preconditions.checkNotNull(byteString, "ByteString must be specified");
+    DAGProtos.ConfigurationProto confProto = parseConfProto(byteString);
+    ByteString digest = computeDigest(confProto);
+    synchronized (pinnedBaseConfs) {
+      PinnedBaseConf pinned = pinnedBaseConfs.get(digest);
+      if (pinned == null) {
+        Configuration baseConf = new Configuration(false);
+        readConfFromPB(confProto, baseConf);
+        pinned = new PinnedBaseConf(baseConf);
+        pinnedBaseConfs.put(digest, pinned);
+      }
+      ++pinned.refCount;
+    }
+    return digest;
+  }
+
+  /**
+   * Release a base configuration pinned with {@link #pinBaseConf(ByteString)}
+   *
+   * @param digest digest returned when the base configuration was pinned
+   */
+  @InterfaceAudience.Private
+  public static void unpinBaseConf(ByteString digest) {
+    Preconditions.checkNotNull(digest, "Digest must be specified");
+    synchronized (pinnedBaseConfs) {
+      PinnedBaseConf pinned = pinnedBaseConfs.get(digest);
+      Preconditions.checkState(pinned != null, "Base configuration is not pinned");
+      if (--pinned.refCount == 0) {
+        pinnedBaseConfs.remove(digest);
+      }
+    }
+  }
+
+  private static Configuration getBaseConf(ByteString digest) {
+    synchronized (pinnedBaseConfs) {
+      PinnedBaseConf pinned = pinnedBaseConfs.get(digest);
+      if (pinned != null) {
+        return pinned.conf;
+      }
+    }
+    return baseConfs.getIfPresent(digest);
+  }
+
+  private static DAGProtos.ConfigurationProto parseConfProto(ByteString byteString)
+      throws IOException {
+    InflaterInputStream uncompressIs = new InflaterInputStream(byteString.newInput());
+    return DAGProtos.ConfigurationProto.parseFrom(uncompressIs);
+  }
+
+  private static void addKeyValue(DAGProtos.ConfigurationProto.Builder confProtoBuilder,
+      String key, String value) {
+    DAGProtos.PlanKeyValuePair.Builder kvp = DAGProtos.PlanKeyValuePair.newBuilder();
+    kvp.setKey(key);
+    kvp.setValue(value);
+    confProtoBuilder.addConfKeyValues(kvp);
+  }
+
+  private static ByteString compressConfProto(DAGProtos.ConfigurationProto confProto)
+      throws IOException {
+    ByteString.Output os = ByteString.newOutput();
+    DeflaterOutputStream compressOs = new DeflaterOutputStream(os,
+        new Deflater(Deflater.BEST_SPEED));
+    try {
+      confProto.writeTo(compressOs);
+    } finally {
+      compressOs.close();
+    }
+    return os.toByteString();
+  }
+
+  private static SortedMap<String, String> toSortedMap(Configuration conf) {
+    SortedMap<String, String> entries = new TreeMap<String, String>();
     Iterator<Map.Entry<String, String>> iter = conf.iterator();
     while (iter.hasNext()) {
       Map.Entry<String, String> entry = iter.next();
-      DAGProtos.PlanKeyValuePair.Builder kvp = DAGProtos.PlanKeyValuePair.newBuilder();
-      kvp.setKey(entry.getKey());
-      kvp.setValue(entry.getValue());
-      confProtoBuilder.addConfKeyValues(kvp);
+      entries.put(entry.getKey(), entry.getValue());
+    }
+    return entries;
+  }
+
+  private static ByteString computeDigest(DAGProtos.ConfigurationProto confProto) {
+    SortedMap<String, String> entries = new TreeMap<String, String>();
+    for (DAGProtos.PlanKeyValuePair setting : confProto.getConfKeyValuesList()) {
+      entries.put(setting.getKey(), setting.getValue());
+    }
+    return computeDigest(entries);
+  }
+
+  // Independent of the order in which the entries were serialized
+  private static ByteString computeDigest(SortedMap<String, String> entries) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new TezUncheckedException("Unable to compute configuration digest", e);
+    }
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      digest.update(entry.getKey().getBytes(Charsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(entry.getValue().getBytes(Charsets.UTF_8));
+      digest.update((byte) 0);
     }
-    DAGProtos.ConfigurationProto confProto = confProtoBuilder.build();
-    confProto.writeTo(dos);
+    return ByteString.copyFrom(digest.digest());
   }
 
   private static void readConfFromPB(DAGProtos.ConfigurationProto confProto, Configuration conf) {
@@ -163,6 +163,27 @@ public enum TaskCounter {
    */
   SHUFFLE_BYTES_DISK_DIRECT,
 
+  /**
+   * Number of shuffle bytes whose read had to be delayed by the shuffle bandwidth limits
+   */
+  SHUFFLE_BYTES_THROTTLED,
+
+  /**
+   * Time spent by fetchers waiting on the shuffle bandwidth limits
+   */
+  SHUFFLE_THROTTLE_STALL_MILLIS,
+
+  /**
+   * Time spent by fetchers waiting for a connection slot to a remote host
+   */
+  SHUFFLE_HOST_CONNECTION_WAIT_MILLIS,
+
+  /**
+   * Uncompressed bytes of inputs served from the container level input cache,
+   * instead of being fetched
+   */
+  SHUFFLE_BYTES_FROM_CACHE,
+
   /**
    * Number of Memory to Disk merges performed during sort-merge.
    * Used by ShuffledMergedInput
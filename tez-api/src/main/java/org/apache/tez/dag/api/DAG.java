@@ -17,6 +17,7 @@
  */
 package org.apache.tez.dag.api;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -43,6 +44,7 @@ import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.tez.client.TezClientUtils;
 import org.apache.tez.common.security.DAGAccessControls;
 import org.apache.tez.common.TezCommonUtils;
+import org.apache.tez.common.TezUtils;
 import org.apache.tez.common.TezYARNUtils;
 import org.apache.tez.dag.api.EdgeProperty.DataMovementType;
 import org.apache.tez.dag.api.EdgeProperty.DataSourceType;
@@ -87,6 +89,7 @@ public class DAG {
   private DAGAccessControls dagAccessControls;
   Map<String, LocalResource> commonTaskLocalFiles = Maps.newHashMap();
   String dagInfo;
+  Configuration payloadBaseConf;
 
   private Stack<String> topologicalVertexStack = new Stack<String>();
 
@@ -166,6 +169,20 @@ public class DAG {
     return this;
   }
 
+  /**
+   * Set the configuration which payloads created using
+   * {@link org.apache.tez.common.TezUtils#createUserPayloadFromConf(Configuration, Configuration)}
+   * are based on. It is shipped once with the DAG and once to every container running its tasks,
+   * while the payloads only carry their differences from it.
+   * @param baseConf the base configuration the payloads were created against
+   * @return {@link DAG}
+   */
+  public synchronized DAG setPayloadBaseConf(Configuration baseConf) {
+    Preconditions.checkNotNull(baseConf);
+    this.payloadBaseConf = baseConf;
+    return this;
+  }
+
   /**
    * Create a group of vertices that share a common output. This can be used to implement 
    * unions efficiently.
@@ -609,6 +626,13 @@ public class DAG {
     if (this.dagInfo != null && !this.dagInfo.isEmpty()) {
       dagBuilder.setDagInfo(this.dagInfo);
     }
+    if (this.payloadBaseConf != null) {
+      try {
+        dagBuilder.setPayloadBaseConf(TezUtils.createByteStringFromConf(this.payloadBaseConf));
+      } catch (IOException e) {
+        throw new TezUncheckedException("Failed to serialize the payload base configuration", e);
+      }
+    }
     
     if (!vertexGroups.isEmpty()) {
       for (VertexGroup av : vertexGroups) {
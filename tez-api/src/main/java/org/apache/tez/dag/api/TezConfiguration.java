@@ -233,6 +233,16 @@ public class TezConfiguration extends Configuration {
       TEZ_AM_PREFIX + "task.listener.thread-count";
   public static final int TEZ_AM_TASK_LISTENER_THREAD_COUNT_DEFAULT = 30;
 
+  /**
+   * Int value. The number of threads used to handle events in the app master. Vertex, task and
+   * task attempt events are partitioned across the threads by vertex, all other events are handled
+   * by a single thread. Expert level setting.
+   */
+  @Unstable
+  public static final String TEZ_AM_DISPATCHER_THREAD_COUNT =
+      TEZ_AM_PREFIX + "dispatcher.thread-count";
+  public static final int TEZ_AM_DISPATCHER_THREAD_COUNT_DEFAULT = 1;
+
   /**
    * Int value. Configuration to limit the counters per dag (AppMaster and Task). This can be used
    * to
@@ -288,6 +298,40 @@ public class TezConfiguration extends Configuration {
   public static final String TEZ_AM_LEGACY_SPECULATIVE_SLOWTASK_THRESHOLD = 
                                      TEZ_AM_PREFIX + "legacy.speculative.slowtask.threshold";
 
+  /**
+   * String value. The class used to estimate the runtime of task attempts when deciding whether
+   * to speculate them. The default estimates from reported progress and elapsed time.
+   * org.apache.tez.dag.app.dag.speculation.legacy.DataAwareTaskRuntimeEstimator normalizes the
+   * throughput of attempts by the input bytes and records they processed, so that tasks with
+   * larger inputs are not speculated, and takes into account nodes which were slow for earlier
+   * attempts. Expert level setting.
+   */
+  @Unstable
+  public static final String TEZ_AM_SPECULATION_ESTIMATOR_CLASS =
+      TEZ_AM_PREFIX + "speculation.estimator.class";
+  public static final String TEZ_AM_SPECULATION_ESTIMATOR_CLASS_DEFAULT =
+      "org.apache.tez.dag.app.dag.speculation.legacy.LegacyTaskRuntimeEstimator";
+
+  /**
+   * Int value. Maximum number of tasks of a DAG which may run speculative attempts at the same
+   * time, across all vertices. -1 for no limit beyond the per vertex limits. Expert level setting.
+   */
+  @Unstable
+  public static final String TEZ_AM_SPECULATION_MAX_CONCURRENT_TASKS =
+      TEZ_AM_PREFIX + "speculation.max-concurrent-tasks";
+  public static final int TEZ_AM_SPECULATION_MAX_CONCURRENT_TASKS_DEFAULT = -1;
+
+  /**
+   * Float value. A node is considered slow when the attempts which succeeded on it had, on
+   * average, less than this fraction of the throughput of the other attempts of their vertices.
+   * Attempts running on slow nodes are considered for speculation before they report progress.
+   * Only used by the DataAwareTaskRuntimeEstimator. Expert level setting.
+   */
+  @Unstable
+  public static final String TEZ_AM_SPECULATION_SLOW_NODE_THRESHOLD =
+      TEZ_AM_PREFIX + "speculation.slow-node.threshold";
+  public static final float TEZ_AM_SPECULATION_SLOW_NODE_THRESHOLD_DEFAULT = 0.5f;
+
   /**
    * Int value. Upper limit on the number of threads user to launch containers in the app
    * master. Expert level setting. 
@@ -298,6 +342,16 @@ public class TezConfiguration extends Configuration {
   public static final int TEZ_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT_DEFAULT = 
     500;
 
+  /**
+   * Int value. Upper limit on the number of containers started with a single request to a
+   * NodeManager. Launches for the same node which are pending at the same time are grouped
+   * into one request. Expert level setting.
+   */
+  public static final String TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE =
+    TEZ_AM_PREFIX + "containerlauncher.batch-size";
+
+  public static final int TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE_DEFAULT = 50;
+
 
   /**
    * Int value. Specifies the number of task failures on a node before the node is considered faulty.
@@ -344,7 +398,17 @@ public class TezConfiguration extends Configuration {
   /** Int value. Number of threads to handle client RPC requests. Expert level setting.*/
   public static final String TEZ_AM_CLIENT_THREAD_COUNT =
       TEZ_AM_PREFIX + "client.am.thread-count";
-  public static final int TEZ_AM_CLIENT_THREAD_COUNT_DEFAULT = 1;
+  public static final int TEZ_AM_CLIENT_THREAD_COUNT_DEFAULT = 2;
+
+  /**
+   * Long value. The maximum time, in milliseconds, for which a client request for the DAG status
+   * waits in the app master for the status to change. Each waiting request occupies one of the
+   * client RPC threads. Expert level setting.
+   */
+  @Unstable
+  public static final String TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS =
+      TEZ_AM_PREFIX + "client.dag-status.max-wait-ms";
+  public static final long TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS_DEFAULT = 1000;
   
   /**
    * String value. Range of ports that the AM can use when binding for client connections. Leave blank
@@ -354,7 +418,9 @@ public class TezConfiguration extends Configuration {
       TEZ_AM_PREFIX + "client.am.port-range";
 
   /**
-   * String value. The class to be used for DAG Scheduling. Expert level setting.
+   * String value. The class to be used for DAG Scheduling. The default schedules vertices by their
+   * distance from the root vertices. org.apache.tez.dag.app.dag.impl.DAGSchedulerCriticalPath
+   * prioritizes vertices on the longest estimated remaining path instead. Expert level setting.
    */
   public static final String TEZ_AM_DAG_SCHEDULER_CLASS = TEZ_AM_PREFIX + "dag.scheduler.class";
   public static final String TEZ_AM_DAG_SCHEDULER_CLASS_DEFAULT =
@@ -402,6 +468,17 @@ public class TezConfiguration extends Configuration {
       + "get-task.sleep.interval-ms.max";
   public static final int TEZ_TASK_GET_TASK_SLEEP_INTERVAL_MS_MAX_DEFAULT = 200;
 
+  /**
+   * Boolean value. Whether a container starts asking the AM for its next task as soon as its
+   * current task has reported success, while the current task is still being cleaned up. This
+   * shortens the gap between tasks in reused containers. The next task is only set up once the
+   * current one is cleaned up. Expert level setting.
+   */
+  @Unstable
+  public static final String TEZ_TASK_PREFETCH_NEXT_TASK = TEZ_TASK_PREFIX
+      + "prefetch-next-task";
+  public static final boolean TEZ_TASK_PREFETCH_NEXT_TASK_DEFAULT = false;
+
   /**
    * Int value. The maximum heartbeat interval, in milliseconds, between the app master and tasks. 
    * Increasing this can help improve app master scalability for a large number of concurrent tasks.
@@ -590,6 +667,40 @@ public class TezConfiguration extends Configuration {
   public static final String TEZ_AM_SESSION_MIN_HELD_CONTAINERS = 
       TEZ_AM_PREFIX + "session.min.held-containers";
   public static final int TEZ_AM_SESSION_MIN_HELD_CONTAINERS_DEFAULT = 0;
+
+  /**
+   * Int value. The maximum number of containers that a session keeps warm between DAGs, sized
+   * by the container demand of recent DAGs and by how often DAGs arrive. The containers are
+   * chosen per container signature, and are held in addition to
+   * {@link #TEZ_AM_SESSION_MIN_HELD_CONTAINERS}. Requires container reuse. 0 disables the warm
+   * container pool. Not active in non-session mode.
+   */
+  @Unstable
+  public static final String TEZ_AM_SESSION_CONTAINER_POOL_MAX_CONTAINERS =
+      TEZ_AM_PREFIX + "session.container-pool.max-containers";
+  public static final int TEZ_AM_SESSION_CONTAINER_POOL_MAX_CONTAINERS_DEFAULT = 0;
+
+  /**
+   * Long value. The time, in milliseconds, for which the warm container pool of a session
+   * predicts DAG arrivals. The pool shrinks when fewer than one DAG is expected to arrive within
+   * this time, and is released once the session has been idle for longer.
+   */
+  @Unstable
+  public static final String TEZ_AM_SESSION_CONTAINER_POOL_PREDICTION_WINDOW_MILLIS =
+      TEZ_AM_PREFIX + "session.container-pool.prediction-window-millis";
+  public static final long TEZ_AM_SESSION_CONTAINER_POOL_PREDICTION_WINDOW_MILLIS_DEFAULT =
+      5 * 60 * 1000l;
+
+  /**
+   * Int value. The number of DAGs that a session accepts while it is already running a DAG. The
+   * queued DAGs are started in submission order as the running DAG completes, and use the
+   * containers held by the session. Until started, a queued DAG reports the SUBMITTED state.
+   * Submissions beyond this limit are rejected. Not active in non-session mode.
+   */
+  @Unstable
+  public static final String TEZ_AM_SESSION_MAX_QUEUED_DAGS =
+      TEZ_AM_PREFIX + "session.max-queued-dags";
+  public static final int TEZ_AM_SESSION_MAX_QUEUED_DAGS_DEFAULT = 0;
   
   /**
    * Int value. Specifies the percentage of tasks eligible to be preempted that
@@ -794,6 +905,24 @@ public class TezConfiguration extends Configuration {
       + "yarn.ats.max.polling.time.per.event.millis";
   public static final int YARN_ATS_MAX_POLLING_TIME_PER_EVENT_DEFAULT = 10;
 
+  /**
+   * Int value. Max time, in milliseconds, to wait for more events to add to a batch for ATS once
+   * the first event of the batch is available. A negative value means no limit.
+   * Expert level setting.
+   */
+  public static final String YARN_ATS_MAX_BATCH_LINGER_MILLIS = TEZ_PREFIX
+      + "yarn.ats.max.batch.linger.millis";
+  public static final int YARN_ATS_MAX_BATCH_LINGER_MILLIS_DEFAULT = 100;
+
+  /**
+   * Int value. Max no. of events queued up to be sent to ATS beyond which task, task attempt and
+   * container events are dropped. DAG and vertex events are always queued. A negative value
+   * means no limit. Expert level setting.
+   */
+  public static final String YARN_ATS_EVENT_QUEUE_MAX_SIZE = TEZ_PREFIX
+      + "yarn.ats.event.queue.max.size";
+  public static final int YARN_ATS_EVENT_QUEUE_MAX_SIZE_DEFAULT = 100000;
+
   /**
    * Boolean value. Enable recovery of DAGs. This allows a restarted app master to recover the 
    * incomplete DAGs from the previous instance of the app master.
@@ -824,6 +953,17 @@ public class TezConfiguration extends Configuration {
       TEZ_PREFIX + "dag.recovery.flush.interval.secs";
   public static final int DAG_RECOVERY_FLUSH_INTERVAL_SECS_DEFAULT = 30;
 
+  /**
+   * Int value. Interval, in seconds, between checkpoints of the recovery log of a running DAG.
+   * A checkpoint holds a compacted copy of the log up to some point, so that a restarted app
+   * master only needs to replay the checkpoint and the tail of the log after it. Checkpoints
+   * are written on their own thread, each one only reading the part of the log written since
+   * the previous one. A value of 0 or less disables checkpoints. Expert level setting.
+   */
+  public static final String DAG_RECOVERY_CHECKPOINT_INTERVAL_SECS =
+      TEZ_PREFIX + "dag.recovery.checkpoint.interval.secs";
+  public static final int DAG_RECOVERY_CHECKPOINT_INTERVAL_SECS_DEFAULT = -1;
+
   /**
    *  Boolean value. Enable local mode execution in Tez. Enables tasks to run in the same process as
    *  the app master. Primarily used for debugging.
@@ -59,6 +59,21 @@ public abstract class DAGClient implements Closeable {
   public abstract DAGStatus getDAGStatus(@Nullable Set<StatusGetOpts> statusOptions)
       throws IOException, TezException;
 
+  /**
+   * Get the status of the specified DAG once it has changed from a previously returned status.
+   * Waits until the status changes or the timeout expires, whichever happens first. Clients
+   * which cannot wait for status changes return the current status.
+   * @param statusOptions Optionally, retrieve additional information based on
+   *                      specified options. To retrieve basic information, this can be null
+   * @param lastStatus status previously returned by this client, or null to not wait
+   * @param timeoutMillis maximum time to wait for a status change
+   */
+  @Private
+  public DAGStatus getDAGStatus(@Nullable Set<StatusGetOpts> statusOptions,
+      @Nullable DAGStatus lastStatus, long timeoutMillis) throws IOException, TezException {
+    return getDAGStatus(statusOptions);
+  }
+
   /**
    * Get the status of a Vertex of a DAG
    * @param statusOptions Optionally, retrieve additional information based on
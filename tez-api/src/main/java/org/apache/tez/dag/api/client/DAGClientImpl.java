@@ -63,6 +63,8 @@ public class DAGClientImpl extends DAGClient {
   Map<String, VertexStatus> cachedVertexStatus = new HashMap<String, VertexStatus>();
 
   private static final long SLEEP_FOR_COMPLETION = 500;
+  // Maximum time to wait in the AM for a status change, when the AM supports it
+  private final long waitForStatusChangeMillis;
   private static final long PRINT_STATUS_INTERVAL_MILLIS = 5000;
   private final DecimalFormat formatter = new DecimalFormat("###.##%");
   private long lastPrintStatusTimeMillis;
@@ -75,6 +77,9 @@ public class DAGClientImpl extends DAGClient {
     this.appId = appId;
     this.dagId = dagId;
     this.conf = conf;
+    this.waitForStatusChangeMillis = conf.getLong(
+        TezConfiguration.TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS,
+        TezConfiguration.TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS_DEFAULT);
     if (frameworkClient != null &&
         conf.getBoolean(TezConfiguration.TEZ_LOCAL_MODE, TezConfiguration.TEZ_LOCAL_MODE_DEFAULT)) {
       this.frameworkClient = frameworkClient;
@@ -107,12 +112,18 @@ public class DAGClientImpl extends DAGClient {
   @Override
   public DAGStatus getDAGStatus(@Nullable Set<StatusGetOpts> statusOptions) throws
       TezException, IOException {
+    return getDAGStatus(statusOptions, null, 0);
+  }
+
+  @Override
+  public DAGStatus getDAGStatus(@Nullable Set<StatusGetOpts> statusOptions,
+      @Nullable DAGStatus lastStatus, long timeoutMillis) throws IOException, TezException {
 
     if (!dagCompleted) {
       // fetch from AM. on Error and while DAG is still not completed (could not reach AM, AM got
       // killed). return cached status. This prevents the progress being reset (for ex fetching from
       // RM does not give status).
-      final DAGStatus dagStatus = getDAGStatusViaAM(statusOptions);
+      final DAGStatus dagStatus = getDAGStatusViaAM(statusOptions, lastStatus, timeoutMillis);
 
       if (!dagCompleted) {
         if (dagStatus != null) {
@@ -228,11 +239,11 @@ public class DAGClientImpl extends DAGClient {
     }
   }
 
-  private DAGStatus getDAGStatusViaAM(@Nullable Set<StatusGetOpts> statusOptions) throws
-      IOException {
+  private DAGStatus getDAGStatusViaAM(@Nullable Set<StatusGetOpts> statusOptions,
+      @Nullable DAGStatus lastStatus, long timeoutMillis) throws IOException {
     DAGStatus dagStatus = null;
     try {
-      dagStatus = realClient.getDAGStatus(statusOptions);
+      dagStatus = realClient.getDAGStatus(statusOptions, lastStatus, timeoutMillis);
     } catch (DAGNotRunningException e) {
       dagCompleted = true;
     } catch (TezException e) {
@@ -332,13 +343,13 @@ public class DAGClientImpl extends DAGClient {
 
   private DAGStatus _waitForCompletionWithStatusUpdates(boolean vertexUpdates,
                                                         @Nullable Set<StatusGetOpts> statusGetOpts) throws IOException, TezException, InterruptedException {
-    DAGStatus dagStatus;
+    DAGStatus dagStatus = null;
     boolean initPrinted = false;
     boolean runningPrinted = false;
     double dagProgress = -1.0; // Print the first one
     // monitoring
     while (true) {
-      dagStatus = getDAGStatus(statusGetOpts);
+      dagStatus = getDAGStatusUpdate(statusGetOpts, dagStatus);
       if (!initPrinted
           && (dagStatus.getState() == DAGStatus.State.INITING || dagStatus.getState() == DAGStatus.State.SUBMITTED)) {
         initPrinted = true; // Print once
@@ -351,7 +362,6 @@ public class DAGClientImpl extends DAGClient {
           || dagStatus.getState() == DAGStatus.State.ERROR) {
         break;
       }
-      Thread.sleep(SLEEP_FOR_COMPLETION);
     }// End of while(true)
 
     Set<String> vertexNames = Collections.emptySet();
@@ -361,11 +371,10 @@ public class DAGClientImpl extends DAGClient {
         runningPrinted = true;
       }
       if (vertexUpdates && vertexNames.isEmpty()) {
-        vertexNames = getDAGStatus(statusGetOpts).getVertexProgress().keySet();
+        vertexNames = dagStatus.getVertexProgress().keySet();
       }
       dagProgress = monitorProgress(vertexNames, dagProgress, null, dagStatus);
-      Thread.sleep(SLEEP_FOR_COMPLETION);
-      dagStatus = getDAGStatus(statusGetOpts);
+      dagStatus = getDAGStatusUpdate(statusGetOpts, dagStatus);
     }// end of while
     // Always print the last status irrespective of progress change
     monitorProgress(vertexNames, -1.0, statusGetOpts, dagStatus);
@@ -373,6 +382,28 @@ public class DAGClientImpl extends DAGClient {
     return dagStatus;
   }
 
+  /**
+   * Get the next status of the DAG. Waits in the AM for the status to change from the last
+   * status. If the AM does not wait, e.g. as it could not be reached, sleeps instead, so that
+   * the status is not polled in a tight loop.
+   */
+  private DAGStatus getDAGStatusUpdate(@Nullable Set<StatusGetOpts> statusGetOpts,
+      @Nullable DAGStatus lastStatus) throws IOException, TezException, InterruptedException {
+    if (lastStatus == null) {
+      return getDAGStatus(statusGetOpts);
+    }
+    long startTime = System.currentTimeMillis();
+    DAGStatus dagStatus = getDAGStatus(statusGetOpts, lastStatus, waitForStatusChangeMillis);
+    if (dagStatus.getStatusVersion() < 0
+        || dagStatus.getStatusVersion() == lastStatus.getStatusVersion()) {
+      long sleepTime = SLEEP_FOR_COMPLETION - (System.currentTimeMillis() - startTime);
+      if (sleepTime > 0) {
+        Thread.sleep(sleepTime);
+      }
+    }
+    return dagStatus;
+  }
+
   private double monitorProgress(Set<String> vertexNames, double prevDagProgress,
                                  Set<StatusGetOpts> opts, DAGStatus dagStatus) throws IOException, TezException {
     Progress progress = dagStatus.getDAGProgress();
@@ -404,13 +435,22 @@ public class DAGClientImpl extends DAGClient {
         log("DAG Counters:\n" + counters);
       }
     }
+    // The DAG status includes the progress of all vertices, so the vertex status is only
+    // retrieved for its counters
+    Map<String, Progress> vertexProgressMap = dagStatus.getVertexProgress();
     for (String vertex : vertexNames) {
-      VertexStatus vStatus = getVertexStatus(vertex, opts);
-      if (vStatus == null) {
+      VertexStatus vStatus = null;
+      Progress vProgress;
+      if (displayCounter) {
+        vStatus = getVertexStatus(vertex, opts);
+        vProgress = vStatus == null ? null : vStatus.getProgress();
+      } else {
+        vProgress = vertexProgressMap == null ? null : vertexProgressMap.get(vertex);
+      }
+      if (vStatus == null && vProgress == null) {
         log("Could not retrieve status for vertex: " + vertex);
         continue;
       }
-      Progress vProgress = vStatus.getProgress();
       if (vProgress != null) {
         vProgressFloat = 0.0f;
         if (vProgress.getTotalTaskCount() == 0) {
@@ -421,7 +461,7 @@ public class DAGClientImpl extends DAGClient {
         log("\tVertexStatus:" + " VertexName: " + vertex + " Progress: "
             + formatter.format(vProgressFloat) + " " + vProgress);
       }
-      if (displayCounter) {
+      if (vStatus != null) {
         TezCounters counters = vStatus.getVertexCounters();
         if (counters != null) {
           log("Vertex Counters for " + vertex + ":\n" + counters);
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
 import org.apache.hadoop.classification.InterfaceAudience.Public;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.DAG;
@@ -147,6 +148,17 @@ public class DAGStatus {
     return dagCounters;
   }
 
+  /**
+   * Get the version of the status in the application master. The version changes whenever the
+   * state or the progress of the DAG changes.
+   *
+   * @return the status version, or -1 if not known
+   */
+  @Private
+  public long getStatusVersion() {
+    return proxy.hasStatusVersion() ? proxy.getStatusVersion() : -1;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj instanceof DAGStatus){
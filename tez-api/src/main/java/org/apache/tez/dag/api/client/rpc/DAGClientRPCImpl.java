@@ -81,9 +81,15 @@ public class DAGClientRPCImpl extends DAGClient {
   @Override
   public DAGStatus getDAGStatus(Set<StatusGetOpts> statusOptions)
       throws IOException, TezException {
+    return getDAGStatus(statusOptions, null, 0);
+  }
+
+  @Override
+  public DAGStatus getDAGStatus(@Nullable Set<StatusGetOpts> statusOptions,
+      @Nullable DAGStatus lastStatus, long timeoutMillis) throws IOException, TezException {
     if(createAMProxyIfNeeded()) {
       try {
-        DAGStatus dagStatus = getDAGStatusViaAM(statusOptions);
+        DAGStatus dagStatus = getDAGStatusViaAM(statusOptions, lastStatus, timeoutMillis);
         return dagStatus;
       } catch (TezException e) {
         resetProxy(e); // create proxy again
@@ -149,7 +155,8 @@ public class DAGClientRPCImpl extends DAGClient {
     proxy = null;
   }
 
-  DAGStatus getDAGStatusViaAM(Set<StatusGetOpts> statusOptions)
+  DAGStatus getDAGStatusViaAM(Set<StatusGetOpts> statusOptions,
+      @Nullable DAGStatus lastStatus, long timeoutMillis)
       throws IOException, TezException {
     if(LOG.isDebugEnabled()) {
       LOG.debug("GetDAGStatus via AM for app: " + appId + " dag:" + dagId);
@@ -162,6 +169,11 @@ public class DAGClientRPCImpl extends DAGClient {
       requestProtoBuilder.addAllStatusOptions(
         DagTypeConverters.convertStatusGetOptsToProto(statusOptions));
     }
+    // Only statuses returned by the AM carry a version
+    if (lastStatus != null && lastStatus.getStatusVersion() >= 0 && timeoutMillis > 0) {
+      requestProtoBuilder.setStatusVersion(lastStatus.getStatusVersion());
+      requestProtoBuilder.setTimeout(timeoutMillis);
+    }
 
     try {
       return new DAGStatus(
@@ -55,6 +55,19 @@ public class TestReflectionUtils {
     assertEquals("Class not constructed with second parameter correctly", instance.second, 1);
   }
 
+  @Test
+  public void testRepeatedConstruction() {
+    Class<?>[] parameterTypes = new Class[] { String.class, Integer.TYPE };
+    ParameterizedConstructorClass first = ReflectionUtils.createClazzInstance(
+        ParameterizedConstructorClass.class.getName(), parameterTypes, new Object[] { "a", 1 });
+    ParameterizedConstructorClass second = ReflectionUtils.createClazzInstance(
+        ParameterizedConstructorClass.class.getName(), parameterTypes, new Object[] { "b", 2 });
+    assertTrue(first != second);
+    assertEquals("a", first.first);
+    assertEquals("b", second.first);
+    assertEquals(2, second.second);
+  }
+
   @Test
   public void testAddResourceToClasspath() throws IOException, TezException {
 
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.dag.api.UserPayload;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+public class TestTezUtils {
+
+  @Test(timeout = 5000)
+  public void testConfFromByteStringCopies() throws IOException {
+    Configuration conf = new Configuration(false);
+    conf.set("test.key", "value");
+    ByteString byteString = TezUtils.createByteStringFromConf(conf);
+
+    Configuration first = TezUtils.createConfFromByteString(byteString);
+    assertEquals("value", first.get("test.key"));
+    first.set("test.key", "modified");
+    first.set("other.key", "value");
+
+    // Same payload, unaffected by changes to previously returned instances
+    Configuration second = TezUtils.createConfFromByteString(
+        ByteString.copyFrom(byteString.toByteArray()));
+    assertEquals("value", second.get("test.key"));
+    assertNull(second.get("other.key"));
+  }
+
+  @Test(timeout = 5000)
+  public void testConfDiffFromBase() throws IOException {
+    Configuration baseConf = new Configuration(false);
+    baseConf.set("shared.key", "value");
+    baseConf.set("overridden.key", "base");
+    baseConf.set("removed.key", "value");
+    Configuration conf = new Configuration(baseConf);
+    conf.set("overridden.key", "vertex");
+    conf.set("added.key", "value");
+    conf.unset("removed.key");
+
+    UserPayload payload = TezUtils.createUserPayloadFromConf(conf, baseConf);
+
+    // Entries are serialized in a different order than the one the digest was computed from
+    Configuration shippedBase = new Configuration(false);
+    shippedBase.set("removed.key", "value");
+    shippedBase.set("overridden.key", "base");
+    shippedBase.set("shared.key", "value");
+    TezUtils.registerBaseConf(TezUtils.createByteStringFromConf(shippedBase));
+
+    Configuration readConf = TezUtils.createConfFromUserPayload(payload);
+    assertEquals("value", readConf.get("shared.key"));
+    assertEquals("vertex", readConf.get("overridden.key"));
+    assertEquals("value", readConf.get("added.key"));
+    assertNull(readConf.get("removed.key"));
+  }
+
+  @Test(timeout = 5000)
+  public void testConfDiffWithoutBase() throws IOException {
+    Configuration baseConf = new Configuration(false);
+    baseConf.set("unregistered.key", "value");
+    Configuration conf = new Configuration(false);
+    conf.set("test.key", "value");
+    try {
+      TezUtils.createConfFromUserPayload(TezUtils.createUserPayloadFromConf(conf, baseConf));
+      fail("Expected the missing base configuration to be reported");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("Base configuration"));
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testPinnedBaseConfNotEvicted() throws IOException {
+    Configuration baseConf = new Configuration(false);
+    baseConf.set("pinned.key", "value");
+    ByteString digest = TezUtils.pinBaseConf(TezUtils.createByteStringFromConf(baseConf));
+    // Registering more base configurations than are cached
+    for (int i = 0; i < 32; ++i) {
+      Configuration otherBase = new Configuration(false);
+      otherBase.set("other.key", Integer.toString(i));
+      TezUtils.registerBaseConf(TezUtils.createByteStringFromConf(otherBase));
+    }
+    Configuration conf = new Configuration(baseConf);
+    conf.set("test.key", "first");
+    Configuration readConf = TezUtils.createConfFromUserPayload(
+        TezUtils.createUserPayloadFromConf(conf, baseConf));
+    assertEquals("value", readConf.get("pinned.key"));
+    assertEquals("first", readConf.get("test.key"));
+
+    TezUtils.unpinBaseConf(digest);
+    conf.set("test.key", "second");
+    try {
+      TezUtils.createConfFromUserPayload(TezUtils.createUserPayloadFromConf(conf, baseConf));
+      fail("Expected the released base configuration to be unavailable");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("Base configuration"));
+    }
+  }
+}
@@ -284,5 +284,36 @@ public class TestDAGClient {
     verify(mockProxy, times(3)).getDAGStatus(null, GetDAGStatusRequestProto.newBuilder()
       .setDagId(dagIdStr).addStatusOptions(StatusGetOptsProto.GET_COUNTERS).build());
   }
+
+  @Test(timeout = 5000)
+  public void testWaitForCompletionWithStatusVersion() throws Exception {
+    // the AM waits for the status to change from the version sent by the client
+    when(mockProxy.getDAGStatus(isNull(RpcController.class), any(GetDAGStatusRequestProto.class)))
+      .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus(
+          DAGStatusProto.newBuilder(dagStatusProtoWithoutCounters).setStatusVersion(1)).build())
+      .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus(
+          DAGStatusProto.newBuilder(dagStatusProtoWithoutCounters).setStatusVersion(2)).build())
+      .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus(
+          DAGStatusProto.newBuilder(dagStatusProtoWithoutCounters).setStatusVersion(3)
+            .setState(DAGStatusStateProto.DAG_SUCCEEDED)).build());
+
+    // the time to wait in the AM is read from the configuration
+    TezConfiguration tezConf = new TezConfiguration();
+    tezConf.setLong(TezConfiguration.TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS, 200);
+    dagClient = new DAGClientImpl(mockAppId, dagIdStr, tezConf, null);
+    DAGClientRPCImpl realClient = (DAGClientRPCImpl)((DAGClientImpl)dagClient).getRealClient();
+    realClient.appReport = mockAppReport;
+    realClient.proxy = mockProxy;
+
+    DAGStatus dagStatus = dagClient.waitForCompletion();
+    assertEquals(DAGStatus.State.SUCCEEDED, dagStatus.getState());
+    assertEquals(3, dagStatus.getStatusVersion());
+    verify(mockProxy, times(1)).getDAGStatus(null, GetDAGStatusRequestProto.newBuilder()
+        .setDagId(dagIdStr).build());
+    verify(mockProxy, times(1)).getDAGStatus(null, GetDAGStatusRequestProto.newBuilder()
+        .setDagId(dagIdStr).setStatusVersion(1).setTimeout(200).build());
+    verify(mockProxy, times(1)).getDAGStatus(null, GetDAGStatusRequestProto.newBuilder()
+        .setDagId(dagIdStr).setStatusVersion(2).setTimeout(200).build());
+  }
   
 }
@@ -28,10 +28,12 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.tez.client.TezAppMasterStatus;
 import org.apache.tez.dag.api.DAGNotRunningException;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
 import org.apache.tez.dag.app.DAGAppMaster;
 import org.apache.tez.dag.app.dag.DAG;
+import org.apache.tez.dag.app.dag.DAGState;
 import org.apache.tez.common.security.ACLManager;
 import org.apache.tez.dag.records.TezDAGID;
 
@@ -59,7 +61,41 @@ public class DAGClientHandler {
 
   public DAGStatus getDAGStatus(String dagIdStr,
       Set<StatusGetOpts> statusOptions) throws TezException {
-    return getDAG(dagIdStr).getDAGStatus(statusOptions);
+    return checkQueued(dagIdStr, getDAG(dagIdStr).getDAGStatus(statusOptions));
+  }
+
+  /**
+   * Get the status of the DAG, waiting up to the given timeout for it to change from the given
+   * status version. The wait is capped by
+   * {@link TezConfiguration#TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS}.
+   */
+  public DAGStatus getDAGStatus(String dagIdStr, Set<StatusGetOpts> statusOptions,
+      long statusVersion, long timeoutMillis) throws TezException {
+    DAG dag = getDAG(dagIdStr);
+    long maxWaitMillis = dagAppMaster.getConfig().getLong(
+        TezConfiguration.TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS,
+        TezConfiguration.TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS_DEFAULT);
+    try {
+      return checkQueued(dagIdStr, dag.getDAGStatus(statusOptions, statusVersion,
+          Math.min(timeoutMillis, maxWaitMillis)));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TezException("Interrupted while waiting for status of dag: " + dagIdStr, e);
+    }
+  }
+
+  /**
+   * A DAG still queued after its status was built had not been started, and is reported as
+   * submitted. A queued DAG killed before it was started is reported as killed.
+   */
+  private DAGStatus checkQueued(String dagIdStr, DAGStatusBuilder status) {
+    if (dagAppMaster.getQueuedDAG(dagIdStr) != null) {
+      status.setSubmitted();
+    } else if (dagAppMaster.getKilledQueuedDAG(dagIdStr) != null) {
+      status.setState(DAGState.KILLED);
+      status.setDiagnostics(Collections.singletonList("DAG killed before it was started"));
+    }
+    return status;
   }
 
   public VertexStatus getVertexStatus(String dagIdStr, String vertexName,
@@ -79,6 +115,15 @@ public class DAGClientHandler {
       throw new TezException("Bad dagId: " + dagIdStr);
     }
 
+    // Not started yet, reported as submitted, or killed before it was started
+    DAG queuedDAG = dagAppMaster.getQueuedDAG(dagIdStr);
+    if (queuedDAG == null) {
+      queuedDAG = dagAppMaster.getKilledQueuedDAG(dagIdStr);
+    }
+    if (queuedDAG != null) {
+      return queuedDAG;
+    }
+
     DAG currentDAG = getCurrentDAG();
     if (currentDAG == null) {
       throw new TezException("No running dag at present");
@@ -39,6 +39,13 @@ public class DAGStatusBuilder extends DAGStatus {
     getBuilder().setState(getProtoState(state));
   }
 
+  /**
+   * Report the DAG as submitted, for a DAG which was accepted but not started yet.
+   */
+  public void setSubmitted() {
+    getBuilder().setState(DAGStatusStateProto.DAG_SUBMITTED);
+  }
+
   public void setDiagnostics(List<String> diagnostics) {
     Builder builder = getBuilder();
     builder.clearDiagnostics();
@@ -54,6 +61,10 @@ public class DAGStatusBuilder extends DAGStatus {
         DagTypeConverters.convertTezCountersToProto(counters));
   }
 
+  public void setStatusVersion(long statusVersion) {
+    getBuilder().setStatusVersion(statusVersion);
+  }
+
   public void addVertexProgress(String name, ProgressBuilder progress) {
     StringProgressPairProto.Builder builder = StringProgressPairProto.newBuilder();
     builder.setKey(name);
@@ -33,6 +33,7 @@ import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.client.DAGClientHandler;
 import org.apache.tez.dag.api.client.DAGStatus;
 import org.apache.tez.dag.api.client.DAGStatusBuilder;
+import org.apache.tez.dag.api.client.StatusGetOpts;
 import org.apache.tez.dag.api.client.VertexStatus;
 import org.apache.tez.dag.api.client.VertexStatusBuilder;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetAMStatusRequestProto;
@@ -95,9 +96,14 @@ public class DAGClientAMProtocolBlockingPBServerImpl implements DAGClientAMProto
         throw new AccessControlException("User " + user + " cannot perform DAG view operation");
       }
       DAGStatus status;
-      status = real.getDAGStatus(dagId,
-        DagTypeConverters.convertStatusGetOptsFromProto(
-          request.getStatusOptionsList()));
+      Set<StatusGetOpts> statusOptions =
+          DagTypeConverters.convertStatusGetOptsFromProto(request.getStatusOptionsList());
+      if (request.hasStatusVersion() && request.hasTimeout()) {
+        status = real.getDAGStatus(dagId, statusOptions, request.getStatusVersion(),
+            request.getTimeout());
+      } else {
+        status = real.getDAGStatus(dagId, statusOptions);
+      }
       assert status instanceof DAGStatusBuilder;
       DAGStatusBuilder builder = (DAGStatusBuilder) status;
       return GetDAGStatusResponseProto.newBuilder().
@@ -90,6 +90,7 @@ import org.apache.hadoop.yarn.util.ConverterUtils;
 import org.apache.hadoop.yarn.util.SystemClock;
 import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.common.TezConverterUtils;
+import org.apache.tez.common.TezUtils;
 import org.apache.tez.common.TezUtilsInternal;
 import org.apache.tez.common.VersionInfo;
 import org.apache.tez.common.counters.Limits;
@@ -146,6 +147,7 @@ import org.apache.tez.dag.history.HistoryEventHandler;
 import org.apache.tez.dag.history.events.AMLaunchedEvent;
 import org.apache.tez.dag.history.events.AMStartedEvent;
 import org.apache.tez.dag.history.events.AppLaunchedEvent;
+import org.apache.tez.dag.history.events.DAGFinishedEvent;
 import org.apache.tez.dag.history.events.DAGSubmittedEvent;
 import org.apache.tez.dag.history.utils.DAGUtils;
 import org.apache.tez.dag.records.TezDAGID;
@@ -158,6 +160,7 @@ import org.codehaus.jettison.json.JSONException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
 
 /**
  * The Tez DAG Application Master.
@@ -250,6 +253,19 @@ public class DAGAppMaster extends AbstractService {
    */
   Set<String> dagNames = new HashSet<String>();
   Set<String> dagIDs = new HashSet<String>();
+  /**
+   * DAGs submitted to the session while another DAG was running, in submission order.
+   */
+  private final Map<String, QueuedDAG> queuedDAGs = new LinkedHashMap<String, QueuedDAG>();
+  private int maxQueuedDAGs;
+  /**
+   * Queued DAGs killed before they were started, reported to clients as killed.
+   */
+  private final Map<String, DAG> killedQueuedDAGs = new HashMap<String, DAG>();
+  /**
+   * Digests of the payload base configurations pinned for the running and queued DAGs.
+   */
+  private final Map<TezDAGID, ByteString> pinnedBaseConfs = new HashMap<TezDAGID, ByteString>();
 
   protected boolean isLastAMRetry = false;
 
@@ -426,6 +442,8 @@ public class DAGAppMaster extends AbstractService {
     this.sessionTimeoutInterval = 1000 * amConf.getInt(
             TezConfiguration.TEZ_SESSION_AM_DAG_SUBMIT_TIMEOUT_SECS,
             TezConfiguration.TEZ_SESSION_AM_DAG_SUBMIT_TIMEOUT_SECS_DEFAULT);
+    this.maxQueuedDAGs = amConf.getInt(TezConfiguration.TEZ_AM_SESSION_MAX_QUEUED_DAGS,
+        TezConfiguration.TEZ_AM_SESSION_MAX_QUEUED_DAGS_DEFAULT);
 
     recoveryDataDir = TezCommonUtils.getRecoveryPath(tezSystemStagingDir, conf);
     recoveryFS = recoveryDataDir.getFileSystem(conf);
@@ -484,6 +502,12 @@ public class DAGAppMaster extends AbstractService {
   
   @VisibleForTesting
   protected Dispatcher createDispatcher() {
+    int numThreads = amConf.getInt(TezConfiguration.TEZ_AM_DISPATCHER_THREAD_COUNT,
+        TezConfiguration.TEZ_AM_DISPATCHER_THREAD_COUNT_DEFAULT);
+    if (numThreads > 1) {
+      LOG.info("Using " + numThreads + " threads to dispatch events");
+      return new PartitionedDispatcher(numThreads);
+    }
     return new AsyncDispatcher();
   }
 
@@ -531,6 +555,7 @@ public class DAGAppMaster extends AbstractService {
       }
       break;
     case DAG_FINISHED:
+      boolean startNextQueuedDAG = false;
       DAGAppMasterEventDAGFinished finishEvt =
           (DAGAppMasterEventDAGFinished) event;
       if (!isSession) {
@@ -588,9 +613,13 @@ public class DAGAppMaster extends AbstractService {
         }
         if (!state.equals(DAGAppMasterState.ERROR)) {
           if (!sessionStopped.get()) {
-            LOG.info("Waiting for next DAG to be submitted.");
             this.taskSchedulerEventHandler.dagCompleted();
-            state = DAGAppMasterState.IDLE;
+            if (queuedDAGs.isEmpty()) {
+              LOG.info("Waiting for next DAG to be submitted.");
+              state = DAGAppMasterState.IDLE;
+            } else {
+              startNextQueuedDAG = true;
+            }
           } else {
             LOG.info("Session shutting down now.");
             this.taskSchedulerEventHandler.setShouldUnregisterFlag();
@@ -603,6 +632,7 @@ public class DAGAppMaster extends AbstractService {
           }
         }
       }
+      unpinBaseConf(finishEvt.getDAGId());
       //close all fs related caches
       try {
         FileSystem.closeAllForUGI(context.getCurrentDAG().getDagUGI());
@@ -610,6 +640,9 @@ public class DAGAppMaster extends AbstractService {
         LOG.warn("Error occurred when trying to close FileSystem for userName " + context
             .getCurrentDAG().getDagUGI().getUserName(), e);
       }
+      if (startNextQueuedDAG) {
+        startNextQueuedDAG();
+      }
       break;
     case AM_REBOOT:
       LOG.info("Received an AM_REBOOT signal");
@@ -734,6 +767,19 @@ public class DAGAppMaster extends AbstractService {
       dagConf.set(keyValPair.getKey(), keyValPair.getValue());
     }
 
+    if (dagPB.hasPayloadBaseConf()) {
+      // Needed by payloads read in the AM, and shipped to the containers running the dag. Kept
+      // until the dag completes, so that dags queued behind it cannot evict it.
+      try {
+        ByteString digest = TezUtils.pinBaseConf(dagPB.getPayloadBaseConf());
+        synchronized (pinnedBaseConfs) {
+          pinnedBaseConfs.put(dagId, digest);
+        }
+      } catch (IOException e) {
+        throw new TezUncheckedException("Failed to read the payload base configuration", e);
+      }
+    }
+
     Credentials dagCredentials = null;
     if (dagPB.hasCredentialsBinary()) {
       dagCredentials = DagTypeConverters.convertByteStringToCredentials(dagPB
@@ -1039,6 +1085,15 @@ public class DAGAppMaster extends AbstractService {
 
   public synchronized void shutdownTezAM() {
     sessionStopped.set(true);
+    if (!queuedDAGs.isEmpty()) {
+      LOG.info("Dropping " + queuedDAGs.size() + " queued DAGs on shutdown: "
+          + queuedDAGs.keySet());
+      List<QueuedDAG> droppedDAGs = new ArrayList<QueuedDAG>(queuedDAGs.values());
+      queuedDAGs.clear();
+      for (QueuedDAG queuedDAG : droppedDAGs) {
+        queuedDAGKilled(queuedDAG, "DAG killed as the session was shut down before it started");
+      }
+    }
     this.taskSchedulerEventHandler.setShouldUnregisterFlag();
     if (currentDAG != null
         && !currentDAG.isComplete()) {
@@ -1061,15 +1116,18 @@ public class DAGAppMaster extends AbstractService {
       throw new TezException("Unable to accept DAG submissions as the ApplicationMaster is"
           + " incompatible with the client. " + versionMismatchDiagnostics);
     }
-    if(currentDAG != null
-        && !state.equals(DAGAppMasterState.IDLE)) {
-      throw new TezException("App master already running a DAG");
-    }
     if (state.equals(DAGAppMasterState.ERROR)
         || sessionStopped.get()) {
       throw new TezException("AM unable to accept new DAG submissions."
           + " In the process of shutting down");
     }
+    if(currentDAG != null
+        && !state.equals(DAGAppMasterState.IDLE)) {
+      if (!isSession || queuedDAGs.size() >= maxQueuedDAGs) {
+        throw new TezException("App master already running a DAG");
+      }
+      return queueDAG(dagPlan, additionalResources);
+    }
 
     // RPC server runs in the context of the job user as it was started in
     // the job user's UGI context
@@ -1083,8 +1141,108 @@ public class DAGAppMaster extends AbstractService {
     return currentDAG.getID().toString();
   }
 
+  private String queueDAG(DAGPlan dagPlan, Map<String, LocalResource> additionalResources)
+      throws TezException {
+    long submitTime = this.clock.getTime();
+    checkDAGName(dagPlan);
+    // Created now to hand out its id. Started, and logged to history and recovery, when the
+    // running DAG completes.
+    DAG newDAG = createDAG(dagPlan);
+    submittedDAGs.incrementAndGet();
+    queuedDAGs.put(newDAG.getID().toString(),
+        new QueuedDAG(newDAG, dagPlan, additionalResources, submitTime));
+    LOG.info("Queued DAG submitted via RPC: " + dagPlan.getName() + ", dagId=" + newDAG.getID()
+        + ", queuedDAGs=" + queuedDAGs.size());
+    return newDAG.getID().toString();
+  }
+
+  private void startNextQueuedDAG() {
+    Iterator<QueuedDAG> iter = queuedDAGs.values().iterator();
+    QueuedDAG next = iter.next();
+    iter.remove();
+    LOG.info("Starting queued DAG: " + next.dagPlan.getName() + ", dagId=" + next.dag.getID());
+    try {
+      startDAG(next.dag, next.dagPlan, next.additionalResources, next.submitTime);
+    } catch (TezException e) {
+      queuedDAGStartFailed(next, e);
+    } catch (RuntimeException e) {
+      // Not propagated, since this runs on the dispatcher thread of the completed DAG
+      queuedDAGStartFailed(next, e);
+    }
+  }
+
+  private void queuedDAGStartFailed(QueuedDAG queuedDAG, Exception e) {
+    LOG.error("Failed to start queued DAG " + queuedDAG.dag.getID(), e);
+    unpinBaseConf(queuedDAG.dag.getID());
+    failedDAGs.incrementAndGet();
+    dagIDs.add(queuedDAG.dag.getID().toString());
+    if (queuedDAGs.isEmpty()) {
+      state = DAGAppMasterState.IDLE;
+    } else {
+      startNextQueuedDAG();
+    }
+  }
+
+  // Releases the payload base configuration of a dag once it will not run anymore
+  private void unpinBaseConf(TezDAGID dagId) {
+    ByteString digest;
+    synchronized (pinnedBaseConfs) {
+      digest = pinnedBaseConfs.remove(dagId);
+    }
+    if (digest != null) {
+      TezUtils.unpinBaseConf(digest);
+    }
+  }
+
+  // Records a queued DAG which will never be started as killed in history and recovery, and
+  // wakes up clients waiting for a change of its status
+  private void queuedDAGKilled(QueuedDAG queuedDAG, String diagnostics) {
+    DAG dag = queuedDAG.dag;
+    unpinBaseConf(dag.getID());
+    killedDAGs.incrementAndGet();
+    dagIDs.add(dag.getID().toString());
+    killedQueuedDAGs.put(dag.getID().toString(), dag);
+    DAGSubmittedEvent submittedEvent = new DAGSubmittedEvent(dag.getID(),
+        queuedDAG.submitTime, queuedDAG.dagPlan, this.appAttemptID,
+        cumulativeAdditionalResources, dag.getUserName());
+    DAGFinishedEvent finishedEvent = new DAGFinishedEvent(dag.getID(), queuedDAG.submitTime,
+        clock.getTime(), DAGState.KILLED, diagnostics, null, dag.getUserName(), dag.getName(),
+        null);
+    try {
+      historyEventHandler.handleCriticalEvent(new DAGHistoryEvent(dag.getID(), submittedEvent));
+      historyEventHandler.handleCriticalEvent(new DAGHistoryEvent(dag.getID(), finishedEvent));
+    } catch (IOException e) {
+      LOG.warn("Failed to log history of killed queued DAG, dagId=" + dag.getID(), e);
+    }
+    dag.statusChanged();
+  }
+
+  /**
+   * @return the DAG with the given id if it was queued and killed before it was started
+   */
+  public synchronized DAG getKilledQueuedDAG(String dagIdStr) {
+    return killedQueuedDAGs.get(dagIdStr);
+  }
+
+  /**
+   * @return the DAG with the given id if it was queued and has not been started yet
+   */
+  public synchronized DAG getQueuedDAG(String dagIdStr) {
+    QueuedDAG queuedDAG = queuedDAGs.get(dagIdStr);
+    return queuedDAG == null ? null : queuedDAG.dag;
+  }
+
   @SuppressWarnings("unchecked")
-  public void tryKillDAG(DAG dag){
+  public synchronized void tryKillDAG(DAG dag){
+    QueuedDAG queuedDAG = queuedDAGs.remove(dag.getID().toString());
+    if (queuedDAG != null) {
+      LOG.info("Removing queued DAG from the session, dagId=" + dag.getID());
+      queuedDAGKilled(queuedDAG, "DAG killed by the client before it started");
+      return;
+    }
+    if (killedQueuedDAGs.containsKey(dag.getID().toString())) {
+      return;
+    }
     dispatcher.getEventHandler().handle(new DAGEvent(dag.getID(), DAGEventType.DAG_KILL));
   }
   
@@ -1674,6 +1832,21 @@ public class DAGAppMaster extends AbstractService {
     super.serviceStop();
   }
 
+  private static class QueuedDAG {
+    final DAG dag;
+    final DAGPlan dagPlan;
+    final Map<String, LocalResource> additionalResources;
+    final long submitTime;
+
+    QueuedDAG(DAG dag, DAGPlan dagPlan, Map<String, LocalResource> additionalResources,
+        long submitTime) {
+      this.dag = dag;
+      this.dagPlan = dagPlan;
+      this.additionalResources = additionalResources;
+      this.submitTime = submitTime;
+    }
+  }
+
   private class DagEventDispatcher implements EventHandler<DAGEvent> {
     @SuppressWarnings("unchecked")
     @Override
@@ -1890,18 +2063,28 @@ public class DAGAppMaster extends AbstractService {
     }
   }
 
-  private void startDAG(DAGPlan dagPlan, Map<String, LocalResource> additionalAMResources)
-      throws TezException {
-    long submitTime = this.clock.getTime();
-    this.state = DAGAppMasterState.RUNNING;
-    this.appName = dagPlan.getName();
+  private void checkDAGName(DAGPlan dagPlan) throws TezException {
     if (dagNames.contains(dagPlan.getName())) {
       throw new TezException("Duplicate dag name '" + dagPlan.getName() + "'");
     }
     dagNames.add(dagPlan.getName());
+  }
+
+  private void startDAG(DAGPlan dagPlan, Map<String, LocalResource> additionalAMResources)
+      throws TezException {
+    long submitTime = this.clock.getTime();
+    this.state = DAGAppMasterState.RUNNING;
+    checkDAGName(dagPlan);
 
     // /////////////////// Create the job itself.
     DAG newDAG = createDAG(dagPlan);
+    startDAG(newDAG, dagPlan, additionalAMResources, submitTime);
+  }
+
+  private void startDAG(DAG newDAG, DAGPlan dagPlan,
+      Map<String, LocalResource> additionalAMResources, long submitTime) throws TezException {
+    this.state = DAGAppMasterState.RUNNING;
+    this.appName = dagPlan.getName();
     _updateLoggers(newDAG, "");
     if (LOG.isDebugEnabled()) {
       LOG.debug("Running a DAG with " + dagPlan.getVertexCount()
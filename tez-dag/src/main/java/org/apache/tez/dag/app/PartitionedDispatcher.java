@@ -0,0 +1,304 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.service.CompositeService;
+import org.apache.hadoop.service.Service;
+import org.apache.hadoop.yarn.event.AsyncDispatcher;
+import org.apache.hadoop.yarn.event.Dispatcher;
+import org.apache.hadoop.yarn.event.Event;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEvent;
+import org.apache.tez.dag.app.dag.event.TaskEvent;
+import org.apache.tez.dag.app.dag.event.VertexEvent;
+import org.apache.tez.dag.records.TezVertexID;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Dispatcher which spreads events over multiple {@link AsyncDispatcher}s, each with its own queue
+ * and thread.
+ * <p/>
+ * Vertex, task and task attempt events are partitioned by vertex, so that all events of a vertex,
+ * its tasks and their attempts are handled in order on a single thread. All other events (DAG,
+ * container, node, scheduler etc.) are handled by the first partition. An event sent by a handler
+ * to an entity in another partition is queued in that partition, the same way as with a single
+ * {@link AsyncDispatcher}. There is no ordering between events of different partitions.
+ * <p/>
+ * The handlers registered with the dispatcher must be able to handle events concurrently for
+ * entities in different partitions.
+ * <p/>
+ * Per event type, the dispatcher keeps the time events waited in the queue of their partition
+ * separately from the time taken by the handler.
+ */
+@SuppressWarnings("rawtypes")
+@Private
+public class PartitionedDispatcher extends CompositeService implements Dispatcher {
+
+  private static final Log LOG = LogFactory.getLog(PartitionedDispatcher.class);
+
+  private final List<TimestampedQueue> queues;
+  private final List<EventHandler> partitionHandlers;
+  private final EventHandler eventHandler = new PartitioningEventHandler();
+  private final ConcurrentMap<Enum<?>, EventTypeStats> eventTypeStats =
+      new ConcurrentHashMap<Enum<?>, EventTypeStats>();
+
+  public PartitionedDispatcher(int numPartitions) {
+    super(PartitionedDispatcher.class.getName());
+    Preconditions.checkArgument(numPartitions > 0,
+        "Number of partitions must be positive, found: " + numPartitions);
+    this.queues = new ArrayList<TimestampedQueue>(numPartitions);
+    this.partitionHandlers = new ArrayList<EventHandler>(numPartitions);
+    for (int i = 0; i < numPartitions; i++) {
+      TimestampedQueue queue = new TimestampedQueue();
+      AsyncDispatcher dispatcher = new AsyncDispatcher(queue);
+      addService(dispatcher);
+      queues.add(queue);
+      partitionHandlers.add(dispatcher.getEventHandler());
+    }
+  }
+
+  @Override
+  public void register(Class<? extends Enum> eventType, EventHandler handler) {
+    List<Service> services = getServices();
+    for (int i = 0; i < services.size(); i++) {
+      ((AsyncDispatcher) services.get(i)).register(eventType,
+          new TimedEventHandler(handler, queues.get(i)));
+    }
+  }
+
+  @Override
+  public EventHandler getEventHandler() {
+    return eventHandler;
+  }
+
+  @Override
+  protected void serviceStop() throws Exception {
+    super.serviceStop();
+    if (LOG.isInfoEnabled() && !eventTypeStats.isEmpty()) {
+      StringBuilder sb = new StringBuilder("Event queue wait and handling times:");
+      for (Map.Entry<Enum<?>, EventTypeStats> entry : eventTypeStats.entrySet()) {
+        sb.append(" [").append(entry.getKey()).append(": ").append(entry.getValue()).append("]");
+      }
+      LOG.info(sb.toString());
+    }
+  }
+
+  public int getNumPartitions() {
+    return queues.size();
+  }
+
+  /**
+   * @return the number of events waiting to be handled in the partition
+   */
+  public int getQueueSize(int partition) {
+    return queues.get(partition).size();
+  }
+
+  /**
+   * @return statistics of the time events waited in the queue and the time taken to handle them,
+   *         per event type
+   */
+  public Map<Enum<?>, EventTypeStats> getEventTypeStats() {
+    return Collections.unmodifiableMap(eventTypeStats);
+  }
+
+  @VisibleForTesting
+  int getPartition(Event event) {
+    TezVertexID vertexId = null;
+    if (event instanceof VertexEvent) {
+      vertexId = ((VertexEvent) event).getVertexId();
+    } else if (event instanceof TaskEvent) {
+      vertexId = ((TaskEvent) event).getTaskID().getVertexID();
+    } else if (event instanceof TaskAttemptEvent) {
+      vertexId = ((TaskAttemptEvent) event).getTaskAttemptID().getTaskID().getVertexID();
+    }
+    if (vertexId == null) {
+      return 0;
+    }
+    return vertexId.getId() % queues.size();
+  }
+
+  private class PartitioningEventHandler implements EventHandler<Event> {
+    @SuppressWarnings("unchecked")
+    @Override
+    public void handle(Event event) {
+      partitionHandlers.get(getPartition(event)).handle(event);
+    }
+  }
+
+  /**
+   * Queue of a partition which records when each event was queued. The timestamps are kept in
+   * the same order as the events, so the single thread of the partition finds the timestamp of
+   * the event it took last in {@link #getLastTakenEnqueueTime()}.
+   */
+  @VisibleForTesting
+  static class TimestampedQueue extends LinkedBlockingQueue<Event> {
+    private static final long serialVersionUID = 1L;
+
+    private final Queue<Long> enqueueTimes = new ConcurrentLinkedQueue<Long>();
+    private final Object putLock = new Object();
+    private volatile long lastTakenEnqueueTime;
+
+    @Override
+    public void put(Event event) throws InterruptedException {
+      // Unbounded, so this never blocks while holding the lock
+      synchronized (putLock) {
+        enqueueTimes.add(System.nanoTime());
+        super.put(event);
+      }
+    }
+
+    @Override
+    public boolean offer(Event event) {
+      synchronized (putLock) {
+        enqueueTimes.add(System.nanoTime());
+        return super.offer(event);
+      }
+    }
+
+    @Override
+    public Event take() throws InterruptedException {
+      Event event = super.take();
+      lastTakenEnqueueTime = enqueueTimes.remove();
+      return event;
+    }
+
+    @Override
+    public Event poll() {
+      Event event = super.poll();
+      if (event != null) {
+        lastTakenEnqueueTime = enqueueTimes.remove();
+      }
+      return event;
+    }
+
+    long getLastTakenEnqueueTime() {
+      return lastTakenEnqueueTime;
+    }
+  }
+
+  private class TimedEventHandler implements EventHandler<Event> {
+    private final EventHandler handler;
+    private final TimestampedQueue queue;
+
+    TimedEventHandler(EventHandler handler, TimestampedQueue queue) {
+      this.handler = handler;
+      this.queue = queue;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void handle(Event event) {
+      long startTime = System.nanoTime();
+      long queueWaitTime = startTime - queue.getLastTakenEnqueueTime();
+      try {
+        handler.handle(event);
+      } finally {
+        getStats(event.getType()).add(queueWaitTime, System.nanoTime() - startTime);
+      }
+    }
+
+    private EventTypeStats getStats(Enum<?> type) {
+      EventTypeStats stats = eventTypeStats.get(type);
+      if (stats == null) {
+        stats = new EventTypeStats();
+        EventTypeStats existing = eventTypeStats.putIfAbsent(type, stats);
+        if (existing != null) {
+          stats = existing;
+        }
+      }
+      return stats;
+    }
+  }
+
+  /**
+   * Number of events handled for an event type, the time they waited in the queue and the time
+   * taken to handle them.
+   */
+  public static class EventTypeStats {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong totalTimeNanos = new AtomicLong();
+    private final AtomicLong maxTimeNanos = new AtomicLong();
+
+    void add(long queueWaitNanos, long timeNanos) {
+      count.incrementAndGet();
+      totalQueueWaitNanos.addAndGet(queueWaitNanos);
+      updateMax(maxQueueWaitNanos, queueWaitNanos);
+      totalTimeNanos.addAndGet(timeNanos);
+      updateMax(maxTimeNanos, timeNanos);
+    }
+
+    private static void updateMax(AtomicLong maxNanos, long nanos) {
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getTotalQueueWaitMicros() {
+      return TimeUnit.NANOSECONDS.toMicros(totalQueueWaitNanos.get());
+    }
+
+    public long getMaxQueueWaitMicros() {
+      return TimeUnit.NANOSECONDS.toMicros(maxQueueWaitNanos.get());
+    }
+
+    public long getTotalTimeMicros() {
+      return TimeUnit.NANOSECONDS.toMicros(totalTimeNanos.get());
+    }
+
+    public long getMaxTimeMicros() {
+      return TimeUnit.NANOSECONDS.toMicros(maxTimeNanos.get());
+    }
+
+    @Override
+    public String toString() {
+      long numEvents = getCount();
+      return "count=" + numEvents
+          + ", avgQueueWaitMicros="
+          + (numEvents == 0 ? 0 : getTotalQueueWaitMicros() / numEvents)
+          + ", maxQueueWaitMicros=" + getMaxQueueWaitMicros()
+          + ", avgMicros=" + (numEvents == 0 ? 0 : getTotalTimeMicros() / numEvents)
+          + ", maxMicros=" + getMaxTimeMicros();
+    }
+  }
+}
@@ -18,6 +18,8 @@
 
 package org.apache.tez.dag.app;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -65,6 +67,8 @@ import org.apache.tez.dag.history.events.VertexGroupCommitStartedEvent;
 import org.apache.tez.dag.history.events.VertexInitializedEvent;
 import org.apache.tez.dag.history.events.VertexParallelismUpdatedEvent;
 import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.history.recovery.RecoveryCheckpoint;
+import org.apache.tez.dag.history.recovery.RecoveryFrames;
 import org.apache.tez.dag.history.recovery.RecoveryService;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezVertexID;
@@ -77,6 +81,9 @@ public class RecoveryParser {
 
   private static final Log LOG = LogFactory.getLog(RecoveryParser.class);
 
+  // Frames of events copied into the recovery file of the current attempt are cut at this size
+  private static final int MAX_COPIED_FRAME_LENGTH = 1024 * 1024;
+
   private final DAGAppMaster dagAppMaster;
   private final FileSystem recoveryFS;
   private final Path recoveryDataDir;
@@ -128,7 +135,52 @@ public class RecoveryParser {
     }
   }
 
-  private static HistoryEvent getNextEvent(FSDataInputStream inputStream)
+  /**
+   * Reads the events of a DAG recovery file, frame by frame.
+   */
+  public static class DAGRecoveryEventReader {
+    private final DataInputStream inputStream;
+    private final long length;
+    private long bytesRead = 0;
+    private DataInputStream frameStream;
+
+    public DAGRecoveryEventReader(DataInputStream inputStream) {
+      this(inputStream, -1);
+    }
+
+    /**
+     * @param length the number of bytes of frames to read, or -1 to read up to the end of the
+     *          data
+     */
+    public DAGRecoveryEventReader(DataInputStream inputStream, long length) {
+      this.inputStream = inputStream;
+      this.length = length;
+    }
+
+    /**
+     * @return the next event, or null at the end of the data
+     */
+    public HistoryEvent getNextEvent() throws IOException {
+      while (frameStream == null || frameStream.available() == 0) {
+        if (length >= 0 && bytesRead >= length) {
+          return null;
+        }
+        byte[] frame = RecoveryFrames.readFrame(inputStream);
+        if (frame == null) {
+          return null;
+        }
+        bytesRead += RecoveryFrames.FRAME_HEADER_LENGTH + frame.length;
+        frameStream = new DataInputStream(new ByteArrayInputStream(frame));
+      }
+      return RecoveryParser.getNextEvent(frameStream);
+    }
+
+    public long getBytesRead() {
+      return bytesRead;
+    }
+  }
+
+  private static HistoryEvent getNextEvent(DataInputStream inputStream)
       throws IOException {
     int eventTypeOrdinal = -1;
     try {
@@ -235,11 +287,12 @@ public class RecoveryParser {
 
 
 
-  public static List<HistoryEvent> parseDAGRecoveryFile(FSDataInputStream inputStream)
+  public static List<HistoryEvent> parseDAGRecoveryFile(DataInputStream inputStream)
       throws IOException {
     List<HistoryEvent> historyEvents = new ArrayList<HistoryEvent>();
+    DAGRecoveryEventReader reader = new DAGRecoveryEventReader(inputStream);
     while (true) {
-      HistoryEvent historyEvent = getNextEvent(inputStream);
+      HistoryEvent historyEvent = reader.getNextEvent();
       if (historyEvent == null) {
         LOG.info("Reached end of stream");
         break;
@@ -296,16 +349,6 @@ public class RecoveryParser {
         dagID.toString() + TezConstants.DAG_RECOVERY_RECOVER_FILE_SUFFIX);
   }
 
-  private FSDataInputStream getDAGRecoveryStream(Path recoveryDataDir,
-      TezDAGID dagID)
-      throws IOException {
-    Path dagRecoveryPath = getDAGRecoveryFilePath(recoveryDataDir, dagID);
-    if (!recoveryFS.exists(dagRecoveryPath)) {
-      return null;
-    }
-    return recoveryFS.open(dagRecoveryPath, recoveryBufferSize);
-  }
-
   private FSDataOutputStream getDAGRecoveryOutputStream(Path recoveryDataDir,
       TezDAGID dagID)
       throws IOException {
@@ -636,9 +679,12 @@ public class RecoveryParser {
         + ", dataDir=" + previousAttemptRecoveryDataDir
         + ", intoCurrentDir=" + currentAttemptRecoveryDataDir);
 
-    FSDataInputStream dagRecoveryStream = getDAGRecoveryStream(
-        previousAttemptRecoveryDataDir, lastInProgressDAG);
-    if (dagRecoveryStream == null) {
+    RecoveryCheckpoint.EventReader reader = RecoveryCheckpoint.open(recoveryFS,
+        getDAGRecoveryFilePath(previousAttemptRecoveryDataDir, lastInProgressDAG),
+        TezCommonUtils.getDAGRecoveryCheckpointPath(previousAttemptRecoveryDataDir,
+            lastInProgressDAG.toString()),
+        -1, recoveryBufferSize);
+    if (reader == null) {
       // Could not find data to recover
       // Error out
       throw new IOException("Could not find recovery data for last in progress DAG"
@@ -651,11 +697,12 @@ public class RecoveryParser {
     FSDataOutputStream newDAGRecoveryStream =
         getDAGRecoveryOutputStream(currentAttemptRecoveryDataDir, lastInProgressDAG);
 
+    RecoveryFrames.Writer frameWriter = new RecoveryFrames.Writer();
     boolean skipAllOtherEvents = false;
     while (true) {
       HistoryEvent event;
       try {
-        event = getNextEvent(dagRecoveryStream);
+        event = reader.getNextEvent();
         if (event == null) {
           LOG.info("Reached end of dag recovery stream");
           break;
@@ -882,10 +929,13 @@ public class RecoveryParser {
             + ", eventType=" + eventType
             + ", event=" + event.toString());
       }
-      newDAGRecoveryStream.writeInt(eventType.ordinal());
-      event.toProtoStream(newDAGRecoveryStream);
+      frameWriter.append(event);
+      if (frameWriter.getLength() >= MAX_COPIED_FRAME_LENGTH) {
+        frameWriter.writeFrame(newDAGRecoveryStream);
+      }
     }
-    dagRecoveryStream.close();
+    frameWriter.writeFrame(newDAGRecoveryStream);
+    reader.close();
     newDAGRecoveryStream.hsync();
     newDAGRecoveryStream.close();
 
@@ -230,7 +230,8 @@ public class TaskAttemptListenerImpTezDag extends AbstractService implements
                 containerId);
             task = new ContainerTask(taskContext.getTask(), false,
                 convertLocalResourceMap(taskContext.getAdditionalResources()),
-                taskContext.getCredentials(), taskContext.haveCredentialsChanged());
+                taskContext.getCredentials(), taskContext.haveCredentialsChanged(),
+                taskContext.getPayloadBaseConf());
             context.getEventHandler().handle(
                 new TaskAttemptEventStartedRemotely(taskContext.getTask()
                     .getTaskAttemptID(), containerId, context
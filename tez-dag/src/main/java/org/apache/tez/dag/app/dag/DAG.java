@@ -32,6 +32,7 @@ import org.apache.tez.dag.api.client.StatusGetOpts;
 import org.apache.tez.dag.api.client.VertexStatusBuilder;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
 import org.apache.tez.common.security.ACLManager;
+import org.apache.tez.dag.app.dag.speculation.legacy.SpeculationTracker;
 import org.apache.tez.dag.history.HistoryEvent;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezVertexID;
@@ -72,6 +73,20 @@ public interface DAG {
 
   DAGPlan getJobPlan();
   DAGStatusBuilder getDAGStatus(Set<StatusGetOpts> statusOptions);
+
+  /**
+   * Get the status of the DAG once it differs from the given status version. Waits until the
+   * status changes, the DAG completes or the timeout expires, whichever happens first.
+   */
+  DAGStatusBuilder getDAGStatus(Set<StatusGetOpts> statusOptions,
+      long statusVersion, long timeoutMillis) throws InterruptedException;
+
+  /**
+   * Notify the DAG that its status, as seen by clients, changed. Wakes up clients waiting in
+   * {@link #getDAGStatus(Set, long, long)}.
+   */
+  void statusChanged();
+
   VertexStatusBuilder getVertexStatus(String vertexName,
                                       Set<StatusGetOpts> statusOptions);
 
@@ -87,4 +102,9 @@ public interface DAG {
 
   Map<String, TezVertexID> getVertexNameIDMapping();
 
+  /**
+   * @return the speculation state shared by the vertices of the DAG
+   */
+  SpeculationTracker getSpeculationTracker();
+
 }
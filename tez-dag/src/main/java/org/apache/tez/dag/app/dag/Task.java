@@ -24,6 +24,7 @@ import java.util.Map;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.oldrecords.TaskReport;
 import org.apache.tez.dag.api.oldrecords.TaskState;
+import org.apache.tez.dag.app.dag.impl.Edge;
 import org.apache.tez.dag.history.HistoryEvent;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
@@ -67,4 +68,10 @@ public interface Task {
 
   public void registerTezEvent(TezEvent tezEvent);
 
+  /**
+   * Keep a copy of the events of the edge which were already sent to attempts of the task, as
+   * the edge is about to stop routing its events on demand.
+   */
+  public void copyOnDemandRoutedEvents(Edge edge);
+
 }
@@ -49,12 +49,17 @@ public interface TaskAttempt {
       this.id = id;
     }
 
+    public void setCounters(TezCounters counters) {
+      this.counters = counters;
+      // the locality counter is added again to the new counters
+      localitySet.set(false);
+    }
+
     // insert these counters till they come natively from the task itself.
     // HDFS-5098
     private AtomicBoolean localitySet = new AtomicBoolean(false);
     public void setLocalityCounter(DAGCounter localityCounter) {
-      if (!localitySet.get()) {
-        localitySet.set(true);
+      if (localitySet.compareAndSet(false, true)) {
         if (counters == null) {
           counters = new TezCounters();
         }
@@ -146,6 +146,22 @@ public interface Vertex extends Comparable<Vertex> {
 
   public int getFailedTaskAttemptCount();
 
+  /**
+   * Called by a task when an attempt is added to it. The vertex keeps the sums of the counters
+   * and progress of such tasks till they complete, so reads do not visit the tasks.
+   */
+  public void addActiveTask(Task task);
+
+  /**
+   * Called when an attempt of an active task reports its status, to update the sums of the
+   * counters and progress of the active tasks.
+   */
+  public void updateActiveTask(TezTaskID taskId);
+
+  public void incrementRunningTaskCount();
+
+  public void decrementRunningTaskCount();
+
   public int getKilledTaskAttemptCount();
 
 }
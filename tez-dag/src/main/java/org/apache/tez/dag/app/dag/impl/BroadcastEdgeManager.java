@@ -27,7 +27,8 @@ import org.apache.tez.dag.api.EdgeManagerPluginContext;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
 import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 
-public class BroadcastEdgeManager extends EdgeManagerPlugin {
+public class BroadcastEdgeManager extends EdgeManagerPlugin
+    implements OnDemandRoutingEdgeManager {
 
   public BroadcastEdgeManager(EdgeManagerPluginContext context) {
     super(context);
@@ -81,4 +82,14 @@ public class BroadcastEdgeManager extends EdgeManagerPlugin {
     return getContext().getDestinationVertexNumTasks();
   }
 
+  @Override
+  public int getDestinationInputIndex(int sourceTaskIndex, int destinationTaskIndex) {
+    return sourceTaskIndex;
+  }
+
+  @Override
+  public int getSourceOutputIndex(int destinationTaskIndex) {
+    return ALL_OUTPUTS;
+  }
+
 }
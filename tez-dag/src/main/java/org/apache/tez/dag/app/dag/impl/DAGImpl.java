@@ -33,6 +33,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -100,6 +102,7 @@ import org.apache.tez.dag.app.dag.event.VertexEvent;
 import org.apache.tez.dag.app.dag.event.VertexEventRecoverVertex;
 import org.apache.tez.dag.app.dag.event.VertexEventTermination;
 import org.apache.tez.dag.app.dag.event.VertexEventType;
+import org.apache.tez.dag.app.dag.speculation.legacy.SpeculationTracker;
 import org.apache.tez.common.security.ACLManager;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.HistoryEvent;
@@ -146,6 +149,12 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
   private final TaskAttemptListener taskAttemptListener;
   private final TaskHeartbeatHandler taskHeartbeatHandler;
   private final Object tasksSyncHandle = new Object();
+  // Clients waiting for status changes wait on this lock, which is never held while taking
+  // other locks.
+  private final Object statusVersionLock = new Object();
+  private long statusVersion = 0;
+
+  private final SpeculationTracker speculationTracker;
 
   private volatile boolean committedOrAborted = false;
   private volatile boolean allOutputsCommitted = false;
@@ -163,7 +172,7 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
   private final ACLManager aclManager;
   private final StateChangeNotifier entityUpdateTracker;
 
-  volatile Map<TezVertexID, Vertex> vertices = new HashMap<TezVertexID, Vertex>();
+  volatile Map<TezVertexID, Vertex> vertices = new ConcurrentHashMap<TezVertexID, Vertex>();
   @VisibleForTesting
   Map<String, Edge> edges = new HashMap<String, Edge>();
   private TezCounters dagCounters = new TezCounters();
@@ -450,6 +459,7 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
         this.conf);
 
     this.taskSpecificLaunchCmdOption = new TaskSpecificLaunchCmdOption(conf);
+    this.speculationTracker = new SpeculationTracker(conf);
     // This "this leak" is okay because the retained pointer is in an
     //  instance variable.
     stateMachine = stateMachineFactory.make(this);
@@ -487,12 +497,9 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
 
   @Override
   public Vertex getVertex(TezVertexID vertexID) {
-    readLock.lock();
-    try {
-      return vertices.get(vertexID);
-    } finally {
-      readLock.unlock();
-    }
+    // Not locked, since vertices look up other vertices while handling events, possibly on
+    // another dispatcher thread than the DAG.
+    return vertices.get(vertexID);
   }
 
   @Override
@@ -573,6 +580,11 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
     }
   }
 
+  @Override
+  public SpeculationTracker getSpeculationTracker() {
+    return speculationTracker;
+  }
+
   @Override
   public TezCounters getAllCounters() {
 
@@ -680,6 +692,11 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
   @Override
   public DAGStatusBuilder getDAGStatus(Set<StatusGetOpts> statusOptions) {
     DAGStatusBuilder status = new DAGStatusBuilder();
+    // Read before building the status, so that a change made while building it results in a
+    // newer version
+    synchronized (statusVersionLock) {
+      status.setStatusVersion(statusVersion);
+    }
     int totalTaskCount = 0;
     int totalSucceededTaskCount = 0;
     int totalRunningTaskCount = 0;
@@ -720,6 +737,31 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
     }
   }
 
+  @Override
+  public DAGStatusBuilder getDAGStatus(Set<StatusGetOpts> statusOptions,
+      long statusVersion, long timeoutMillis) throws InterruptedException {
+    if (!isComplete()) {
+      long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      long endTime = System.nanoTime() + remainingNanos;
+      synchronized (statusVersionLock) {
+        // Completion changes the state, and hence the version
+        while (this.statusVersion == statusVersion && remainingNanos > 0) {
+          TimeUnit.NANOSECONDS.timedWait(statusVersionLock, remainingNanos);
+          remainingNanos = endTime - System.nanoTime();
+        }
+      }
+    }
+    return getDAGStatus(statusOptions);
+  }
+
+  @Override
+  public void statusChanged() {
+    synchronized (statusVersionLock) {
+      statusVersion++;
+      statusVersionLock.notifyAll();
+    }
+  }
+
   private ProgressBuilder getDAGProgress() {
     int totalTaskCount = 0;
     int totalSucceededTaskCount = 0;
@@ -960,6 +1002,7 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
       if (oldState != getInternalState()) {
         LOG.info(dagId + " transitioned from " + oldState + " to "
                  + getInternalState());
+        statusChanged();
       }
     }
 
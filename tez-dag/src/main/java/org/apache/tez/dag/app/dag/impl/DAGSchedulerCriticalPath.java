@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.tez.dag.app.dag.DAG;
+import org.apache.tez.dag.app.dag.DAGScheduler;
+import org.apache.tez.dag.app.dag.TaskAttempt;
+import org.apache.tez.dag.app.dag.Vertex;
+import org.apache.tez.dag.app.dag.event.DAGEventSchedulerUpdate;
+import org.apache.tez.dag.app.dag.event.DAGEventSchedulerUpdateTAAssigned;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEventSchedule;
+import org.apache.tez.dag.records.TezVertexID;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Prioritizes the tasks of the vertices on the longest remaining path through the DAG.
+ * <p/>
+ * The remaining time of a vertex is estimated as the number of its tasks which have not
+ * succeeded, times the estimated duration of its tasks. Task durations are estimated from the
+ * succeeded attempts of the vertex, or of the whole DAG for vertices without any succeeded
+ * attempts. Until an attempt succeeds, all tasks are assumed to take the same time. The remaining
+ * path length of a vertex is its remaining time plus the longest remaining path length of the
+ * vertices consuming its output.
+ * <p/>
+ * Vertices are ranked by their remaining path length, and get priorities in the same way as
+ * {@link DAGSchedulerNaturalOrder} assigns them by distance from root. Since the remaining time
+ * of every vertex is positive, a vertex always ranks above the vertices consuming its output.
+ * Ranks are recomputed when a vertex completes, and otherwise once as many tasks succeeded as
+ * there are vertices. As tasks keep the priority they were scheduled with, a vertex is never
+ * scheduled at or above the lowest priority any of its ancestors was scheduled at.
+ */
+@SuppressWarnings("rawtypes")
+public class DAGSchedulerCriticalPath implements DAGScheduler {
+
+  private static final Log LOG = LogFactory.getLog(DAGSchedulerCriticalPath.class);
+
+  // Used until the first attempt succeeds. Only the ratios between estimates matter.
+  private static final double DEFAULT_TASK_DURATION = 1.0;
+
+  private final DAG dag;
+  private final EventHandler handler;
+
+  private final Map<TezVertexID, DurationStats> vertexDurations =
+      new HashMap<TezVertexID, DurationStats>();
+  private final DurationStats dagDurations = new DurationStats();
+  private Map<TezVertexID, Integer> vertexRanks = null;
+  private int succeededTasksSinceRanked = 0;
+  // Lowest priority, as a rank, the tasks of each vertex were scheduled at
+  private final Map<TezVertexID, Integer> lowestScheduledRanks =
+      new HashMap<TezVertexID, Integer>();
+  // Lowest scheduled rank of the ancestors of each vertex. Cleared when a rank is lowered.
+  private final Map<TezVertexID, Integer> lowestAncestorRanks =
+      new HashMap<TezVertexID, Integer>();
+
+  public DAGSchedulerCriticalPath(DAG dag, EventHandler dispatcher) {
+    this.dag = dag;
+    this.handler = dispatcher;
+  }
+
+  @Override
+  public void vertexCompleted(Vertex vertex) {
+    vertexRanks = null;
+  }
+
+  @Override
+  public void scheduleTask(DAGEventSchedulerUpdate event) {
+    TaskAttempt attempt = event.getAttempt();
+    int rank = getScheduledRank(attempt.getVertexID());
+
+    // Handles failures and retries in the same way as the natural order.
+    int priorityLowLimit = (rank + 1) * 3;
+    int priorityHighLimit = priorityLowLimit - 2;
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Scheduling " + attempt.getID() + " between priorityLow: " + priorityLowLimit
+          + " and priorityHigh: " + priorityHighLimit);
+    }
+
+    TaskAttemptEventSchedule attemptEvent = new TaskAttemptEventSchedule(
+        attempt.getID(), priorityLowLimit, priorityHighLimit);
+
+    sendEvent(attemptEvent);
+  }
+
+  @Override
+  public void taskScheduled(DAGEventSchedulerUpdateTAAssigned event) {
+  }
+
+  @Override
+  public void taskSucceeded(DAGEventSchedulerUpdate event) {
+    TaskAttempt attempt = event.getAttempt();
+    long launchTime = attempt.getLaunchTime();
+    long finishTime = attempt.getFinishTime();
+    if (launchTime > 0 && finishTime >= launchTime) {
+      long duration = finishTime - launchTime;
+      DurationStats stats = vertexDurations.get(attempt.getVertexID());
+      if (stats == null) {
+        stats = new DurationStats();
+        vertexDurations.put(attempt.getVertexID(), stats);
+      }
+      stats.add(duration);
+      dagDurations.add(duration);
+    }
+    // The number of remaining tasks changed
+    ++succeededTasksSinceRanked;
+  }
+
+  /**
+   * @return the rank of the vertex, lowered below the lowest rank any of its ancestors was
+   *         scheduled at
+   */
+  @VisibleForTesting
+  int getScheduledRank(TezVertexID vertexId) {
+    int rank = getVertexRank(vertexId);
+    Vertex vertex = dag.getVertex(vertexId);
+    if (vertex != null) {
+      rank = Math.max(rank, getLowestAncestorRank(vertex) + 1);
+    }
+    Integer lowestRank = lowestScheduledRanks.get(vertexId);
+    if (lowestRank == null || rank > lowestRank) {
+      lowestScheduledRanks.put(vertexId, rank);
+      lowestAncestorRanks.clear();
+    }
+    return rank;
+  }
+
+  @VisibleForTesting
+  int getVertexRank(TezVertexID vertexId) {
+    if (vertexRanks == null || succeededTasksSinceRanked >= dag.getVertices().size()) {
+      vertexRanks = computeVertexRanks();
+      succeededTasksSinceRanked = 0;
+    }
+    Integer rank = vertexRanks.get(vertexId);
+    if (rank == null) {
+      // Not known when the ranks were computed. Should not happen as vertices are not added.
+      vertexRanks = computeVertexRanks();
+      rank = vertexRanks.get(vertexId);
+    }
+    return rank == null ? 0 : rank;
+  }
+
+  private Map<TezVertexID, Integer> computeVertexRanks() {
+    Map<Vertex, Double> pathLengths = new HashMap<Vertex, Double>();
+    for (Vertex vertex : dag.getVertices().values()) {
+      getRemainingPathLength(vertex, pathLengths);
+    }
+    // Dense ranking, longest remaining path first
+    List<Double> distinctLengths = new ArrayList<Double>(pathLengths.values());
+    Collections.sort(distinctLengths, Collections.reverseOrder());
+    Map<Double, Integer> lengthRanks = new HashMap<Double, Integer>();
+    for (Double length : distinctLengths) {
+      if (!lengthRanks.containsKey(length)) {
+        lengthRanks.put(length, lengthRanks.size());
+      }
+    }
+    Map<TezVertexID, Integer> ranks = new HashMap<TezVertexID, Integer>();
+    for (Map.Entry<Vertex, Double> entry : pathLengths.entrySet()) {
+      ranks.put(entry.getKey().getVertexId(), lengthRanks.get(entry.getValue()));
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Computed vertex ranks: " + ranks + " from path lengths: " + pathLengths);
+    }
+    return ranks;
+  }
+
+  /**
+   * @return the lowest rank the ancestors of the vertex were scheduled at, or -1 if none was
+   */
+  private int getLowestAncestorRank(Vertex vertex) {
+    Integer lowestRank = lowestAncestorRanks.get(vertex.getVertexId());
+    if (lowestRank != null) {
+      return lowestRank;
+    }
+    int rank = -1;
+    for (Vertex inputVertex : vertex.getInputVertices().keySet()) {
+      Integer inputRank = lowestScheduledRanks.get(inputVertex.getVertexId());
+      if (inputRank != null) {
+        rank = Math.max(rank, inputRank);
+      }
+      rank = Math.max(rank, getLowestAncestorRank(inputVertex));
+    }
+    lowestAncestorRanks.put(vertex.getVertexId(), rank);
+    return rank;
+  }
+
+  private double getRemainingPathLength(Vertex vertex, Map<Vertex, Double> pathLengths) {
+    Double pathLength = pathLengths.get(vertex);
+    if (pathLength != null) {
+      return pathLength;
+    }
+    double longestOutputPath = 0;
+    for (Vertex outputVertex : vertex.getOutputVertices().keySet()) {
+      longestOutputPath = Math.max(longestOutputPath,
+          getRemainingPathLength(outputVertex, pathLengths));
+    }
+    pathLength = getRemainingTime(vertex) + longestOutputPath;
+    pathLengths.put(vertex, pathLength);
+    return pathLength;
+  }
+
+  private double getRemainingTime(Vertex vertex) {
+    int remainingTasks = Math.max(vertex.getTotalTasks() - vertex.getSucceededTasks(), 0);
+    DurationStats stats = vertexDurations.get(vertex.getVertexId());
+    double taskDuration;
+    if (stats != null) {
+      taskDuration = stats.getAverage();
+    } else if (dagDurations.count > 0) {
+      taskDuration = dagDurations.getAverage();
+    } else {
+      taskDuration = DEFAULT_TASK_DURATION;
+    }
+    // Always positive, so that a vertex ranks above its outputs
+    return Math.max(taskDuration, 1.0) * Math.max(remainingTasks, 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  void sendEvent(TaskAttemptEventSchedule event) {
+    handler.handle(event);
+  }
+
+  private static class DurationStats {
+    long total;
+    int count;
+
+    void add(long duration) {
+      total += duration;
+      count++;
+    }
+
+    double getAverage() {
+      return (double) total / count;
+    }
+  }
+}
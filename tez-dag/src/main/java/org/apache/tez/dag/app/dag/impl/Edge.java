@@ -18,6 +18,7 @@
 
 package org.apache.tez.dag.app.dag.impl;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -48,8 +49,10 @@ import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 import org.apache.tez.runtime.api.impl.EventMetaData;
 import org.apache.tez.runtime.api.impl.InputSpec;
 import org.apache.tez.runtime.api.impl.OutputSpec;
+import org.apache.tez.runtime.api.impl.SerializedEventPayload;
 import org.apache.tez.runtime.api.impl.TezEvent;
 import org.apache.tez.runtime.api.impl.EventMetaData.EventProducerConsumerType;
+import org.apache.tez.runtime.api.impl.EventType;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
@@ -101,6 +104,9 @@ public class Edge {
   private AtomicBoolean bufferEvents = new AtomicBoolean(false);
   private List<TezEvent> destinationEventBuffer = new ArrayList<TezEvent>();
   private List<TezEvent> sourceEventBuffer = new ArrayList<TezEvent>();
+  // Events stored once for all destination tasks, when the edge manager supports routing them on
+  // demand. Append only, guarded by itself.
+  private final List<TezEvent> onDemandRouteEvents = new ArrayList<TezEvent>();
   private Vertex sourceVertex;
   private Vertex destinationVertex; // this may end up being a list for shared edge
   private EventMetaData destinationMetaInfo;
@@ -171,8 +177,15 @@ public class Edge {
             edgeProperty.getEdgeDestination());
     this.edgeProperty = modifiedEdgeProperty;
     boolean wasUnInitialized = (edgeManager == null);
+    if (isOnDemandRouting()) {
+      // Attempts which already got events of the edge play them back from the copies
+      for (Task task : destinationVertex.getTasks().values()) {
+        task.copyOnDemandRoutedEvents(this);
+      }
+    }
     createEdgeManager();
     initialize();
+    rerouteOnDemandEvents();
     if (wasUnInitialized) {
       sendEvent(new VertexEventNullEdgeInitialized(sourceVertex.getVertexId(), this, destinationVertex));
       sendEvent(new VertexEventNullEdgeInitialized(destinationVertex.getVertexId(), this, sourceVertex));
@@ -303,9 +316,11 @@ public class Edge {
   private void handleCompositeDataMovementEvent(TezEvent tezEvent) throws AMUserCodeException {
     CompositeDataMovementEvent compEvent = (CompositeDataMovementEvent) tezEvent.getEvent();
     EventMetaData srcInfo = tezEvent.getSourceInfo();
+    SerializedEventPayload serializedPayload = getSerializedPayload(tezEvent);
     
     for (DataMovementEvent dmEvent : compEvent.getEvents()) {
       TezEvent newEvent = new TezEvent(dmEvent, srcInfo);
+      newEvent.setSerializedPayload(serializedPayload);
       sendTezEventToDestinationTasks(newEvent);
     }
   }
@@ -316,6 +331,11 @@ public class Edge {
     Preconditions.checkState(edgeManager != null, 
         "Edge Manager must be initialized by this time");
     Event event = tezEvent.getEvent();
+    SerializedEventPayload serializedPayload = null;
+    if (isDataMovementEvent) {
+      // all copies share the payload, which is serialized once for all of them
+      serializedPayload = getSerializedPayload(tezEvent);
+    }
     boolean isFirstEvent = true;
     // cache of event object per input index
     Map<Integer, TezEvent> inputIndicesWithEvents = Maps.newHashMap(); 
@@ -349,6 +369,7 @@ public class Edge {
             tezEventToSend = new TezEvent(e, tezEvent.getSourceInfo());
           }
           tezEventToSend.setDestinationInfo(destinationMetaInfo);
+          tezEventToSend.setSerializedPayload(serializedPayload);
           // cache the event object per input because are unique per input index
           inputIndicesWithEvents.put(inputIndex, tezEventToSend);
         }
@@ -371,6 +392,22 @@ public class Edge {
     Preconditions.checkState(edgeManager != null, 
         "Edge Manager must be initialized by this time");
     if (!bufferEvents.get()) {
+      if (isOnDemandRouting() && edgeManagerContext.getDestinationVertexNumTasks() > 0) {
+        switch (tezEvent.getEventType()) {
+        case COMPOSITE_DATA_MOVEMENT_EVENT:
+        case INPUT_FAILED_EVENT:
+        case DATA_MOVEMENT_EVENT:
+          // routed when the destination tasks ask for their events
+          getSerializedPayload(tezEvent);
+          synchronized (onDemandRouteEvents) {
+            onDemandRouteEvents.add(tezEvent);
+          }
+          return;
+        default:
+          throw new TezUncheckedException("Unhandled tez event type: "
+              + tezEvent.getEventType());
+        }
+      }
       boolean isDataMovementEvent = true;
       switch (tezEvent.getEventType()) {
       case COMPOSITE_DATA_MOVEMENT_EVENT:
@@ -437,6 +474,148 @@ public class Edge {
   private void sendEventToTask(Task task, TezEvent tezEvent) {
     task.registerTezEvent(tezEvent);
   }
+
+  /**
+   * @return true if events for the destination tasks are stored once in the edge, and have to be
+   *         fetched via {@link #getOnDemandRoutedEvents(int, int, int, int, List)}
+   */
+  public boolean isOnDemandRouting() {
+    return edgeManager instanceof OnDemandRoutingEdgeManager;
+  }
+
+  /**
+   * Route the events stored in the edge to a destination task.
+   *
+   * @param destTaskIndex the destination task
+   * @param fromIndex position in the events of the edge to start at
+   * @param maxEvents maximum number of events to add. An event with several outputs for the
+   *          destination task is never split, so this may be exceeded by the last event
+   * @param events the list to add the routed events to
+   * @return the position in the events of the edge to continue at
+   */
+  public int getOnDemandRoutedEvents(int destTaskIndex, int fromIndex, int maxEvents,
+      List<TezEvent> events) {
+    return getOnDemandRoutedEvents(destTaskIndex, fromIndex, Integer.MAX_VALUE, maxEvents,
+        events);
+  }
+
+  /**
+   * Route the events stored in the edge to a destination task, up to a position in the events of
+   * the edge. Routing the same range again adds the same events.
+   *
+   * @param destTaskIndex the destination task
+   * @param fromIndex position in the events of the edge to start at
+   * @param toIndex position in the events of the edge to stop at
+   * @param maxEvents maximum number of events to add. An event with several outputs for the
+   *          destination task is never split, so this may be exceeded by the last event
+   * @param events the list to add the routed events to
+   * @return the position in the events of the edge to continue at
+   */
+  public int getOnDemandRoutedEvents(int destTaskIndex, int fromIndex, int toIndex,
+      int maxEvents, List<TezEvent> events) {
+    OnDemandRoutingEdgeManager router = (OnDemandRoutingEdgeManager) edgeManager;
+    int sourceOutputIndex = router.getSourceOutputIndex(destTaskIndex);
+    int numAdded = 0;
+    int index = fromIndex;
+    // Routing is cheap, so events are routed while holding the lock instead of copying them.
+    synchronized (onDemandRouteEvents) {
+      int endIndex = Math.min(toIndex, onDemandRouteEvents.size());
+      while (index < endIndex && numAdded < maxEvents) {
+        TezEvent tezEvent = onDemandRouteEvents.get(index++);
+        int srcTaskIndex = tezEvent.getSourceInfo().getTaskAttemptID().getTaskID().getId();
+        int inputIndex = router.getDestinationInputIndex(srcTaskIndex, destTaskIndex);
+        if (inputIndex == OnDemandRoutingEdgeManager.NOT_ROUTED) {
+          continue;
+        }
+        switch (tezEvent.getEventType()) {
+        case COMPOSITE_DATA_MOVEMENT_EVENT:
+          CompositeDataMovementEvent compEvent = (CompositeDataMovementEvent) tezEvent.getEvent();
+          int start = compEvent.getSourceIndexStart();
+          int end = start + compEvent.getCount();
+          if (sourceOutputIndex == OnDemandRoutingEdgeManager.ALL_OUTPUTS) {
+            for (int i = start; i < end; i++) {
+              addRoutedEvent(tezEvent, i, inputIndex, compEvent.getVersion(),
+                  compEvent.getUserPayload(), events);
+              numAdded++;
+            }
+          } else if (sourceOutputIndex >= start && sourceOutputIndex < end) {
+            addRoutedEvent(tezEvent, sourceOutputIndex, inputIndex, compEvent.getVersion(),
+                compEvent.getUserPayload(), events);
+            numAdded++;
+          }
+          break;
+        case DATA_MOVEMENT_EVENT:
+          DataMovementEvent dmEvent = (DataMovementEvent) tezEvent.getEvent();
+          if (sourceOutputIndex == OnDemandRoutingEdgeManager.ALL_OUTPUTS
+              || sourceOutputIndex == dmEvent.getSourceIndex()) {
+            addRoutedEvent(tezEvent, dmEvent.getSourceIndex(), inputIndex,
+                dmEvent.getVersion(), dmEvent.getUserPayload(), events);
+            numAdded++;
+          }
+          break;
+        case INPUT_FAILED_EVENT:
+          InputFailedEvent ifEvent = (InputFailedEvent) tezEvent.getEvent();
+          TezEvent routedEvent = new TezEvent(
+              InputFailedEvent.create(inputIndex, ifEvent.getVersion()),
+              tezEvent.getSourceInfo());
+          routedEvent.setDestinationInfo(destinationMetaInfo);
+          events.add(routedEvent);
+          numAdded++;
+          break;
+        default:
+          throw new TezUncheckedException("Unhandled tez event type: "
+              + tezEvent.getEventType());
+        }
+      }
+    }
+    return index;
+  }
+
+  private void addRoutedEvent(TezEvent tezEvent, int sourceIndex, int targetIndex, int version,
+      ByteBuffer userPayload, List<TezEvent> events) {
+    // The payload is shared by all destination tasks, as with events which are routed up front.
+    TezEvent routedEvent = new TezEvent(
+        DataMovementEvent.create(sourceIndex, targetIndex, version, userPayload),
+        tezEvent.getSourceInfo());
+    routedEvent.setDestinationInfo(destinationMetaInfo);
+    routedEvent.setSerializedPayload(tezEvent.getSerializedPayload());
+    events.add(routedEvent);
+  }
+
+  /**
+   * @return the serialized payload shared by all copies of a data movement event, creating it
+   *         if required. The payload itself is only serialized when the first copy is sent.
+   */
+  private static SerializedEventPayload getSerializedPayload(TezEvent tezEvent) {
+    SerializedEventPayload serializedPayload = tezEvent.getSerializedPayload();
+    if (serializedPayload == null && tezEvent.getEventType() != EventType.INPUT_FAILED_EVENT) {
+      ByteBuffer userPayload;
+      if (tezEvent.getEventType() == EventType.COMPOSITE_DATA_MOVEMENT_EVENT) {
+        userPayload = ((CompositeDataMovementEvent) tezEvent.getEvent()).getUserPayload();
+      } else {
+        userPayload = ((DataMovementEvent) tezEvent.getEvent()).getUserPayload();
+      }
+      serializedPayload = new SerializedEventPayload(userPayload);
+      tezEvent.setSerializedPayload(serializedPayload);
+    }
+    return serializedPayload;
+  }
+
+  private void rerouteOnDemandEvents() throws AMUserCodeException {
+    List<TezEvent> events;
+    synchronized (onDemandRouteEvents) {
+      if (onDemandRouteEvents.isEmpty() || isOnDemandRouting()) {
+        return;
+      }
+      events = new ArrayList<TezEvent>(onDemandRouteEvents);
+      onDemandRouteEvents.clear();
+    }
+    LOG.info("Routing " + events.size() + " stored events to destination tasks after the edge"
+        + " manager was changed, " + getEdgeInfo());
+    for (TezEvent event : events) {
+      sendTezEventToDestinationTasks(event);
+    }
+  }
   
   @SuppressWarnings({ "unchecked", "rawtypes" })
   private void sendEvent(org.apache.hadoop.yarn.event.Event event) {
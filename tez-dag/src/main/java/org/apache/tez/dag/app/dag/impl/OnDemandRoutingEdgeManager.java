@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.impl;
+
+/**
+ * Implemented by edge managers which can compute the routing of events for a single destination
+ * task in constant time. Events on edges with such a manager are stored once in the {@link Edge},
+ * and routed when a destination task asks for them, instead of being copied to every destination
+ * task up front.
+ * <p/>
+ * Each source task feeds at most one physical input of a destination task, and each destination
+ * task consumes either a single output, or all outputs, of the source tasks it is connected to.
+ */
+interface OnDemandRoutingEdgeManager {
+
+  /** The source task is not connected to the destination task */
+  int NOT_ROUTED = -1;
+
+  /** The destination task consumes all outputs of the source task */
+  int ALL_OUTPUTS = -1;
+
+  /**
+   * @return the physical input of the destination task which consumes the outputs of the source
+   *         task, or {@link #NOT_ROUTED}
+   */
+  int getDestinationInputIndex(int sourceTaskIndex, int destinationTaskIndex);
+
+  /**
+   * @return the output of the source tasks consumed by the destination task, or
+   *         {@link #ALL_OUTPUTS}
+   */
+  int getSourceOutputIndex(int destinationTaskIndex);
+}
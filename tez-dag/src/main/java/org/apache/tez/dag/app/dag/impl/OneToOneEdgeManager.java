@@ -27,7 +27,8 @@ import org.apache.tez.dag.api.EdgeManagerPluginContext;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
 import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 
-public class OneToOneEdgeManager extends EdgeManagerPlugin {
+public class OneToOneEdgeManager extends EdgeManagerPlugin
+    implements OnDemandRoutingEdgeManager {
 
   List<Integer> destinationInputIndices = 
       Collections.unmodifiableList(Collections.singletonList(0));
@@ -75,4 +76,14 @@ public class OneToOneEdgeManager extends EdgeManagerPlugin {
     return 1;
   }
 
+  @Override
+  public int getDestinationInputIndex(int sourceTaskIndex, int destinationTaskIndex) {
+    return sourceTaskIndex == destinationTaskIndex ? 0 : NOT_ROUTED;
+  }
+
+  @Override
+  public int getSourceOutputIndex(int destinationTaskIndex) {
+    return ALL_OUTPUTS;
+  }
+
 }
@@ -27,7 +27,8 @@ import org.apache.tez.dag.api.EdgeManagerPluginContext;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
 import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 
-public class ScatterGatherEdgeManager extends EdgeManagerPlugin {
+public class ScatterGatherEdgeManager extends EdgeManagerPlugin
+    implements OnDemandRoutingEdgeManager {
 
   public ScatterGatherEdgeManager(EdgeManagerPluginContext context) {
     super(context);
@@ -74,4 +75,14 @@ public class ScatterGatherEdgeManager extends EdgeManagerPlugin {
     return getContext().getDestinationVertexNumTasks();
   }
 
+  @Override
+  public int getDestinationInputIndex(int sourceTaskIndex, int destinationTaskIndex) {
+    return sourceTaskIndex;
+  }
+
+  @Override
+  public int getSourceOutputIndex(int destinationTaskIndex) {
+    return destinationTaskIndex;
+  }
+
 }
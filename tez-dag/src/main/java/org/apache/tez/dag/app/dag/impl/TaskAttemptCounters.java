@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.impl;
+
+import java.util.Arrays;
+
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.runtime.api.impl.CountersUpdate;
+
+/**
+ * Counters of a task attempt, as reported through {@link CountersUpdate}s. Stored in arrays
+ * indexed by the counter ids assigned by the task, and converted to {@link TezCounters} when
+ * required. Not thread safe.
+ */
+class TaskAttemptCounters {
+
+  private String[] groupNames = new String[0];
+  private String[] counterNames = new String[0];
+  private long[] values = new long[0];
+  private int numIds = 0;
+
+  void update(CountersUpdate update) {
+    if (update.isFull()) {
+      Arrays.fill(groupNames, null);
+      Arrays.fill(counterNames, null);
+      numIds = 0;
+    }
+    String[] newGroupNames = update.getNewGroupNames();
+    String[] newCounterNames = update.getNewCounterNames();
+    ensureCapacity(update.getFirstNewId() + newGroupNames.length);
+    for (int i = 0; i < newGroupNames.length; i++) {
+      int id = update.getFirstNewId() + i;
+      groupNames[id] = newGroupNames[i];
+      counterNames[id] = newCounterNames[i];
+      values[id] = 0;
+    }
+    numIds = Math.max(numIds, update.getFirstNewId() + newGroupNames.length);
+
+    int[] ids = update.getIds();
+    long[] newValues = update.getValues();
+    for (int i = 0; i < ids.length; i++) {
+      int id = ids[i];
+      // Values of counters whose definition was not received are dropped
+      if (id < numIds && groupNames[id] != null) {
+        values[id] = newValues[i];
+      }
+    }
+  }
+
+  boolean isEmpty() {
+    return numIds == 0;
+  }
+
+  TezCounters toTezCounters() {
+    TezCounters counters = new TezCounters();
+    for (int id = 0; id < numIds; id++) {
+      if (groupNames[id] != null) {
+        counters.findCounter(groupNames[id], counterNames[id]).setValue(values[id]);
+      }
+    }
+    return counters;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > groupNames.length) {
+      int newCapacity = Math.max(capacity, groupNames.length * 2);
+      groupNames = Arrays.copyOf(groupNames, newCapacity);
+      counterNames = Arrays.copyOf(counterNames, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+}
@@ -99,6 +99,7 @@ import org.apache.tez.dag.utils.TezBuilderUtils;
 import org.apache.tez.runtime.api.events.InputFailedEvent;
 import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 import org.apache.tez.runtime.api.events.TaskStatusUpdateEvent;
+import org.apache.tez.runtime.api.impl.CountersUpdate;
 import org.apache.tez.runtime.api.impl.EventMetaData;
 import org.apache.tez.runtime.api.impl.TaskSpec;
 import org.apache.tez.runtime.api.impl.TezEvent;
@@ -144,6 +145,8 @@ public class TaskAttemptImpl implements TaskAttempt,
   @VisibleForTesting
   TaskAttemptStatus reportedStatus;
   private DAGCounter localityCounter;
+  // Counters reported by the task. Guarded by reportedStatus.
+  private final TaskAttemptCounters taskCounters = new TaskAttemptCounters();
 
   // Used to store locality information when
   Set<String> taskHosts = new HashSet<String>();
@@ -503,7 +506,13 @@ public class TaskAttemptImpl implements TaskAttempt,
   public TezCounters getCounters() {
     readLock.lock();
     try {
-      reportedStatus.setLocalityCounter(this.localityCounter);
+      synchronized (reportedStatus) {
+        if (reportedStatus.counters == null && !taskCounters.isEmpty()) {
+          // Built on demand after the counters are updated by the task
+          reportedStatus.setCounters(taskCounters.toTezCounters());
+        }
+        reportedStatus.setLocalityCounter(this.localityCounter);
+      }
       TezCounters counters = reportedStatus.counters;
       if (counters == null) {
         counters = EMPTY_COUNTERS;
@@ -686,6 +695,10 @@ public class TaskAttemptImpl implements TaskAttempt,
     } finally {
       writeLock.unlock();
     }
+    if (event.getType() == TaskAttemptEventType.TA_STATUS_UPDATE) {
+      // Outside the lock, since the vertex reads the task and its attempts
+      getVertex().updateActiveTask(attemptId.getTaskID());
+    }
   }
 
   @VisibleForTesting
@@ -742,7 +755,7 @@ public class TaskAttemptImpl implements TaskAttempt,
         }
         TaskAttemptFinishedEvent tEvent = (TaskAttemptFinishedEvent) historyEvent;
         this.finishTime = tEvent.getFinishTime();
-        this.reportedStatus.counters = tEvent.getCounters();
+        this.reportedStatus.setCounters(tEvent.getCounters());
         this.reportedStatus.progress = 1f;
         this.reportedStatus.state = tEvent.getState();
         this.diagnostics.add(tEvent.getDiagnostics());
@@ -869,6 +882,13 @@ public class TaskAttemptImpl implements TaskAttempt,
 //    */
 //  }
 
+  private void updateCounters(CountersUpdate countersUpdate) {
+    synchronized (reportedStatus) {
+      taskCounters.update(countersUpdate);
+      reportedStatus.setCounters(null);
+    }
+  }
+
   private void updateProgressSplits() {
 //    double newProgress = reportedStatus.progress;
 //    newProgress = Math.max(Math.min(newProgress, 1.0D), 0.0D);
@@ -1243,7 +1263,11 @@ public class TaskAttemptImpl implements TaskAttempt,
           .getStatusEvent();
       ta.reportedStatus.state = ta.getState();
       ta.reportedStatus.progress = statusEvent.getProgress();
-      ta.reportedStatus.counters = statusEvent.getCounters();
+      if (statusEvent.getCountersUpdate() != null) {
+        ta.updateCounters(statusEvent.getCountersUpdate());
+      } else if (statusEvent.getCounters() != null) {
+        ta.reportedStatus.setCounters(statusEvent.getCounters());
+      }
 
       ta.updateProgressSplits();
 
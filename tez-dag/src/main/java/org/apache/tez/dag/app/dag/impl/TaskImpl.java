@@ -125,9 +125,19 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
   long scheduledTime;
   final StateChangeNotifier stateChangeNotifier;
 
+  // Events routed to this task up front. Events of edges which route on demand are held once
+  // in the Edge. The order in which events were first sent to any attempt is kept as ranges of
+  // these events in eventLog, which gives every attempt the same event ids.
   private final List<TezEvent> tezEventsForTaskAttempts = new ArrayList<TezEvent>();
   private static final List<TezEvent> EMPTY_TASK_ATTEMPT_TEZ_EVENTS =
       new ArrayList(0);
+  private final List<EventLogSegment> eventLog = new ArrayList<EventLogSegment>();
+  // Number of events in eventLog, and its end in the pre-routed events and in each edge.
+  private int numLoggedEvents = 0;
+  private int nextPreRoutedIndex = 0;
+  private final Map<Edge, Integer> nextEdgeIndex = new HashMap<Edge, Integer>();
+  // Bounds the events routed again to play back part of a segment.
+  private static final int MAX_EVENT_LOG_SEGMENT_EVENTS = 1000;
 
   // track the status of TaskAttempt (true mean completed, false mean uncompleted)
   private final Map<Integer, Boolean> taskAttemptStatus = new HashMap<Integer,Boolean>();
@@ -302,6 +312,9 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
 
   private final boolean leafVertex;
   private TaskState recoveredState = TaskState.NEW;
+  // Number of the next attempt to create. Not the number of attempts, since attempts may be
+  // left out of recovery checkpoints
+  private int nextAttemptNumber = 0;
 
   @Override
   public TaskState getState() {
@@ -450,20 +463,27 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
     List<TezEvent> events = EMPTY_TASK_ATTEMPT_TEZ_EVENTS;
     readLock.lock();
 
-    if (!attempts.containsKey(attemptID)) {
-      throw new TezUncheckedException("Unknown TA: " + attemptID
-          + " asking for events from task:" + getTaskId());
-    }
-
     try {
-      if (tezEventsForTaskAttempts.size() > fromEventId) {
-        int actualMax = Math.min(maxEvents,
-            (tezEventsForTaskAttempts.size() - fromEventId));
-        int toEventId = actualMax + fromEventId;
-        events = Collections.unmodifiableList(new ArrayList<TezEvent>(
-            tezEventsForTaskAttempts.subList(fromEventId, toEventId)));
-        LOG.info("TaskAttempt:" + attemptID + " sent events: (" + fromEventId
-            + "-" + toEventId + ")");
+      if (!attempts.containsKey(attemptID)) {
+        throw new TezUncheckedException("Unknown TA: " + attemptID
+            + " asking for events from task:" + getTaskId());
+      }
+
+      synchronized (eventLog) {
+        List<TezEvent> fetchedEvents = new ArrayList<TezEvent>();
+        int nextEventId = fromEventId;
+        if (nextEventId < numLoggedEvents) {
+          // Events which were already sent to this or another attempt
+          nextEventId = getLoggedEvents(nextEventId, maxEvents, fetchedEvents);
+        }
+        if (nextEventId == numLoggedEvents && fetchedEvents.size() < maxEvents) {
+          fetchNewEvents(maxEvents - fetchedEvents.size(), fetchedEvents);
+        }
+        if (!fetchedEvents.isEmpty()) {
+          events = Collections.unmodifiableList(fetchedEvents);
+          LOG.info("TaskAttempt:" + attemptID + " sent events: (" + fromEventId
+              + "-" + (fromEventId + fetchedEvents.size()) + ")");
+        }
         // currently not modifying the events so that we dont have to create
         // copies of events. e.g. if we have to set taskAttemptId into the TezEvent
         // destination metadata then we will need to create a copy of the TezEvent
@@ -481,6 +501,128 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
     }
   }
 
+  /**
+   * Add up to maxEvents events of the event log, starting at the given event id.
+   *
+   * @return the id of the event after the last added one
+   */
+  private int getLoggedEvents(int fromEventId, int maxEvents, List<TezEvent> events) {
+    int initialSize = events.size();
+    int eventId = fromEventId;
+    int segmentIndex = findEventLogSegment(fromEventId);
+    while (segmentIndex < eventLog.size() && events.size() - initialSize < maxEvents) {
+      EventLogSegment segment = eventLog.get(segmentIndex++);
+      List<TezEvent> segmentEvents = getEventLogSegmentEvents(segment);
+      int offset = eventId - segment.firstEventId;
+      int numEvents = Math.min(segment.numEvents - offset,
+          maxEvents - (events.size() - initialSize));
+      events.addAll(segmentEvents.subList(offset, offset + numEvents));
+      eventId += numEvents;
+    }
+    return eventId;
+  }
+
+  /**
+   * @return the index of the segment of the event log holding the given event id
+   */
+  private int findEventLogSegment(int eventId) {
+    int low = 0;
+    int high = eventLog.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (eventLog.get(mid).firstEventId <= eventId) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  private List<TezEvent> getEventLogSegmentEvents(EventLogSegment segment) {
+    List<TezEvent> segmentEvents;
+    if (segment.events != null) {
+      segmentEvents = segment.events;
+    } else if (segment.edge == null) {
+      segmentEvents = tezEventsForTaskAttempts.subList(segment.fromIndex, segment.toIndex);
+    } else {
+      segmentEvents = new ArrayList<TezEvent>(segment.numEvents);
+      if (segment.edge.isOnDemandRouting()) {
+        segment.edge.getOnDemandRoutedEvents(getTaskId().getId(), segment.fromIndex,
+            segment.toIndex, Integer.MAX_VALUE, segmentEvents);
+      }
+    }
+    if (segmentEvents.size() != segment.numEvents) {
+      throw new TezUncheckedException("Could not play back events of task: " + getTaskId()
+          + ", from event id: " + segment.firstEventId + ", expected: " + segment.numEvents
+          + ", found: " + segmentEvents.size());
+    }
+    return segmentEvents;
+  }
+
+  @Override
+  public void copyOnDemandRoutedEvents(Edge edge) {
+    writeLock.lock();
+    try {
+      for (EventLogSegment segment : eventLog) {
+        if (segment.edge == edge && segment.events == null) {
+          segment.events = getEventLogSegmentEvents(segment);
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Add up to maxEvents events which were not sent to any attempt yet, first from the events
+   * routed to this task up front and then from the edges routing on demand, and append them to
+   * the event log.
+   */
+  private void fetchNewEvents(int maxEvents, List<TezEvent> events) {
+    int initialSize = events.size();
+    int numPreRouted = Math.min(maxEvents,
+        tezEventsForTaskAttempts.size() - nextPreRoutedIndex);
+    if (numPreRouted > 0) {
+      events.addAll(tezEventsForTaskAttempts.subList(nextPreRoutedIndex,
+          nextPreRoutedIndex + numPreRouted));
+      logEvents(null, nextPreRoutedIndex, nextPreRoutedIndex + numPreRouted, numPreRouted);
+      nextPreRoutedIndex += numPreRouted;
+    }
+    Vertex vertex = getVertex();
+    Map<Vertex, Edge> inputVertices = vertex == null ? null : vertex.getInputVertices();
+    if (inputVertices != null) {
+      for (Edge edge : inputVertices.values()) {
+        int numFetched = events.size() - initialSize;
+        if (numFetched >= maxEvents) {
+          break;
+        }
+        if (!edge.isOnDemandRouting()) {
+          continue;
+        }
+        Integer edgeIndex = nextEdgeIndex.get(edge);
+        int fromIndex = edgeIndex == null ? 0 : edgeIndex;
+        int sizeBefore = events.size();
+        int toIndex = edge.getOnDemandRoutedEvents(getTaskId().getId(), fromIndex,
+            maxEvents - numFetched, events);
+        logEvents(edge, fromIndex, toIndex, events.size() - sizeBefore);
+        nextEdgeIndex.put(edge, toIndex);
+      }
+    }
+  }
+
+  private void logEvents(Edge edge, int fromIndex, int toIndex, int numEvents) {
+    EventLogSegment last = eventLog.isEmpty() ? null : eventLog.get(eventLog.size() - 1);
+    if (last != null && last.edge == edge && last.events == null && last.toIndex == fromIndex
+        && last.numEvents + numEvents <= MAX_EVENT_LOG_SEGMENT_EVENTS) {
+      last.toIndex = toIndex;
+      last.numEvents += numEvents;
+    } else if (numEvents > 0) {
+      eventLog.add(new EventLogSegment(edge, fromIndex, toIndex, numLoggedEvents, numEvents));
+    }
+    numLoggedEvents += numEvents;
+  }
+
   @Override
   public List<String> getDiagnostics() {
     readLock.lock();
@@ -493,6 +635,7 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
 
   private TaskAttempt createRecoveredTaskAttempt(TezTaskAttemptID tezTaskAttemptID) {
     TaskAttempt taskAttempt = createAttempt(tezTaskAttemptID.getId());
+    nextAttemptNumber = Math.max(nextAttemptNumber, tezTaskAttemptID.getId() + 1);
     return taskAttempt;
   }
 
@@ -527,6 +670,15 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
             && tEvent.getSuccessfulAttemptID() != null) {
           successfulAttempt = tEvent.getSuccessfulAttemptID();
         }
+        // Attempts left out of a recovery checkpoint
+        for (int i = 0; i < tEvent.getCompactedFailedAttempts(); ++i) {
+          failedAttempts++;
+          getVertex().incrementFailedTaskAttemptCount();
+        }
+        for (int i = 0; i < tEvent.getCompactedKilledAttempts(); ++i) {
+          getVertex().incrementKilledTaskAttemptCount();
+        }
+        nextAttemptNumber = Math.max(nextAttemptNumber, tEvent.getNextAttemptId());
         return recoveredState;
       }
       case TASK_ATTEMPT_STARTED:
@@ -542,6 +694,7 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
         }
         this.attempts.put(taskAttemptStartedEvent.getTaskAttemptID(),
             recoveredAttempt);
+        getVertex().addActiveTask(this);
         this.taskAttemptStatus.put(taskAttemptStartedEvent.getTaskAttemptID().getId(), false);
         this.recoveredState = TaskState.RUNNING;
         return recoveredState;
@@ -760,7 +913,7 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
 
   // This is always called in the Write Lock
   private void addAndScheduleAttempt() {
-    TaskAttempt attempt = createAttempt(attempts.size());
+    TaskAttempt attempt = createAttempt(nextAttemptNumber++);
     if (LOG.isDebugEnabled()) {
       LOG.debug("Created attempt " + attempt.getID());
     }
@@ -781,6 +934,7 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
         attempts.put(attempt.getID(), attempt);
         break;
     }
+    getVertex().addActiveTask(this);
 
     // TODO: Recovery
     /*
@@ -824,6 +978,11 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
         LOG.info(taskId + " Task Transitioned from " + oldState + " to "
             + getInternalState() + " due to event "
             + event.getType());
+        if (oldState == TaskStateInternal.RUNNING) {
+          getVertex().decrementRunningTaskCount();
+        } else if (getInternalState() == TaskStateInternal.RUNNING) {
+          getVertex().incrementRunningTaskCount();
+        }
       }
     } finally {
       writeLock.unlock();
@@ -1462,4 +1621,27 @@ public class TaskImpl implements Task, EventHandler<TaskEvent> {
       */
     }
   }
+
+  /**
+   * Range of the events routed to the task up front, or of the events of an edge routing on
+   * demand, which was sent to attempts of the task as consecutive event ids.
+   */
+  private static class EventLogSegment {
+    // null for the events routed up front
+    final Edge edge;
+    final int fromIndex;
+    int toIndex;
+    final int firstEventId;
+    int numEvents;
+    // Copy of the events, once the edge no longer routes them on demand
+    List<TezEvent> events;
+
+    EventLogSegment(Edge edge, int fromIndex, int toIndex, int firstEventId, int numEvents) {
+      this.edge = edge;
+      this.fromIndex = fromIndex;
+      this.toIndex = toIndex;
+      this.firstEventId = firstEventId;
+      this.numEvents = numEvents;
+    }
+  }
 }
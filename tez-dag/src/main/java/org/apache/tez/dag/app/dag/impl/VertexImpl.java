@@ -58,6 +58,8 @@ import org.apache.hadoop.yarn.state.StateMachineFactory;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.tez.common.ATSConstants;
 import org.apache.tez.common.ReflectionUtils;
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounter;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.DagTypeConverters;
 import org.apache.tez.dag.api.EdgeManagerPluginDescriptor;
@@ -193,15 +195,14 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
   private final Lock writeLock;
   private final TaskAttemptListener taskAttemptListener;
   private final TaskHeartbeatHandler taskHeartbeatHandler;
-  private final Object tasksSyncHandle = new Object();
 
   private final EventHandler eventHandler;
   // TODO Metrics
   //private final MRAppMetrics metrics;
   private final AppContext appContext;
 
-  private boolean lazyTasksCopyNeeded = false;
-  // must be a linked map for ordering
+  // must be a linked map for ordering. Tasks are looked up without holding the vertex lock, e.g.
+  // while other vertices route events, so a published map is never modified but replaced.
   volatile LinkedHashMap<TezTaskID, Task> tasks = new LinkedHashMap<TezTaskID, Task>();
   private Object fullCountersLock = new Object();
   private TezCounters fullCounters = null;
@@ -625,7 +626,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
 
   //changing fields while the vertex is running
   @VisibleForTesting
-  int numTasks;
+  volatile int numTasks;
   @VisibleForTesting
   int completedTaskCount = 0;
   @VisibleForTesting
@@ -658,6 +659,17 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
   long finishTime;
   private float progress;
 
+  // Counters and progress last reported by tasks which have attempts and have not completed,
+  // and their sums. Tasks update them as they report, so reads do not visit the tasks. The
+  // counters of completed tasks are summed once on completion, and kept per task to allow
+  // removing them when a completed task is rescheduled. Guarded by activeTasks.
+  private final Map<TezTaskID, ActiveTaskStatus> activeTasks = Maps.newHashMap();
+  private final TezCounters activeTasksCounters = new TezCounters();
+  private float activeTasksProgress;
+  private final TezCounters completedTasksCounters = new TezCounters();
+  private final Map<TezTaskID, TezCounters> completedTaskCounters = Maps.newHashMap();
+  private final AtomicInteger runningTaskCount = new AtomicInteger();
+
   private final TezVertexID vertexId;  //runtime assigned id.
   private final VertexPlan vertexPlan;
   private boolean initWaitsForRootInitializers = false;
@@ -843,12 +855,8 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
 
   @Override
   public Task getTask(TezTaskID taskID) {
-    readLock.lock();
-    try {
-      return tasks.get(taskID);
-    } finally {
-      readLock.unlock();
-    }
+    // No lock, since the vertex lock is held by vertices routing events to this vertex
+    return tasks.get(taskID);
   }
 
   @Override
@@ -883,17 +891,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
 
   @Override
   public int getRunningTasks() {
-    readLock.lock();
-    try {
-      int num=0;
-      for (Task task : tasks.values()) {
-        if(task.getState() == TaskState.RUNNING)
-          num++;
-      }
-      return num;
-    } finally {
-      readLock.unlock();
-    }
+    return runningTaskCount.get();
   }
 
   @Override
@@ -910,7 +908,11 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
       }
 
       TezCounters counters = new TezCounters();
-      return incrTaskCounters(counters, tasks.values());
+      synchronized (activeTasks) {
+        counters.incrAllCounters(completedTasksCounters);
+        counters.incrAllCounters(activeTasksCounters);
+      }
+      return counters;
 
     } finally {
       readLock.unlock();
@@ -1028,9 +1030,9 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
   private void computeProgress() {
     this.readLock.lock();
     try {
-      float progress = 0f;
-      for (Task task : this.tasks.values()) {
-        progress += (task.isFinished() ? 1f : task.getProgress());
+      float progress = this.completedTaskCount;
+      synchronized (activeTasks) {
+        progress += activeTasksProgress;
       }
       if (this.numTasks != 0) {
         progress /= this.numTasks;
@@ -1043,10 +1045,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
 
   @Override
   public Map<TezTaskID, Task> getTasks() {
-    synchronized (tasksSyncHandle) {
-      lazyTasksCopyNeeded = true;
-      return Collections.unmodifiableMap(tasks);
-    }
+    return Collections.unmodifiableMap(tasks);
   }
 
   @Override
@@ -1092,17 +1091,18 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
       Map<String, EdgeManagerPluginDescriptor> sourceEdgeManagers,
       Map<String, InputSpecUpdate> rootInputSpecUpdates) {
     LinkedHashMap<TezTaskID, Task> currentTasks = this.tasks;
+    LinkedHashMap<TezTaskID, Task> newTasks = new LinkedHashMap<TezTaskID, Task>();
     Iterator<Map.Entry<TezTaskID, Task>> iter = currentTasks.entrySet()
         .iterator();
     int i = 0;
     while (iter.hasNext()) {
       i++;
-      iter.next();
+      Map.Entry<TezTaskID, Task> entry = iter.next();
       if (i <= newParallelism) {
-        continue;
+        newTasks.put(entry.getKey(), entry.getValue());
       }
-      iter.remove();
     }
+    this.tasks = newTasks;
     this.recoveredSourceEdgeManagers = sourceEdgeManagers;
     this.recoveredRootInputSpecUpdates = rootInputSpecUpdates;
   }
@@ -1209,6 +1209,51 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
     return this.failedTaskAttemptCount.get();
   }
 
+  @Override
+  public void addActiveTask(Task task) {
+    updateActiveTaskStatus(task, true);
+  }
+
+  @Override
+  public void updateActiveTask(TezTaskID taskId) {
+    Task task = getTask(taskId);
+    if (task != null) {
+      updateActiveTaskStatus(task, false);
+    }
+  }
+
+  @Override
+  public void incrementRunningTaskCount() {
+    runningTaskCount.incrementAndGet();
+  }
+
+  @Override
+  public void decrementRunningTaskCount() {
+    runningTaskCount.decrementAndGet();
+  }
+
+  private void updateActiveTaskStatus(Task task, boolean add) {
+    // Read before taking the lock, since the task takes its own lock and those of its attempts
+    TezCounters counters = copyCounters(task.getCounters());
+    float taskProgress = task.getProgress();
+    synchronized (activeTasks) {
+      ActiveTaskStatus status = activeTasks.get(task.getTaskId());
+      if (status == null) {
+        if (!add) {
+          // Completed since it reported
+          return;
+        }
+        status = new ActiveTaskStatus();
+        activeTasks.put(task.getTaskId(), status);
+      }
+      decrCounters(activeTasksCounters, status.counters);
+      activeTasksCounters.incrAllCounters(counters);
+      activeTasksProgress += taskProgress - status.progress;
+      status.counters = counters;
+      status.progress = taskProgress;
+    }
+  }
+
   @Override
   public int getKilledTaskAttemptCount() {
     return this.killedTaskAttemptCount.get();
@@ -1417,6 +1462,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
         // assign to local variable of LinkedHashMap to make sure that changing
         // type of task causes compile error. We depend on LinkedHashMap for order
         LinkedHashMap<TezTaskID, Task> currentTasks = this.tasks;
+        LinkedHashMap<TezTaskID, Task> newTasks = new LinkedHashMap<TezTaskID, Task>();
         Iterator<Map.Entry<TezTaskID, Task>> iter = currentTasks.entrySet()
             .iterator();
         int i = 0;
@@ -1431,11 +1477,12 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
             throw new TezUncheckedException(msg);
           }
           if (i <= parallelism) {
+            newTasks.put(entry.getKey(), task);
             continue;
           }
           LOG.info("Removing task: " + entry.getKey());
-          iter.remove();
         }
+        this.tasks = newTasks;
         LOG.info("Vertex " + logIdentifier +
             " parallelism set to " + parallelism + " from " + numTasks);
         int oldNumTasks = numTasks;
@@ -1575,6 +1622,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
         LOG.info(logIdentifier + " transitioned from " + oldState + " to "
             + getInternalState() + " due to event "
             + event.getType());
+        notifyDAGStatusChanged();
       }
     }
 
@@ -1594,15 +1642,9 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
 
   //helpful in testing
   protected void addTask(Task task) {
-    synchronized (tasksSyncHandle) {
-      if (lazyTasksCopyNeeded) {
-        LinkedHashMap<TezTaskID, Task> newTasks = new LinkedHashMap<TezTaskID, Task>();
-        newTasks.putAll(tasks);
-        tasks = newTasks;
-        lazyTasksCopyNeeded = false;
-      }
-    }
-    tasks.put(task.getTaskId(), task);
+    LinkedHashMap<TezTaskID, Task> newTasks = new LinkedHashMap<TezTaskID, Task>(tasks);
+    newTasks.put(task.getTaskId(), task);
+    tasks = newTasks;
     // TODO Metrics
     //metrics.waitingTask(task);
   }
@@ -1841,6 +1883,9 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
       rootInputInitializerManager.shutdown();
       rootInputInitializerManager = null;
     }
+    if (isSpeculationEnabled()) {
+      speculator.vertexCompleted();
+    }
 
     switch (finalState) {
       case ERROR:
@@ -1981,6 +2026,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
   }
 
   private void createTasks() {
+    LinkedHashMap<TezTaskID, Task> newTasks = new LinkedHashMap<TezTaskID, Task>(tasks);
     for (int i=0; i < this.numTasks; ++i) {
       ContainerContext conContext = getContainerContext(i);
       TaskImpl task =
@@ -1996,13 +2042,13 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
               this.taskResource,
               conContext,
               this.stateChangeNotifier);
-      this.addTask(task);
+      newTasks.put(task.getTaskId(), task);
       if(LOG.isDebugEnabled()) {
         LOG.debug("Created task for vertex " + logIdentifier + ": " +
             task.getTaskId());
       }
     }
-
+    this.tasks = newTasks;
   }
 
   private VertexState setupVertex() {
@@ -3355,6 +3401,57 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
     }
   }
 
+  private void taskCompleted(Task task) {
+    TezCounters counters = copyCounters(task.getCounters());
+    synchronized (activeTasks) {
+      ActiveTaskStatus status = activeTasks.remove(task.getTaskId());
+      if (status != null) {
+        decrCounters(activeTasksCounters, status.counters);
+        activeTasksProgress -= status.progress;
+      }
+      completedTaskCounters.put(task.getTaskId(), counters);
+      completedTasksCounters.incrAllCounters(counters);
+    }
+    notifyDAGStatusChanged();
+  }
+
+  private void taskRescheduled(Task task) {
+    synchronized (activeTasks) {
+      decrCounters(completedTasksCounters, completedTaskCounters.remove(task.getTaskId()));
+    }
+    addActiveTask(task);
+    notifyDAGStatusChanged();
+  }
+
+  private static TezCounters copyCounters(TezCounters counters) {
+    TezCounters copy = new TezCounters();
+    copy.incrAllCounters(counters);
+    return copy;
+  }
+
+  private static void decrCounters(TezCounters total, TezCounters counters) {
+    if (counters == null) {
+      return;
+    }
+    for (CounterGroup group : counters) {
+      for (TezCounter counter : group) {
+        total.findCounter(group.getName(), counter.getName()).increment(-counter.getValue());
+      }
+    }
+  }
+
+  private static class ActiveTaskStatus {
+    TezCounters counters;
+    float progress;
+  }
+
+  private void notifyDAGStatusChanged() {
+    DAG dag = getDAG();
+    if (dag != null) {
+      dag.statusChanged();
+    }
+  }
+
   private void mayBeConstructFinalFullCounters() {
     // Calculating full-counters. This should happen only once for the vertex.
     synchronized (this.fullCountersLock) {
@@ -3581,6 +3678,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
           + vertex.completedTaskCount);
       VertexEventTaskCompleted taskEvent = (VertexEventTaskCompleted) event;
       Task task = vertex.tasks.get(taskEvent.getTaskID());
+      vertex.taskCompleted(task);
       if (taskEvent.getState() == TaskState.SUCCEEDED) {
         taskSucceeded(vertex, task);
       } else if (taskEvent.getState() == TaskState.FAILED) {
@@ -3630,6 +3728,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex,
       //succeeded task is restarted back
       vertex.completedTaskCount--;
       vertex.succeededTaskCount--;
+      vertex.taskRescheduled(vertex.tasks.get(((VertexEventTaskReschedule) event).getTaskID()));
     }
   }
 
@@ -0,0 +1,262 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.speculation.legacy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.FileSystemCounter;
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.app.dag.DAG;
+import org.apache.tez.dag.app.dag.Task;
+import org.apache.tez.dag.app.dag.TaskAttempt;
+import org.apache.tez.dag.app.dag.Vertex;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+
+/**
+ * Runtime estimator that judges task attempts by their throughput, i.e. the input bytes, or
+ * records if no bytes are reported, processed per unit of time, instead of by their runtime alone.
+ * <p/>
+ * The throughput of a running attempt is compared with the distribution of the throughputs of the
+ * succeeded attempts of the vertex. Attempts whose throughput is not an outlier are on schedule,
+ * even if they run longer than other attempts because their input is larger. A new attempt is
+ * expected to process the whole input of the attempt it replaces at the mean throughput, so that
+ * tasks with skewed inputs are not speculated when a new attempt would not finish earlier.
+ * <p/>
+ * The throughput of succeeded attempts relative to their vertex is also recorded per node in the
+ * {@link SpeculationTracker} of the DAG. Attempts which have not reported progress yet are
+ * expected to take the mean runtime of the vertex. On nodes which are slow according to
+ * {@link org.apache.tez.dag.api.TezConfiguration#TEZ_AM_SPECULATION_SLOW_NODE_THRESHOLD}, this is
+ * scaled by the relative throughput of the node, so such attempts are speculated sooner. Attempts
+ * which do not report input counters are estimated in the same way as
+ * {@link LegacyTaskRuntimeEstimator} does.
+ */
+public class DataAwareTaskRuntimeEstimator extends StartEndTimesBase {
+
+  // Lower bound for the relative throughput of a node, to bound the estimates
+  private static final double MINIMUM_RELATIVE_THROUGHPUT = 0.01;
+
+  private final DataStatistics bytesThroughputStatistics = new DataStatistics();
+  private final DataStatistics recordsThroughputStatistics = new DataStatistics();
+
+  private final Map<TezTaskAttemptID, AttemptProgress> runningAttempts
+      = new ConcurrentHashMap<TezTaskAttemptID, AttemptProgress>();
+
+  private SpeculationTracker tracker;
+
+  @Override
+  public void contextualize(Configuration conf, Vertex vertex) {
+    super.contextualize(conf, vertex);
+    DAG dag = vertex.getDAG();
+    tracker = dag == null ? null : dag.getSpeculationTracker();
+  }
+
+  @Override
+  public void updateAttempt(TezTaskAttemptID attemptID, TaskAttemptState state, long timestamp) {
+    super.updateAttempt(attemptID, state, timestamp);
+
+    Task task = vertex.getTask(attemptID.getTaskID());
+    if (task == null) {
+      return;
+    }
+    TaskAttempt taskAttempt = task.getAttempt(attemptID);
+    if (taskAttempt == null) {
+      return;
+    }
+
+    Long start = startTimes.get(attemptID);
+    long elapsed = start == null ? -1L : timestamp - start;
+
+    if (taskAttempt.getState() == TaskAttemptState.RUNNING) {
+      if (elapsed > 0) {
+        runningAttempts.put(attemptID, AttemptProgress.of(taskAttempt, elapsed));
+      }
+    } else {
+      AttemptProgress lastProgress = runningAttempts.remove(attemptID);
+      // Only attempts seen running are counted, so that repeated updates are ignored
+      if (taskAttempt.getState() == TaskAttemptState.SUCCEEDED
+          && lastProgress != null && elapsed > 0) {
+        attemptSucceeded(AttemptProgress.of(taskAttempt, elapsed));
+      }
+    }
+  }
+
+  private void attemptSucceeded(AttemptProgress attempt) {
+    DataStatistics statistics = throughputStatistics(attempt);
+    if (statistics == null) {
+      return;
+    }
+    double throughput = attempt.getThroughput();
+    if (tracker != null && attempt.nodeId != null && statistics.count() > 0) {
+      double meanThroughput = statistics.mean();
+      if (meanThroughput > 0) {
+        tracker.addRelativeThroughput(attempt.nodeId, throughput / meanThroughput);
+      }
+    }
+    statistics.add(throughput);
+  }
+
+  private DataStatistics throughputStatistics(AttemptProgress attempt) {
+    if (attempt.inputBytes > 0) {
+      return bytesThroughputStatistics;
+    } else if (attempt.inputRecords > 0) {
+      return recordsThroughputStatistics;
+    }
+    return null;
+  }
+
+  @Override
+  public long thresholdRuntime(TezTaskID taskID) {
+    long threshold = super.thresholdRuntime(taskID);
+    if (threshold == Long.MAX_VALUE) {
+      return threshold;
+    }
+    Task task = vertex.getTask(taskID);
+    if (task == null) {
+      return threshold;
+    }
+    for (TezTaskAttemptID attemptID : task.getAttempts().keySet()) {
+      AttemptProgress attempt = runningAttempts.get(attemptID);
+      if (attempt != null && isThroughputOnSchedule(attempt)) {
+        // Slower than others only because of its larger input
+        return Long.MAX_VALUE;
+      }
+    }
+    return threshold;
+  }
+
+  private boolean isThroughputOnSchedule(AttemptProgress attempt) {
+    DataStatistics statistics = throughputStatistics(attempt);
+    if (statistics == null || statistics.count() == 0) {
+      return false;
+    }
+    double lowestAcceptable = statistics.mean() - statistics.std() * slowTaskRelativeTresholds;
+    return attempt.getThroughput() >= lowestAcceptable;
+  }
+
+  @Override
+  public long estimatedRuntime(TezTaskAttemptID attemptID) {
+    AttemptProgress attempt = runningAttempts.get(attemptID);
+    if (attempt == null) {
+      return -1L;
+    }
+    if (attempt.progress > 0) {
+      return (long) (attempt.elapsed / attempt.progress);
+    }
+    if (taskStatistics.count() == 0) {
+      return -1L;
+    }
+    // No progress to extrapolate from yet
+    double relativeThroughput = 1.0;
+    if (tracker != null && tracker.isSlowNode(attempt.nodeId)) {
+      relativeThroughput = Math.max(MINIMUM_RELATIVE_THROUGHPUT,
+          tracker.getRelativeThroughput(attempt.nodeId));
+    }
+    return Math.max(attempt.elapsed, (long) (taskStatistics.mean() / relativeThroughput));
+  }
+
+  @Override
+  public long newAttemptEstimatedRuntime(TezTaskAttemptID runningAttemptID) {
+    AttemptProgress attempt = runningAttempts.get(runningAttemptID);
+    if (attempt != null && attempt.progress > 0) {
+      DataStatistics statistics = throughputStatistics(attempt);
+      if (statistics != null && statistics.count() > 0 && statistics.mean() > 0) {
+        // The new attempt processes the whole input of the running one
+        double totalWork = attempt.getWork() / Math.min(1.0f, attempt.progress);
+        return (long) (totalWork / statistics.mean());
+      }
+    }
+    return newAttemptEstimatedRuntime();
+  }
+
+  @Override
+  public long runtimeEstimateVariance(TezTaskAttemptID attemptID) {
+    AttemptProgress attempt = runningAttempts.get(attemptID);
+    long estimate = estimatedRuntime(attemptID);
+    if (attempt == null || estimate < 0) {
+      return -1L;
+    }
+    return (long) (estimate * attempt.progress / 10);
+  }
+
+  /**
+   * Snapshot of the input processed by a task attempt.
+   */
+  static class AttemptProgress {
+    final long elapsed;
+    final float progress;
+    final long inputBytes;
+    final long inputRecords;
+    final NodeId nodeId;
+
+    AttemptProgress(long elapsed, float progress, long inputBytes, long inputRecords,
+        NodeId nodeId) {
+      this.elapsed = elapsed;
+      this.progress = progress;
+      this.inputBytes = inputBytes;
+      this.inputRecords = inputRecords;
+      this.nodeId = nodeId;
+    }
+
+    static AttemptProgress of(TaskAttempt taskAttempt, long elapsed) {
+      long inputBytes = 0;
+      long inputRecords = 0;
+      TezCounters counters = taskAttempt.getCounters();
+      if (counters != null) {
+        // Looked up without creating missing groups in the counters of the attempt
+        for (CounterGroup group : counters) {
+          if (group.getName().equals(FileSystemCounter.class.getName())) {
+            for (TezCounter counter : group) {
+              if (counter.getName().endsWith("_" + FileSystemCounter.BYTES_READ.name())) {
+                inputBytes += counter.getValue();
+              }
+            }
+          } else if (group.getName().equals(TaskCounter.class.getName())) {
+            TezCounter shuffleBytes = group.findCounter(TaskCounter.SHUFFLE_BYTES.name(), false);
+            if (shuffleBytes != null) {
+              inputBytes += shuffleBytes.getValue();
+            }
+            TezCounter records =
+                group.findCounter(TaskCounter.INPUT_RECORDS_PROCESSED.name(), false);
+            if (records != null) {
+              inputRecords = records.getValue();
+            }
+          }
+        }
+      }
+      return new AttemptProgress(elapsed, taskAttempt.getProgress(), inputBytes, inputRecords,
+          taskAttempt.getNodeId());
+    }
+
+    long getWork() {
+      return inputBytes > 0 ? inputBytes : inputRecords;
+    }
+
+    double getThroughput() {
+      return (double) getWork() / elapsed;
+    }
+  }
+}
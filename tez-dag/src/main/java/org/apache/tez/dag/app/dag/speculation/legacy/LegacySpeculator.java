@@ -28,9 +28,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.yarn.util.Clock;
+import org.apache.tez.common.ReflectionUtils;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
 import org.apache.tez.dag.api.oldrecords.TaskState;
 import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.app.dag.DAG;
 import org.apache.tez.dag.app.dag.Task;
 import org.apache.tez.dag.app.dag.TaskAttempt;
 import org.apache.tez.dag.app.dag.Vertex;
@@ -48,7 +51,10 @@ import com.google.common.base.Preconditions;
  * the speculative version is expected to finish sooner than that. If 
  * the original is close to completion then we dont start a speculation
  * because it may be likely a wasted attempt. There is a delay between
- * successive speculations.
+ * successive speculations. The number of tasks speculated at the same time
+ * is limited per vertex, and across the DAG by its {@link SpeculationTracker}.
+ * The runtime estimator is configured by
+ * {@link TezConfiguration#TEZ_AM_SPECULATION_ESTIMATOR_CLASS}.
  */
 public class LegacySpeculator {
   
@@ -86,6 +92,7 @@ public class LegacySpeculator {
 
   private Vertex vertex;
   private TaskRuntimeEstimator estimator;
+  private final SpeculationTracker tracker;
 
   private final Clock clock;
   private long nextSpeculateTime = Long.MIN_VALUE;
@@ -100,7 +107,9 @@ public class LegacySpeculator {
   
   static private TaskRuntimeEstimator getEstimator
       (Configuration conf, Vertex vertex) {
-    TaskRuntimeEstimator estimator = new LegacyTaskRuntimeEstimator();
+    String estimatorClassName = conf.get(TezConfiguration.TEZ_AM_SPECULATION_ESTIMATOR_CLASS,
+        TezConfiguration.TEZ_AM_SPECULATION_ESTIMATOR_CLASS_DEFAULT);
+    TaskRuntimeEstimator estimator = ReflectionUtils.createClazzInstance(estimatorClassName);
     estimator.contextualize(conf, vertex);
     
     return estimator;
@@ -114,6 +123,8 @@ public class LegacySpeculator {
     this.vertex = vertex;
     this.estimator = estimator;
     this.clock = clock;
+    DAG dag = vertex.getDAG();
+    this.tracker = dag == null ? null : dag.getSpeculationTracker();
   }
 
 /*   *************************************************************    */
@@ -142,6 +153,15 @@ public class LegacySpeculator {
 
 /*   *************************************************************    */
 
+  /**
+   * Releases the share of the DAG wide speculation limit held by the vertex.
+   */
+  public void vertexCompleted() {
+    if (tracker != null) {
+      tracker.setRunningSpeculations(vertex.getVertexId(), 0);
+    }
+  }
+
   public void notifyAttemptStarted(TezTaskAttemptID taId, long timestamp) {
     estimator.enrollAttempt(taId, timestamp);    
   }
@@ -240,7 +260,7 @@ public class LegacySpeculator {
         long estimatedEndTime = estimatedRunTime + taskAttemptStartTime;
 
         long estimatedReplacementEndTime
-            = now + estimator.newAttemptEstimatedRuntime();
+            = now + estimator.newAttemptEstimatedRuntime(runningTaskAttemptID);
 
         float progress = taskAttempt.getProgress();
         TaskAttemptHistoryStatistics data =
@@ -341,9 +361,14 @@ public class LegacySpeculator {
         = (int) Math.max(numberAllowedSpeculativeTasks,
                          PROPORTION_RUNNING_TASKS_SPECULATABLE * numberRunningTasks);
 
+    if (tracker != null) {
+      tracker.setRunningSpeculations(vertex.getVertexId(), numberSpeculationsAlready);
+    }
+
     // If we found a speculation target, fire it off
     if (bestTaskID != null
-        && numberAllowedSpeculativeTasks > numberSpeculationsAlready) {
+        && numberAllowedSpeculativeTasks > numberSpeculationsAlready
+        && (tracker == null || tracker.tryScheduleSpeculation(vertex.getVertexId()))) {
       addSpeculativeAttempt(bestTaskID);
       ++successes;
     }
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.speculation.legacy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.tez.dag.api.TezConfiguration;
+import org.apache.tez.dag.records.TezVertexID;
+
+/**
+ * Speculation state shared by the speculators of all vertices of a DAG.
+ * <p/>
+ * Enforces the DAG wide limit on the number of tasks running speculative attempts, and tracks
+ * the throughput of the attempts which ran on each node relative to the other attempts of their
+ * vertex, so that nodes which are consistently slow can be recognized across vertices.
+ */
+public class SpeculationTracker {
+
+  // Number of successful attempts on a node before its relative throughput is trusted
+  static final int MINIMUM_ATTEMPTS_TO_JUDGE_NODE = 2;
+
+  private final int maxConcurrentSpeculations;
+  private final float slowNodeThreshold;
+
+  private final Map<TezVertexID, Integer> vertexSpeculations = new HashMap<TezVertexID, Integer>();
+  private int totalSpeculations = 0;
+
+  private final ConcurrentMap<NodeId, DataStatistics> nodeThroughputs =
+      new ConcurrentHashMap<NodeId, DataStatistics>();
+
+  public SpeculationTracker(Configuration conf) {
+    this(conf.getInt(TezConfiguration.TEZ_AM_SPECULATION_MAX_CONCURRENT_TASKS,
+        TezConfiguration.TEZ_AM_SPECULATION_MAX_CONCURRENT_TASKS_DEFAULT),
+        conf.getFloat(TezConfiguration.TEZ_AM_SPECULATION_SLOW_NODE_THRESHOLD,
+            TezConfiguration.TEZ_AM_SPECULATION_SLOW_NODE_THRESHOLD_DEFAULT));
+  }
+
+  public SpeculationTracker(int maxConcurrentSpeculations, float slowNodeThreshold) {
+    this.maxConcurrentSpeculations = maxConcurrentSpeculations;
+    this.slowNodeThreshold = slowNodeThreshold;
+  }
+
+  /**
+   * Records the number of tasks of a vertex which currently run speculative attempts. Called by
+   * the speculator of the vertex each time it looks for tasks to speculate.
+   */
+  public synchronized void setRunningSpeculations(TezVertexID vertexId, int runningSpeculations) {
+    Integer previous = vertexSpeculations.put(vertexId, runningSpeculations);
+    totalSpeculations += runningSpeculations - (previous == null ? 0 : previous);
+  }
+
+  /**
+   * Accounts for a speculative attempt of a vertex if the DAG wide limit allows one more, until
+   * the vertex reports its running speculations again.
+   *
+   * @return true if the speculative attempt may be scheduled
+   */
+  public synchronized boolean tryScheduleSpeculation(TezVertexID vertexId) {
+    if (maxConcurrentSpeculations >= 0 && totalSpeculations >= maxConcurrentSpeculations) {
+      return false;
+    }
+    Integer current = vertexSpeculations.get(vertexId);
+    setRunningSpeculations(vertexId, (current == null ? 0 : current) + 1);
+    return true;
+  }
+
+  synchronized int getTotalSpeculations() {
+    return totalSpeculations;
+  }
+
+  /**
+   * @param nodeId the node on which an attempt succeeded
+   * @param relativeThroughput the throughput of the attempt divided by the mean throughput of
+   *        its vertex
+   */
+  public void addRelativeThroughput(NodeId nodeId, double relativeThroughput) {
+    DataStatistics statistics = nodeThroughputs.get(nodeId);
+    if (statistics == null) {
+      DataStatistics newStatistics = new DataStatistics();
+      statistics = nodeThroughputs.putIfAbsent(nodeId, newStatistics);
+      if (statistics == null) {
+        statistics = newStatistics;
+      }
+    }
+    statistics.add(relativeThroughput);
+  }
+
+  /**
+   * @return the mean throughput of the attempts which succeeded on the node relative to the
+   *         other attempts of their vertices, or 1.0 if not enough attempts ran on the node
+   */
+  public double getRelativeThroughput(NodeId nodeId) {
+    DataStatistics statistics = nodeId == null ? null : nodeThroughputs.get(nodeId);
+    if (statistics == null || statistics.count() < MINIMUM_ATTEMPTS_TO_JUDGE_NODE) {
+      return 1.0;
+    }
+    return statistics.mean();
+  }
+
+  /**
+   * @return true if the relative throughput of the node is below the slow node threshold
+   */
+  public boolean isSlowNode(NodeId nodeId) {
+    return getRelativeThroughput(nodeId) < slowNodeThreshold;
+  }
+}
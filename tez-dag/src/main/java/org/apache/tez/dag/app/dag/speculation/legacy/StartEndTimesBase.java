@@ -50,7 +50,7 @@ abstract class StartEndTimesBase implements TaskRuntimeEstimator {
 
   protected final DataStatistics taskStatistics = new DataStatistics();
 
-  private float slowTaskRelativeTresholds;
+  protected float slowTaskRelativeTresholds;
 
   protected final Set<Task> doneTasks = new HashSet<Task>();
 
@@ -98,6 +98,11 @@ abstract class StartEndTimesBase implements TaskRuntimeEstimator {
     return (long)taskStatistics.mean();
   }
 
+  @Override
+  public long newAttemptEstimatedRuntime(TezTaskAttemptID runningAttemptID) {
+    return newAttemptEstimatedRuntime();
+  }
+
   @Override
   public void updateAttempt(TezTaskAttemptID attemptID, TaskAttemptState state, long timestamp) {
 
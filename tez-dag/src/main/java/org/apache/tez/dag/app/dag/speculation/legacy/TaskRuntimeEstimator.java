@@ -77,6 +77,19 @@ public interface TaskRuntimeEstimator {
    */
   public long newAttemptEstimatedRuntime();
 
+  /**
+   *
+   * Estimates how long a new attempt will take to redo the work of a running
+   *  attempt, if we start one now
+   *
+   * @param runningAttemptID the {@link TezTaskAttemptID} of the attempt which
+   *        would be speculated
+   * @return our best estimate of a new attempt's runtime, or {@code -1} if
+   *         we don't have enough information yet to produce an estimate.
+   *
+   */
+  public long newAttemptEstimatedRuntime(TezTaskAttemptID runningAttemptID);
+
   /**
    *
    * Computes the width of the error band of our estimate of the task
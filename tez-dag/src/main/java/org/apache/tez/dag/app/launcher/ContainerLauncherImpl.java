@@ -19,7 +19,11 @@
 package org.apache.tez.dag.app.launcher;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -41,15 +45,19 @@ import org.apache.hadoop.yarn.api.protocolrecords.StartContainersResponse;
 import org.apache.hadoop.yarn.api.protocolrecords.StopContainersRequest;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.api.records.SerializedException;
 import org.apache.hadoop.yarn.api.records.Token;
 import org.apache.hadoop.yarn.client.api.impl.ContainerManagementProtocolProxy;
 import org.apache.hadoop.yarn.client.api.impl.ContainerManagementProtocolProxy.ContainerManagementProtocolProxyData;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.hadoop.yarn.util.Records;
+import org.apache.tez.common.counters.DAGCounter;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezUncheckedException;
 import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.app.dag.event.DAGEventCounterUpdate;
 import org.apache.tez.dag.app.rm.NMCommunicatorEvent;
+import org.apache.tez.dag.app.rm.NMCommunicatorEventType;
 import org.apache.tez.dag.app.rm.NMCommunicatorLaunchRequestEvent;
 import org.apache.tez.dag.app.rm.container.AMContainerEvent;
 import org.apache.tez.dag.app.rm.container.AMContainerEventLaunchFailed;
@@ -58,6 +66,8 @@ import org.apache.tez.dag.app.rm.container.AMContainerEventStopFailed;
 import org.apache.tez.dag.app.rm.container.AMContainerEventType;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.events.ContainerLaunchedEvent;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.utils.LatencyHistogram;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
@@ -82,6 +92,8 @@ public class ContainerLauncherImpl extends AbstractService implements
   protected ThreadPoolExecutor launcherPool;
   protected static final int INITIAL_POOL_SIZE = 10;
   private int limitOnPoolSize;
+  private int batchSize;
+  private final LatencyHistogram launchLatencies = new LatencyHistogram();
   private Thread eventHandlingThread;
   protected BlockingQueue<NMCommunicatorEvent> eventQueue =
       new LinkedBlockingQueue<NMCommunicatorEvent>();
@@ -111,7 +123,7 @@ public class ContainerLauncherImpl extends AbstractService implements
   }
 
   private static enum ContainerState {
-    PREP, FAILED, RUNNING, DONE, KILLED_BEFORE_LAUNCH
+    PREP, LAUNCHING, FAILED, RUNNING, DONE, KILLED_BEFORE_LAUNCH
   }
 
   private class Container {
@@ -133,66 +145,67 @@ public class ContainerLauncherImpl extends AbstractService implements
       return state == ContainerState.DONE || state == ContainerState.FAILED;
     }
 
-    @SuppressWarnings("unchecked")
-    public synchronized void launch(NMCommunicatorLaunchRequestEvent event) {
+    /**
+     * @return the request to start the container with, or null if it was killed before it
+     *         could be launched
+     */
+    public synchronized StartContainerRequest prepareLaunch(
+        NMCommunicatorLaunchRequestEvent event) {
       LOG.info("Launching Container with Id: " + event.getContainerId());
       if(this.state == ContainerState.KILLED_BEFORE_LAUNCH) {
         state = ContainerState.DONE;
         sendContainerLaunchFailedMsg(event.getContainerId(),
             "Container was killed before it was launched");
-        return;
+        return null;
       }
+      this.state = ContainerState.LAUNCHING;
 
-      ContainerManagementProtocolProxyData proxy = null;
-      try {
+      // Construct the actual Container
+      ContainerLaunchContext containerLaunchContext =
+        event.getContainerLaunchContext();
 
-        proxy = getCMProxy(containerID, containerMgrAddress,
-            containerToken);
-
-        // Construct the actual Container
-        ContainerLaunchContext containerLaunchContext =
-          event.getContainerLaunchContext();
-
-        // Now launch the actual container
-        StartContainerRequest startRequest = Records
-          .newRecord(StartContainerRequest.class);
-        startRequest.setContainerToken(event.getContainerToken());
-        startRequest.setContainerLaunchContext(containerLaunchContext);
-
-        StartContainersResponse response =
-            proxy.getContainerManagementProtocol().startContainers(
-                StartContainersRequest.newInstance(
-                    Collections.singletonList(startRequest)));
-        if (response.getFailedRequests() != null
-            && !response.getFailedRequests().isEmpty()) {
-          throw response.getFailedRequests().get(containerID).deSerialize();
-        }
+      StartContainerRequest startRequest = Records
+        .newRecord(StartContainerRequest.class);
+      startRequest.setContainerToken(event.getContainerToken());
+      startRequest.setContainerLaunchContext(containerLaunchContext);
+      return startRequest;
+    }
 
-        // after launching, send launched event to task attempt to move
-        // it from ASSIGNED to RUNNING state
-        context.getEventHandler().handle(
-            new AMContainerEventLaunched(containerID));
-        ContainerLaunchedEvent lEvt = new ContainerLaunchedEvent(
-            containerID, clock.getTime(), context.getApplicationAttemptId());
-        context.getHistoryHandler().handle(new DAGHistoryEvent(
-            null, lEvt));
+    @SuppressWarnings("unchecked")
+    public synchronized void launched() {
+      // after launching, send launched event to task attempt to move
+      // it from ASSIGNED to RUNNING state
+      context.getEventHandler().handle(
+          new AMContainerEventLaunched(containerID));
+      ContainerLaunchedEvent lEvt = new ContainerLaunchedEvent(
+          containerID, clock.getTime(), context.getApplicationAttemptId());
+      context.getHistoryHandler().handle(new DAGHistoryEvent(
+          null, lEvt));
+
+      this.state = ContainerState.RUNNING;
+      notifyAll();
+    }
 
-        this.state = ContainerState.RUNNING;
-      } catch (Throwable t) {
-        String message = "Container launch failed for " + containerID + " : "
-            + ExceptionUtils.getStackTrace(t);
-        this.state = ContainerState.FAILED;
-        sendContainerLaunchFailedMsg(containerID, message);
-      } finally {
-        if (proxy != null) {
-          cmProxy.mayBeCloseProxy(proxy);
-        }
-      }
+    public synchronized void launchFailed(Throwable t) {
+      String message = "Container launch failed for " + containerID + " : "
+          + ExceptionUtils.getStackTrace(t);
+      this.state = ContainerState.FAILED;
+      sendContainerLaunchFailedMsg(containerID, message);
+      notifyAll();
     }
 
     @SuppressWarnings("unchecked")
     public synchronized void kill() {
 
+      // The start request is in flight, wait for the NM to respond
+      while (this.state == ContainerState.LAUNCHING) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
       if(isCompletelyDone()) {
         return;
       }
@@ -255,6 +268,9 @@ public class ContainerLauncherImpl extends AbstractService implements
         TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT,
         TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT_DEFAULT);
     LOG.info("Upper limit on the thread pool size is " + this.limitOnPoolSize);
+    this.batchSize = conf.getInt(
+        TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE,
+        TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE_DEFAULT);
   }
 
   @Override
@@ -266,10 +282,13 @@ public class ContainerLauncherImpl extends AbstractService implements
         "ContainerLauncher #%d").setDaemon(true).build();
 
     // Start with a default core-pool size of 10 and change it dynamically.
+    // Threads which stay idle are released, so the pool shrinks back
+    // once a burst of launches is done.
     launcherPool = new ThreadPoolExecutor(INITIAL_POOL_SIZE,
-        Integer.MAX_VALUE, 1, TimeUnit.HOURS,
+        Integer.MAX_VALUE, 1, TimeUnit.MINUTES,
         new LinkedBlockingQueue<Runnable>(),
         tf, new CustomizedRejectedExecutionHandler());
+    launcherPool.allowCoreThreadTimeOut(true);
     eventHandlingThread = new Thread() {
       @Override
       public void run() {
@@ -283,6 +302,9 @@ public class ContainerLauncherImpl extends AbstractService implements
             }
             return;
           }
+          List<NMCommunicatorEvent> events = new ArrayList<NMCommunicatorEvent>();
+          events.add(event);
+          eventQueue.drainTo(events);
           int poolSize = launcherPool.getCorePoolSize();
 
           // See if we need up the pool size only if haven't reached the
@@ -307,11 +329,34 @@ public class ContainerLauncherImpl extends AbstractService implements
           }
 
           // the events from the queue are handled in parallel
-          // using a thread pool
-          launcherPool.execute(createEventProcessor(event));
-
-          // TODO: Group launching of multiple containers to a single
-          // NodeManager into a single connection
+          // using a thread pool. Launches on the same node are grouped into
+          // a single request to its NodeManager.
+          Map<String, List<NMCommunicatorLaunchRequestEvent>> launchesByNode =
+              new LinkedHashMap<String, List<NMCommunicatorLaunchRequestEvent>>();
+          List<NMCommunicatorEvent> otherEvents = new ArrayList<NMCommunicatorEvent>();
+          for (NMCommunicatorEvent e : events) {
+            if (e.getType() == NMCommunicatorEventType.CONTAINER_LAUNCH_REQUEST) {
+              String node = e.getNodeId().toString();
+              List<NMCommunicatorLaunchRequestEvent> launches = launchesByNode.get(node);
+              if (launches == null) {
+                launches = new ArrayList<NMCommunicatorLaunchRequestEvent>();
+                launchesByNode.put(node, launches);
+              }
+              launches.add((NMCommunicatorLaunchRequestEvent) e);
+              if (launches.size() >= batchSize) {
+                launcherPool.execute(createLaunchProcessor(launches));
+                launchesByNode.remove(node);
+              }
+            } else {
+              otherEvents.add(e);
+            }
+          }
+          for (List<NMCommunicatorLaunchRequestEvent> launches : launchesByNode.values()) {
+            launcherPool.execute(createLaunchProcessor(launches));
+          }
+          for (NMCommunicatorEvent e : otherEvents) {
+            launcherPool.execute(createEventProcessor(e));
+          }
         }
       }
     };
@@ -341,12 +386,26 @@ public class ContainerLauncherImpl extends AbstractService implements
     if (launcherPool != null) {
       launcherPool.shutdownNow();
     }
+    LOG.info("Container launch latencies (ms): " + launchLatencies);
+  }
+
+  /**
+   * @return the time taken by NodeManagers to respond to each batch of launch
+   *         requests, in milliseconds
+   */
+  public LatencyHistogram getLaunchLatencies() {
+    return launchLatencies;
   }
 
   protected EventProcessor createEventProcessor(NMCommunicatorEvent event) {
     return new EventProcessor(event);
   }
 
+  protected LaunchProcessor createLaunchProcessor(
+      List<NMCommunicatorLaunchRequestEvent> events) {
+    return new LaunchProcessor(events);
+  }
+
   protected ContainerManagementProtocolProxy.ContainerManagementProtocolProxyData getCMProxy(
       ContainerId containerID, final String containerManagerBindAddr,
       Token containerToken) throws IOException {
@@ -377,7 +436,7 @@ public class ContainerLauncherImpl extends AbstractService implements
       case CONTAINER_LAUNCH_REQUEST:
         NMCommunicatorLaunchRequestEvent launchEvent
             = (NMCommunicatorLaunchRequestEvent) event;
-        c.launch(launchEvent);
+        launchContainers(Collections.singletonList(launchEvent));
         break;
 
       case CONTAINER_STOP_REQUEST:
@@ -388,6 +447,96 @@ public class ContainerLauncherImpl extends AbstractService implements
     }
   }
 
+  /**
+   * Start containers on a single node with one request to its NodeManager.
+   */
+  class LaunchProcessor implements Runnable {
+    private final List<NMCommunicatorLaunchRequestEvent> events;
+
+    LaunchProcessor(List<NMCommunicatorLaunchRequestEvent> events) {
+      this.events = events;
+    }
+
+    @Override
+    public void run() {
+      LOG.info("Processing " + events.size() + " launch requests for node "
+          + events.get(0).getNodeId());
+      launchContainers(events);
+    }
+  }
+
+  private void launchContainers(List<NMCommunicatorLaunchRequestEvent> events) {
+    List<Container> launching = new ArrayList<Container>(events.size());
+    List<StartContainerRequest> startRequests =
+        new ArrayList<StartContainerRequest>(events.size());
+    for (NMCommunicatorLaunchRequestEvent event : events) {
+      Container c = getContainer(event);
+      StartContainerRequest startRequest = c.prepareLaunch(event);
+      if (startRequest != null) {
+        launching.add(c);
+        startRequests.add(startRequest);
+      }
+    }
+
+    if (!launching.isEmpty()) {
+      long startTime = clock.getTime();
+      StartContainersResponse response = null;
+      Throwable error = null;
+      ContainerManagementProtocolProxyData proxy = null;
+      try {
+        Container first = launching.get(0);
+        proxy = getCMProxy(first.containerID, first.containerMgrAddress,
+            first.containerToken);
+
+        // Now launch the actual containers
+        response = proxy.getContainerManagementProtocol().startContainers(
+            StartContainersRequest.newInstance(startRequests));
+      } catch (Throwable t) {
+        error = t;
+      } finally {
+        if (proxy != null) {
+          cmProxy.mayBeCloseProxy(proxy);
+        }
+      }
+      if (error == null) {
+        recordLaunchLatency(clock.getTime() - startTime);
+      }
+
+      for (Container c : launching) {
+        if (error != null) {
+          c.launchFailed(error);
+          continue;
+        }
+        Map<ContainerId, SerializedException> failedRequests = response.getFailedRequests();
+        if (failedRequests != null && failedRequests.containsKey(c.containerID)) {
+          c.launchFailed(failedRequests.get(c.containerID).deSerialize());
+        } else {
+          c.launched();
+        }
+      }
+    }
+
+    for (NMCommunicatorLaunchRequestEvent event : events) {
+      removeContainerIfDone(event.getContainerId());
+    }
+  }
+
+  /**
+   * Record the time taken by a NodeManager to respond to one batch of launch
+   * requests, and add it to the counters of the running DAG.
+   */
+  @SuppressWarnings("unchecked")
+  private void recordLaunchLatency(long latency) {
+    launchLatencies.record(latency);
+    TezDAGID dagId = context.getCurrentDAGID();
+    if (dagId != null) {
+      DAGEventCounterUpdate counterUpdate = new DAGEventCounterUpdate(dagId);
+      counterUpdate.addCounterUpdate(DAGCounter.NUM_CONTAINER_LAUNCH_REQUESTS, 1);
+      counterUpdate.addCounterUpdate(DAGCounter.CONTAINER_LAUNCH_MILLIS, latency);
+      context.getEventHandler().handle(counterUpdate);
+    }
+  }
+
   /**
    * ThreadPoolExecutor.submit may fail if you are submitting task
    * when ThreadPoolExecutor is shutting down (DAGAppMaster is shutting down).
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.rm;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tez.dag.app.rm.container.ContainerSignatureMatcher;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Predicts the number of containers a session should keep warm between DAGs.
+ * <p/>
+ * The demand of a DAG is the peak number of containers it used concurrently, per container
+ * signature. The demand predicted for the next DAG is a moving average of the demand of past
+ * DAGs. It is scaled by the number of DAGs expected to arrive within the prediction window,
+ * which is derived from the mean time between DAG arrivals, and drops to nothing once the
+ * session has been idle for longer than the window. The total is capped at the configured
+ * maximum.
+ */
+class SessionContainerPoolSizer {
+
+  // Weight of the most recent DAG in the moving averages
+  static final double SMOOTHING_FACTOR = 0.5;
+
+  private final ContainerSignatureMatcher containerSignatureMatcher;
+  private final int maxContainers;
+  private final long predictionWindow;
+
+  private final List<SignatureDemand> demands = Lists.newArrayList();
+  private boolean dagRunning = false;
+  private long lastDAGArrivalTime = -1;
+  private long lastDAGCompletionTime = -1;
+  private double meanInterArrivalTime = -1;
+
+  SessionContainerPoolSizer(ContainerSignatureMatcher containerSignatureMatcher,
+      int maxContainers, long predictionWindow) {
+    this.containerSignatureMatcher = containerSignatureMatcher;
+    this.maxContainers = maxContainers;
+    this.predictionWindow = predictionWindow;
+  }
+
+  /**
+   * A container with the given signature was assigned to a task. The first assignment after a
+   * DAG completed marks the arrival of the next DAG.
+   */
+  void containerAssigned(Object containerSignature, long currentTime) {
+    if (!dagRunning) {
+      dagArrived(currentTime);
+    }
+    SignatureDemand demand = getDemand(containerSignature);
+    if (demand == null) {
+      demand = new SignatureDemand(containerSignature);
+      demands.add(demand);
+    }
+    demand.inUse++;
+    demand.peak = Math.max(demand.peak, demand.inUse);
+  }
+
+  void containerUnassigned(Object containerSignature) {
+    SignatureDemand demand = getDemand(containerSignature);
+    if (demand != null && demand.inUse > 0) {
+      demand.inUse--;
+    }
+  }
+
+  void dagCompleted(long currentTime) {
+    if (!dagRunning) {
+      // Nothing ran
+      return;
+    }
+    dagRunning = false;
+    lastDAGCompletionTime = currentTime;
+    Iterator<SignatureDemand> iter = demands.iterator();
+    while (iter.hasNext()) {
+      SignatureDemand demand = iter.next();
+      demand.predicted = demand.predicted < 0 ? demand.peak
+          : SMOOTHING_FACTOR * demand.peak + (1 - SMOOTHING_FACTOR) * demand.predicted;
+      demand.peak = demand.inUse;
+      if (demand.predicted < 0.5 && demand.inUse == 0) {
+        iter.remove();
+      }
+    }
+  }
+
+  private void dagArrived(long currentTime) {
+    dagRunning = true;
+    if (lastDAGArrivalTime >= 0) {
+      long interArrivalTime = Math.max(currentTime - lastDAGArrivalTime, 1);
+      meanInterArrivalTime = meanInterArrivalTime < 0 ? interArrivalTime
+          : SMOOTHING_FACTOR * interArrivalTime
+              + (1 - SMOOTHING_FACTOR) * meanInterArrivalTime;
+    }
+    lastDAGArrivalTime = currentTime;
+  }
+
+  /**
+   * @return the number of containers to keep per container signature. Signatures are the ones
+   *         of the containers which ran tasks of past DAGs.
+   */
+  Map<Object, Integer> getTargets(long currentTime) {
+    Map<Object, Integer> targets = new LinkedHashMap<Object, Integer>();
+    double expectedArrivals = getExpectedArrivals(currentTime);
+    if (expectedArrivals <= 0) {
+      return targets;
+    }
+    double total = 0;
+    for (SignatureDemand demand : demands) {
+      total += Math.max(demand.predicted, 0);
+    }
+    double scale = Math.min(expectedArrivals, 1.0);
+    if (total * scale > maxContainers) {
+      scale = maxContainers / total;
+    }
+    int remaining = maxContainers;
+    for (SignatureDemand demand : demands) {
+      int target = Math.min((int) Math.ceil(Math.max(demand.predicted, 0) * scale), remaining);
+      if (target > 0) {
+        targets.put(demand.signature, target);
+        remaining -= target;
+      }
+    }
+    return targets;
+  }
+
+  /**
+   * @return the number of DAGs expected to arrive within the prediction window, 1 if the
+   *         arrival rate is not known yet, or 0 if the session has been idle for longer than
+   *         the window
+   */
+  double getExpectedArrivals(long currentTime) {
+    if (dagRunning) {
+      return 1.0;
+    }
+    if (lastDAGCompletionTime < 0 || currentTime - lastDAGCompletionTime > predictionWindow) {
+      return 0;
+    }
+    if (meanInterArrivalTime < 0) {
+      return 1.0;
+    }
+    return predictionWindow / meanInterArrivalTime;
+  }
+
+  private SignatureDemand getDemand(Object containerSignature) {
+    for (SignatureDemand demand : demands) {
+      if (containerSignatureMatcher.isExactMatch(demand.signature, containerSignature)) {
+        return demand;
+      }
+    }
+    return null;
+  }
+
+  private static class SignatureDemand {
+    final Object signature;
+    int inUse = 0;
+    int peak = 0;
+    double predicted = -1;
+
+    SignatureDemand(Object signature) {
+      this.signature = signature;
+    }
+  }
+}
@@ -543,7 +543,7 @@ public class TaskSchedulerEventHandler extends AbstractService
   }
 
   public void dagCompleted() {
-    taskScheduler.resetMatchLocalityForAllHeldContainers();
+    taskScheduler.dagCompleted();
   }
 
   @Override
@@ -45,6 +45,13 @@ public abstract class TaskSchedulerService extends AbstractService{
 
   public abstract void resetMatchLocalityForAllHeldContainers();
 
+  /**
+   * Called when the current DAG completes.
+   */
+  public void dagCompleted() {
+    resetMatchLocalityForAllHeldContainers();
+  }
+
   public abstract Resource getTotalResources();
 
   public abstract void blacklistNode(NodeId nodeId);
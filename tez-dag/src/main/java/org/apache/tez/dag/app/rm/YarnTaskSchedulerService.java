@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -98,6 +99,25 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
 
   Map<Object, CookieContainerRequest> taskRequests =
                   new HashMap<Object, CookieContainerRequest>();
+  /**
+   * Pending requests indexed by priority, highest priority first. Kept in sync
+   * with taskRequests, so that the highest priority requests can be found
+   * without scanning all pending requests.
+   */
+  TreeMap<Priority, Map<Object, CookieContainerRequest>> taskRequestsByPriority =
+      new TreeMap<Priority, Map<Object, CookieContainerRequest>>(
+          new Comparator<Priority>() {
+            @Override
+            public int compare(Priority p1, Priority p2) {
+              // lower values are higher priorities
+              return p1.getPriority() - p2.getPriority();
+            }
+          });
+  /**
+   * Pending requests indexed by the container they have affinity to.
+   */
+  Map<ContainerId, Set<CookieContainerRequest>> affinitizedTaskRequests =
+      new HashMap<ContainerId, Set<CookieContainerRequest>>();
   // LinkedHashMap is need in getProgress()
   LinkedHashMap<Object, Container> taskAllocations =
                   new LinkedHashMap<Object, Container>();
@@ -147,6 +167,15 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
   int preemptionPercentage = 0; 
   
   Set<ContainerId> sessionMinHeldContainers = Sets.newHashSet();
+  /**
+   * Sizes the warm container pool of a session, if enabled.
+   */
+  SessionContainerPoolSizer containerPoolSizer = null;
+  /**
+   * Pool sizes per container signature that sessionMinHeldContainers was
+   * determined for.
+   */
+  Map<Object, Integer> containerPoolTargets = null;
   
   RandomDataGenerator random = new RandomDataGenerator();
 
@@ -333,6 +362,21 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
         TezConfiguration.TEZ_AM_SESSION_MIN_HELD_CONTAINERS_DEFAULT);
     Preconditions.checkArgument(sessionNumMinHeldContainers >= 0, 
         "Session minimum held containers should be >=0");
+
+    int containerPoolMaxContainers = conf.getInt(
+        TezConfiguration.TEZ_AM_SESSION_CONTAINER_POOL_MAX_CONTAINERS,
+        TezConfiguration.TEZ_AM_SESSION_CONTAINER_POOL_MAX_CONTAINERS_DEFAULT);
+    Preconditions.checkArgument(containerPoolMaxContainers >= 0,
+        "Session container pool max containers should be >=0");
+    long containerPoolPredictionWindow = conf.getLong(
+        TezConfiguration.TEZ_AM_SESSION_CONTAINER_POOL_PREDICTION_WINDOW_MILLIS,
+        TezConfiguration.TEZ_AM_SESSION_CONTAINER_POOL_PREDICTION_WINDOW_MILLIS_DEFAULT);
+    Preconditions.checkArgument(containerPoolPredictionWindow > 0,
+        "Session container pool prediction window should be >0");
+    if (containerPoolMaxContainers > 0 && shouldReuseContainers && appContext.isSession()) {
+      containerPoolSizer = new SessionContainerPoolSizer(containerSignatureMatcher,
+          containerPoolMaxContainers, containerPoolPredictionWindow);
+    }
     
     preemptionPercentage = conf.getInt(TezConfiguration.TEZ_AM_PREEMPTION_PERCENTAGE, 
         TezConfiguration.TEZ_AM_PREEMPTION_PERCENTAGE_DEFAULT);
@@ -356,7 +400,8 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
             ", numHeartbeatsBetweenPreemptions" + numHeartbeatsBetweenPreemptions +
             ", idleContainerMinTimeout=" + idleContainerTimeoutMin +
             ", idleContainerMaxTimeout=" + idleContainerTimeoutMax +
-            ", sessionMinHeldContainers=" + sessionNumMinHeldContainers);
+            ", sessionMinHeldContainers=" + sessionNumMinHeldContainers +
+            ", containerPoolEnabled=" + (containerPoolSizer != null));
   }
 
   @Override
@@ -599,15 +644,22 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
       // if sessionDelay defined, push back into delayed queue if not already
       // done so
 
+      heldContainer.resetLocalityMatchLevel();
+      long currentTime = System.currentTimeMillis();
+
       // Compute min held containers.
-      if (appContext.isSession() && sessionNumMinHeldContainers > 0 &&
+      if (appContext.isSession() && containerPoolSizer != null) {
+        // recompute as the predicted demand changes over time
+        if (containerPoolTargets == null ||
+            !containerPoolTargets.equals(containerPoolSizer.getTargets(currentTime))) {
+          determineMinHeldContainers();
+        }
+      } else if (appContext.isSession() && sessionNumMinHeldContainers > 0 &&
           sessionMinHeldContainers.isEmpty()) {
         // session mode and need to hold onto containers and not done so already
         determineMinHeldContainers();
       }
-      
-      heldContainer.resetLocalityMatchLevel();
-      long currentTime = System.currentTimeMillis();
+
       boolean releaseContainer = false;
 
       if (isNew || (heldContainer.getContainerExpiryTime() <= currentTime
@@ -657,6 +709,7 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
    } else if (state.equals(DAGAppMasterState.RUNNING)) {
       // clear min held containers since we need to allocate to tasks
       sessionMinHeldContainers.clear();
+      containerPoolTargets = null;
       HeldContainer.LocalityMatchLevel localityMatchLevel =
         heldContainer.getLocalityMatchLevel();
       Map<CookieContainerRequest, Container> assignedContainers =
@@ -820,6 +873,15 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
     return null;
   }
 
+  @Override
+  public synchronized void dagCompleted() {
+    if (containerPoolSizer != null) {
+      containerPoolSizer.dagCompleted(System.currentTimeMillis());
+      containerPoolTargets = null;
+    }
+    resetMatchLocalityForAllHeldContainers();
+  }
+
   @Override
   public synchronized void resetMatchLocalityForAllHeldContainers() {
     for (HeldContainer heldContainer : heldContainers.values()) {
@@ -1072,25 +1134,15 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
       }
       assert freeResources.getMemory() >= 0;
   
-      CookieContainerRequest highestPriRequest = null;
-      int numHighestPriRequests = 0;
-      for(CookieContainerRequest request : taskRequests.values()) {
-        if(highestPriRequest == null) {
-          highestPriRequest = request;
-          numHighestPriRequests = 1;
-        } else if(isHigherPriority(request.getPriority(),
-                                     highestPriRequest.getPriority())){
-          highestPriRequest = request;
-          numHighestPriRequests = 1;
-        } else if (request.getPriority().equals(highestPriRequest.getPriority())) {
-          numHighestPriRequests++;
-        }
-      }
-      
-      if (highestPriRequest == null) {
+      if (taskRequestsByPriority.isEmpty()) {
         // nothing pending
         return;
       }
+      Map<Object, CookieContainerRequest> highestPriRequests =
+          taskRequestsByPriority.firstEntry().getValue();
+      CookieContainerRequest highestPriRequest =
+          highestPriRequests.values().iterator().next();
+      int numHighestPriRequests = highestPriRequests.size();
       
       if(fitsIn(highestPriRequest.getCapability(), freeResources)) {
         if (LOG.isDebugEnabled()) {
@@ -1158,22 +1210,23 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
           // to us anymore. So we need to ask for this again. If there is no
           // outstanding request at that priority then its fine to not ask again.
           // See TEZ-915 for more details
-          for (Map.Entry<Object, CookieContainerRequest> entry : taskRequests.entrySet()) {
+          Map<Object, CookieContainerRequest> requestsAtPriority =
+              taskRequestsByPriority.get(lowestPriNewContainer.getPriority());
+          if (requestsAtPriority != null) {
+            Map.Entry<Object, CookieContainerRequest> entry =
+                requestsAtPriority.entrySet().iterator().next();
             Object task = entry.getKey();
             CookieContainerRequest request = entry.getValue();
-            if (request.getPriority().equals(lowestPriNewContainer.getPriority())) {
-              LOG.info("Resending request for task again: " + task);
-              deallocateTask(task, true);
-              allocateTask(task, request.getCapability(), 
-                  (request.getNodes() == null ? null : 
-                    request.getNodes().toArray(new String[request.getNodes().size()])), 
-                    (request.getRacks() == null ? null : 
-                      request.getRacks().toArray(new String[request.getRacks().size()])), 
-                    request.getPriority(), 
-                    request.getCookie().getContainerSignature(),
-                    request.getCookie().getAppCookie());
-              break;
-            }
+            LOG.info("Resending request for task again: " + task);
+            deallocateTask(task, true);
+            allocateTask(task, request.getCapability(), 
+                (request.getNodes() == null ? null : 
+                  request.getNodes().toArray(new String[request.getNodes().size()])), 
+                  (request.getRacks() == null ? null : 
+                    request.getRacks().toArray(new String[request.getRacks().size()])), 
+                  request.getPriority(), 
+                  request.getCookie().getContainerSignature(),
+                  request.getCookie().getAppCookie());
           }
           // come back and free more new containers if needed
           continue;
@@ -1308,54 +1361,63 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
     if (pRequestsList == null || pRequestsList.isEmpty()) {
       return null;
     }
-    CookieContainerRequest firstMatch = null;
+    if (considerContainerAffinity) {
+      // container level match. Looked up through the affinity index instead of
+      // scanning all requests for one affinitized to this container
+      Set<CookieContainerRequest> affinitizedRequests =
+          affinitizedTaskRequests.get(container.getId());
+      if (affinitizedRequests != null) {
+        for (CookieContainerRequest cookieContainerRequest : affinitizedRequests) {
+          if (hasUsableAffinity(cookieContainerRequest)
+              && isMatchingRequest(cookieContainerRequest, pRequestsList)
+              && canAssignTaskToContainer(cookieContainerRequest, container)) {
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("Matching with affinity for request: "
+                  + cookieContainerRequest + " container: " + container.getId());
+            }
+            return cookieContainerRequest;
+          }
+        }
+      }
+    }
     for (Collection<CookieContainerRequest> requests : pRequestsList) {
       for (CookieContainerRequest cookieContainerRequest : requests) {
-        if (firstMatch == null || // we dont have a match. So look for one 
-            // we have a match but are looking for a better container level match.
-            // skip the expensive canAssignTaskToContainer() if the request is 
-            // not affinitized to the container
-            container.getId().equals(cookieContainerRequest.getAffinitizedContainer())
-            ) {
-          if (canAssignTaskToContainer(cookieContainerRequest, container)) {
-            // request matched to container
-            if (!considerContainerAffinity) {
-              return cookieContainerRequest;
-            }
-            ContainerId affCId = cookieContainerRequest.getAffinitizedContainer();
-            boolean canMatchTaskWithAffinity = true;
-            if (affCId == null || 
-                !heldContainers.containsKey(affCId) ||
-                inUseContainers.contains(affCId)) {
-              // affinity not specified
-              // affinitized container is no longer held
-              // affinitized container is in use
-              canMatchTaskWithAffinity = false;
-            }
-            if (canMatchTaskWithAffinity) {
-              if (container.getId().equals(
-                  cookieContainerRequest.getAffinitizedContainer())) {
-                // container level match
-                if (LOG.isDebugEnabled()) {
-                  LOG.debug("Matching with affinity for request: "
-                      + cookieContainerRequest + " container: " + affCId);
-                }
-                return cookieContainerRequest;
-              }
-              if (LOG.isDebugEnabled()) {
-                LOG.debug("Skipping request for container " + container.getId()
-                    + " due to affinity. Request: " + cookieContainerRequest
-                    + " affContainer: " + affCId);
-              }
-            } else {
-              firstMatch = cookieContainerRequest;
-            }
+        if (considerContainerAffinity && hasUsableAffinity(cookieContainerRequest)) {
+          // affinitized to another held container which is not in use
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Skipping request for container " + container.getId()
+                + " due to affinity. Request: " + cookieContainerRequest
+                + " affContainer: " + cookieContainerRequest.getAffinitizedContainer());
           }
+          continue;
+        }
+        if (canAssignTaskToContainer(cookieContainerRequest, container)) {
+          return cookieContainerRequest;
         }
       }
     }
     
-    return firstMatch;
+    return null;
+  }
+
+  /**
+   * @return true if the request has affinity to a container which is held and
+   *         not in use
+   */
+  private boolean hasUsableAffinity(CookieContainerRequest request) {
+    ContainerId affCId = request.getAffinitizedContainer();
+    return affCId != null && heldContainers.containsKey(affCId)
+        && !inUseContainers.contains(affCId);
+  }
+
+  private boolean isMatchingRequest(CookieContainerRequest request,
+      List<? extends Collection<CookieContainerRequest>> requestsList) {
+    for (Collection<CookieContainerRequest> requests : requestsList) {
+      if (requests.contains(request)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private boolean canAssignTaskToContainer(
@@ -1438,6 +1500,20 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
       }
       heldContainer.setLastTaskInfo(assigned);
     }
+    if (containerPoolSizer != null) {
+      containerPoolSizer.containerAssigned(
+          heldContainers.get(container.getId()).getFirstContainerSignature(),
+          System.currentTimeMillis());
+    }
+  }
+
+  private void containerUnassigned(ContainerId containerId) {
+    if (containerPoolSizer != null) {
+      HeldContainer heldContainer = heldContainers.get(containerId);
+      if (heldContainer != null) {
+        containerPoolSizer.containerUnassigned(heldContainer.getFirstContainerSignature());
+      }
+    }
   }
   
   private void pushNewContainerToDelayed(List<Container> containers){
@@ -1469,6 +1545,7 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
   private CookieContainerRequest removeTaskRequest(Object task) {
     CookieContainerRequest request = taskRequests.remove(task);
     if(request != null) {
+      removeFromIndexes(task, request);
       // remove all references of the request from AMRMClient
       amRmClient.removeContainerRequest(request);
     }
@@ -1479,18 +1556,61 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
                                 CookieContainerRequest request) {
     CookieContainerRequest oldRequest = taskRequests.put(task, request);
     if (oldRequest != null) {
+      removeFromIndexes(task, oldRequest);
       // remove all references of the request from AMRMClient
       amRmClient.removeContainerRequest(oldRequest);
     }
+    addToIndexes(task, request);
     amRmClient.addContainerRequest(request);
   }
 
+  private void addToIndexes(Object task, CookieContainerRequest request) {
+    Map<Object, CookieContainerRequest> requestsAtPriority =
+        taskRequestsByPriority.get(request.getPriority());
+    if (requestsAtPriority == null) {
+      requestsAtPriority = new LinkedHashMap<Object, CookieContainerRequest>();
+      taskRequestsByPriority.put(request.getPriority(), requestsAtPriority);
+    }
+    requestsAtPriority.put(task, request);
+    ContainerId affCId = request.getAffinitizedContainer();
+    if (affCId != null) {
+      Set<CookieContainerRequest> affinitizedRequests = affinitizedTaskRequests.get(affCId);
+      if (affinitizedRequests == null) {
+        affinitizedRequests = Sets.newLinkedHashSet();
+        affinitizedTaskRequests.put(affCId, affinitizedRequests);
+      }
+      affinitizedRequests.add(request);
+    }
+  }
+
+  private void removeFromIndexes(Object task, CookieContainerRequest request) {
+    Map<Object, CookieContainerRequest> requestsAtPriority =
+        taskRequestsByPriority.get(request.getPriority());
+    if (requestsAtPriority != null) {
+      requestsAtPriority.remove(task);
+      if (requestsAtPriority.isEmpty()) {
+        taskRequestsByPriority.remove(request.getPriority());
+      }
+    }
+    ContainerId affCId = request.getAffinitizedContainer();
+    if (affCId != null) {
+      Set<CookieContainerRequest> affinitizedRequests = affinitizedTaskRequests.get(affCId);
+      if (affinitizedRequests != null) {
+        affinitizedRequests.remove(request);
+        if (affinitizedRequests.isEmpty()) {
+          affinitizedTaskRequests.remove(affCId);
+        }
+      }
+    }
+  }
+
   private Container doBookKeepingForTaskDeallocate(Object task) {
     Container container = taskAllocations.remove(task);
     if (container == null) {
       return null;
     }
     inUseContainers.remove(container.getId());
+    containerUnassigned(container.getId());
     return container;
   }
 
@@ -1505,6 +1625,7 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
     Container container = taskAllocations.remove(task);
     assert container != null;
     inUseContainers.remove(containerId);
+    containerUnassigned(containerId);
     if(releaseIfFound) {
       releaseContainer(containerId);
     }
@@ -1986,17 +2107,47 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
   
   synchronized void determineMinHeldContainers() {
     sessionMinHeldContainers.clear();
-    if (sessionNumMinHeldContainers <= 0) {
-      return;
+    if (containerPoolSizer != null) {
+      containerPoolTargets = containerPoolSizer.getTargets(System.currentTimeMillis());
+      for (Entry<Object, Integer> target : containerPoolTargets.entrySet()) {
+        List<HeldContainer> matchingContainers = Lists.newArrayList();
+        for (HeldContainer heldContainer : heldContainers.values()) {
+          if (!heldContainer.isNew() && containerSignatureMatcher.isExactMatch(
+              target.getKey(), heldContainer.getFirstContainerSignature())) {
+            matchingContainers.add(heldContainer);
+          }
+        }
+        holdContainers(matchingContainers, target.getValue());
+      }
     }
-    
-    if (heldContainers.size() <= sessionNumMinHeldContainers) {
-      sessionMinHeldContainers.addAll(heldContainers.keySet());
+    if (sessionNumMinHeldContainers > 0) {
+      List<HeldContainer> remainingContainers = Lists.newArrayList();
+      for (HeldContainer heldContainer : heldContainers.values()) {
+        if (!sessionMinHeldContainers.contains(heldContainer.getContainer().getId())) {
+          remainingContainers.add(heldContainer);
+        }
+      }
+      holdContainers(remainingContainers, sessionNumMinHeldContainers);
+    }
+
+    LOG.info("Holding on to " + sessionMinHeldContainers.size() + " containers");
+  }
+
+  /**
+   * Adds up to numToHold of the given containers to sessionMinHeldContainers,
+   * spread evenly across racks and nodes.
+   */
+  private void holdContainers(Collection<HeldContainer> containers, int numToHold) {
+    if (containers.size() <= numToHold) {
+      for (HeldContainer heldContainer : containers) {
+        sessionMinHeldContainers.add(heldContainer.getContainer().getId());
+      }
+      return;
     }
     
     Map<String, AtomicInteger> rackHeldNumber = Maps.newHashMap();
     Map<String, List<HeldContainer>> nodeHeldContainers = Maps.newHashMap();
-    for(HeldContainer heldContainer : heldContainers.values()) {
+    for(HeldContainer heldContainer : containers) {
       AtomicInteger count = rackHeldNumber.get(heldContainer.getRack());
       if (count == null) {
         count = new AtomicInteger(0);
@@ -2018,9 +2169,9 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
     // distribute evenly across nodes
     // the loop assigns 1 container per rack over all racks
     int containerCount = 0;
-    while (containerCount < sessionNumMinHeldContainers && !rackHeldNumber.isEmpty()) {
+    while (containerCount < numToHold && !rackHeldNumber.isEmpty()) {
       Iterator<Entry<String, AtomicInteger>> iter = rackHeldNumber.entrySet().iterator();
-      while (containerCount < sessionNumMinHeldContainers && iter.hasNext()) {
+      while (containerCount < numToHold && iter.hasNext()) {
         Entry<String, AtomicInteger> entry = iter.next();
         if (entry.getValue().decrementAndGet() >=0) {
           containerCount++;
@@ -2034,9 +2185,9 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
     // distribute containers evenly across nodes while not exceeding rack limit
     // the loop assigns 1 container per node over all nodes
     containerCount = 0;
-    while (containerCount < sessionNumMinHeldContainers && !nodeHeldContainers.isEmpty()) {
+    while (containerCount < numToHold && !nodeHeldContainers.isEmpty()) {
       Iterator<Entry<String, List<HeldContainer>>> iter = nodeHeldContainers.entrySet().iterator();
-      while (containerCount < sessionNumMinHeldContainers && iter.hasNext()) {
+      while (containerCount < numToHold && iter.hasNext()) {
         List<HeldContainer> nodeContainers = iter.next().getValue();
         if (nodeContainers.isEmpty()) {
           // node is empty. remove it.
@@ -2054,8 +2205,6 @@ public class YarnTaskSchedulerService extends TaskSchedulerService
         }
       }
     }
-    
-    LOG.info("Holding on to " + sessionMinHeldContainers.size() + " containers");
   }
 
   private class ContainerIterable implements Iterable<Container> {
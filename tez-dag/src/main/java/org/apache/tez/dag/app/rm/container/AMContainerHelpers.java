@@ -56,6 +56,7 @@ import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.utils.TezRuntimeChildJVM;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
 
 public class AMContainerHelpers {
 
@@ -65,6 +66,9 @@ public class AMContainerHelpers {
   private static TezDAGID lastDAGID = null;
   private static Map<TezDAGID, ContainerLaunchContext> commonContainerSpecs =
       new HashMap<TezDAGID, ContainerLaunchContext>();
+  // Parts of the launch context shared by containers with the same signature, for the last dag
+  private static Map<ContainerSpecKey, ContainerSpec> containerSpecs =
+      new HashMap<ContainerSpecKey, ContainerSpec>();
 
 
   /**
@@ -148,6 +152,9 @@ public class AMContainerHelpers {
       Configuration conf) {
 
     ContainerLaunchContext commonContainerSpec = null;
+    ContainerSpec containerSpec = null;
+    ContainerSpecKey containerSpecKey =
+        new ContainerSpecKey(localResources, vertexEnv, javaOpts, containerResource);
     synchronized (commonContainerSpecLock) {
       if (!commonContainerSpecs.containsKey(tezDAGID)) {
         commonContainerSpec =
@@ -163,12 +170,46 @@ public class AMContainerHelpers {
         lastDAGID = tezDAGID;
       } else if (!lastDAGID.equals(tezDAGID)) {
         commonContainerSpecs.remove(lastDAGID);
+        containerSpecs.clear();
         lastDAGID = tezDAGID;
       }
+
+      containerSpec = containerSpecs.get(containerSpecKey);
+      if (containerSpec == null) {
+        containerSpec = createContainerSpec(commonContainerSpec, localResources, vertexEnv,
+            javaOpts, containerResource, conf);
+        containerSpecs.put(containerSpecKey.copy(), containerSpec);
+      }
+    }
+
+    List<String> commands = TezRuntimeChildJVM.getVMCommand(
+        taskAttemptListenerAddress, containerId.toString(),
+        appContext.getApplicationID().toString(),
+        appContext.getApplicationAttemptId().getAttemptId(), containerSpec.javaOpts);
+
+    // Duplicate the ByteBuffers for access by multiple containers.
+    Map<String, ByteBuffer> myServiceData = new HashMap<String, ByteBuffer>();
+    for (Entry<String, ByteBuffer> entry : commonContainerSpec.getServiceData()
+        .entrySet()) {
+      myServiceData.put(entry.getKey(), entry.getValue().duplicate());
     }
 
-    // Fill in the fields needed per-container that are missing in the common
-    // spec.
+    // Construct the actual Container. The local resources and environment
+    // are copied into the record.
+    ContainerLaunchContext container =
+        ContainerLaunchContext.newInstance(containerSpec.localResources,
+            containerSpec.environment, commands, myServiceData,
+            commonContainerSpec.getTokens().duplicate(), acls);
+
+    return container;
+  }
+
+  /**
+   * Fill in the fields needed per container signature that are missing in the common spec.
+   */
+  private static ContainerSpec createContainerSpec(ContainerLaunchContext commonContainerSpec,
+      Map<String, LocalResource> localResources, Map<String, String> vertexEnv,
+      String javaOpts, Resource containerResource, Configuration conf) {
     Map<String, LocalResource> lResources =
         new TreeMap<String, LocalResource>();
     lResources.putAll(commonContainerSpec.getLocalResources());
@@ -185,31 +226,72 @@ public class AMContainerHelpers {
             TezConfiguration.TEZ_CONTAINER_MAX_JAVA_HEAP_FRACTION_DEFAULT));
     if (LOG.isDebugEnabled()) {
       if (!modifiedJavaOpts.equals(javaOpts)) {
-        LOG.debug("Modified java opts for container"
-          + ", containerId=" + containerId
+        LOG.debug("Modified java opts for containers"
           + ", originalJavaOpts=" + javaOpts
           + ", modifiedJavaOpts=" + modifiedJavaOpts);
       }
     }
+    return new ContainerSpec(lResources, myEnv, modifiedJavaOpts);
+  }
 
-    List<String> commands = TezRuntimeChildJVM.getVMCommand(
-        taskAttemptListenerAddress, containerId.toString(),
-        appContext.getApplicationID().toString(),
-        appContext.getApplicationAttemptId().getAttemptId(), modifiedJavaOpts);
+  private static class ContainerSpec {
+    final Map<String, LocalResource> localResources;
+    final Map<String, String> environment;
+    final String javaOpts;
 
-    // Duplicate the ByteBuffers for access by multiple containers.
-    Map<String, ByteBuffer> myServiceData = new HashMap<String, ByteBuffer>();
-    for (Entry<String, ByteBuffer> entry : commonContainerSpec.getServiceData()
-        .entrySet()) {
-      myServiceData.put(entry.getKey(), entry.getValue().duplicate());
+    ContainerSpec(Map<String, LocalResource> localResources, Map<String, String> environment,
+        String javaOpts) {
+      this.localResources = localResources;
+      this.environment = environment;
+      this.javaOpts = javaOpts;
     }
+  }
 
-    // Construct the actual Container
-    ContainerLaunchContext container =
-        ContainerLaunchContext.newInstance(lResources, myEnv, commands,
-            myServiceData, commonContainerSpec.getTokens().duplicate(), acls);
+  private static class ContainerSpecKey {
+    final Map<String, LocalResource> localResources;
+    final Map<String, String> environment;
+    final String javaOpts;
+    final Resource resource;
 
-    return container;
+    final int hashCode;
+
+    ContainerSpecKey(Map<String, LocalResource> localResources, Map<String, String> environment,
+        String javaOpts, Resource resource) {
+      this.localResources = localResources;
+      this.environment = environment;
+      this.javaOpts = javaOpts;
+      this.resource = resource;
+      this.hashCode = Objects.hashCode(localResources, environment, javaOpts, resource);
+    }
+
+    /**
+     * Lookups use the caller's maps as is. A key is only stored in the cache
+     * through a copy, so that later changes to those maps cannot affect it.
+     */
+    ContainerSpecKey copy() {
+      return new ContainerSpecKey(new HashMap<String, LocalResource>(localResources),
+          new HashMap<String, String>(environment), javaOpts, resource);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ContainerSpecKey)) {
+        return false;
+      }
+      ContainerSpecKey other = (ContainerSpecKey) obj;
+      return Objects.equal(localResources, other.localResources)
+          && Objects.equal(environment, other.environment)
+          && Objects.equal(javaOpts, other.javaOpts)
+          && Objects.equal(resource, other.resource);
+    }
   }
   
   /**
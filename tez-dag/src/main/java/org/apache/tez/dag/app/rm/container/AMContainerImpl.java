@@ -48,6 +48,7 @@ import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.ContainerHeartbeatHandler;
 import org.apache.tez.dag.app.ContainerContext;
 import org.apache.tez.dag.app.TaskAttemptListener;
+import org.apache.tez.dag.app.dag.DAG;
 import org.apache.tez.dag.app.dag.event.DiagnosableEvent;
 import org.apache.tez.dag.app.dag.event.TaskAttemptEventContainerTerminatedBySystem;
 import org.apache.tez.dag.app.dag.event.TaskAttemptEventContainerTerminated;
@@ -66,6 +67,7 @@ import org.apache.tez.runtime.api.impl.TaskSpec;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
 
 @SuppressWarnings("rawtypes")
 public class AMContainerImpl implements AMContainer {
@@ -123,6 +125,8 @@ public class AMContainerImpl implements AMContainer {
 
   private Credentials credentials;
   private boolean credentialsChanged = false;
+  // Payload base configuration of the dag, shipped along with its credentials
+  private ByteString payloadBaseConf;
   
   // TODO Consider registering with the TAL, instead of the TAL pulling.
   // Possibly after splitting TAL and ContainerListener.
@@ -452,6 +456,15 @@ public class AMContainerImpl implements AMContainer {
     this.eventHandler.handle(event);
   }
 
+  private ByteString getPayloadBaseConf() {
+    DAG currentDAG = appContext.getCurrentDAG();
+    if (currentDAG == null || currentDAG.getJobPlan() == null
+        || !currentDAG.getJobPlan().hasPayloadBaseConf()) {
+      return null;
+    }
+    return currentDAG.getJobPlan().getPayloadBaseConf();
+  }
+
   // Push the TaskAttempt to the TAL, instead of the TAL pulling when a JVM asks
   // for a TaskAttempt.
   public AMContainerTask pullTaskContext() {
@@ -467,7 +480,8 @@ public class AMContainerImpl implements AMContainer {
         // Avoid sending credentials if credentials have not changed.
         AMContainerTask amContainerTask = new AMContainerTask(false,
             remoteTaskMap.remove(pullAttempt), this.additionalLocalResources,
-            this.credentialsChanged ? this.credentials : null, this.credentialsChanged);
+            this.credentialsChanged ? this.credentials : null, this.credentialsChanged,
+            this.credentialsChanged ? this.payloadBaseConf : null);
         this.additionalLocalResources = null;
         this.credentialsChanged = false;
         return amContainerTask;
@@ -620,6 +634,7 @@ public class AMContainerImpl implements AMContainer {
         container.credentialsChanged = true;
         container.credentials = event.getCredentials();
         container.lastTaskDAGID = currentDAGID;
+        container.payloadBaseConf = container.getPayloadBaseConf();
       } else {
         container.credentialsChanged = false;
       }
@@ -24,20 +24,30 @@ import org.apache.hadoop.security.Credentials;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.tez.runtime.api.impl.TaskSpec;
 
+import com.google.protobuf.ByteString;
+
 public class AMContainerTask {
   private final boolean shouldDie;
   private final Map<String, LocalResource> additionalResources;
   private final TaskSpec tezTask;
   private final Credentials credentials;
   private final boolean credentialsChanged;
+  private final ByteString payloadBaseConf;
 
   public AMContainerTask(boolean shouldDie, TaskSpec tezTask,
       Map<String, LocalResource> additionalResources, Credentials credentials, boolean credentialsChanged) {
+    this(shouldDie, tezTask, additionalResources, credentials, credentialsChanged, null);
+  }
+
+  public AMContainerTask(boolean shouldDie, TaskSpec tezTask,
+      Map<String, LocalResource> additionalResources, Credentials credentials,
+      boolean credentialsChanged, ByteString payloadBaseConf) {
     this.shouldDie = shouldDie;
     this.tezTask = tezTask;
     this.additionalResources = additionalResources;
     this.credentials = credentials;
     this.credentialsChanged = credentialsChanged;
+    this.payloadBaseConf = payloadBaseConf;
   }
 
   public boolean shouldDie() {
@@ -59,4 +69,8 @@ public class AMContainerTask {
   public boolean haveCredentialsChanged() {
     return this.credentialsChanged;
   }
+
+  public ByteString getPayloadBaseConf() {
+    return this.payloadBaseConf;
+  }
 }
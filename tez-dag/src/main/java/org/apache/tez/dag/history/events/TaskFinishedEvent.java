@@ -44,6 +44,10 @@ public class TaskFinishedEvent implements HistoryEvent {
   private TezCounters tezCounters;
   private TezTaskAttemptID successfulAttemptID;
   private String diagnostics;
+  // Attempts of the task left out of a recovery checkpoint
+  private int compactedFailedAttempts = 0;
+  private int compactedKilledAttempts = 0;
+  private int nextAttemptId = 0;
 
   public TaskFinishedEvent(TezTaskID taskID,
       String vertexName, long startTime, long finishTime,
@@ -88,6 +92,15 @@ public class TaskFinishedEvent implements HistoryEvent {
     if (successfulAttemptID != null) {
       builder.setSuccessfulTaskAttemptId(successfulAttemptID.toString());
     }
+    if (compactedFailedAttempts > 0) {
+      builder.setCompactedFailedAttempts(compactedFailedAttempts);
+    }
+    if (compactedKilledAttempts > 0) {
+      builder.setCompactedKilledAttempts(compactedKilledAttempts);
+    }
+    if (nextAttemptId > 0) {
+      builder.setNextAttemptId(nextAttemptId);
+    }
     return builder.build();
   }
 
@@ -102,6 +115,9 @@ public class TaskFinishedEvent implements HistoryEvent {
       this.successfulAttemptID =
           TezTaskAttemptID.fromString(proto.getSuccessfulTaskAttemptId());
     }
+    this.compactedFailedAttempts = proto.getCompactedFailedAttempts();
+    this.compactedKilledAttempts = proto.getCompactedKilledAttempts();
+    this.nextAttemptId = proto.getNextAttemptId();
   }
 
   @Override
@@ -161,4 +177,30 @@ public class TaskFinishedEvent implements HistoryEvent {
   public String getDiagnostics() {
     return diagnostics;
   }
+
+  /**
+   * Record the attempts of the task which are left out of a recovery checkpoint, so that they
+   * still count when the task is recovered from it.
+   *
+   * @param failedAttempts number of failed attempts left out
+   * @param killedAttempts number of killed attempts left out
+   * @param nextAttemptId id after the highest id of the attempts of the task
+   */
+  public void setCompactedAttempts(int failedAttempts, int killedAttempts, int nextAttemptId) {
+    this.compactedFailedAttempts = failedAttempts;
+    this.compactedKilledAttempts = killedAttempts;
+    this.nextAttemptId = nextAttemptId;
+  }
+
+  public int getCompactedFailedAttempts() {
+    return compactedFailedAttempts;
+  }
+
+  public int getCompactedKilledAttempts() {
+    return compactedKilledAttempts;
+  }
+
+  public int getNextAttemptId() {
+    return nextAttemptId;
+  }
 }
@@ -0,0 +1,494 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.recovery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.api.oldrecords.TaskState;
+import org.apache.tez.dag.app.RecoveryParser.DAGRecoveryEventReader;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+
+/**
+ * Checkpoint of the recovery file of a DAG. A checkpoint holds a compacted copy of the events
+ * in the first part of the recovery file, so that recovery only has to replay the checkpoint and
+ * the events written to the recovery file after it. The checkpoint data is made of segments,
+ * each one a compacted copy of the part of the recovery file written since the previous
+ * segment, in frames as written by {@link RecoveryFrames}. A segment is only appended, so the
+ * cost of a checkpoint is bounded by what was written to the recovery file since the last one.
+ * An index file next to the data, replaced once a segment is completely written, records the
+ * length of the recovery file and of the data covered by the checkpoint.
+ * <p/>
+ * Within a segment, a succeeded task is compacted to the events of its successful attempt and its
+ * last finished event, leaving out the attempts which started and finished in the segment. The
+ * finished event records the number of failed and killed attempts left out, and the next attempt
+ * id, which recovery restores. Events of earlier segments are not compacted again.
+ */
+public class RecoveryCheckpoint {
+
+  private static final Log LOG = LogFactory.getLog(RecoveryCheckpoint.class);
+
+  private static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+  // Length of the recovery file and of the data covered by the checkpoint
+  private static final int INDEX_LENGTH = 8 + 8;
+
+  /**
+   * State of a task, gathered from the events of a segment.
+   */
+  static class TaskSummary {
+    // Attempt the task finished with, if it did not run again since
+    private TezTaskAttemptID successfulAttemptID;
+    private final Set<TezTaskAttemptID> startedAttempts = new HashSet<TezTaskAttemptID>();
+    // Last state of the attempts which started and finished in the segment
+    private final Map<TezTaskAttemptID, TaskAttemptState> finishedAttempts =
+        new HashMap<TezTaskAttemptID, TaskAttemptState>();
+    // Attempts left out of earlier compactions
+    private int failedAttempts;
+    private int killedAttempts;
+    private int nextAttemptId;
+    private int numFinishedEvents;
+
+    boolean isCompacted() {
+      return successfulAttemptID != null;
+    }
+
+    boolean isLeftOut(TezTaskAttemptID attemptID) {
+      return isCompacted() && !successfulAttemptID.equals(attemptID)
+          && finishedAttempts.containsKey(attemptID);
+    }
+  }
+
+  /**
+   * Length of the recovery file and of the checkpoint data covered by a checkpoint.
+   */
+  private static class Index {
+    final long checkpointedLength;
+    final long dataLength;
+
+    Index(long checkpointedLength, long dataLength) {
+      this.checkpointedLength = checkpointedLength;
+      this.dataLength = dataLength;
+    }
+  }
+
+  /**
+   * Reads the events of a checkpoint, followed by the events of the recovery file after it.
+   */
+  public static class EventReader implements Closeable {
+    private final FSDataInputStream checkpointStream;
+    private final FSDataInputStream dagStream;
+    private final DAGRecoveryEventReader checkpointReader;
+    private final DAGRecoveryEventReader dagReader;
+    private final long dagLength;
+
+    private EventReader(FSDataInputStream checkpointStream, long checkpointLength,
+        FSDataInputStream dagStream, long dagLength) {
+      this.checkpointStream = checkpointStream;
+      this.dagStream = dagStream;
+      this.checkpointReader = checkpointStream == null ? null
+          : new DAGRecoveryEventReader(checkpointStream, checkpointLength);
+      this.dagReader = new DAGRecoveryEventReader(dagStream, dagLength);
+      this.dagLength = dagLength;
+    }
+
+    /**
+     * @return the next event, or null at the end of the data
+     */
+    public HistoryEvent getNextEvent() throws IOException {
+      if (checkpointReader != null) {
+        HistoryEvent event = checkpointReader.getNextEvent();
+        if (event != null) {
+          return event;
+        }
+      }
+      return dagReader.getNextEvent();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (checkpointStream != null) {
+        checkpointStream.close();
+      }
+      dagStream.close();
+    }
+  }
+
+  /**
+   * Writes the checkpoint of the recovery file of a DAG, appending a segment for every call.
+   * Not thread safe.
+   */
+  public static class Writer implements Closeable {
+    private final FileSystem fs;
+    private final Path dagFilePath;
+    private final Path checkpointPath;
+    private final Path indexPath;
+    private final int bufferSize;
+    private FSDataOutputStream dataStream;
+    private long checkpointedLength = 0;
+
+    public Writer(FileSystem fs, Path dagFilePath, Path checkpointPath, int bufferSize) {
+      this.fs = fs;
+      this.dagFilePath = dagFilePath;
+      this.checkpointPath = checkpointPath;
+      this.indexPath = getIndexPath(checkpointPath);
+      this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return the length of the recovery file covered by the checkpoint
+     */
+    public long getCheckpointedLength() {
+      return checkpointedLength;
+    }
+
+    /**
+     * Extend the checkpoint to cover the given length of the recovery file. Only the part of the
+     * recovery file after the current checkpoint is read. If the checkpoint cannot be written,
+     * the next call starts a new one from the beginning of the recovery file.
+     */
+    public void checkpoint(long length) throws IOException {
+      if (length <= checkpointedLength) {
+        return;
+      }
+      List<HistoryEvent> events = readEvents(length);
+      Map<TezTaskID, TaskSummary> tasks = new HashMap<TezTaskID, TaskSummary>();
+      for (HistoryEvent event : events) {
+        trackTask(event, tasks);
+      }
+
+      int numEvents = 0;
+      try {
+        if (dataStream == null) {
+          // The index must not cover data which is about to be replaced
+          if (fs.exists(indexPath) && !fs.delete(indexPath, false)) {
+            throw new IOException("Could not delete checkpoint index"
+                + ", indexPath=" + indexPath);
+          }
+          dataStream = fs.create(checkpointPath, true, bufferSize);
+        }
+        RecoveryFrames.Writer frameWriter = new RecoveryFrames.Writer();
+        for (HistoryEvent event : events) {
+          if (!compact(event, tasks)) {
+            continue;
+          }
+          ++numEvents;
+          frameWriter.append(event);
+          if (frameWriter.getLength() >= MAX_FRAME_LENGTH) {
+            frameWriter.writeFrame(dataStream);
+          }
+        }
+        frameWriter.writeFrame(dataStream);
+        dataStream.hflush();
+        writeIndex(new Index(length, dataStream.getPos()));
+      } catch (IOException e) {
+        reset();
+        throw e;
+      }
+      LOG.info("Wrote recovery checkpoint"
+          + ", checkpointPath=" + checkpointPath
+          + ", checkpointedLength=" + length
+          + ", numEvents=" + numEvents
+          + ", numDroppedEvents=" + (events.size() - numEvents));
+      checkpointedLength = length;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (dataStream != null) {
+        dataStream.close();
+        dataStream = null;
+      }
+    }
+
+    private List<HistoryEvent> readEvents(long length) throws IOException {
+      List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+      FSDataInputStream inputStream = fs.open(dagFilePath, bufferSize);
+      try {
+        inputStream.seek(checkpointedLength);
+        DAGRecoveryEventReader reader =
+            new DAGRecoveryEventReader(inputStream, length - checkpointedLength);
+        HistoryEvent event;
+        while ((event = reader.getNextEvent()) != null) {
+          events.add(event);
+        }
+        if (reader.getBytesRead() != length - checkpointedLength) {
+          throw new IOException("Could not read recovery data to checkpoint"
+              + ", dagFilePath=" + dagFilePath
+              + ", offset=" + checkpointedLength
+              + ", length=" + length);
+        }
+      } finally {
+        inputStream.close();
+      }
+      return events;
+    }
+
+    private void writeIndex(Index index) throws IOException {
+      Path tmpPath = new Path(indexPath.getParent(), indexPath.getName() + ".tmp");
+      FSDataOutputStream outputStream = fs.create(tmpPath, true, bufferSize);
+      try {
+        outputStream.writeLong(index.checkpointedLength);
+        outputStream.writeLong(index.dataLength);
+      } finally {
+        outputStream.close();
+      }
+      if (fs.exists(indexPath)) {
+        fs.delete(indexPath, false);
+      }
+      if (!fs.rename(tmpPath, indexPath)) {
+        throw new IOException("Could not rename checkpoint index"
+            + ", from=" + tmpPath
+            + ", to=" + indexPath);
+      }
+    }
+
+    private void reset() {
+      checkpointedLength = 0;
+      try {
+        close();
+      } catch (IOException e) {
+        LOG.warn("Error when closing recovery checkpoint"
+            + ", checkpointPath=" + checkpointPath, e);
+      }
+      dataStream = null;
+    }
+  }
+
+  /**
+   * Open the events of a DAG, from its checkpoint if there is a usable one.
+   *
+   * @param length the length of the recovery file to read, or -1 to read all of it
+   * @return the reader, or null if there is no recovery file
+   */
+  public static EventReader open(FileSystem fs, Path dagFilePath, Path checkpointPath,
+      long length, int bufferSize) throws IOException {
+    if (!fs.exists(dagFilePath)) {
+      return null;
+    }
+    FSDataInputStream dagStream = fs.open(dagFilePath, bufferSize);
+    Index index = readIndex(fs, getIndexPath(checkpointPath));
+    if (index != null
+        && ((length >= 0 && index.checkpointedLength > length)
+            || !canSeek(dagStream, index.checkpointedLength)
+            || !isIntact(fs, checkpointPath, index.dataLength, bufferSize))) {
+      LOG.warn("Ignoring checkpoint which does not match the recovery file"
+          + ", checkpointPath=" + checkpointPath
+          + ", checkpointedLength=" + index.checkpointedLength
+          + ", dataLength=" + index.dataLength);
+      index = null;
+    }
+    if (index == null) {
+      dagStream.seek(0);
+      return new EventReader(null, -1, dagStream, length);
+    }
+    LOG.info("Reading recovery data from checkpoint"
+        + ", checkpointPath=" + checkpointPath
+        + ", checkpointedLength=" + index.checkpointedLength);
+    FSDataInputStream checkpointStream = fs.open(checkpointPath, bufferSize);
+    dagStream.seek(index.checkpointedLength);
+    return new EventReader(checkpointStream, index.dataLength, dagStream,
+        length < 0 ? -1 : length - index.checkpointedLength);
+  }
+
+  static void trackTask(HistoryEvent event, Map<TezTaskID, TaskSummary> tasks) {
+    switch (event.getEventType()) {
+      case TASK_FINISHED:
+      {
+        TaskFinishedEvent taskFinishedEvent = (TaskFinishedEvent) event;
+        TaskSummary task = getTaskSummary(taskFinishedEvent.getTaskID(), tasks);
+        ++task.numFinishedEvents;
+        task.failedAttempts += taskFinishedEvent.getCompactedFailedAttempts();
+        task.killedAttempts += taskFinishedEvent.getCompactedKilledAttempts();
+        task.nextAttemptId = Math.max(task.nextAttemptId, taskFinishedEvent.getNextAttemptId());
+        if (taskFinishedEvent.getState() == TaskState.SUCCEEDED) {
+          task.successfulAttemptID = taskFinishedEvent.getSuccessfulAttemptID();
+        } else {
+          task.successfulAttemptID = null;
+        }
+        break;
+      }
+      case TASK_ATTEMPT_STARTED:
+      {
+        // The task runs again
+        TezTaskAttemptID attemptID = ((TaskAttemptStartedEvent) event).getTaskAttemptID();
+        TaskSummary task = getTaskSummary(attemptID.getTaskID(), tasks);
+        task.nextAttemptId = Math.max(task.nextAttemptId, attemptID.getId() + 1);
+        task.startedAttempts.add(attemptID);
+        task.successfulAttemptID = null;
+        break;
+      }
+      case TASK_ATTEMPT_FINISHED:
+      {
+        TaskAttemptFinishedEvent attemptFinishedEvent = (TaskAttemptFinishedEvent) event;
+        TezTaskAttemptID attemptID = attemptFinishedEvent.getTaskAttemptID();
+        TaskSummary task = getTaskSummary(attemptID.getTaskID(), tasks);
+        task.nextAttemptId = Math.max(task.nextAttemptId, attemptID.getId() + 1);
+        // Attempts started in an earlier segment are kept there, so their events are kept
+        if (task.startedAttempts.contains(attemptID)) {
+          task.finishedAttempts.put(attemptID, attemptFinishedEvent.getState());
+        }
+        // The successful attempt failed or was killed after the task succeeded
+        if (attemptID.equals(task.successfulAttemptID)
+            && attemptFinishedEvent.getState() != TaskAttemptState.SUCCEEDED) {
+          task.successfulAttemptID = null;
+        }
+        break;
+      }
+      default:
+        break;
+    }
+  }
+
+  /**
+   * @return whether the event is kept in the checkpoint. The last finished event of a compacted
+   *         task is updated with the attempts left out.
+   */
+  static boolean compact(HistoryEvent event, Map<TezTaskID, TaskSummary> tasks) {
+    TaskSummary task;
+    switch (event.getEventType()) {
+      case TASK_FINISHED:
+      {
+        TaskFinishedEvent taskFinishedEvent = (TaskFinishedEvent) event;
+        task = tasks.get(taskFinishedEvent.getTaskID());
+        if (task == null || !task.isCompacted()) {
+          return true;
+        }
+        if (--task.numFinishedEvents > 0) {
+          return false;
+        }
+        int failedAttempts = task.failedAttempts;
+        int killedAttempts = task.killedAttempts;
+        for (Map.Entry<TezTaskAttemptID, TaskAttemptState> entry
+            : task.finishedAttempts.entrySet()) {
+          if (!task.isLeftOut(entry.getKey())) {
+            continue;
+          }
+          if (entry.getValue() == TaskAttemptState.FAILED) {
+            ++failedAttempts;
+          } else if (entry.getValue() == TaskAttemptState.KILLED) {
+            ++killedAttempts;
+          }
+        }
+        taskFinishedEvent.setCompactedAttempts(failedAttempts, killedAttempts,
+            task.nextAttemptId);
+        return true;
+      }
+      case TASK_ATTEMPT_STARTED:
+      {
+        TezTaskAttemptID attemptID = ((TaskAttemptStartedEvent) event).getTaskAttemptID();
+        task = tasks.get(attemptID.getTaskID());
+        return task == null || !task.isLeftOut(attemptID);
+      }
+      case TASK_ATTEMPT_FINISHED:
+      {
+        TezTaskAttemptID attemptID = ((TaskAttemptFinishedEvent) event).getTaskAttemptID();
+        task = tasks.get(attemptID.getTaskID());
+        return task == null || !task.isLeftOut(attemptID);
+      }
+      default:
+        return true;
+    }
+  }
+
+  private static TaskSummary getTaskSummary(TezTaskID taskID,
+      Map<TezTaskID, TaskSummary> tasks) {
+    TaskSummary task = tasks.get(taskID);
+    if (task == null) {
+      task = new TaskSummary();
+      tasks.put(taskID, task);
+    }
+    return task;
+  }
+
+  private static Path getIndexPath(Path checkpointPath) {
+    return new Path(checkpointPath.getParent(), checkpointPath.getName() + ".index");
+  }
+
+  /**
+   * @return the index of the checkpoint, or null if there is no complete index
+   */
+  private static Index readIndex(FileSystem fs, Path indexPath) throws IOException {
+    if (!fs.exists(indexPath) || fs.getFileStatus(indexPath).getLen() != INDEX_LENGTH) {
+      return null;
+    }
+    FSDataInputStream inputStream = fs.open(indexPath);
+    try {
+      return new Index(inputStream.readLong(), inputStream.readLong());
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * @return whether every frame in the given length of the checkpoint data is intact
+   */
+  private static boolean isIntact(FileSystem fs, Path checkpointPath, long dataLength,
+      int bufferSize) throws IOException {
+    if (!fs.exists(checkpointPath)) {
+      return false;
+    }
+    FSDataInputStream inputStream = fs.open(checkpointPath, bufferSize);
+    try {
+      long framesLength = 0;
+      byte[] frame;
+      while (framesLength < dataLength
+          && (frame = RecoveryFrames.readFrame(inputStream)) != null) {
+        framesLength += RecoveryFrames.FRAME_HEADER_LENGTH + frame.length;
+      }
+      return framesLength == dataLength;
+    } catch (IOException e) {
+      LOG.warn("Ignoring unreadable checkpoint"
+          + ", checkpointPath=" + checkpointPath, e);
+      return false;
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  private static boolean canSeek(FSDataInputStream inputStream, long position) {
+    if (position <= 0) {
+      return false;
+    }
+    try {
+      inputStream.seek(position - 1);
+      return inputStream.read() != -1;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
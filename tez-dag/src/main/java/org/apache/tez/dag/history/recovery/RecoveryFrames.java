@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.recovery;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.tez.dag.history.HistoryEvent;
+
+/**
+ * Framing of the events in a DAG recovery file. Events are written in batches, each one framed
+ * with a marker, its length and its CRC32 checksum. A batch which was only partly written when
+ * the AM went down, or which got corrupted, is detected and dropped as a whole. Within a frame,
+ * every event is written as the ordinal of its type followed by its proto.
+ */
+public class RecoveryFrames {
+
+  private static final Log LOG = LogFactory.getLog(RecoveryFrames.class);
+
+  // "TEZR"
+  static final int FRAME_MARKER = 0x54455A52;
+  // Marker, length and checksum
+  public static final int FRAME_HEADER_LENGTH = 4 + 4 + 8;
+
+  /**
+   * Buffers events until they are written out as a frame.
+   */
+  public static class Writer {
+
+    private final DataOutputBuffer buffer = new DataOutputBuffer();
+    private int numEvents = 0;
+
+    public void append(HistoryEvent event) throws IOException {
+      buffer.writeInt(event.getEventType().ordinal());
+      event.toProtoStream(buffer);
+      ++numEvents;
+    }
+
+    public int getNumEvents() {
+      return numEvents;
+    }
+
+    public int getLength() {
+      return buffer.getLength();
+    }
+
+    /**
+     * Write the events appended since the last frame as a new frame. Nothing is written if
+     * there are no such events.
+     */
+    public void writeFrame(DataOutputStream outputStream) throws IOException {
+      if (numEvents == 0) {
+        return;
+      }
+      CRC32 checksum = new CRC32();
+      checksum.update(buffer.getData(), 0, buffer.getLength());
+      outputStream.writeInt(FRAME_MARKER);
+      outputStream.writeInt(buffer.getLength());
+      outputStream.writeLong(checksum.getValue());
+      outputStream.write(buffer.getData(), 0, buffer.getLength());
+      buffer.reset();
+      numEvents = 0;
+    }
+  }
+
+  /**
+   * @return the serialized events of the next frame, or null at the end of the data. A frame
+   *         which is incomplete or does not match its checksum ends the data.
+   * @throws IOException if the data is not framed recovery data
+   */
+  public static byte[] readFrame(DataInputStream inputStream) throws IOException {
+    int marker;
+    try {
+      marker = inputStream.readInt();
+    } catch (EOFException eof) {
+      return null;
+    }
+    if (marker != FRAME_MARKER) {
+      throw new IOException("Corrupt data found when trying to read next frame"
+          + ", marker=" + marker);
+    }
+    byte[] data;
+    long expectedChecksum;
+    try {
+      int length = inputStream.readInt();
+      expectedChecksum = inputStream.readLong();
+      if (length < 0) {
+        throw new IOException("Corrupt data found when trying to read next frame"
+            + ", length=" + length);
+      }
+      data = new byte[length];
+      inputStream.readFully(data);
+    } catch (EOFException eof) {
+      LOG.warn("Ignoring incomplete frame at the end of recovery data");
+      return null;
+    }
+    CRC32 checksum = new CRC32();
+    checksum.update(data, 0, data.length);
+    if (checksum.getValue() != expectedChecksum) {
+      LOG.warn("Ignoring frame with checksum mismatch and all data after it"
+          + ", expected=" + expectedChecksum
+          + ", actual=" + checksum.getValue());
+      return null;
+    }
+    return data;
+  }
+}
@@ -19,13 +19,21 @@
 package org.apache.tez.dag.history.recovery;
 
 import java.io.IOException;
-import java.util.EnumSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
@@ -46,6 +54,7 @@ import org.apache.tez.dag.history.events.DAGSubmittedEvent;
 import org.apache.tez.dag.records.TezDAGID;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class RecoveryService extends AbstractService {
 
@@ -69,9 +78,17 @@ public class RecoveryService extends AbstractService {
   @VisibleForTesting
   public static final boolean TEZ_AM_RECOVERY_HANDLE_REMAINING_EVENT_WHEN_STOPPED_DEFAULT = false;
 
+  // Upper limit on the number of queued events written out together, as one frame per DAG
+  // followed by at most one flush
+  private static final int MAX_EVENTS_PER_BATCH = 1000;
+
 
   private LinkedBlockingQueue<DAGHistoryEvent> eventQueue =
       new LinkedBlockingQueue<DAGHistoryEvent>();
+  // Guards taking events off the queue. Never held while acquiring lock.
+  private final Object queueLock = new Object();
+  // Whether events taken off the queue are still to be written
+  private boolean batchInFlight = false;
   private Set<TezDAGID> completedDAGs = new HashSet<TezDAGID>();
   private Set<TezDAGID> skippedDAGs = new HashSet<TezDAGID>();
 
@@ -85,12 +102,19 @@ public class RecoveryService extends AbstractService {
   Path recoveryPath;
   Map<TezDAGID, FSDataOutputStream> outputStreamMap = new
       HashMap<TezDAGID, FSDataOutputStream>();
+  // Offset in the recovery file of a DAG at which its output stream started writing
+  private Map<TezDAGID, Long> dagFileOffsetMap = new HashMap<TezDAGID, Long>();
+  // Only used by the checkpoint thread
+  private Map<TezDAGID, RecoveryCheckpoint.Writer> checkpointWriters =
+      new HashMap<TezDAGID, RecoveryCheckpoint.Writer>();
+  private ScheduledExecutorService checkpointExecutor;
   private int bufferSize;
   private FSDataOutputStream summaryStream;
   private int unflushedEventsCount = 0;
   private long lastFlushTime = -1;
   private int maxUnflushedEvents;
   private int flushInterval;
+  private int checkpointInterval;
   private AtomicBoolean recoveryFatalErrorOccurred = new AtomicBoolean(false);
   private boolean handleRemainingEventWhenStopped;
 
@@ -111,6 +135,8 @@ public class RecoveryService extends AbstractService {
         TezConfiguration.DAG_RECOVERY_FLUSH_INTERVAL_SECS_DEFAULT);
     maxUnflushedEvents = conf.getInt(TezConfiguration.DAG_RECOVERY_MAX_UNFLUSHED_EVENTS,
         TezConfiguration.DAG_RECOVERY_MAX_UNFLUSHED_EVENTS_DEFAULT);
+    checkpointInterval = conf.getInt(TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_SECS,
+        TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_SECS_DEFAULT);
 
     handleRemainingEventWhenStopped = conf.getBoolean(
         TEZ_AM_RECOVERY_HANDLE_REMAINING_EVENT_WHEN_STOPPED,
@@ -124,7 +150,6 @@ public class RecoveryService extends AbstractService {
     eventHandlingThread = new Thread(new Runnable() {
       @Override
       public void run() {
-        DAGHistoryEvent event;
         while (!stopped.get() && !Thread.currentThread().isInterrupted()) {
 
           if (recoveryFatalErrorOccurred.get()) {
@@ -145,27 +170,68 @@ public class RecoveryService extends AbstractService {
             ++eventCounter;
           }
 
+          // Events which queued up in the meantime share a frame and a flush
+          List<DAGHistoryEvent> events = new ArrayList<DAGHistoryEvent>();
           try {
-            event = eventQueue.take();
+            synchronized (queueLock) {
+              while (eventQueue.isEmpty()) {
+                queueLock.wait();
+              }
+              eventQueue.drainTo(events, MAX_EVENTS_PER_BATCH);
+              batchInFlight = true;
+            }
           } catch (InterruptedException e) {
             LOG.info("EventQueue take interrupted. Returning");
             return;
           }
 
-          synchronized (lock) {
-            try {
-              ++eventsProcessed;
-              handleRecoveryEvent(event);
-            } catch (Exception e) {
-              // For now, ignore any such errors as these are non-critical
-              // All summary event related errors are handled as critical
-              LOG.warn("Error handling recovery event", e);
+          try {
+            // Serialized without holding the lock, which is only taken to write out the frames
+            Map<TezDAGID, RecoveryFrames.Writer> frameWriters =
+                new LinkedHashMap<TezDAGID, RecoveryFrames.Writer>();
+            for (DAGHistoryEvent e : events) {
+              try {
+                ++eventsProcessed;
+                appendRecoveryEvent(e, frameWriters);
+              } catch (Exception ex) {
+                // For now, ignore any such errors as these are non-critical
+                // All summary event related errors are handled as critical
+                LOG.warn("Error handling recovery event", ex);
+              }
+            }
+            synchronized (lock) {
+              try {
+                maybeFlush(writeFrames(frameWriters));
+              } catch (Exception e) {
+                LOG.warn("Error writing recovery events", e);
+              }
+            }
+          } finally {
+            synchronized (queueLock) {
+              batchInFlight = false;
+              queueLock.notifyAll();
             }
           }
         }
       }
     }, "RecoveryEventHandlingThread");
     eventHandlingThread.start();
+
+    if (checkpointInterval > 0) {
+      checkpointExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("RecoveryCheckpointThread").build());
+      checkpointExecutor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            checkpoint();
+          } catch (RuntimeException e) {
+            // Keep the following checkpoints scheduled
+            LOG.warn("Error when checkpointing recovery files", e);
+          }
+        }
+      }, checkpointInterval, checkpointInterval, TimeUnit.SECONDS);
+    }
     started.set(true);
   }
 
@@ -177,23 +243,45 @@ public class RecoveryService extends AbstractService {
     if (eventHandlingThread != null) {
       eventHandlingThread.interrupt();
     }
+    if (checkpointExecutor != null) {
+      checkpointExecutor.shutdownNow();
+      try {
+        if (checkpointExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+          for (RecoveryCheckpoint.Writer checkpointWriter : checkpointWriters.values()) {
+            closeCheckpointWriter(checkpointWriter);
+          }
+          checkpointWriters.clear();
+        }
+      } catch (InterruptedException e) {
+        LOG.info("Interrupted while waiting for the checkpoint thread to stop");
+        Thread.currentThread().interrupt();
+      }
+    }
 
+    Map<TezDAGID, RecoveryFrames.Writer> frameWriters =
+        new LinkedHashMap<TezDAGID, RecoveryFrames.Writer>();
     if (handleRemainingEventWhenStopped) {
       LOG.info("Handle the remaining events in queue, queue size=" + eventQueue.size());
-      while(!eventQueue.isEmpty()) {
-        synchronized (lock) {
-          try {
-            DAGHistoryEvent event = eventQueue.take();
-            handleRecoveryEvent(event);
-          } catch (Exception e) {
-            // For now, ignore any such errors as these are non-critical
-            // All summary event related errors are handled as critical
-            LOG.warn("Error handling recovery event", e);
-          }
+      DAGHistoryEvent event;
+      while ((event = eventQueue.poll()) != null) {
+        try {
+          appendRecoveryEvent(event, frameWriters);
+        } catch (Exception e) {
+          // For now, ignore any such errors as these are non-critical
+          // All summary event related errors are handled as critical
+          LOG.warn("Error handling recovery event", e);
         }
       }
     }
 
+    synchronized (lock) {
+      try {
+        writeFrames(frameWriters);
+      } catch (IOException ioe) {
+        LOG.warn("Error when writing remaining recovery events", ioe);
+      }
+    }
+
     if (summaryStream != null) {
       try {
         LOG.info("Closing Summary Stream");
@@ -229,7 +317,7 @@ public class RecoveryService extends AbstractService {
     if (!started.get()) {
       LOG.warn("Adding event of type " + eventType
           + " to queue as service not started");
-      eventQueue.add(event);
+      queueEvent(event);
       return;
     }
 
@@ -258,27 +346,35 @@ public class RecoveryService extends AbstractService {
     }
 
     if (event.getHistoryEvent() instanceof SummaryEvent) {
+      if (((SummaryEvent) event.getHistoryEvent()).writeToRecoveryImmediately()) {
+        awaitBatchWritten();
+      }
       synchronized (lock) {
         try {
           SummaryEvent summaryEvent = (SummaryEvent) event.getHistoryEvent();
           handleSummaryEvent(dagId, eventType, summaryEvent);
           summaryStream.hflush();
           if (summaryEvent.writeToRecoveryImmediately()) {
-            handleRecoveryEvent(event);
-            doFlush(outputStreamMap.get(event.getDagID()),
-                appContext.getClock().getTime());
+            RecoveryFrames.Writer frameWriter = new RecoveryFrames.Writer();
+            frameWriter.append(event.getHistoryEvent());
+            FSDataOutputStream outputStream = writeFrame(event.getDagID(), frameWriter);
+            if (outputStream != null) {
+              doFlush(Collections.singletonList(outputStream),
+                  appContext.getClock().getTime());
+            }
           } else {
             if (LOG.isDebugEnabled()) {
               LOG.debug("Queueing Non-immediate Summary/Recovery event of type"
                   + eventType.name());
             }
-            eventQueue.add(event);
+            queueEvent(event);
           }
           if (eventType.equals(HistoryEventType.DAG_FINISHED)) {
             LOG.info("DAG completed"
                 + ", dagId=" + event.getDagID()
                 + ", queueSize=" + eventQueue.size());
             completedDAGs.add(dagId);
+            dagFileOffsetMap.remove(dagId);
             if (outputStreamMap.containsKey(dagId)) {
               try {
                 outputStreamMap.get(dagId).close();
@@ -320,7 +416,7 @@ public class RecoveryService extends AbstractService {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Queueing Non-Summary Recovery event of type " + eventType.name());
       }
-      eventQueue.add(event);
+      queueEvent(event);
     }
   }
 
@@ -352,26 +448,86 @@ public class RecoveryService extends AbstractService {
     summaryEvent.toSummaryProtoStream(summaryStream);
   }
 
-  private void handleRecoveryEvent(DAGHistoryEvent event) throws IOException {
-    HistoryEventType eventType = event.getHistoryEvent().getEventType();
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("Handling recovery event of type "
-          + event.getHistoryEvent().getEventType());
+  /**
+   * Serialize a recovery event into the frame of its DAG. Called without holding the lock.
+   */
+  private void queueEvent(DAGHistoryEvent event) {
+    synchronized (queueLock) {
+      eventQueue.add(event);
+      queueLock.notify();
+    }
+  }
+
+  /**
+   * Wait until the events taken off the queue by the event handling thread are written, so that
+   * an event written immediately is not followed by events which were queued before it and
+   * already taken off the queue.
+   */
+  private void awaitBatchWritten() {
+    synchronized (queueLock) {
+      while (batchInFlight) {
+        try {
+          queueLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
     }
+  }
+
+  private void appendRecoveryEvent(DAGHistoryEvent event,
+      Map<TezDAGID, RecoveryFrames.Writer> frameWriters) throws IOException {
     TezDAGID dagID = event.getDagID();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Buffering recovery event"
+          + ", dagId=" + dagID
+          + ", eventType=" + event.getHistoryEvent().getEventType());
+    }
+    RecoveryFrames.Writer frameWriter = frameWriters.get(dagID);
+    if (frameWriter == null) {
+      frameWriter = new RecoveryFrames.Writer();
+      frameWriters.put(dagID, frameWriter);
+    }
+    frameWriter.append(event.getHistoryEvent());
+  }
 
+  /**
+   * Write the serialized events of every DAG as a frame to its recovery file.
+   *
+   * @return the streams written to
+   */
+  private List<FSDataOutputStream> writeFrames(
+      Map<TezDAGID, RecoveryFrames.Writer> frameWriters) throws IOException {
+    List<FSDataOutputStream> outputStreams = new ArrayList<FSDataOutputStream>();
+    for (Entry<TezDAGID, RecoveryFrames.Writer> entry : frameWriters.entrySet()) {
+      FSDataOutputStream outputStream = writeFrame(entry.getKey(), entry.getValue());
+      if (outputStream != null) {
+        outputStreams.add(outputStream);
+      }
+    }
+    return outputStreams;
+  }
+
+  /**
+   * Write the serialized events of the DAG as a frame to its recovery file.
+   *
+   * @return the stream written to, or null if nothing was written
+   */
+  private FSDataOutputStream writeFrame(TezDAGID dagID, RecoveryFrames.Writer frameWriter)
+      throws IOException {
+    if (frameWriter.getNumEvents() == 0) {
+      return null;
+    }
     if (completedDAGs.contains(dagID)) {
       // no need to recover completed DAGs
       if (LOG.isDebugEnabled()) {
-        LOG.debug("Skipping Recovery Event as DAG completed"
+        LOG.debug("Skipping Recovery Events as DAG completed"
             + ", dagId=" + dagID
-            + ", completed=" + completedDAGs.contains(dagID)
-            + ", skipped=" + skippedDAGs.contains(dagID)
-            + ", eventType=" + eventType);
+            + ", numEvents=" + frameWriter.getNumEvents());
       }
-      return;
+      return null;
     }
-
     if (!outputStreamMap.containsKey(dagID)) {
       Path dagFilePath = TezCommonUtils.getDAGRecoveryPath(recoveryPath, dagID.toString());
       FSDataOutputStream outputStream;
@@ -381,12 +537,17 @@ public class RecoveryService extends AbstractService {
               + ", filePath=" + dagFilePath);
         }
         outputStream = recoveryDirFS.append(dagFilePath, bufferSize);
+        // Depending on the file system, the position of an appending stream starts at the
+        // length of the file or at 0
+        dagFileOffsetMap.put(dagID,
+            recoveryDirFS.getFileStatus(dagFilePath).getLen() - outputStream.getPos());
       } else {
         if (LOG.isDebugEnabled()) {
           LOG.debug("Opening DAG recovery file in create mode"
               + ", filePath=" + dagFilePath);
         }
         outputStream = recoveryDirFS.create(dagFilePath, false, bufferSize);
+        dagFileOffsetMap.put(dagID, 0l);
       }
       outputStreamMap.put(dagID, outputStream);
     }
@@ -394,20 +555,20 @@ public class RecoveryService extends AbstractService {
     FSDataOutputStream outputStream = outputStreamMap.get(dagID);
 
     if (LOG.isDebugEnabled()) {
-      LOG.debug("Writing recovery event to output stream"
+      LOG.debug("Writing recovery events to output stream"
           + ", dagId=" + dagID
-          + ", eventType=" + eventType);
-    }
-    ++unflushedEventsCount;
-    outputStream.writeInt(event.getHistoryEvent().getEventType().ordinal());
-    event.getHistoryEvent().toProtoStream(outputStream);
-    if (!EnumSet.of(HistoryEventType.DAG_SUBMITTED,
-        HistoryEventType.DAG_FINISHED).contains(eventType)) {
-      maybeFlush(outputStream);
+          + ", numEvents=" + frameWriter.getNumEvents()
+          + ", length=" + frameWriter.getLength());
     }
+    unflushedEventsCount += frameWriter.getNumEvents();
+    frameWriter.writeFrame(outputStream);
+    return outputStream;
   }
 
-  private void maybeFlush(FSDataOutputStream outputStream) throws IOException {
+  private void maybeFlush(List<FSDataOutputStream> outputStreams) throws IOException {
+    if (outputStreams.isEmpty()) {
+      return;
+    }
     long currentTime = appContext.getClock().getTime();
     boolean doFlush = false;
     if (maxUnflushedEvents >=0
@@ -428,12 +589,15 @@ public class RecoveryService extends AbstractService {
     if (!doFlush) {
       return;
     }
-    doFlush(outputStream, currentTime);
+    // Also covers frames written to other streams since their last flush
+    doFlush(outputStreamMap.values(), currentTime);
   }
 
-  private void doFlush(FSDataOutputStream outputStream,
+  private void doFlush(Collection<FSDataOutputStream> outputStreams,
       long currentTime) throws IOException {
-    outputStream.hflush();
+    for (FSDataOutputStream outputStream : outputStreams) {
+      outputStream.hflush();
+    }
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("Flushing output stream"
@@ -447,6 +611,66 @@ public class RecoveryService extends AbstractService {
     lastFlushTime = currentTime;
   }
 
+  /**
+   * Checkpoint the recovery files of the running DAGs, on the checkpoint thread. The lock is
+   * only held to flush the recovery files, each checkpoint is then extended from the data
+   * already flushed.
+   */
+  @VisibleForTesting
+  void checkpoint() {
+    Map<TezDAGID, Long> lengths = new HashMap<TezDAGID, Long>();
+    synchronized (lock) {
+      for (Entry<TezDAGID, FSDataOutputStream> entry : outputStreamMap.entrySet()) {
+        TezDAGID dagID = entry.getKey();
+        try {
+          entry.getValue().hflush();
+          lengths.put(dagID, dagFileOffsetMap.get(dagID) + entry.getValue().getPos());
+        } catch (IOException ioe) {
+          LOG.warn("Error when flushing recovery file for checkpoint"
+              + ", dagId=" + dagID, ioe);
+        }
+      }
+    }
+
+    // DAGs which completed since the last checkpoint
+    Iterator<Entry<TezDAGID, RecoveryCheckpoint.Writer>> iter =
+        checkpointWriters.entrySet().iterator();
+    while (iter.hasNext()) {
+      Entry<TezDAGID, RecoveryCheckpoint.Writer> entry = iter.next();
+      if (!lengths.containsKey(entry.getKey())) {
+        closeCheckpointWriter(entry.getValue());
+        iter.remove();
+      }
+    }
+
+    for (Entry<TezDAGID, Long> entry : lengths.entrySet()) {
+      TezDAGID dagID = entry.getKey();
+      RecoveryCheckpoint.Writer checkpointWriter = checkpointWriters.get(dagID);
+      if (checkpointWriter == null) {
+        checkpointWriter = new RecoveryCheckpoint.Writer(recoveryDirFS,
+            TezCommonUtils.getDAGRecoveryPath(recoveryPath, dagID.toString()),
+            TezCommonUtils.getDAGRecoveryCheckpointPath(recoveryPath, dagID.toString()),
+            bufferSize);
+        checkpointWriters.put(dagID, checkpointWriter);
+      }
+      try {
+        checkpointWriter.checkpoint(entry.getValue());
+      } catch (IOException ioe) {
+        // Recovery falls back to the full recovery file until the next checkpoint
+        LOG.warn("Error when writing recovery checkpoint"
+            + ", dagId=" + dagID, ioe);
+      }
+    }
+  }
+
+  private void closeCheckpointWriter(RecoveryCheckpoint.Writer checkpointWriter) {
+    try {
+      checkpointWriter.close();
+    } catch (IOException ioe) {
+      LOG.warn("Error when closing recovery checkpoint", ioe);
+    }
+  }
+
   public boolean hasRecoveryFailed() {
     return recoveryFatalErrorOccurred.get();
   }
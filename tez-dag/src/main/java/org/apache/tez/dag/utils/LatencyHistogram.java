@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.utils;
+
+/**
+ * Histogram of latencies, in milliseconds. Bucket i counts the latencies up to 2^i ms, the last
+ * bucket everything above.
+ */
+public class LatencyHistogram {
+
+  static final int NUM_BUCKETS = 18;
+
+  private final long[] buckets = new long[NUM_BUCKETS];
+  private long count = 0;
+  private long total = 0;
+  private long max = 0;
+
+  public synchronized void record(long latencyMillis) {
+    long latency = Math.max(latencyMillis, 0);
+    int bucket = 0;
+    while (bucket < NUM_BUCKETS - 1 && latency > (1l << bucket)) {
+      bucket++;
+    }
+    buckets[bucket]++;
+    count++;
+    total += latency;
+    max = Math.max(max, latency);
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getMax() {
+    return max;
+  }
+
+  public synchronized long getBucketCount(int bucket) {
+    return buckets[bucket];
+  }
+
+  /**
+   * @return the upper bound of the bucket the given fraction of the latencies fall in or below,
+   *         or -1 if nothing was recorded
+   */
+  public synchronized long getPercentile(double fraction) {
+    if (count == 0) {
+      return -1;
+    }
+    long threshold = (long) Math.ceil(count * fraction);
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS - 1; i++) {
+      seen += buckets[i];
+      if (seen >= threshold) {
+        return 1l << i;
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("count=").append(count);
+    if (count > 0) {
+      sb.append(", mean=").append(total / count)
+          .append(", p50<=").append(getPercentile(0.5))
+          .append(", p99<=").append(getPercentile(0.99))
+          .append(", max=").append(max);
+    }
+    return sb.toString();
+  }
+}
@@ -34,13 +34,14 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.log4j.Logger;
 import org.apache.tez.common.TezTaskUmbilicalProtocol;
-import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.runtime.LogicalIOProcessorRuntimeTask;
 import org.apache.tez.runtime.api.events.TaskAttemptCompletedEvent;
 import org.apache.tez.runtime.api.events.TaskAttemptFailedEvent;
 import org.apache.tez.runtime.api.events.TaskStatusUpdateEvent;
+import org.apache.tez.runtime.api.impl.CountersUpdate;
+import org.apache.tez.runtime.api.impl.CountersUpdateEncoder;
 import org.apache.tez.runtime.api.impl.EventMetaData;
 import org.apache.tez.runtime.api.impl.TezEvent;
 import org.apache.tez.runtime.api.impl.TezHeartbeatRequest;
@@ -133,6 +134,9 @@ public class TaskReporter {
 
     private final AtomicLong requestCounter;
 
+    // Sends the counters which changed since the previous update, identified by compact ids.
+    private final CountersUpdateEncoder countersEncoder = new CountersUpdateEncoder();
+
     private LinkedBlockingQueue<TezEvent> eventsToSend = new LinkedBlockingQueue<TezEvent>();
 
     private final ReentrantLock lock = new ReentrantLock();
@@ -221,7 +225,7 @@ public class TaskReporter {
       eventsToSend.drainTo(events);
 
       if (!task.isTaskDone() && !task.hadFatalError()) {
-        TezCounters counters = null;
+        CountersUpdate countersUpdate = null;
         /**
          * Increasing the heartbeat interval can delay the delivery of events. Sending just updated
          * records would save CPU in DAG AM, but certain counters are updated very frequently. Until
@@ -229,11 +233,11 @@ public class TaskReporter {
          */
         // Not completely accurate, since OOB heartbeats could go out.
         if ((nonOobHeartbeatCounter - prevCounterSendHeartbeatNum) * pollInterval >= sendCounterInterval) {
-          counters = task.getCounters();
+          countersUpdate = countersEncoder.encode(task.getCounters(), false);
           prevCounterSendHeartbeatNum = nonOobHeartbeatCounter;
         }
-        updateEvent = new TezEvent(new TaskStatusUpdateEvent(counters, task.getProgress()),
-            updateEventMetadata);
+        updateEvent = new TezEvent(new TaskStatusUpdateEvent(null, countersUpdate,
+            task.getProgress()), updateEventMetadata);
         events.add(updateEvent);
       }
 
@@ -311,8 +315,9 @@ public class TaskReporter {
      *           indicates an exception somewhere in the AM.
      */
     private boolean taskSucceeded(TezTaskAttemptID taskAttemptID) throws IOException, TezException {
-      TezEvent statusUpdateEvent = new TezEvent(new TaskStatusUpdateEvent(task.getCounters(),
-          task.getProgress()), updateEventMetadata);
+      TezEvent statusUpdateEvent = new TezEvent(new TaskStatusUpdateEvent(null,
+          countersEncoder.encode(task.getCounters(), true), task.getProgress()),
+          updateEventMetadata);
       TezEvent taskCompletedEvent = new TezEvent(new TaskAttemptCompletedEvent(),
           updateEventMetadata);
       return !heartbeat(Lists.newArrayList(statusUpdateEvent, taskCompletedEvent)).shouldDie;
@@ -332,8 +337,9 @@ public class TaskReporter {
      */
     private boolean taskFailed(TezTaskAttemptID taskAttemptID, Throwable t, String diagnostics,
         EventMetaData srcMeta) throws IOException, TezException {
-      TezEvent statusUpdateEvent = new TezEvent(new TaskStatusUpdateEvent(task.getCounters(),
-          task.getProgress()), updateEventMetadata);
+      TezEvent statusUpdateEvent = new TezEvent(new TaskStatusUpdateEvent(null,
+          countersEncoder.encode(task.getCounters(), true), task.getProgress()),
+          updateEventMetadata);
       if (diagnostics == null) {
         diagnostics = ExceptionUtils.getStackTrace(t);
       } else {
@@ -53,6 +53,7 @@ import org.apache.tez.common.ContainerTask;
 import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.common.TezLocalResource;
 import org.apache.tez.common.TezTaskUmbilicalProtocol;
+import org.apache.tez.common.TezUtils;
 import org.apache.tez.common.TezUtilsInternal;
 import org.apache.tez.common.counters.Limits;
 import org.apache.tez.common.security.JobTokenIdentifier;
@@ -93,6 +94,9 @@ public class TezChild {
   private final boolean isLocal;
 
   private final ListeningExecutorService executor;
+  // Fetches and prepares the next task while the current task is cleaned up
+  private final ListeningExecutorService prefetchExecutor;
+  private volatile ListenableFuture<ContainerTask> prefetchedTask;
   private final ObjectRegistryImpl objectRegistry;
   private final Map<String, ByteBuffer> serviceConsumerMetadata = new HashMap<String, ByteBuffer>();
 
@@ -130,6 +134,14 @@ public class TezChild {
         .setDaemon(true).setNameFormat("TezChild").build());
     this.executor = MoreExecutors.listeningDecorator(executor);
 
+    if (defaultConf.getBoolean(TezConfiguration.TEZ_TASK_PREFETCH_NEXT_TASK,
+        TezConfiguration.TEZ_TASK_PREFETCH_NEXT_TASK_DEFAULT)) {
+      this.prefetchExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(1,
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("TezChild-Prefetch").build()));
+    } else {
+      this.prefetchExecutor = null;
+    }
+
     this.objectRegistry = objectRegistry;
 
     // Security framework already loaded the tokens into current ugi
@@ -178,7 +190,11 @@ public class TezChild {
       if (taskCount > 0) {
         TezUtilsInternal.updateLoggers("");
       }
-      ListenableFuture<ContainerTask> getTaskFuture = executor.submit(containerReporter);
+      ListenableFuture<ContainerTask> getTaskFuture = prefetchedTask;
+      prefetchedTask = null;
+      if (getTaskFuture == null) {
+        getTaskFuture = executor.submit(containerReporter);
+      }
       ContainerTask containerTask = null;
       try {
         containerTask = getTaskFuture.get();
@@ -206,6 +222,11 @@ public class TezChild {
         FileSystem.clearStatistics();
 
         childUGI = handleNewTaskCredentials(containerTask, childUGI);
+        if (containerTask.getPayloadBaseConf() != null) {
+          LOG.info("Registering payload base configuration for the dag");
+          TezUtils.registerBaseConf(containerTask.getPayloadBaseConf());
+        }
+        // Only once the previous task has been cleaned up
         handleNewTaskLocalResources(containerTask);
         cleanupOnTaskChanged(containerTask);
 
@@ -213,6 +234,15 @@ public class TezChild {
         TezTaskRunner taskRunner = new TezTaskRunner(defaultConf, childUGI,
             localDirs, containerTask.getTaskSpec(), umbilical, appAttemptNumber,
             serviceConsumerMetadata, startedInputsMap, taskReporter, executor, objectRegistry);
+        if (prefetchExecutor != null) {
+          final ContainerReporter prefetchReporter = containerReporter;
+          taskRunner.setTaskSucceededCallback(new Runnable() {
+            @Override
+            public void run() {
+              prefetchNextTask(prefetchReporter);
+            }
+          });
+        }
         boolean shouldDie;
         try {
           shouldDie = !taskRunner.run();
@@ -239,6 +269,14 @@ public class TezChild {
         null);
   }
 
+  /**
+   * Starts polling for the next task while the current one is being cleaned up. The task
+   * received this way is only set up by the main loop, once the current task is done.
+   */
+  private void prefetchNextTask(ContainerReporter containerReporter) {
+    prefetchedTask = prefetchExecutor.submit(containerReporter);
+  }
+
   /**
    * Setup
    * 
@@ -325,6 +363,9 @@ public class TezChild {
 
   private void shutdown() {
     executor.shutdownNow();
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdownNow();
+    }
     if (taskReporter != null) {
       taskReporter.shutdown();
     }
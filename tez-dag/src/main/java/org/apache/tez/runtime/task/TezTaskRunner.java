@@ -66,6 +66,7 @@ public class TezTaskRunner implements TezUmbilical, ErrorReporter {
   private final AtomicBoolean fatalErrorSent = new AtomicBoolean(false);
   private final AtomicBoolean taskRunning;
   private final AtomicBoolean shutdownRequested = new AtomicBoolean(false);
+  private volatile Runnable taskSucceededCallback;
 
   TezTaskRunner(Configuration tezConf, UserGroupInformation ugi, String[] localDirs,
       TaskSpec taskSpec, TezTaskUmbilicalProtocol umbilical, int appAttemptNumber,
@@ -82,6 +83,14 @@ public class TezTaskRunner implements TezUmbilical, ErrorReporter {
     taskRunning = new AtomicBoolean(true);
   }
 
+  /**
+   * Sets a callback which is invoked once the success of the task has been reported to the AM,
+   * unless the AM asked the container to die, before the task is cleaned up.
+   */
+  void setTaskSucceededCallback(Runnable callback) {
+    this.taskSucceededCallback = callback;
+  }
+
   /**
    * @return false if a shutdown message was received during task execution
    * @throws TezException
@@ -182,7 +191,13 @@ public class TezTaskRunner implements TezUmbilical, ErrorReporter {
                   + ", fatalErrorOccurred=" + (firstException != null));
               if (firstException == null) {
                 try {
-                  taskReporter.taskSucceeded(task.getTaskAttemptID());
+                  // Not when the AM asked the container to die in response
+                  if (taskReporter.taskSucceeded(task.getTaskAttemptID())) {
+                    Runnable callback = taskSucceededCallback;
+                    if (callback != null) {
+                      callback.run();
+                    }
+                  }
                 } catch (IOException e) {
                   LOG.warn("Heartbeat failure caused by communication failure", e);
                   maybeRegisterFirstException(e);
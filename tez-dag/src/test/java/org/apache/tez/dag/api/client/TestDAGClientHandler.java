@@ -24,8 +24,10 @@ import static org.mockito.Mockito.*;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.tez.client.TezAppMasterStatus;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
 import org.apache.tez.dag.app.AppContext;
@@ -41,7 +43,7 @@ import org.mockito.internal.util.collections.Sets;
 public class TestDAGClientHandler {
   
   @Test(timeout = 5000)
-  public void testDAGClientHandler() throws TezException {
+  public void testDAGClientHandler() throws Exception {
 
     TezDAGID mockTezDAGId = mock(TezDAGID.class);
     when(mockTezDAGId.getId()).thenReturn(1);
@@ -79,6 +81,17 @@ public class TestDAGClientHandler {
         Sets.newSet(StatusGetOpts.GET_COUNTERS));
     assertEquals(mockDagStatusBuilder, dagStatus);
 
+    // getDAGStatus waiting for a status change, capped by the configured max wait
+    Configuration conf = new Configuration(false);
+    conf.setLong(TezConfiguration.TEZ_AM_CLIENT_DAG_STATUS_MAX_WAIT_MS, 100);
+    when(mockDagAM.getConfig()).thenReturn(conf);
+    when(mockDAG.getDAGStatus(anySetOf(StatusGetOpts.class), anyLong(), anyLong())).thenReturn(
+        mockDagStatusBuilder);
+    dagStatus = dagClientHandler.getDAGStatus("dag_9999_0001_1",
+        Sets.newSet(StatusGetOpts.GET_COUNTERS), 5, 1000);
+    assertEquals(mockDagStatusBuilder, dagStatus);
+    verify(mockDAG).getDAGStatus(Sets.newSet(StatusGetOpts.GET_COUNTERS), 5, 100);
+
     // getVertexStatus
     try {
       dagClientHandler.getVertexStatus("dag_9999_0001_2", "v1", Sets.newSet(StatusGetOpts.GET_COUNTERS));
@@ -135,6 +135,76 @@ public class TestMockDAGAppMaster {
     tezClient.stop();
   }
 
+  @Test (timeout = 10000)
+  public void testQueuedSubmissions() throws Exception {
+    TezConfiguration tezconf = new TezConfiguration(defaultConf);
+    tezconf.setInt(TezConfiguration.TEZ_AM_SESSION_MAX_QUEUED_DAGS, 1);
+
+    MockTezClient tezClient = new MockTezClient("testMockAM", tezconf, true, null, null, null, null);
+    tezClient.start();
+
+    MockDAGAppMaster mockApp = tezClient.getLocalClient().getMockApp();
+    MockContainerLauncher mockLauncher = mockApp.getContainerLauncher();
+    mockLauncher.startScheduling(false);
+
+    DAG dag1 = DAG.create("test1");
+    dag1.addVertex(Vertex.create("A", ProcessorDescriptor.create("Proc.class"), 5));
+    DAG dag2 = DAG.create("test2");
+    dag2.addVertex(Vertex.create("A", ProcessorDescriptor.create("Proc.class"), 5));
+    DAG dag3 = DAG.create("test3");
+    dag3.addVertex(Vertex.create("A", ProcessorDescriptor.create("Proc.class"), 5));
+
+    tezClient.submitDAG(dag1);
+    DAGClient dagClient2 = tezClient.submitDAG(dag2);
+    Assert.assertEquals("test1", mockApp.getContext().getCurrentDAG().getName());
+    Assert.assertEquals(DAGStatus.State.SUBMITTED, dagClient2.getDAGStatus(null).getState());
+    try {
+      tezClient.submitDAG(dag3);
+      Assert.fail("Expected the queue of the session to be full");
+    } catch (Exception e) {
+      // expected
+    }
+
+    mockLauncher.startScheduling(true);
+    dagClient2.waitForCompletion();
+    Assert.assertEquals(DAGStatus.State.SUCCEEDED, dagClient2.getDAGStatus(null).getState());
+    Assert.assertEquals("test2", mockApp.getContext().getCurrentDAG().getName());
+    tezClient.stop();
+  }
+
+  @Test (timeout = 10000)
+  public void testQueuedDAGKilled() throws Exception {
+    TezConfiguration tezconf = new TezConfiguration(defaultConf);
+    tezconf.setInt(TezConfiguration.TEZ_AM_SESSION_MAX_QUEUED_DAGS, 1);
+
+    MockTezClient tezClient = new MockTezClient("testMockAM", tezconf, true, null, null, null, null);
+    tezClient.start();
+
+    MockDAGAppMaster mockApp = tezClient.getLocalClient().getMockApp();
+    MockContainerLauncher mockLauncher = mockApp.getContainerLauncher();
+    mockLauncher.startScheduling(false);
+
+    DAG dag1 = DAG.create("test1");
+    dag1.addVertex(Vertex.create("A", ProcessorDescriptor.create("Proc.class"), 5));
+    DAG dag2 = DAG.create("test2");
+    dag2.addVertex(Vertex.create("A", ProcessorDescriptor.create("Proc.class"), 5));
+
+    DAGClient dagClient1 = tezClient.submitDAG(dag1);
+    DAGClient dagClient2 = tezClient.submitDAG(dag2);
+    dagClient2.tryKillDAG();
+    Assert.assertEquals(DAGStatus.State.KILLED, dagClient2.getDAGStatus(null).getState());
+    // Killing it again is a no-op
+    dagClient2.tryKillDAG();
+
+    mockLauncher.startScheduling(true);
+    dagClient1.waitForCompletion();
+    Assert.assertEquals(DAGStatus.State.SUCCEEDED, dagClient1.getDAGStatus(null).getState());
+    // Never started
+    Assert.assertEquals("test1", mockApp.getContext().getCurrentDAG().getName());
+    Assert.assertEquals(DAGStatus.State.KILLED, dagClient2.getDAGStatus(null).getState());
+    tezClient.stop();
+  }
+
   @Test (timeout = 10000)
   public void testSchedulerErrorHandling() throws Exception {
     TezConfiguration tezconf = new TezConfiguration(defaultConf);
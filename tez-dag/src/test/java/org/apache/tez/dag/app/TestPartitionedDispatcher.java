@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.event.Dispatcher;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.tez.dag.app.dag.event.DAGEvent;
+import org.apache.tez.dag.app.dag.event.DAGEventType;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEvent;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEventType;
+import org.apache.tez.dag.app.dag.event.TaskEvent;
+import org.apache.tez.dag.app.dag.event.TaskEventType;
+import org.apache.tez.dag.app.dag.event.VertexEvent;
+import org.apache.tez.dag.app.dag.event.VertexEventType;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.junit.Test;
+
+public class TestPartitionedDispatcher {
+
+  private final TezDAGID dagId =
+      TezDAGID.getInstance(ApplicationId.newInstance(100, 1), 1);
+
+  @Test(timeout = 5000)
+  public void testPartition() {
+    PartitionedDispatcher dispatcher = new PartitionedDispatcher(3);
+    assertEquals(3, dispatcher.getNumPartitions());
+    for (int i = 0; i < 6; i++) {
+      TezVertexID vertexId = TezVertexID.getInstance(dagId, i);
+      TezTaskID taskId = TezTaskID.getInstance(vertexId, i * 7);
+      TezTaskAttemptID attemptId = TezTaskAttemptID.getInstance(taskId, 1);
+      int partition = dispatcher.getPartition(
+          new VertexEvent(vertexId, VertexEventType.V_INIT));
+      assertEquals(i % 3, partition);
+      assertEquals(partition, dispatcher.getPartition(
+          new TaskEvent(taskId, TaskEventType.T_SCHEDULE)));
+      assertEquals(partition, dispatcher.getPartition(
+          new TaskAttemptEvent(attemptId, TaskAttemptEventType.TA_SCHEDULE)));
+    }
+    assertEquals(0, dispatcher.getPartition(new DAGEvent(dagId, DAGEventType.DAG_INIT)));
+  }
+
+  @Test(timeout = 10000)
+  public void testOrderingPerVertex() throws Exception {
+    int numVertices = 4;
+    int numEventsPerVertex = 1000;
+    final CountDownLatch latch = new CountDownLatch(numVertices * numEventsPerVertex + 1);
+    final Map<TezVertexID, List<Integer>> handledTasks =
+        Collections.synchronizedMap(new HashMap<TezVertexID, List<Integer>>());
+    PartitionedDispatcher dispatcher = new PartitionedDispatcher(2);
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(Dispatcher.DISPATCHER_EXIT_ON_ERROR_KEY, false);
+    dispatcher.register(TaskEventType.class, new EventHandler<TaskEvent>() {
+      @Override
+      public void handle(TaskEvent event) {
+        TezVertexID vertexId = event.getTaskID().getVertexID();
+        handledTasks.get(vertexId).add(event.getTaskID().getId());
+        latch.countDown();
+      }
+    });
+    dispatcher.register(DAGEventType.class, new EventHandler<DAGEvent>() {
+      @Override
+      public void handle(DAGEvent event) {
+        latch.countDown();
+      }
+    });
+    dispatcher.init(conf);
+    dispatcher.start();
+    try {
+      for (int i = 0; i < numVertices; i++) {
+        handledTasks.put(TezVertexID.getInstance(dagId, i), new ArrayList<Integer>());
+      }
+      for (int j = 0; j < numEventsPerVertex; j++) {
+        for (int i = 0; i < numVertices; i++) {
+          TezTaskID taskId = TezTaskID.getInstance(TezVertexID.getInstance(dagId, i), j);
+          dispatcher.getEventHandler().handle(new TaskEvent(taskId, TaskEventType.T_SCHEDULE));
+        }
+      }
+      dispatcher.getEventHandler().handle(new DAGEvent(dagId, DAGEventType.DAG_INIT));
+      latch.await(5, TimeUnit.SECONDS);
+      assertEquals(0, latch.getCount());
+
+      for (List<Integer> tasks : handledTasks.values()) {
+        assertEquals(numEventsPerVertex, tasks.size());
+        for (int j = 0; j < numEventsPerVertex; j++) {
+          assertEquals(j, tasks.get(j).intValue());
+        }
+      }
+      // Stats are updated after the handler returns
+      waitForCount(dispatcher, TaskEventType.T_SCHEDULE, numVertices * numEventsPerVertex);
+      waitForCount(dispatcher, DAGEventType.DAG_INIT, 1);
+      assertEquals(0, dispatcher.getQueueSize(0));
+      assertEquals(0, dispatcher.getQueueSize(1));
+    } finally {
+      dispatcher.stop();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testQueueWaitTime() throws Exception {
+    PartitionedDispatcher dispatcher = new PartitionedDispatcher(1);
+    dispatcher.register(DAGEventType.class, new EventHandler<DAGEvent>() {
+      @Override
+      public void handle(DAGEvent event) {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    dispatcher.init(new Configuration(false));
+    dispatcher.start();
+    try {
+      dispatcher.getEventHandler().handle(new DAGEvent(dagId, DAGEventType.DAG_INIT));
+      dispatcher.getEventHandler().handle(new DAGEvent(dagId, DAGEventType.DAG_START));
+      waitForCount(dispatcher, DAGEventType.DAG_INIT, 1);
+      waitForCount(dispatcher, DAGEventType.DAG_START, 1);
+
+      // The second event waited in the queue while the first one was handled
+      PartitionedDispatcher.EventTypeStats startStats =
+          dispatcher.getEventTypeStats().get(DAGEventType.DAG_START);
+      assertTrue(startStats.getMaxQueueWaitMicros() >= 90000);
+      assertTrue(startStats.getMaxTimeMicros() >= 90000);
+      PartitionedDispatcher.EventTypeStats initStats =
+          dispatcher.getEventTypeStats().get(DAGEventType.DAG_INIT);
+      assertTrue(initStats.getMaxQueueWaitMicros() < startStats.getMaxQueueWaitMicros());
+    } finally {
+      dispatcher.stop();
+    }
+  }
+
+  private void waitForCount(PartitionedDispatcher dispatcher, Enum<?> type, long expected)
+      throws InterruptedException {
+    while (dispatcher.getEventTypeStats().get(type) == null
+        || dispatcher.getEventTypeStats().get(type).getCount() < expected) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, dispatcher.getEventTypeStats().get(type).getCount());
+  }
+}
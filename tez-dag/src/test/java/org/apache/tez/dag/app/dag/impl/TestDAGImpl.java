@@ -27,8 +27,11 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -60,6 +63,9 @@ import org.apache.tez.dag.api.EdgeProperty.SchedulingType;
 import org.apache.tez.dag.api.VertexManagerPluginContext.TaskWithLocationHint;
 import org.apache.tez.dag.api.UserPayload;
 import org.apache.tez.dag.api.oldrecords.TaskState;
+import org.apache.tez.dag.api.client.DAGStatus;
+import org.apache.tez.dag.api.client.DAGStatusBuilder;
+import org.apache.tez.dag.api.client.StatusGetOpts;
 import org.apache.tez.dag.api.records.DAGProtos;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
 import org.apache.tez.dag.api.records.DAGProtos.EdgePlan;
@@ -888,6 +894,45 @@ public class TestDAGImpl {
     Assert.assertEquals(VertexState.SUCCEEDED, v.getState());
     Assert.assertEquals(1, dag.getSuccessfulVertices());
   }
+
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 5000)
+  public void testDAGStatusWaitForChange() throws Exception {
+    final Set<StatusGetOpts> statusOptions = EnumSet.noneOf(StatusGetOpts.class);
+    initDAG(dag);
+    long version = dag.getDAGStatus(statusOptions).getStatusVersion();
+    // nothing changed, returns after the timeout
+    Assert.assertEquals(version,
+        dag.getDAGStatus(statusOptions, version, 10).getStatusVersion());
+
+    startDAG(dag);
+    dispatcher.await();
+    DAGStatusBuilder status = dag.getDAGStatus(statusOptions, version, 1000);
+    Assert.assertEquals(DAGStatus.State.RUNNING, status.getState());
+    Assert.assertTrue(status.getStatusVersion() > version);
+
+    // a waiting client is woken up by a task completion
+    final long runningVersion = status.getStatusVersion();
+    final AtomicReference<DAGStatusBuilder> newStatus = new AtomicReference<DAGStatusBuilder>();
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          newStatus.set(dag.getDAGStatus(statusOptions, runningVersion, 60000));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    waiter.start();
+    TezVertexID vId = TezVertexID.getInstance(dagId, 1);
+    dispatcher.getEventHandler().handle(new VertexEventTaskCompleted(
+        TezTaskID.getInstance(vId, 0), TaskState.SUCCEEDED));
+    dispatcher.await();
+    waiter.join();
+    Assert.assertTrue(newStatus.get().getStatusVersion() > runningVersion);
+    Assert.assertEquals(1, newStatus.get().getDAGProgress().getSucceededTaskCount());
+  }
   
   @SuppressWarnings("unchecked")
   @Test(timeout = 5000)
@@ -18,6 +18,10 @@
 
 package org.apache.tez.dag.app.dag.impl;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.tez.dag.app.dag.DAG;
 import org.apache.tez.dag.app.dag.DAGScheduler;
@@ -25,6 +29,7 @@ import org.apache.tez.dag.app.dag.TaskAttempt;
 import org.apache.tez.dag.app.dag.Vertex;
 import org.apache.tez.dag.app.dag.event.DAGEventSchedulerUpdate;
 import org.apache.tez.dag.app.dag.event.TaskAttemptEventSchedule;
+import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezVertexID;
 import org.junit.Assert;
 import org.junit.Test;
@@ -43,6 +48,7 @@ public class TestDAGScheduler {
   }
   
   MockEventHandler mockEventHandler = new MockEventHandler();
+  DAG mockDag;
   
   @Test(timeout=5000)
   public void testDAGSchedulerNaturalOrder() {
@@ -68,5 +74,125 @@ public class TestDAGScheduler {
     Assert.assertEquals(7, mockEventHandler.event.getPriorityHighLimit());
     Assert.assertEquals(9, mockEventHandler.event.getPriorityLowLimit());
   }
-  
+
+  @Test(timeout=5000)
+  public void testDAGSchedulerCriticalPath() {
+    Vertex[] vertices = createCriticalPathDAG();
+    DAGSchedulerCriticalPath scheduler = new DAGSchedulerCriticalPath(mockDag,
+        mockEventHandler);
+    // estimated from task counts: v0 = 11, v2 = 6, v3 = 4, v4 = 2, v1 = 1
+    scheduleAndCheck(scheduler, vertices[0], 1, 3);
+    scheduleAndCheck(scheduler, vertices[2], 4, 6);
+    scheduleAndCheck(scheduler, vertices[3], 7, 9);
+    scheduleAndCheck(scheduler, vertices[4], 10, 12);
+    scheduleAndCheck(scheduler, vertices[1], 13, 15);
+  }
+
+  @Test(timeout=5000)
+  public void testDAGSchedulerCriticalPathReRank() {
+    Vertex[] vertices = createCriticalPathDAG();
+    DAGSchedulerCriticalPath scheduler = new DAGSchedulerCriticalPath(mockDag,
+        mockEventHandler);
+    // v0 = 11, v2 = 6 (rank 1), v3 = 4 (rank 2)
+    scheduleAndCheck(scheduler, vertices[0], 1, 3);
+    scheduleAndCheck(scheduler, vertices[2], 4, 6);
+    scheduleAndCheck(scheduler, vertices[3], 7, 9);
+
+    // v0 tasks turn out to be short, and v2 tasks long
+    scheduler.taskSucceeded(new DAGEventSchedulerUpdate(
+        DAGEventSchedulerUpdate.UpdateType.TA_SUCCEEDED,
+        createAttempt(vertices[0].getVertexId(), 1000, 1001)));
+    when(vertices[0].getSucceededTasks()).thenReturn(1);
+    for (int i = 0; i < 3; i++) {
+      scheduler.taskSucceeded(new DAGEventSchedulerUpdate(
+          DAGEventSchedulerUpdate.UpdateType.TA_SUCCEEDED,
+          createAttempt(vertices[2].getVertexId(), 1000, 1100)));
+    }
+    when(vertices[2].getSucceededTasks()).thenReturn(1);
+    // Not re-ranked until as many tasks succeeded as there are vertices
+    scheduleAndCheck(scheduler, vertices[2], 4, 6);
+    scheduler.taskSucceeded(new DAGEventSchedulerUpdate(
+        DAGEventSchedulerUpdate.UpdateType.TA_SUCCEEDED,
+        createAttempt(vertices[2].getVertexId(), 1000, 1100)));
+
+    // DAG average 80.2: v2 = 100 + 160.4 + 160.4 (rank 0), v3 = 320.8 (rank 1),
+    // v4 = 160.4 (rank 2), v0 = 9 + 80.2 (rank 3), v1 = 80.2 (rank 4)
+    scheduleAndCheck(scheduler, vertices[2], 1, 3);
+    // Kept below the tasks of v2 already scheduled at rank 1
+    scheduleAndCheck(scheduler, vertices[3], 7, 9);
+    // Kept below the tasks of v3 scheduled at rank 2
+    scheduleAndCheck(scheduler, vertices[4], 10, 12);
+    scheduleAndCheck(scheduler, vertices[0], 10, 12);
+    scheduleAndCheck(scheduler, vertices[1], 13, 15);
+    Assert.assertEquals(1, scheduler.getVertexRank(vertices[3].getVertexId()));
+    Assert.assertEquals(2, scheduler.getScheduledRank(vertices[3].getVertexId()));
+  }
+
+  private Vertex[] createCriticalPathDAG() {
+    /*
+     * v0 (10 tasks)   v2 (2 tasks)
+     *   |               |
+     * v1 (1 task)     v3 (2 tasks)
+     *                   |
+     *                 v4 (2 tasks)
+     */
+    mockDag = mock(DAG.class);
+    TezDAGID dagId = TezDAGID.getInstance(ApplicationId.newInstance(1, 1), 1);
+    Vertex[] vertices = new Vertex[5];
+    int[] numTasks = {10, 1, 2, 2, 2};
+    Map<TezVertexID, Vertex> vertexMap = new HashMap<TezVertexID, Vertex>();
+    for (int i = 0; i < vertices.length; i++) {
+      vertices[i] = mock(Vertex.class);
+      TezVertexID vertexId = TezVertexID.getInstance(dagId, i);
+      when(vertices[i].getVertexId()).thenReturn(vertexId);
+      when(vertices[i].getTotalTasks()).thenReturn(numTasks[i]);
+      when(vertices[i].getSucceededTasks()).thenReturn(0);
+      when(mockDag.getVertex(vertexId)).thenReturn(vertices[i]);
+      vertexMap.put(vertexId, vertices[i]);
+    }
+    setEdge(null, vertices[0]);
+    setEdge(vertices[0], vertices[1]);
+    setEdge(vertices[1], null);
+    setEdge(null, vertices[2]);
+    setEdge(vertices[2], vertices[3]);
+    setEdge(vertices[3], vertices[4]);
+    setEdge(vertices[4], null);
+    when(mockDag.getVertices()).thenReturn(vertexMap);
+    return vertices;
+  }
+
+  private void setEdge(Vertex inputVertex, Vertex outputVertex) {
+    if (inputVertex != null) {
+      Map<Vertex, Edge> outputs = new HashMap<Vertex, Edge>();
+      if (outputVertex != null) {
+        outputs.put(outputVertex, mock(Edge.class));
+      }
+      when(inputVertex.getOutputVertices()).thenReturn(outputs);
+    }
+    if (outputVertex != null) {
+      Map<Vertex, Edge> inputs = new HashMap<Vertex, Edge>();
+      if (inputVertex != null) {
+        inputs.put(inputVertex, mock(Edge.class));
+      }
+      when(outputVertex.getInputVertices()).thenReturn(inputs);
+    }
+  }
+
+  private TaskAttempt createAttempt(TezVertexID vertexId, long launchTime, long finishTime) {
+    TaskAttempt mockAttempt = mock(TaskAttempt.class);
+    when(mockAttempt.getVertexID()).thenReturn(vertexId);
+    when(mockAttempt.getLaunchTime()).thenReturn(launchTime);
+    when(mockAttempt.getFinishTime()).thenReturn(finishTime);
+    return mockAttempt;
+  }
+
+  private void scheduleAndCheck(DAGScheduler scheduler, Vertex vertex, int priorityHigh,
+      int priorityLow) {
+    TaskAttempt mockAttempt = createAttempt(vertex.getVertexId(), 0, 0);
+    scheduler.scheduleTask(new DAGEventSchedulerUpdate(
+        DAGEventSchedulerUpdate.UpdateType.TA_SCHEDULE, mockAttempt));
+    Assert.assertEquals(priorityHigh, mockEventHandler.event.getPriorityHighLimit());
+    Assert.assertEquals(priorityLow, mockEventHandler.event.getPriorityLowLimit());
+  }
+
 }
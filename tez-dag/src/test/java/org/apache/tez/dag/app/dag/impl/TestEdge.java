@@ -19,21 +19,29 @@
 package org.apache.tez.dag.app.dag.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.tez.dag.api.EdgeManagerPlugin;
+import org.apache.tez.dag.api.EdgeManagerPluginContext;
+import org.apache.tez.dag.api.EdgeManagerPluginDescriptor;
 import org.apache.tez.dag.api.EdgeProperty;
 import org.apache.tez.dag.api.EdgeProperty.DataMovementType;
 import org.apache.tez.dag.api.EdgeProperty.DataSourceType;
@@ -48,6 +56,8 @@ import org.apache.tez.dag.records.TezTaskID;
 import org.apache.tez.dag.records.TezVertexID;
 import org.apache.tez.runtime.api.events.CompositeDataMovementEvent;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
+import org.apache.tez.runtime.api.events.InputFailedEvent;
+import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 import org.apache.tez.runtime.api.impl.EventMetaData;
 import org.apache.tez.runtime.api.impl.EventMetaData.EventProducerConsumerType;
 import org.apache.tez.runtime.api.impl.TezEvent;
@@ -92,21 +102,147 @@ public class TestEdge {
     // Event setup to look like it would after the Vertex is done with it.
 
     edge.sendTezEventToDestinationTasks(tezEvent);
-    verifyEvents(srcTAID, destTasks);
+    // Scatter gather events are stored once in the edge, and routed on demand
+    assertTrue(edge.isOnDemandRouting());
+    verifyOnDemandEvents(srcTAID, destTasks, edge, 0);
 
     // Same Verification via regular DataMovementEvents
-    // Reset the mock
-    resetTaskMocks(destTasks.values());
-
     for (int i = 0 ; i < destTasks.size() ; i++) {
       DataMovementEvent dmEvent = DataMovementEvent.create(i, ByteBuffer.wrap("bytes".getBytes()));
       dmEvent.setVersion(2);
       tezEvent = new TezEvent(dmEvent, srcMeta);
       edge.sendTezEventToDestinationTasks(tezEvent);
     }
+    verifyOnDemandEvents(srcTAID, destTasks, edge, 1);
+    for (Task task : destTasks.values()) {
+      verify(task, never()).registerTezEvent(any(TezEvent.class));
+    }
+
+    // Stored events are routed to the tasks up front, once the edge manager is replaced by one
+    // which does not route on demand
+    edge = new Edge(edgeProp, eventHandler);
+    edge.setSourceVertex(srcVertex);
+    edge.setDestinationVertex(destVertex);
+    edge.initialize();
+    cdmEvent = CompositeDataMovementEvent.create(0, destTasks.size(),
+        ByteBuffer.wrap("bytes".getBytes()));
+    cdmEvent.setVersion(2);
+    edge.sendTezEventToDestinationTasks(new TezEvent(cdmEvent, srcMeta));
+    edge.setCustomEdgeManager(EdgeManagerPluginDescriptor.create(
+        CustomScatterGatherEdgeManager.class.getName()));
+    assertFalse(edge.isOnDemandRouting());
     verifyEvents(srcTAID, destTasks);
   }
 
+  public static class CustomScatterGatherEdgeManager extends EdgeManagerPlugin {
+
+    public CustomScatterGatherEdgeManager(EdgeManagerPluginContext context) {
+      super(context);
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public int getNumDestinationTaskPhysicalInputs(int destinationTaskIndex) {
+      return getContext().getSourceVertexNumTasks();
+    }
+
+    @Override
+    public int getNumSourceTaskPhysicalOutputs(int sourceTaskIndex) {
+      return getContext().getDestinationVertexNumTasks();
+    }
+
+    @Override
+    public void routeDataMovementEventToDestination(DataMovementEvent event,
+        int sourceTaskIndex, int sourceOutputIndex,
+        Map<Integer, List<Integer>> destinationTaskAndInputIndices) {
+      destinationTaskAndInputIndices.put(sourceOutputIndex,
+          Collections.singletonList(sourceTaskIndex));
+    }
+
+    @Override
+    public void routeInputSourceTaskFailedEventToDestination(int sourceTaskIndex,
+        Map<Integer, List<Integer>> destinationTaskAndInputIndices) {
+      for (int i = 0; i < getContext().getDestinationVertexNumTasks(); ++i) {
+        destinationTaskAndInputIndices.put(i, Collections.singletonList(sourceTaskIndex));
+      }
+    }
+
+    @Override
+    public int routeInputErrorEventToSource(InputReadErrorEvent event,
+        int destinationTaskIndex, int destinationFailedInputIndex) {
+      return destinationFailedInputIndex;
+    }
+
+    @Override
+    public int getNumDestinationConsumerTasks(int sourceTaskIndex) {
+      return getContext().getDestinationVertexNumTasks();
+    }
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test (timeout = 5000)
+  public void testOnDemandRoutingBroadcast() throws AMUserCodeException {
+    EventHandler eventHandler = mock(EventHandler.class);
+    EdgeProperty edgeProp = EdgeProperty.create(DataMovementType.BROADCAST,
+        DataSourceType.PERSISTED, SchedulingType.SEQUENTIAL, mock(OutputDescriptor.class),
+        mock(InputDescriptor.class));
+    Edge edge = new Edge(edgeProp, eventHandler);
+
+    TezVertexID srcVertexID = createVertexID(1);
+    TezVertexID destVertexID = createVertexID(2);
+    LinkedHashMap<TezTaskID, Task> srcTasks = mockTasks(srcVertexID, 3);
+    LinkedHashMap<TezTaskID, Task> destTasks = mockTasks(destVertexID, 2);
+    edge.setSourceVertex(mockVertex("src", srcVertexID, srcTasks));
+    edge.setDestinationVertex(mockVertex("dest", destVertexID, destTasks));
+    edge.initialize();
+    assertTrue(edge.isOnDemandRouting());
+
+    for (TezTaskID srcTaskID : srcTasks.keySet()) {
+      TezTaskAttemptID srcTAID = createTAIDForTest(srcTaskID, 0);
+      EventMetaData srcMeta = new EventMetaData(EventProducerConsumerType.OUTPUT, "consumerVertex",
+          "producerVertex", srcTAID);
+      DataMovementEvent dmEvent = DataMovementEvent.create(0, ByteBuffer.wrap("bytes".getBytes()));
+      dmEvent.setVersion(0);
+      edge.sendTezEventToDestinationTasks(new TezEvent(dmEvent, srcMeta));
+    }
+    TezTaskAttemptID failedTAID = createTAIDForTest(srcTasks.keySet().iterator().next(), 0);
+    InputFailedEvent ifEvent = InputFailedEvent.create(0, 0);
+    edge.sendTezEventToDestinationTasks(new TezEvent(ifEvent, new EventMetaData(
+        EventProducerConsumerType.OUTPUT, "consumerVertex", "producerVertex", failedTAID)));
+
+    for (TezTaskID destTaskID : destTasks.keySet()) {
+      // Fetch in two batches, to verify the position returned
+      List<TezEvent> events = new ArrayList<TezEvent>();
+      int nextIndex = edge.getOnDemandRoutedEvents(destTaskID.getId(), 0, 2, events);
+      assertEquals(2, nextIndex);
+      assertEquals(4, edge.getOnDemandRoutedEvents(destTaskID.getId(), nextIndex, 10, events));
+      assertEquals(4, edge.getOnDemandRoutedEvents(destTaskID.getId(), 4, 10, events));
+      assertEquals(4, events.size());
+      for (int i = 0; i < 3; i++) {
+        DataMovementEvent dmEvent = (DataMovementEvent) events.get(i).getEvent();
+        assertEquals(0, dmEvent.getSourceIndex());
+        assertEquals(i, dmEvent.getTargetIndex());
+        assertEquals("dest", events.get(i).getDestinationInfo().getTaskVertexName());
+      }
+      InputFailedEvent routedIfEvent = (InputFailedEvent) events.get(3).getEvent();
+      assertEquals(failedTAID.getTaskID().getId(), routedIfEvent.getTargetIndex());
+    }
+  }
+
+  private void verifyOnDemandEvents(TezTaskAttemptID srcTAID,
+      LinkedHashMap<TezTaskID, Task> destTasks, Edge edge, int fromIndex) {
+    int count = 0;
+    for (TezTaskID destTaskID : destTasks.keySet()) {
+      List<TezEvent> events = new ArrayList<TezEvent>();
+      edge.getOnDemandRoutedEvents(destTaskID.getId(), fromIndex, 100, events);
+      assertEquals(1, events.size());
+      verifyDataMovementEvent(srcTAID, count++, events.get(0));
+    }
+  }
+
   @SuppressWarnings("rawtypes")
   private void verifyEvents(TezTaskAttemptID srcTAID, LinkedHashMap<TezTaskID, Task> destTasks) {
     int count = 0;
@@ -115,24 +251,19 @@ public class TestEdge {
       Task mockTask = taskEntry.getValue();
       ArgumentCaptor<TezEvent> args = ArgumentCaptor.forClass(TezEvent.class);
       verify(mockTask, times(1)).registerTezEvent(args.capture());
-      TezEvent capturedEvent = args.getValue();
-
-      DataMovementEvent dmEvent = (DataMovementEvent) capturedEvent.getEvent();
-      assertEquals(srcTAID.getId(), dmEvent.getVersion());
-      assertEquals(count++, dmEvent.getSourceIndex());
-      assertEquals(srcTAID.getTaskID().getId(), dmEvent.getTargetIndex());
-      byte[] res = new byte[dmEvent.getUserPayload().limit() - dmEvent.getUserPayload().position()];
-      dmEvent.getUserPayload().slice().get(res);
-      assertTrue(Arrays.equals("bytes".getBytes(), res));
+      verifyDataMovementEvent(srcTAID, count++, args.getValue());
     }
   }
 
-  private void resetTaskMocks(Collection<Task> tasks) {
-    for (Task task : tasks) {
-      TezTaskID taskID = task.getTaskId();
-      reset(task);
-      doReturn(taskID).when(task).getTaskId();
-    }
+  private void verifyDataMovementEvent(TezTaskAttemptID srcTAID, int sourceIndex,
+      TezEvent capturedEvent) {
+    DataMovementEvent dmEvent = (DataMovementEvent) capturedEvent.getEvent();
+    assertEquals(srcTAID.getId(), dmEvent.getVersion());
+    assertEquals(sourceIndex, dmEvent.getSourceIndex());
+    assertEquals(srcTAID.getTaskID().getId(), dmEvent.getTargetIndex());
+    byte[] res = new byte[dmEvent.getUserPayload().limit() - dmEvent.getUserPayload().position()];
+    dmEvent.getUserPayload().slice().get(res);
+    assertTrue(Arrays.equals("bytes".getBytes(), res));
   }
 
   private LinkedHashMap<TezTaskID, Task> mockTasks(TezVertexID vertexID, int numTasks) {
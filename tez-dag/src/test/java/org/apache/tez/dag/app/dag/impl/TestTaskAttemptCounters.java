@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.tez.common.counters.FileSystemCounter;
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.runtime.api.impl.CountersUpdate;
+import org.apache.tez.runtime.api.impl.CountersUpdateEncoder;
+import org.junit.Test;
+
+public class TestTaskAttemptCounters {
+
+  @Test(timeout = 5000)
+  public void testUpdates() throws IOException {
+    CountersUpdateEncoder encoder = new CountersUpdateEncoder();
+    TaskAttemptCounters attemptCounters = new TaskAttemptCounters();
+    assertTrue(attemptCounters.isEmpty());
+
+    TezCounters counters = new TezCounters();
+    counters.findCounter(TaskCounter.INPUT_RECORDS_PROCESSED).increment(10);
+    counters.findCounter("hdfs", FileSystemCounter.BYTES_READ).increment(100);
+    counters.findCounter("group1", "counter1").increment(1);
+    counters.findCounter("group1", "counter2").increment(2);
+
+    CountersUpdate update = writeAndRead(encoder.encode(counters, false));
+    assertFalse(update.isFull());
+    assertEquals(4, update.getNewGroupNames().length);
+    assertEquals(4, update.getIds().length);
+    attemptCounters.update(update);
+    assertFalse(attemptCounters.isEmpty());
+    assertEquals(counters, attemptCounters.toTezCounters());
+
+    // only changed counters are sent, without their names
+    counters.findCounter("group1", "counter2").increment(3);
+    update = writeAndRead(encoder.encode(counters, false));
+    assertEquals(0, update.getNewGroupNames().length);
+    assertEquals(1, update.getIds().length);
+    attemptCounters.update(update);
+    assertEquals(counters, attemptCounters.toTezCounters());
+
+    // new counters are defined in the update in which they first appear
+    counters.findCounter("group2", "counter1").increment(4);
+    update = writeAndRead(encoder.encode(counters, false));
+    assertEquals(4, update.getFirstNewId());
+    assertEquals(1, update.getNewGroupNames().length);
+    assertEquals(1, update.getIds().length);
+    attemptCounters.update(update);
+    assertEquals(counters, attemptCounters.toTezCounters());
+
+    // nothing changed
+    update = writeAndRead(encoder.encode(counters, false));
+    assertEquals(0, update.getIds().length);
+    attemptCounters.update(update);
+    assertEquals(counters, attemptCounters.toTezCounters());
+
+    update = writeAndRead(encoder.encode(counters, true));
+    assertTrue(update.isFull());
+    assertEquals(5, update.getNewGroupNames().length);
+    assertEquals(5, update.getIds().length);
+    TaskAttemptCounters newAttemptCounters = new TaskAttemptCounters();
+    newAttemptCounters.update(update);
+    assertEquals(counters, newAttemptCounters.toTezCounters());
+  }
+
+  @Test(timeout = 5000)
+  public void testMissedDefinition() {
+    CountersUpdateEncoder encoder = new CountersUpdateEncoder();
+    TaskAttemptCounters attemptCounters = new TaskAttemptCounters();
+
+    TezCounters counters = new TezCounters();
+    counters.findCounter("group", "counter1").increment(1);
+    // first update is lost
+    encoder.encode(counters, false);
+
+    counters.findCounter("group", "counter1").increment(1);
+    counters.findCounter("group", "counter2").increment(5);
+    attemptCounters.update(encoder.encode(counters, false));
+    TezCounters expected = new TezCounters();
+    expected.findCounter("group", "counter2").increment(5);
+    assertEquals(expected, attemptCounters.toTezCounters());
+
+    // a full update restores all counters
+    attemptCounters.update(encoder.encode(counters, true));
+    assertEquals(counters, attemptCounters.toTezCounters());
+  }
+
+  private CountersUpdate writeAndRead(CountersUpdate update) throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    update.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    CountersUpdate readUpdate = new CountersUpdate();
+    readUpdate.readFields(in);
+    return readUpdate;
+  }
+}
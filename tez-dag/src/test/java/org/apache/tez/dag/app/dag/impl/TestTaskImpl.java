@@ -74,6 +74,8 @@ import org.apache.tez.runtime.api.impl.TezEvent;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class TestTaskImpl {
 
@@ -286,12 +288,14 @@ public class TestTaskImpl {
     TezTaskID taskId = getNewTaskID();
     scheduleTaskAttempt(taskId);
     launchTaskAttempt(mockTask.getLastAttempt().getID());
+    verify(mockTask.getVertex(), times(1)).incrementRunningTaskCount();
     killTask(taskId);
     mockTask.handle(new TaskEventTAUpdate(mockTask.getLastAttempt().getID(),
         TaskEventType.T_ATTEMPT_KILLED));
 
     assertEquals(TaskStateInternal.KILLED, mockTask.getInternalState());
     verifyOutgoingEvents(eventHandler.events, VertexEventType.V_TASK_COMPLETED);
+    verify(mockTask.getVertex(), times(1)).decrementRunningTaskCount();
   }
 
   @Test(timeout = 5000)
@@ -399,6 +403,130 @@ public class TestTaskImpl {
     assertEquals(6, fetchedList.size());
   }
 
+  @Test(timeout = 5000)
+  public void testEventIdsStableWithOnDemandRouting() {
+    List<TezEvent> edgeEvents = new ArrayList<TezEvent>();
+    Map<Vertex, Edge> inputVertices = new HashMap<Vertex, Edge>();
+    inputVertices.put(mock(Vertex.class), mockOnDemandRoutingEdge(edgeEvents));
+    when(mockTask.getVertex().getInputVertices()).thenReturn(inputVertices);
+    TezTaskID taskId = getNewTaskID();
+    scheduleTaskAttempt(taskId);
+    TezTaskAttemptID firstAttemptID = mockTask.getLastAttempt().getID();
+    launchTaskAttempt(firstAttemptID);
+
+    TezEvent preRouted0 = createTezEvent(0);
+    mockTask.registerTezEvent(preRouted0);
+    edgeEvents.add(createTezEvent(1));
+    edgeEvents.add(createTezEvent(2));
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(firstAttemptID, 0, 100),
+        preRouted0, edgeEvents.get(0), edgeEvents.get(1));
+
+    // Events routed up front and on demand after the first events were sent
+    TezEvent preRouted1 = createTezEvent(3);
+    mockTask.registerTezEvent(preRouted1);
+    edgeEvents.add(createTezEvent(4));
+
+    // Events which were already sent keep their ids when requested again
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(firstAttemptID, 0, 100),
+        preRouted0, edgeEvents.get(0), edgeEvents.get(1), preRouted1, edgeEvents.get(2));
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(firstAttemptID, 1, 2),
+        edgeEvents.get(0), edgeEvents.get(1));
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(firstAttemptID, 3, 100),
+        preRouted1, edgeEvents.get(2));
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(firstAttemptID, 5, 100));
+
+    // The next attempt gets the events in the same order, followed by new events
+    failRunningTaskAttempt(firstAttemptID);
+    TezTaskAttemptID secondAttemptID = mockTask.getLastAttempt().getID();
+    Assert.assertFalse(firstAttemptID.equals(secondAttemptID));
+    TezEvent preRouted2 = createTezEvent(5);
+    mockTask.registerTezEvent(preRouted2);
+    edgeEvents.add(createTezEvent(6));
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(secondAttemptID, 0, 2),
+        preRouted0, edgeEvents.get(0));
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(secondAttemptID, 2, 100),
+        edgeEvents.get(1), preRouted1, edgeEvents.get(2), preRouted2, edgeEvents.get(3));
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(secondAttemptID, 4, 2),
+        edgeEvents.get(2), preRouted2);
+  }
+
+  @Test(timeout = 5000)
+  public void testEventIdsStableAfterOnDemandEventsRerouted() {
+    List<TezEvent> edgeEvents = new ArrayList<TezEvent>();
+    Edge edge = mockOnDemandRoutingEdge(edgeEvents);
+    Map<Vertex, Edge> inputVertices = new HashMap<Vertex, Edge>();
+    inputVertices.put(mock(Vertex.class), edge);
+    when(mockTask.getVertex().getInputVertices()).thenReturn(inputVertices);
+    TezTaskID taskId = getNewTaskID();
+    scheduleTaskAttempt(taskId);
+    TezTaskAttemptID firstAttemptID = mockTask.getLastAttempt().getID();
+    launchTaskAttempt(firstAttemptID);
+
+    TezEvent preRouted0 = createTezEvent(0);
+    mockTask.registerTezEvent(preRouted0);
+    TezEvent edgeEvent0 = createTezEvent(1);
+    TezEvent edgeEvent1 = createTezEvent(2);
+    edgeEvents.add(edgeEvent0);
+    edgeEvents.add(edgeEvent1);
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(firstAttemptID, 0, 100),
+        preRouted0, edgeEvent0, edgeEvent1);
+
+    // The edge manager changes, and the edge routes its stored events to the task up front
+    mockTask.copyOnDemandRoutedEvents(edge);
+    when(edge.isOnDemandRouting()).thenReturn(false);
+    edgeEvents.clear();
+    TezEvent rerouted = createTezEvent(3);
+    mockTask.registerTezEvent(rerouted);
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(firstAttemptID, 3, 100), rerouted);
+
+    // The next attempt plays back the events sent before the edge manager changed
+    failRunningTaskAttempt(firstAttemptID);
+    TezTaskAttemptID secondAttemptID = mockTask.getLastAttempt().getID();
+    Assert.assertFalse(firstAttemptID.equals(secondAttemptID));
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(secondAttemptID, 0, 100),
+        preRouted0, edgeEvent0, edgeEvent1, rerouted);
+    assertEventsSame(mockTask.getTaskAttemptTezEvents(secondAttemptID, 1, 2),
+        edgeEvent0, edgeEvent1);
+  }
+
+  private TezEvent createTezEvent(int sourceIndex) {
+    return new TezEvent(DataMovementEvent.create(sourceIndex, null), new EventMetaData());
+  }
+
+  private void assertEventsSame(List<TezEvent> events, TezEvent... expectedEvents) {
+    assertEquals(expectedEvents.length, events.size());
+    for (int i = 0; i < expectedEvents.length; i++) {
+      Assert.assertSame(expectedEvents[i], events.get(i));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Edge mockOnDemandRoutingEdge(final List<TezEvent> edgeEvents) {
+    Edge edge = mock(Edge.class);
+    when(edge.isOnDemandRouting()).thenReturn(true);
+    // Routes every event of the edge to the task
+    Answer<Integer> routeEvents = new Answer<Integer>() {
+      @Override
+      public Integer answer(InvocationOnMock invocation) {
+        Object[] args = invocation.getArguments();
+        int index = (Integer) args[1];
+        int toIndex = args.length == 5 ? (Integer) args[2] : Integer.MAX_VALUE;
+        int maxEvents = (Integer) args[args.length - 2];
+        List<TezEvent> events = (List<TezEvent>) args[args.length - 1];
+        for (int numAdded = 0; index < Math.min(toIndex, edgeEvents.size())
+            && numAdded < maxEvents; numAdded++) {
+          events.add(edgeEvents.get(index++));
+        }
+        return index;
+      }
+    };
+    when(edge.getOnDemandRoutedEvents(anyInt(), anyInt(), anyInt(), anyList()))
+        .thenAnswer(routeEvents);
+    when(edge.getOnDemandRoutedEvents(anyInt(), anyInt(), anyInt(), anyInt(), anyList()))
+        .thenAnswer(routeEvents);
+    return edge;
+  }
+
   @Test
   public void testTaskProgress() {
     LOG.info("--- START: testTaskProgress ---");
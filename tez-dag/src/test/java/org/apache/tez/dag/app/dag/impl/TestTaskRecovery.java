@@ -19,11 +19,14 @@
 package org.apache.tez.dag.app.dag.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
@@ -790,6 +793,66 @@ public class TestTaskRecovery {
     assertEquals(maxFailedAttempts + 1, task.getAttempts().size());
   }
 
+  /**
+   * Attempts may be missing from the recovery data, since a checkpoint leaves out the attempts
+   * of succeeded tasks. New attempts are numbered after the highest recovered attempt.
+   */
+  @Test(timeout = 5000)
+  public void testTaskRecovery_AttemptIdGap() {
+    restoreFromTaskStartEvent();
+    for (int id : new int[] {0, 2}) {
+      TezTaskAttemptID taId = TezTaskAttemptID.getInstance(task.getTaskId(), id);
+      task.restoreFromEvent(new TaskAttemptStartedEvent(taId, vertexName, 0L,
+          mock(ContainerId.class), mock(NodeId.class), "", "", ""));
+      task.restoreFromEvent(new TaskAttemptFinishedEvent(taId, vertexName, 0,
+          0, TaskAttemptState.KILLED, "", null));
+    }
+    assertEquals(2, task.getAttempts().size());
+
+    task.handle(new TaskEventRecoverTask(task.getTaskId()));
+    dispatcher.await();
+    assertEquals(TaskStateInternal.RUNNING, task.getInternalState());
+    task.handle(new TaskEvent(task.getTaskId(), TaskEventType.T_ADD_SPEC_ATTEMPT));
+    assertEquals(4, task.getAttempts().size());
+    assertNotNull(task.getAttempt(TezTaskAttemptID.getInstance(task.getTaskId(), 3)));
+    assertNotNull(task.getAttempt(TezTaskAttemptID.getInstance(task.getTaskId(), 4)));
+  }
+
+  /**
+   * The failed attempts left out of a checkpoint still count towards the max failed attempts.
+   */
+  @Test(timeout = 5000)
+  public void testTaskRecovery_CompactedAttempts() {
+    int maxFailedAttempts =
+        conf.getInt(TezConfiguration.TEZ_AM_TASK_MAX_FAILED_ATTEMPTS,
+            TezConfiguration.TEZ_AM_TASK_MAX_FAILED_ATTEMPTS_DEFAULT);
+    restoreFromTaskStartEvent();
+
+    // Checkpoint of the task, which succeeded after maxFailedAttempts - 1 failed attempts and
+    // a killed one
+    TezTaskAttemptID taId = TezTaskAttemptID.getInstance(task.getTaskId(), maxFailedAttempts);
+    task.restoreFromEvent(new TaskAttemptStartedEvent(taId, vertexName, 0L,
+        mock(ContainerId.class), mock(NodeId.class), "", "", ""));
+    task.restoreFromEvent(new TaskAttemptFinishedEvent(taId, vertexName, 0,
+        0, TaskAttemptState.SUCCEEDED, "", null));
+    TaskFinishedEvent taskFinishedEvent = new TaskFinishedEvent(task.getTaskId(), vertexName,
+        taskStartTime, taskFinishTime, taId, TaskState.SUCCEEDED, "", new TezCounters());
+    taskFinishedEvent.setCompactedAttempts(maxFailedAttempts - 1, 1, maxFailedAttempts + 1);
+    assertEquals(TaskState.SUCCEEDED, task.restoreFromEvent(taskFinishedEvent));
+    assertEquals(1, task.getAttempts().size());
+    assertEquals(maxFailedAttempts - 1, task.failedAttempts);
+    verify(vertex, times(maxFailedAttempts - 1)).incrementFailedTaskAttemptCount();
+    verify(vertex, times(1)).incrementKilledTaskAttemptCount();
+
+    // Output of the successful attempt lost after the checkpoint
+    task.restoreFromEvent(new TaskAttemptFinishedEvent(taId, vertexName, 0,
+        0, TaskAttemptState.FAILED, "", null));
+    assertEquals(maxFailedAttempts, task.failedAttempts);
+
+    task.handle(new TaskEventRecoverTask(task.getTaskId()));
+    assertEquals(TaskStateInternal.FAILED, task.getInternalState());
+  }
+
   private TezTaskAttemptID getNewTaskAttemptID(TezTaskID taskId) {
     return TezTaskAttemptID.getInstance(taskId, taskAttemptCounter++);
   }
@@ -38,6 +38,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -61,6 +62,7 @@ import org.apache.hadoop.yarn.event.DrainDispatcher;
 import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.hadoop.yarn.util.SystemClock;
+import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.DagTypeConverters;
 import org.apache.tez.dag.api.EdgeManagerPlugin;
 import org.apache.tez.dag.api.EdgeManagerPluginDescriptor;
@@ -106,6 +108,7 @@ import org.apache.tez.dag.app.dag.DAG;
 import org.apache.tez.dag.app.dag.RootInputInitializerManager;
 import org.apache.tez.dag.app.dag.StateChangeNotifier;
 import org.apache.tez.dag.app.dag.Task;
+import org.apache.tez.dag.app.dag.TaskAttempt;
 import org.apache.tez.dag.app.dag.TaskAttemptStateInternal;
 import org.apache.tez.dag.app.dag.Vertex;
 import org.apache.tez.dag.app.dag.VertexState;
@@ -114,6 +117,7 @@ import org.apache.tez.dag.app.dag.VertexTerminationCause;
 import org.apache.tez.dag.app.dag.event.DAGEvent;
 import org.apache.tez.dag.app.dag.event.DAGEventType;
 import org.apache.tez.dag.app.dag.event.TaskAttemptEvent;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEventOutputFailed;
 import org.apache.tez.dag.app.dag.event.TaskAttemptEventType;
 import org.apache.tez.dag.app.dag.event.TaskEvent;
 import org.apache.tez.dag.app.dag.event.TaskEventTAUpdate;
@@ -131,6 +135,7 @@ import org.apache.tez.dag.app.dag.impl.AMUserCodeException.Source;
 import org.apache.tez.dag.app.dag.impl.DAGImpl.VertexGroupInfo;
 import org.apache.tez.dag.app.dag.impl.TestVertexImpl.VertexManagerWithException.VMExceptionLocation;
 import org.apache.tez.dag.app.rm.TaskSchedulerEventHandler;
+import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.HistoryEventHandler;
 import org.apache.tez.dag.library.vertexmanager.InputReadyVertexManager;
 import org.apache.tez.dag.library.vertexmanager.ShuffleVertexManager;
@@ -150,6 +155,7 @@ import org.apache.tez.runtime.api.events.DataMovementEvent;
 import org.apache.tez.runtime.api.events.InputConfigureVertexTasksEvent;
 import org.apache.tez.runtime.api.events.InputDataInformationEvent;
 import org.apache.tez.runtime.api.events.InputInitializerEvent;
+import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 import org.apache.tez.runtime.api.events.InputUpdatePayloadEvent;
 import org.apache.tez.runtime.api.events.VertexManagerEvent;
 import org.apache.tez.test.EdgeManagerForTest;
@@ -2542,6 +2548,77 @@ public class TestVertexImpl {
     Assert.assertEquals(0, v3.pendingTaskEvents.size());
   }
 
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 10000)
+  public void testRoutingBetweenLockedVertices() throws Exception {
+    initAllVertices(VertexState.INITED);
+    final VertexImpl v2 = vertices.get("vertex2");
+    final VertexImpl v3 = vertices.get("vertex3");
+    TezTaskAttemptID ta0_t0_v2 = TezTaskAttemptID.getInstance(
+        TezTaskID.getInstance(v2.getVertexId(), 0), 0);
+    TezTaskAttemptID ta0_t0_v3 = TezTaskAttemptID.getInstance(
+        TezTaskID.getInstance(v3.getVertexId(), 0), 0);
+    List<TezEvent> dmEvents = Collections.singletonList(new TezEvent(
+        DataMovementEvent.create(0, ByteBuffer.wrap(new byte[0])),
+        new EventMetaData(EventProducerConsumerType.OUTPUT, "vertex2", "vertex3", ta0_t0_v2)));
+    List<TezEvent> readErrorEvents = Collections.singletonList(new TezEvent(
+        InputReadErrorEvent.create("", 0, 0),
+        new EventMetaData(EventProducerConsumerType.INPUT, "vertex3", "vertex2", ta0_t0_v3)));
+    // The read errors fail the output of the attempt of vertex2
+    TaskAttemptImpl attempt = mock(TaskAttemptImpl.class);
+    Task task = mock(Task.class);
+    doReturn(ta0_t0_v2.getTaskID()).when(task).getTaskId();
+    doReturn(attempt).when(task).getAttempt(ta0_t0_v2);
+    v2.addTask(task);
+
+    // Hold the lock of vertex2 while it routes a data movement event, by blocking in the
+    // recovery history of the event
+    final CountDownLatch lockHeld = new CountDownLatch(1);
+    final CountDownLatch releaseLock = new CountDownLatch(1);
+    doReturn(true).when(appContext).isRecoveryEnabled();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        lockHeld.countDown();
+        releaseLock.await();
+        return null;
+      }
+    }).when(historyEventHandler).handle(any(DAGHistoryEvent.class));
+    Thread sourceThread = startRouting(v2, dmEvents, 1);
+    lockHeld.await();
+
+    // Routing the read error of vertex3 to the task of vertex2 does not need the lock of vertex2
+    Thread destinationThread = startRouting(v3, readErrorEvents, 1);
+    destinationThread.join(5000);
+    Assert.assertFalse(destinationThread.isAlive());
+    releaseLock.countDown();
+    sourceThread.join();
+
+    // Both vertices routing to each other at the same time
+    doReturn(false).when(appContext).isRecoveryEnabled();
+    sourceThread = startRouting(v2, dmEvents, 100);
+    destinationThread = startRouting(v3, readErrorEvents, 100);
+    sourceThread.join();
+    destinationThread.join();
+    dispatcher.await();
+    Assert.assertEquals(101, v3.pendingTaskEvents.size());
+    verify(attempt, times(101)).handle(any(TaskAttemptEventOutputFailed.class));
+  }
+
+  private Thread startRouting(final VertexImpl vertex, final List<TezEvent> events,
+      final int numTimes) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < numTimes; i++) {
+          vertex.handle(new VertexEventRouteEvent(vertex.getVertexId(), events));
+        }
+      }
+    }, "Routing-" + vertex.getName());
+    thread.start();
+    return thread;
+  }
+
   @Test(timeout = 5000)
   public void testSetCustomEdgeManager() throws Exception {
     initAllVertices(VertexState.INITED);
@@ -2818,9 +2895,74 @@ public class TestVertexImpl {
     Assert.assertEquals(3, v6.getDistanceFromRoot());
   }
 
+  @SuppressWarnings("unchecked")
   @Test(timeout = 5000)
   public void testCounters() {
-    // FIXME need to test counters at vertex level
+    initAllVertices(VertexState.INITED);
+
+    VertexImpl v = vertices.get("vertex2");
+    startVertex(v);
+
+    TezTaskID t1 = TezTaskID.getInstance(v.getVertexId(), 0);
+    TezTaskID t2 = TezTaskID.getInstance(v.getVertexId(), 1);
+    Task task1 = createMockTask(t1, 1, 0f);
+    Task task2 = createMockTask(t2, 2, 0.5f);
+    v.addTask(task1);
+    v.addTask(task2);
+    v.addActiveTask(task1);
+    v.addActiveTask(task2);
+    Assert.assertEquals(3, getCounterValue(v.getAllCounters()));
+    Assert.assertEquals(0.25f, v.getProgress(), 0.001f);
+
+    // Reads use the status last reported by the task
+    TezCounters updatedCounters = new TezCounters();
+    updatedCounters.findCounter("group", "counter").increment(4);
+    doReturn(updatedCounters).when(task2).getCounters();
+    doReturn(0.8f).when(task2).getProgress();
+    Assert.assertEquals(3, getCounterValue(v.getAllCounters()));
+    v.updateActiveTask(t2);
+    Assert.assertEquals(5, getCounterValue(v.getAllCounters()));
+    Assert.assertEquals(0.4f, v.getProgress(), 0.001f);
+    verify(task1, times(1)).getCounters();
+
+    doReturn(true).when(task1).isFinished();
+    dispatcher.getEventHandler().handle(
+        new VertexEventTaskCompleted(t1, TaskState.SUCCEEDED));
+    dispatcher.await();
+    Assert.assertEquals(5, getCounterValue(v.getAllCounters()));
+    Assert.assertEquals(0.9f, v.getProgress(), 0.001f);
+
+    // counters of the completed task are removed, new attempt has no counters yet
+    doReturn(false).when(task1).isFinished();
+    doReturn(new TezCounters()).when(task1).getCounters();
+    dispatcher.getEventHandler().handle(new VertexEventTaskReschedule(t1));
+    dispatcher.await();
+    Assert.assertEquals(VertexState.RUNNING, v.getState());
+    Assert.assertEquals(4, getCounterValue(v.getAllCounters()));
+    Assert.assertEquals(0.4f, v.getProgress(), 0.001f);
+
+    // A status reported after the task completed is not summed
+    v.updateActiveTask(t1);
+    dispatcher.getEventHandler().handle(
+        new VertexEventTaskCompleted(t2, TaskState.SUCCEEDED));
+    dispatcher.await();
+    updatedCounters.findCounter("group", "counter").increment(3);
+    v.updateActiveTask(t2);
+    Assert.assertEquals(4, getCounterValue(v.getAllCounters()));
+  }
+
+  private Task createMockTask(TezTaskID taskId, long counterValue, float progress) {
+    Task task = mock(Task.class);
+    TezCounters counters = new TezCounters();
+    counters.findCounter("group", "counter").increment(counterValue);
+    doReturn(taskId).when(task).getTaskId();
+    doReturn(counters).when(task).getCounters();
+    doReturn(progress).when(task).getProgress();
+    return task;
+  }
+
+  private long getCounterValue(TezCounters counters) {
+    return counters.findCounter("group", "counter").getValue();
   }
 
   @Test(timeout = 5000)
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.dag.speculation.legacy;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.tez.common.counters.FileSystemCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.app.dag.DAG;
+import org.apache.tez.dag.app.dag.Task;
+import org.apache.tez.dag.app.dag.TaskAttempt;
+import org.apache.tez.dag.app.dag.Vertex;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDataAwareTaskRuntimeEstimator {
+
+  private static final long START = 1000;
+
+  private final NodeId node1 = NodeId.newInstance("host1", 0);
+  private final NodeId node2 = NodeId.newInstance("host2", 0);
+  private final NodeId node3 = NodeId.newInstance("host3", 0);
+
+  private TezVertexID vertexId;
+  private Vertex vertex;
+  private SpeculationTracker tracker;
+  private DataAwareTaskRuntimeEstimator estimator;
+  private int numTasks = 0;
+
+  @Before
+  public void setup() {
+    vertexId = TezVertexID.getInstance(
+        TezDAGID.getInstance(ApplicationId.newInstance(1, 1), 1), 1);
+    tracker = new SpeculationTracker(-1, 0.5f);
+    DAG dag = mock(DAG.class);
+    when(dag.getSpeculationTracker()).thenReturn(tracker);
+    vertex = mock(Vertex.class);
+    when(vertex.getDAG()).thenReturn(dag);
+    when(vertex.getVertexId()).thenReturn(vertexId);
+    when(vertex.getTotalTasks()).thenReturn(10);
+    estimator = new DataAwareTaskRuntimeEstimator();
+    estimator.contextualize(new Configuration(false), vertex);
+  }
+
+  @Test(timeout = 5000)
+  public void testSkewedInputNotSpeculated() {
+    completeAttempt(node1, 1000, 100);
+    completeAttempt(node2, 1000, 100);
+    when(vertex.getCompletedTasks()).thenReturn(2);
+
+    // Five times the input of the others, processed at the same throughput
+    TaskAttempt skewed = startAttempt(node1, 5000, 0.5f, 500);
+    Assert.assertEquals(Long.MAX_VALUE, estimator.thresholdRuntime(skewed.getID().getTaskID()));
+    Assert.assertEquals(1000, estimator.estimatedRuntime(skewed.getID()));
+    Assert.assertEquals(1000, estimator.newAttemptEstimatedRuntime(skewed.getID()));
+
+    // Same input as the others, processed at a tenth of their throughput
+    TaskAttempt slow = startAttempt(node2, 500, 0.5f, 500);
+    Assert.assertTrue(estimator.thresholdRuntime(slow.getID().getTaskID()) < Long.MAX_VALUE);
+    Assert.assertEquals(1000, estimator.estimatedRuntime(slow.getID()));
+    Assert.assertEquals(100, estimator.newAttemptEstimatedRuntime(slow.getID()));
+  }
+
+  @Test(timeout = 5000)
+  public void testSlowNode() {
+    completeAttempt(node1, 1000, 100);
+    completeAttempt(node1, 1000, 100);
+    completeAttempt(node2, 200, 100);
+    completeAttempt(node2, 200, 100);
+    // Somewhat slower than the others, but above the threshold
+    completeAttempt(node3, 500, 100);
+    completeAttempt(node3, 500, 100);
+    Assert.assertFalse(tracker.isSlowNode(node1));
+    Assert.assertTrue(tracker.isSlowNode(node2));
+    Assert.assertTrue(tracker.getRelativeThroughput(node3) < 1.0);
+    Assert.assertFalse(tracker.isSlowNode(node3));
+
+    // Attempts which did not report progress yet are expected to take the mean runtime,
+    // adjusted by the throughput of their node if it is slow
+    TaskAttempt onFastNode = startAttempt(node1, 0, 0.0f, 10);
+    TaskAttempt onSlowNode = startAttempt(node2, 0, 0.0f, 10);
+    TaskAttempt onSlowerNode = startAttempt(node3, 0, 0.0f, 10);
+    Assert.assertEquals(100, estimator.estimatedRuntime(onFastNode.getID()));
+    Assert.assertTrue(estimator.estimatedRuntime(onSlowNode.getID()) > 400);
+    Assert.assertEquals(100, estimator.estimatedRuntime(onSlowerNode.getID()));
+  }
+
+  @Test(timeout = 5000)
+  public void testSpeculationLimit() {
+    TezVertexID otherVertexId = TezVertexID.getInstance(vertexId.getDAGId(), 2);
+    SpeculationTracker limitedTracker = new SpeculationTracker(2, 0.5f);
+    limitedTracker.setRunningSpeculations(vertexId, 1);
+    Assert.assertTrue(limitedTracker.tryScheduleSpeculation(otherVertexId));
+    Assert.assertEquals(2, limitedTracker.getTotalSpeculations());
+    Assert.assertFalse(limitedTracker.tryScheduleSpeculation(vertexId));
+    Assert.assertEquals(2, limitedTracker.getTotalSpeculations());
+    // The speculation of the other vertex finished
+    limitedTracker.setRunningSpeculations(otherVertexId, 0);
+    Assert.assertEquals(1, limitedTracker.getTotalSpeculations());
+    Assert.assertTrue(limitedTracker.tryScheduleSpeculation(vertexId));
+    Assert.assertEquals(2, limitedTracker.getTotalSpeculations());
+  }
+
+  private TaskAttempt startAttempt(NodeId nodeId, long bytesRead, float progress, long elapsed) {
+    TezTaskID taskId = TezTaskID.getInstance(vertexId, numTasks++);
+    TezTaskAttemptID attemptId = TezTaskAttemptID.getInstance(taskId, 0);
+    TaskAttempt attempt = mock(TaskAttempt.class);
+    when(attempt.getID()).thenReturn(attemptId);
+    when(attempt.getNodeId()).thenReturn(nodeId);
+    Task task = mock(Task.class);
+    Map<TezTaskAttemptID, TaskAttempt> attempts = new HashMap<TezTaskAttemptID, TaskAttempt>();
+    attempts.put(attemptId, attempt);
+    when(task.getAttempts()).thenReturn(attempts);
+    when(task.getAttempt(attemptId)).thenReturn(attempt);
+    when(vertex.getTask(taskId)).thenReturn(task);
+
+    estimator.enrollAttempt(attemptId, START);
+    updateAttempt(attempt, TaskAttemptState.RUNNING, bytesRead, progress, START + elapsed);
+    return attempt;
+  }
+
+  private void completeAttempt(NodeId nodeId, long bytesRead, long duration) {
+    TaskAttempt attempt = startAttempt(nodeId, bytesRead / 2, 0.5f, duration / 2);
+    updateAttempt(attempt, TaskAttemptState.SUCCEEDED, bytesRead, 1.0f, START + duration);
+  }
+
+  private void updateAttempt(TaskAttempt attempt, TaskAttemptState state, long bytesRead,
+      float progress, long timestamp) {
+    TezCounters counters = new TezCounters();
+    if (bytesRead > 0) {
+      counters.findCounter("hdfs", FileSystemCounter.BYTES_READ).setValue(bytesRead);
+    }
+    when(attempt.getState()).thenReturn(state);
+    when(attempt.getCounters()).thenReturn(counters);
+    when(attempt.getProgress()).thenReturn(progress);
+    estimator.updateAttempt(attempt.getID(), state, timestamp);
+  }
+}
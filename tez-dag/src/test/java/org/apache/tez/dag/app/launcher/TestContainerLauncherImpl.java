@@ -0,0 +1,313 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.launcher;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.ContainerManagementProtocol;
+import org.apache.hadoop.yarn.api.protocolrecords.StartContainersRequest;
+import org.apache.hadoop.yarn.api.protocolrecords.StartContainersResponse;
+import org.apache.hadoop.yarn.api.protocolrecords.StopContainersRequest;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.Priority;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.api.records.SerializedException;
+import org.apache.hadoop.yarn.api.records.Token;
+import org.apache.hadoop.yarn.client.api.impl.ContainerManagementProtocolProxy.ContainerManagementProtocolProxyData;
+import org.apache.hadoop.yarn.event.Event;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.hadoop.yarn.util.SystemClock;
+import org.apache.tez.common.counters.DAGCounter;
+import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.app.dag.event.DAGEventCounterUpdate;
+import org.apache.tez.dag.app.rm.NMCommunicatorLaunchRequestEvent;
+import org.apache.tez.dag.app.rm.NMCommunicatorStopRequestEvent;
+import org.apache.tez.dag.app.rm.container.AMContainerEvent;
+import org.apache.tez.dag.app.rm.container.AMContainerEventType;
+import org.apache.tez.dag.app.rm.node.AMNodeTracker;
+import org.apache.tez.dag.history.HistoryEventHandler;
+import org.apache.tez.dag.records.TezDAGID;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestContainerLauncherImpl {
+
+  private static final ApplicationAttemptId appAttemptId =
+      ApplicationAttemptId.newInstance(ApplicationId.newInstance(1, 1), 1);
+
+  private EventHandler eventHandler;
+  private AppContext appContext;
+  private Map<String, ContainerManagementProtocol> protocols;
+  private ContainerLauncherImpl launcher;
+
+  @Before
+  public void setup() {
+    eventHandler = mock(EventHandler.class);
+    AMNodeTracker nodeTracker = mock(AMNodeTracker.class);
+    when(nodeTracker.getNumNodes()).thenReturn(2);
+    appContext = mock(AppContext.class);
+    when(appContext.getEventHandler()).thenReturn(eventHandler);
+    when(appContext.getHistoryHandler()).thenReturn(mock(HistoryEventHandler.class));
+    when(appContext.getClock()).thenReturn(new SystemClock());
+    when(appContext.getApplicationAttemptId()).thenReturn(appAttemptId);
+    when(appContext.getNodeTracker()).thenReturn(nodeTracker);
+    protocols = new HashMap<String, ContainerManagementProtocol>();
+    launcher = new ContainerLauncherImplForTest(appContext);
+    launcher.init(new Configuration(false));
+  }
+
+  @After
+  public void cleanup() {
+    launcher.stop();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 5000)
+  public void testOneRequestPerNode() throws Exception {
+    ContainerManagementProtocol protocol1 = createProtocol("host1:0");
+    ContainerManagementProtocol protocol2 = createProtocol("host2:0");
+    doReturn(createResponse(null)).when(protocol1).startContainers(
+        any(StartContainersRequest.class));
+    doReturn(createResponse(null)).when(protocol2).startContainers(
+        any(StartContainersRequest.class));
+
+    // Queued before the launcher starts, so that they are handled together
+    List<Container> containers = new ArrayList<Container>();
+    for (int i = 0; i < 4; ++i) {
+      Container container = createContainer(i, i % 2 == 0 ? "host1" : "host2");
+      containers.add(container);
+      launcher.handle(new NMCommunicatorLaunchRequestEvent(
+          mock(ContainerLaunchContext.class), container));
+    }
+    launcher.start();
+
+    verify(protocol1, timeout(5000)).startContainers(
+        argThat(new StartRequestCountMatcher(2)));
+    verify(protocol2, timeout(5000)).startContainers(
+        argThat(new StartRequestCountMatcher(2)));
+    for (Container container : containers) {
+      verify(eventHandler, timeout(5000)).handle(
+          argThat(new ContainerEventMatcher(container.getId(),
+              AMContainerEventType.C_LAUNCHED)));
+    }
+    verify(protocol1, times(1)).startContainers(any(StartContainersRequest.class));
+    verify(protocol2, times(1)).startContainers(any(StartContainersRequest.class));
+    // One latency sample per request sent to a node
+    Assert.assertEquals(2, launcher.getLaunchLatencies().getCount());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 5000)
+  public void testPartialLaunchFailure() throws Exception {
+    TezDAGID dagId = TezDAGID.getInstance(appAttemptId.getApplicationId(), 1);
+    when(appContext.getCurrentDAGID()).thenReturn(dagId);
+    launcher.start();
+    Container container1 = createContainer(1, "host1");
+    Container container2 = createContainer(2, "host1");
+    ContainerManagementProtocol protocol = createProtocol("host1:0");
+    doReturn(createResponse(container2.getId())).when(protocol).startContainers(
+        any(StartContainersRequest.class));
+
+    List<NMCommunicatorLaunchRequestEvent> events =
+        new ArrayList<NMCommunicatorLaunchRequestEvent>();
+    events.add(new NMCommunicatorLaunchRequestEvent(
+        mock(ContainerLaunchContext.class), container1));
+    events.add(new NMCommunicatorLaunchRequestEvent(
+        mock(ContainerLaunchContext.class), container2));
+    launcher.createLaunchProcessor(events).run();
+
+    verify(protocol, times(1)).startContainers(any(StartContainersRequest.class));
+    verify(eventHandler).handle(argThat(new ContainerEventMatcher(container1.getId(),
+        AMContainerEventType.C_LAUNCHED)));
+    verify(eventHandler, never()).handle(argThat(new ContainerEventMatcher(
+        container1.getId(), AMContainerEventType.C_LAUNCH_FAILED)));
+    verify(eventHandler).handle(argThat(new ContainerEventMatcher(container2.getId(),
+        AMContainerEventType.C_LAUNCH_FAILED)));
+    verify(eventHandler, never()).handle(argThat(new ContainerEventMatcher(
+        container2.getId(), AMContainerEventType.C_LAUNCHED)));
+    Assert.assertEquals(1, launcher.getLaunchLatencies().getCount());
+
+    ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
+    verify(eventHandler, atLeastOnce()).handle(eventCaptor.capture());
+    List<DAGEventCounterUpdate> counterUpdates = new ArrayList<DAGEventCounterUpdate>();
+    for (Event event : eventCaptor.getAllValues()) {
+      if (event instanceof DAGEventCounterUpdate) {
+        counterUpdates.add((DAGEventCounterUpdate) event);
+      }
+    }
+    Assert.assertEquals(1, counterUpdates.size());
+    Assert.assertEquals(dagId, counterUpdates.get(0).getDAGId());
+    Assert.assertEquals(DAGCounter.NUM_CONTAINER_LAUNCH_REQUESTS,
+        counterUpdates.get(0).getCounterUpdates().get(0).getCounterKey());
+    Assert.assertEquals(1,
+        counterUpdates.get(0).getCounterUpdates().get(0).getIncrementValue());
+    Assert.assertEquals(DAGCounter.CONTAINER_LAUNCH_MILLIS,
+        counterUpdates.get(0).getCounterUpdates().get(1).getCounterKey());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 5000)
+  public void testStopDuringLaunch() throws Exception {
+    launcher.start();
+    final Container container = createContainer(1, "host1");
+    ContainerManagementProtocol protocol = createProtocol("host1:0");
+    final CountDownLatch launchStarted = new CountDownLatch(1);
+    final CountDownLatch launchResponse = new CountDownLatch(1);
+    when(protocol.startContainers(any(StartContainersRequest.class))).thenAnswer(
+        new Answer<StartContainersResponse>() {
+          @Override
+          public StartContainersResponse answer(InvocationOnMock invocation)
+              throws Throwable {
+            launchStarted.countDown();
+            launchResponse.await();
+            return createResponse(null);
+          }
+        });
+
+    Thread launchThread = new Thread(launcher.createLaunchProcessor(
+        Collections.singletonList(new NMCommunicatorLaunchRequestEvent(
+            mock(ContainerLaunchContext.class), container))));
+    launchThread.start();
+    launchStarted.await();
+
+    Thread stopThread = new Thread(launcher.createEventProcessor(
+        new NMCommunicatorStopRequestEvent(container.getId(), container.getNodeId(),
+            container.getContainerToken())));
+    stopThread.start();
+    // The stop waits for the NM to respond to the launch
+    while (stopThread.getState() != Thread.State.WAITING) {
+      Thread.sleep(10);
+    }
+    verify(protocol, never()).stopContainers(any(StopContainersRequest.class));
+
+    launchResponse.countDown();
+    launchThread.join();
+    stopThread.join();
+    verify(protocol, times(1)).stopContainers(any(StopContainersRequest.class));
+    InOrder inOrder = inOrder(eventHandler);
+    inOrder.verify(eventHandler).handle(argThat(new ContainerEventMatcher(
+        container.getId(), AMContainerEventType.C_LAUNCHED)));
+    inOrder.verify(eventHandler).handle(argThat(new ContainerEventMatcher(
+        container.getId(), AMContainerEventType.C_NM_STOP_SENT)));
+  }
+
+  private ContainerManagementProtocol createProtocol(String nodeAddress) {
+    ContainerManagementProtocol protocol = mock(ContainerManagementProtocol.class);
+    protocols.put(nodeAddress, protocol);
+    return protocol;
+  }
+
+  private Container createContainer(int id, String host) {
+    return Container.newInstance(ContainerId.newInstance(appAttemptId, id),
+        NodeId.newInstance(host, 0), host + ":0", Resource.newInstance(1024, 1),
+        Priority.newInstance(1), null);
+  }
+
+  private static StartContainersResponse createResponse(ContainerId failedContainerId) {
+    Map<ContainerId, SerializedException> failedRequests =
+        new HashMap<ContainerId, SerializedException>();
+    if (failedContainerId != null) {
+      failedRequests.put(failedContainerId,
+          SerializedException.newInstance(new IOException("Launch failed")));
+    }
+    return StartContainersResponse.newInstance(null,
+        new ArrayList<ContainerId>(), failedRequests);
+  }
+
+  private class ContainerLauncherImplForTest extends ContainerLauncherImpl {
+
+    ContainerLauncherImplForTest(AppContext context) {
+      super(context);
+    }
+
+    @Override
+    protected ContainerManagementProtocolProxyData getCMProxy(ContainerId containerID,
+        String containerManagerBindAddr, Token containerToken) throws IOException {
+      ContainerManagementProtocolProxyData proxy =
+          mock(ContainerManagementProtocolProxyData.class);
+      when(proxy.getContainerManagementProtocol()).thenReturn(
+          protocols.get(containerManagerBindAddr));
+      return proxy;
+    }
+  }
+
+  private static class StartRequestCountMatcher extends ArgumentMatcher<StartContainersRequest> {
+    private final int numRequests;
+
+    StartRequestCountMatcher(int numRequests) {
+      this.numRequests = numRequests;
+    }
+
+    @Override
+    public boolean matches(Object argument) {
+      return ((StartContainersRequest) argument).getStartContainerRequests().size()
+          == numRequests;
+    }
+  }
+
+  private static class ContainerEventMatcher extends ArgumentMatcher<Event> {
+    private final ContainerId containerId;
+    private final AMContainerEventType type;
+
+    ContainerEventMatcher(ContainerId containerId, AMContainerEventType type) {
+      this.containerId = containerId;
+      this.type = type;
+    }
+
+    @Override
+    public boolean matches(Object argument) {
+      if (!(argument instanceof AMContainerEvent)) {
+        return false;
+      }
+      AMContainerEvent event = (AMContainerEvent) argument;
+      return event.getContainerId().equals(containerId) && event.getType() == type;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.rm;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import org.apache.tez.dag.app.rm.container.ContainerSignatureMatcher;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestSessionContainerPoolSizer {
+
+  private static final long WINDOW = 10000;
+
+  private SessionContainerPoolSizer sizer;
+
+  @Before
+  public void setup() {
+    ContainerSignatureMatcher matcher = mock(ContainerSignatureMatcher.class);
+    when(matcher.isExactMatch(any(), any())).thenAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) {
+        Object[] args = invocation.getArguments();
+        return args[0].equals(args[1]);
+      }
+    });
+    sizer = new SessionContainerPoolSizer(matcher, 10, WINDOW);
+  }
+
+  @Test(timeout = 5000)
+  public void testTargetsFollowDemand() {
+    Assert.assertTrue(sizer.getTargets(0).isEmpty());
+
+    runDAG(0, 1000, 4, 2);
+    Map<Object, Integer> targets = sizer.getTargets(1000);
+    Assert.assertEquals(2, targets.size());
+    Assert.assertEquals(4, targets.get("sigA").intValue());
+    Assert.assertEquals(2, targets.get("sigB").intValue());
+
+    // Smaller DAG, the prediction moves half way
+    runDAG(2000, 3000, 2, 0);
+    targets = sizer.getTargets(3000);
+    Assert.assertEquals(3, targets.get("sigA").intValue());
+    Assert.assertEquals(1, targets.get("sigB").intValue());
+  }
+
+  @Test(timeout = 5000)
+  public void testTargetsFollowArrivalRate() {
+    // DAGs arrive every 40 seconds, a quarter of them within the window
+    runDAG(0, 1000, 8, 0);
+    runDAG(40000, 41000, 8, 0);
+    Assert.assertEquals(0.25, sizer.getExpectedArrivals(41000), 0.001);
+    Assert.assertEquals(2, sizer.getTargets(41000).get("sigA").intValue());
+
+    // Idle for longer than the window
+    Assert.assertTrue(sizer.getTargets(41000 + WINDOW + 1).isEmpty());
+  }
+
+  @Test(timeout = 5000)
+  public void testTargetsCapped() {
+    runDAG(0, 1000, 15, 5);
+    Map<Object, Integer> targets = sizer.getTargets(1000);
+    int total = 0;
+    for (Integer target : targets.values()) {
+      total += target;
+    }
+    Assert.assertEquals(10, total);
+    Assert.assertTrue(targets.get("sigA") > targets.get("sigB"));
+  }
+
+  private void runDAG(long start, long end, int numA, int numB) {
+    for (int i = 0; i < numA; i++) {
+      sizer.containerAssigned("sigA", start);
+    }
+    for (int i = 0; i < numB; i++) {
+      sizer.containerAssigned("sigB", start);
+    }
+    for (int i = 0; i < numA; i++) {
+      sizer.containerUnassigned("sigA");
+    }
+    for (int i = 0; i < numB; i++) {
+      sizer.containerUnassigned("sigB");
+    }
+    sizer.dagCompleted(end);
+  }
+}
@@ -1653,6 +1653,52 @@ public class TestTaskScheduler {
     Assert.assertEquals(1, YarnTaskSchedulerService.scaleDownByPreemptionPercentage(1, 1));
   }
 
+  @SuppressWarnings("unchecked")
+  @Test (timeout=5000)
+  public void testTaskRequestIndexes() throws Exception {
+    TaskSchedulerAppCallback appClient = mock(TaskSchedulerAppCallback.class);
+    TezAMRMClientAsync<CookieContainerRequest> amrmClient =
+      mock(TezAMRMClientAsync.class);
+    AppContext mockAppContext = mock(AppContext.class);
+    when(mockAppContext.getAMState()).thenReturn(DAGAppMasterState.RUNNING);
+
+    TaskSchedulerWithDrainableAppCallback taskScheduler =
+      new TaskSchedulerWithDrainableAppCallback(
+        appClient, new AlwaysMatchesContainerMatcher(), "host", 0, "",
+        amrmClient, mockAppContext);
+    Configuration conf = new Configuration();
+    conf.setBoolean(TezConfiguration.TEZ_AM_CONTAINER_REUSE_ENABLED, false);
+    taskScheduler.init(conf);
+
+    Resource resource = Resource.newInstance(1024, 1);
+    Priority pri2 = Priority.newInstance(2);
+    Priority pri4 = Priority.newInstance(4);
+    ContainerId containerId = createContainer(1, "host1", resource, pri2).getId();
+    Object task1 = new Object();
+    Object task2 = new Object();
+    Object task3 = new Object();
+    taskScheduler.allocateTask(task1, resource, null, null, pri4, null, new Object());
+    taskScheduler.allocateTask(task2, resource, containerId, pri2, null, new Object());
+    taskScheduler.allocateTask(task3, resource, null, null, pri2, null, new Object());
+
+    // highest priority first
+    Assert.assertEquals(pri2, taskScheduler.taskRequestsByPriority.firstKey());
+    Assert.assertEquals(2, taskScheduler.taskRequestsByPriority.firstEntry().getValue().size());
+    Assert.assertEquals(2, taskScheduler.taskRequestsByPriority.size());
+    Assert.assertEquals(1, taskScheduler.affinitizedTaskRequests.get(containerId).size());
+    Assert.assertEquals(taskScheduler.taskRequests.get(task2),
+        taskScheduler.affinitizedTaskRequests.get(containerId).iterator().next());
+
+    Assert.assertFalse(taskScheduler.deallocateTask(task2, true));
+    Assert.assertFalse(taskScheduler.affinitizedTaskRequests.containsKey(containerId));
+    Assert.assertFalse(taskScheduler.deallocateTask(task3, true));
+    Assert.assertEquals(pri4, taskScheduler.taskRequestsByPriority.firstKey());
+    Assert.assertEquals(1, taskScheduler.taskRequestsByPriority.size());
+    Assert.assertFalse(taskScheduler.deallocateTask(task1, true));
+    Assert.assertTrue(taskScheduler.taskRequestsByPriority.isEmpty());
+    Assert.assertTrue(taskScheduler.taskRequests.isEmpty());
+  }
+
   private Container createContainer(int id, String host, Resource resource,
       Priority priority) {
     ContainerId containerID = ContainerId.newInstance(
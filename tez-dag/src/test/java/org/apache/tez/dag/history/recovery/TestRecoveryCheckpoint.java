@@ -0,0 +1,313 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.recovery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.api.oldrecords.TaskState;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRecoveryCheckpoint {
+
+  private static final ApplicationId appId = ApplicationId.newInstance(1, 1);
+  private static final TezVertexID vertexId =
+      TezVertexID.getInstance(TezDAGID.getInstance(appId, 1), 1);
+  private static final TezTaskID task0 = TezTaskID.getInstance(vertexId, 0);
+  private static final TezTaskID task1 = TezTaskID.getInstance(vertexId, 1);
+
+  private FileSystem localFs;
+  private Path workDir;
+  private Path dagFilePath;
+  private Path checkpointPath;
+
+  @Before
+  public void setup() throws IOException {
+    Configuration conf = new Configuration(false);
+    conf.set("fs.defaultFS", "file:///");
+    // Flushed data is readable before the file is closed, as on HDFS
+    localFs = FileSystem.getLocal(conf).getRawFileSystem();
+    workDir = new Path(new Path(System.getProperty("test.build.data", "/tmp")),
+        "TestRecoveryCheckpoint").makeQualified(localFs);
+    localFs.delete(workDir, true);
+    dagFilePath = new Path(workDir, "dag.recovery");
+    checkpointPath = new Path(workDir, "dag.checkpoint");
+  }
+
+  @After
+  public void cleanup() throws IOException {
+    localFs.delete(workDir, true);
+  }
+
+  @Test(timeout = 5000)
+  public void testCheckpointAndTail() throws IOException {
+    FSDataOutputStream outputStream = localFs.create(dagFilePath, false, 4096);
+    RecoveryFrames.Writer frameWriter = new RecoveryFrames.Writer();
+    frameWriter.append(new TaskStartedEvent(task0, "v1", 0, 0));
+    frameWriter.append(createAttemptStarted(task0, 0));
+    frameWriter.append(createAttemptFinished(task0, 0, TaskAttemptState.FAILED));
+    frameWriter.append(createAttemptStarted(task0, 1));
+    frameWriter.append(createAttemptFinished(task0, 1, TaskAttemptState.SUCCEEDED));
+    frameWriter.append(new TaskFinishedEvent(task0, "v1", 0, 0,
+        TezTaskAttemptID.getInstance(task0, 1), TaskState.SUCCEEDED, null, null));
+    frameWriter.append(new TaskStartedEvent(task1, "v1", 0, 0));
+    frameWriter.append(createAttemptStarted(task1, 0));
+    frameWriter.writeFrame(outputStream);
+    outputStream.hflush();
+    long checkpointedLength = outputStream.getPos();
+    frameWriter.append(createAttemptFinished(task1, 0, TaskAttemptState.KILLED));
+    frameWriter.append(createAttemptStarted(task1, 1));
+    frameWriter.writeFrame(outputStream);
+    outputStream.close();
+
+    RecoveryCheckpoint.Writer checkpointWriter =
+        new RecoveryCheckpoint.Writer(localFs, dagFilePath, checkpointPath, 4096);
+    checkpointWriter.checkpoint(checkpointedLength);
+    List<HistoryEvent> events = readEvents();
+    Assert.assertEquals(8, events.size());
+    // Failed attempt of the succeeded task left out
+    Assert.assertEquals(TezTaskAttemptID.getInstance(task0, 1),
+        ((TaskAttemptStartedEvent) events.get(1)).getTaskAttemptID());
+    assertCompactedAttempts((TaskFinishedEvent) events.get(3), 1, 0, 2);
+    // Tail of the recovery file after the checkpoint
+    Assert.assertEquals(TezTaskAttemptID.getInstance(task1, 1),
+        ((TaskAttemptStartedEvent) events.get(7)).getTaskAttemptID());
+
+    // Checkpoint building on the previous one
+    long length = localFs.getFileStatus(dagFilePath).getLen();
+    checkpointWriter.checkpoint(length);
+    checkpointWriter.close();
+    Assert.assertEquals(length, checkpointWriter.getCheckpointedLength());
+    events = readEvents();
+    Assert.assertEquals(8, events.size());
+    assertCompactedAttempts((TaskFinishedEvent) events.get(3), 1, 0, 2);
+
+    // Incomplete checkpoint ignored
+    byte[] data = readFile(checkpointPath);
+    localFs.delete(checkpointPath, false);
+    outputStream = localFs.create(checkpointPath, false, 4096);
+    outputStream.write(data, 0, data.length - 1);
+    outputStream.close();
+    Assert.assertEquals(10, readEvents().size());
+  }
+
+  @Test(timeout = 5000)
+  public void testSucceededTaskCompacted() throws IOException {
+    FSDataOutputStream outputStream = localFs.create(dagFilePath, false, 4096);
+    RecoveryFrames.Writer frameWriter = new RecoveryFrames.Writer();
+    frameWriter.append(new TaskStartedEvent(task0, "v1", 0, 0));
+    frameWriter.append(createAttemptStarted(task0, 0));
+    frameWriter.append(createAttemptFinished(task0, 0, TaskAttemptState.FAILED));
+    frameWriter.append(createAttemptStarted(task0, 1));
+    frameWriter.append(createAttemptStarted(task0, 2));
+    frameWriter.append(createAttemptFinished(task0, 2, TaskAttemptState.SUCCEEDED));
+    frameWriter.append(new TaskFinishedEvent(task0, "v1", 0, 0,
+        TezTaskAttemptID.getInstance(task0, 2), TaskState.SUCCEEDED, null, null));
+    // Speculative attempt killed after the task succeeded
+    frameWriter.append(createAttemptFinished(task0, 1, TaskAttemptState.KILLED));
+    frameWriter.writeFrame(outputStream);
+    outputStream.close();
+
+    long length = localFs.getFileStatus(dagFilePath).getLen();
+    RecoveryCheckpoint.Writer checkpointWriter =
+        new RecoveryCheckpoint.Writer(localFs, dagFilePath, checkpointPath, 4096);
+    checkpointWriter.checkpoint(length);
+    checkpointWriter.close();
+    List<HistoryEvent> events = readEvents();
+    // Replay reduced to the task and its successful attempt
+    Assert.assertEquals(4, events.size());
+    Assert.assertEquals(TezTaskAttemptID.getInstance(task0, 2),
+        ((TaskAttemptStartedEvent) events.get(1)).getTaskAttemptID());
+    Assert.assertEquals(TezTaskAttemptID.getInstance(task0, 2),
+        ((TaskAttemptFinishedEvent) events.get(2)).getTaskAttemptID());
+    assertCompactedAttempts((TaskFinishedEvent) events.get(3), 1, 1, 3);
+  }
+
+  @Test(timeout = 5000)
+  public void testCheckpointAppended() throws IOException {
+    FSDataOutputStream outputStream = localFs.create(dagFilePath, false, 4096);
+    RecoveryFrames.Writer frameWriter = new RecoveryFrames.Writer();
+    frameWriter.append(new TaskStartedEvent(task0, "v1", 0, 0));
+    frameWriter.append(createAttemptStarted(task0, 0));
+    frameWriter.append(createAttemptStarted(task0, 1));
+    frameWriter.writeFrame(outputStream);
+    outputStream.hflush();
+    RecoveryCheckpoint.Writer checkpointWriter =
+        new RecoveryCheckpoint.Writer(localFs, dagFilePath, checkpointPath, 4096);
+    checkpointWriter.checkpoint(outputStream.getPos());
+    long dataLength = localFs.getFileStatus(checkpointPath).getLen();
+    byte[] data = readFile(checkpointPath);
+
+    frameWriter.append(createAttemptFinished(task0, 0, TaskAttemptState.FAILED));
+    frameWriter.append(createAttemptFinished(task0, 1, TaskAttemptState.SUCCEEDED));
+    frameWriter.append(new TaskFinishedEvent(task0, "v1", 0, 0,
+        TezTaskAttemptID.getInstance(task0, 1), TaskState.SUCCEEDED, null, null));
+    frameWriter.writeFrame(outputStream);
+    outputStream.close();
+    checkpointWriter.checkpoint(localFs.getFileStatus(dagFilePath).getLen());
+    checkpointWriter.close();
+
+    // The first segment is not rewritten
+    byte[] appendedData = readFile(checkpointPath);
+    Assert.assertTrue(appendedData.length > dataLength);
+    for (int i = 0; i < data.length; ++i) {
+      Assert.assertEquals(data[i], appendedData[i]);
+    }
+    // Attempts which started before the last segment are kept
+    List<HistoryEvent> events = readEvents();
+    Assert.assertEquals(6, events.size());
+    assertCompactedAttempts((TaskFinishedEvent) events.get(5), 0, 0, 2);
+  }
+
+  @Test(timeout = 20000)
+  public void testReplayedEventsReduced() throws IOException {
+    int numTasks = 100;
+    int tasksPerCheckpoint = 10;
+    FSDataOutputStream outputStream = localFs.create(dagFilePath, false, 4096);
+    RecoveryFrames.Writer frameWriter = new RecoveryFrames.Writer();
+    RecoveryCheckpoint.Writer checkpointWriter =
+        new RecoveryCheckpoint.Writer(localFs, dagFilePath, checkpointPath, 4096);
+    for (int i = 0; i < numTasks; ++i) {
+      TezTaskID taskId = TezTaskID.getInstance(vertexId, i);
+      frameWriter.append(new TaskStartedEvent(taskId, "v1", 0, 0));
+      frameWriter.append(createAttemptStarted(taskId, 0));
+      frameWriter.append(createAttemptFinished(taskId, 0, TaskAttemptState.FAILED));
+      frameWriter.append(createAttemptStarted(taskId, 1));
+      frameWriter.append(createAttemptStarted(taskId, 2));
+      frameWriter.append(createAttemptFinished(taskId, 2, TaskAttemptState.SUCCEEDED));
+      frameWriter.append(new TaskFinishedEvent(taskId, "v1", 0, 0,
+          TezTaskAttemptID.getInstance(taskId, 2), TaskState.SUCCEEDED, null, null));
+      frameWriter.append(createAttemptFinished(taskId, 1, TaskAttemptState.KILLED));
+      frameWriter.writeFrame(outputStream);
+      if ((i + 1) % tasksPerCheckpoint == 0) {
+        outputStream.hflush();
+        checkpointWriter.checkpoint(outputStream.getPos());
+      }
+    }
+    // Tail after the last checkpoint
+    TezTaskID taskId = TezTaskID.getInstance(vertexId, numTasks);
+    frameWriter.append(new TaskStartedEvent(taskId, "v1", 0, 0));
+    frameWriter.append(createAttemptStarted(taskId, 0));
+    frameWriter.writeFrame(outputStream);
+    outputStream.close();
+    checkpointWriter.close();
+
+    List<HistoryEvent> events = readEvents();
+    Assert.assertEquals(4 * numTasks + 2, events.size());
+    for (int i = 0; i < numTasks; ++i) {
+      assertCompactedAttempts((TaskFinishedEvent) events.get(4 * i + 3), 1, 1, 3);
+    }
+
+    // Without the checkpoint, every event is replayed
+    localFs.delete(checkpointPath, false);
+    Assert.assertEquals(8 * numTasks + 2, readEvents().size());
+  }
+
+  @Test(timeout = 5000)
+  public void testRescheduledTaskKept() {
+    Map<TezTaskID, RecoveryCheckpoint.TaskSummary> tasks =
+        new HashMap<TezTaskID, RecoveryCheckpoint.TaskSummary>();
+    RecoveryCheckpoint.trackTask(createAttemptFinished(task0, 0, TaskAttemptState.FAILED),
+        tasks);
+    RecoveryCheckpoint.trackTask(new TaskFinishedEvent(task0, "v1", 0, 0,
+        TezTaskAttemptID.getInstance(task0, 1), TaskState.SUCCEEDED, null, null), tasks);
+    Assert.assertTrue(tasks.get(task0).isCompacted());
+
+    // Output of the successful attempt lost after the task succeeded
+    RecoveryCheckpoint.trackTask(createAttemptFinished(task0, 1, TaskAttemptState.FAILED),
+        tasks);
+    Assert.assertFalse(tasks.get(task0).isCompacted());
+    Assert.assertTrue(RecoveryCheckpoint.compact(createAttemptStarted(task0, 0), tasks));
+    TaskFinishedEvent taskFinishedEvent = new TaskFinishedEvent(task0, "v1", 0, 0,
+        TezTaskAttemptID.getInstance(task0, 1), TaskState.SUCCEEDED, null, null);
+    Assert.assertTrue(RecoveryCheckpoint.compact(taskFinishedEvent, tasks));
+    assertCompactedAttempts(taskFinishedEvent, 0, 0, 0);
+  }
+
+  private void assertCompactedAttempts(TaskFinishedEvent event, int failedAttempts,
+      int killedAttempts, int nextAttemptId) {
+    Assert.assertEquals(failedAttempts, event.getCompactedFailedAttempts());
+    Assert.assertEquals(killedAttempts, event.getCompactedKilledAttempts());
+    Assert.assertEquals(nextAttemptId, event.getNextAttemptId());
+  }
+
+  private List<HistoryEvent> readEvents() throws IOException {
+    List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+    RecoveryCheckpoint.EventReader reader =
+        RecoveryCheckpoint.open(localFs, dagFilePath, checkpointPath, -1, 4096);
+    try {
+      HistoryEvent event;
+      while ((event = reader.getNextEvent()) != null) {
+        events.add(event);
+      }
+    } finally {
+      reader.close();
+    }
+    return events;
+  }
+
+  private byte[] readFile(Path path) throws IOException {
+    byte[] data = new byte[(int) localFs.getFileStatus(path).getLen()];
+    FSDataInputStream inputStream = localFs.open(path);
+    try {
+      inputStream.readFully(data);
+    } finally {
+      inputStream.close();
+    }
+    return data;
+  }
+
+  private TaskAttemptStartedEvent createAttemptStarted(TezTaskID taskId, int id) {
+    ContainerId containerId = ContainerId.newInstance(
+        ApplicationAttemptId.newInstance(appId, 1), id + 1);
+    return new TaskAttemptStartedEvent(TezTaskAttemptID.getInstance(taskId, id), "v1", 0,
+        containerId, NodeId.newInstance("host", 0), null, null, null);
+  }
+
+  private TaskAttemptFinishedEvent createAttemptFinished(TezTaskID taskId, int id,
+      TaskAttemptState state) {
+    return new TaskAttemptFinishedEvent(TezTaskAttemptID.getInstance(taskId, id), "v1", 0, 0,
+        state, null, null);
+  }
+}
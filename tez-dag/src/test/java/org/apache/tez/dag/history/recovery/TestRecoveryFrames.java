@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.recovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.history.events.ContainerLaunchedEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRecoveryFrames {
+
+  private final ApplicationAttemptId attemptId =
+      ApplicationAttemptId.newInstance(ApplicationId.newInstance(1, 1), 1);
+
+  @Test(timeout = 5000)
+  public void testIncompleteFrameIgnored() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    RecoveryFrames.Writer writer = new RecoveryFrames.Writer();
+    // Nothing buffered, nothing written
+    writer.writeFrame(out);
+    Assert.assertEquals(0, bytes.size());
+
+    writer.append(createEvent(1));
+    writer.append(createEvent(2));
+    Assert.assertEquals(2, writer.getNumEvents());
+    writer.writeFrame(out);
+    Assert.assertEquals(0, writer.getNumEvents());
+    int firstFrameLength = bytes.size();
+    writer.append(createEvent(3));
+    writer.writeFrame(out);
+
+    // Second frame cut short
+    byte[] data = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    DataInputStream frame = new DataInputStream(
+        new ByteArrayInputStream(RecoveryFrames.readFrame(in)));
+    Assert.assertEquals(1, readEvent(frame).getContainerId().getId());
+    Assert.assertEquals(2, readEvent(frame).getContainerId().getId());
+    Assert.assertEquals(0, frame.available());
+    Assert.assertNull(RecoveryFrames.readFrame(in));
+
+    // Second frame corrupted
+    data = bytes.toByteArray();
+    data[data.length - 1]++;
+    in = new DataInputStream(new ByteArrayInputStream(data));
+    Assert.assertNotNull(RecoveryFrames.readFrame(in));
+    Assert.assertNull(RecoveryFrames.readFrame(in));
+
+    // Not framed data
+    in = new DataInputStream(new ByteArrayInputStream(data, 4, firstFrameLength - 4));
+    try {
+      RecoveryFrames.readFrame(in);
+      Assert.fail("Expected data without frame marker to be rejected");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("Corrupt data"));
+    }
+  }
+
+  private ContainerLaunchedEvent createEvent(int containerId) {
+    return new ContainerLaunchedEvent(ContainerId.newInstance(attemptId, containerId),
+        100, attemptId);
+  }
+
+  private ContainerLaunchedEvent readEvent(DataInputStream frame) throws IOException {
+    Assert.assertEquals(HistoryEventType.CONTAINER_LAUNCHED.ordinal(), frame.readInt());
+    ContainerLaunchedEvent event = new ContainerLaunchedEvent();
+    event.fromProtoStream(frame);
+    return event;
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+  @Test(timeout = 5000)
+  public void testBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(-1, histogram.getPercentile(0.5));
+
+    histogram.record(0);
+    histogram.record(1);
+    histogram.record(3);
+    histogram.record(4);
+    histogram.record(100);
+    Assert.assertEquals(5, histogram.getCount());
+    Assert.assertEquals(100, histogram.getMax());
+    Assert.assertEquals(2, histogram.getBucketCount(0));
+    Assert.assertEquals(2, histogram.getBucketCount(2));
+    Assert.assertEquals(1, histogram.getBucketCount(7));
+    Assert.assertEquals(4, histogram.getPercentile(0.5));
+    Assert.assertEquals(128, histogram.getPercentile(0.99));
+
+    // Beyond the last bucket
+    histogram.record(1l << 20);
+    Assert.assertEquals(1,
+        histogram.getBucketCount(LatencyHistogram.NUM_BUCKETS - 1));
+    Assert.assertEquals(1l << 20, histogram.getPercentile(1.0));
+  }
+}
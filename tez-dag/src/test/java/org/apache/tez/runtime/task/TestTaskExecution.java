@@ -36,6 +36,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -140,6 +141,36 @@ public class TestTaskExecution {
     }
   }
 
+  @Test
+  public void testTaskSucceededCallback() throws IOException, InterruptedException, TezException,
+      ExecutionException {
+    ListeningExecutorService executor = null;
+    try {
+      ExecutorService rawExecutor = Executors.newFixedThreadPool(1);
+      executor = MoreExecutors.listeningDecorator(rawExecutor);
+      ApplicationId appId = ApplicationId.newInstance(10000, 1);
+      TezTaskUmbilicalForTest umbilical = new TezTaskUmbilicalForTest();
+      TaskReporter taskReporter = createTaskReporter(appId, umbilical);
+
+      TezTaskRunner taskRunner = createTaskRunner(appId, umbilical, taskReporter, executor,
+          TestProcessor.CONF_EMPTY);
+      final AtomicBoolean callbackInvoked = new AtomicBoolean(false);
+      taskRunner.setTaskSucceededCallback(new Runnable() {
+        @Override
+        public void run() {
+          callbackInvoked.set(true);
+        }
+      });
+      Future<Boolean> taskRunnerFuture = taskExecutor.submit(new TaskRunnerCallable(taskRunner));
+      TestProcessor.signal();
+      assertTrue(taskRunnerFuture.get());
+      umbilical.verifyTaskSuccessEvent();
+      assertTrue(callbackInvoked.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test
   public void testMultipleSuccessfulTasks() throws IOException, InterruptedException, TezException,
       ExecutionException {
@@ -297,6 +328,13 @@ public class TestTaskExecution {
 
       TezTaskRunner taskRunner = createTaskRunner(appId, umbilical, taskReporter, executor,
           TestProcessor.CONF_EMPTY);
+      final AtomicBoolean callbackInvoked = new AtomicBoolean(false);
+      taskRunner.setTaskSucceededCallback(new Runnable() {
+        @Override
+        public void run() {
+          callbackInvoked.set(true);
+        }
+      });
       // Setup the executor
       Future<Boolean> taskRunnerFuture = taskExecutor.submit(new TaskRunnerCallable(taskRunner));
       // Signal the processor to go through
@@ -315,6 +353,8 @@ public class TestTaskExecution {
       // No completion events since shouldDie was requested by the AM, which should have killed the
       // task.
       umbilical.verifyNoCompletionEvents();
+      // No next task is fetched for a container asked to die
+      assertFalse(callbackInvoked.get());
     } finally {
       executor.shutdownNow();
     }
@@ -28,6 +28,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
@@ -40,6 +41,11 @@ import org.apache.tez.client.TezClient;
 import org.apache.tez.dag.api.DAG;
 import org.apache.tez.dag.api.Edge;
 import org.apache.tez.dag.api.EdgeProperty;
+import org.apache.tez.dag.api.EdgeProperty.DataMovementType;
+import org.apache.tez.dag.api.EdgeProperty.DataSourceType;
+import org.apache.tez.dag.api.EdgeProperty.SchedulingType;
+import org.apache.tez.dag.api.InputDescriptor;
+import org.apache.tez.dag.api.OutputDescriptor;
 import org.apache.tez.dag.api.ProcessorDescriptor;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezException;
@@ -55,8 +61,11 @@ import org.apache.tez.runtime.api.Reader;
 import org.apache.tez.runtime.api.ProcessorContext;
 import org.apache.tez.runtime.library.api.KeyValueReader;
 import org.apache.tez.runtime.library.api.KeyValueWriter;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.apache.tez.runtime.library.common.hashtable.OffHeapHashTable;
 import org.apache.tez.runtime.library.conf.UnorderedKVEdgeConfig;
 import org.apache.tez.runtime.library.conf.UnorderedPartitionedKVEdgeConfig;
+import org.apache.tez.runtime.library.input.UnorderedKVHashTableInput;
 import org.apache.tez.runtime.library.partitioner.HashPartitioner;
 import org.apache.tez.runtime.library.processor.SimpleProcessor;
 
@@ -288,13 +297,23 @@ public class HashJoinExample extends Configured implements Tool {
        * of its fragment of keys with all the keys of the hash side. Using an
        * unpartitioned edge to transfer the complete output of the hash side to
        * be broadcasted to all fragments of the streamed side. Again, since the
-       * data is the key, the value is null.
+       * data is the key, the value is null. The hash side is read using
+       * UnorderedKVHashTableInput, which builds an off-heap hash table of the
+       * serialized keys. The table is shared by the join tasks running in the
+       * same container, since they all consume the same data.
        */
       UnorderedKVEdgeConfig broadcastConf =
           UnorderedKVEdgeConfig
               .newBuilder(Text.class.getName(), NullWritable.class.getName())
+              .setAdditionalConfiguration(
+                  TezRuntimeConfiguration.TEZ_RUNTIME_HASHTABLE_INPUT_SHARE_ENABLED, "true")
               .build();
-      hashSideEdgeProperty = broadcastConf.createDefaultBroadcastEdgeProperty();
+      hashSideEdgeProperty = EdgeProperty.create(DataMovementType.BROADCAST,
+          DataSourceType.PERSISTED, SchedulingType.SEQUENTIAL,
+          OutputDescriptor.create(broadcastConf.getOutputClassName())
+              .setUserPayload(broadcastConf.getOutputPayload()),
+          InputDescriptor.create(UnorderedKVHashTableInput.class.getName())
+              .setUserPayload(broadcastConf.getBroadcastInputPayload()));
     } else {
       /**
        * The hash side is also being partitioned into fragments with the same
@@ -383,6 +402,23 @@ public class HashJoinExample extends Configured implements Tool {
       Preconditions.checkState(lo.getWriter() instanceof KeyValueWriter);
       KeyValueWriter writer = (KeyValueWriter) lo.getWriter();
 
+      KeyValueReader streamKvReader = (KeyValueReader) rawStreamReader;
+      if (hashInput instanceof UnorderedKVHashTableInput) {
+        // the hash side is already available as an off-heap hash table of the
+        // serialized keys. Probe it with the serialized stream side keys.
+        OffHeapHashTable hashTable = ((UnorderedKVHashTableInput) hashInput).getHashTable();
+        DataOutputBuffer keyBuffer = new DataOutputBuffer();
+        while (streamKvReader.next()) {
+          Text key = (Text) streamKvReader.getCurrentKey();
+          keyBuffer.reset();
+          key.write(keyBuffer);
+          if (hashTable.containsKey(keyBuffer.getData(), 0, keyBuffer.getLength())) {
+            writer.write(key, NullWritable.get());
+          }
+        }
+        return;
+      }
+
       // create a hash table for the hash side
       KeyValueReader hashKvReader = (KeyValueReader) rawHashReader;
       Set<Text> keySet = new HashSet<Text>();
@@ -391,7 +427,6 @@ public class HashJoinExample extends Configured implements Tool {
       }
 
       // read the stream side and join it using the hash table
-      KeyValueReader streamKvReader = (KeyValueReader) rawStreamReader;
       while (streamKvReader.next()) {
         Text key = (Text) streamKvReader.getCurrentKey();
         if (keySet.contains(key)) {
@@ -18,12 +18,17 @@
 
 package org.apache.tez.dag.history.logging.ats;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,6 +44,7 @@ import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.history.events.DAGSubmittedEvent;
 import org.apache.tez.dag.history.logging.HistoryLoggingService;
 import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.utils.LatencyHistogram;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -64,6 +70,12 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
 
   private int maxEventsPerBatch;
   private long maxPollingTimeMillis;
+  private long maxBatchLingerMillis;
+  private int maxQueueSize;
+
+  private final AtomicInteger maxEventQueueBacklog = new AtomicInteger(0);
+  private final AtomicLong droppedEventsCount = new AtomicLong(0);
+  private final LatencyHistogram publishLatencies = new LatencyHistogram();
 
   public ATSHistoryLoggingService() {
     super(ATSHistoryLoggingService.class.getName());
@@ -83,6 +95,12 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
     maxPollingTimeMillis = conf.getInt(
         TezConfiguration.YARN_ATS_MAX_POLLING_TIME_PER_EVENT,
         TezConfiguration.YARN_ATS_MAX_POLLING_TIME_PER_EVENT_DEFAULT);
+    maxBatchLingerMillis = conf.getInt(
+        TezConfiguration.YARN_ATS_MAX_BATCH_LINGER_MILLIS,
+        TezConfiguration.YARN_ATS_MAX_BATCH_LINGER_MILLIS_DEFAULT);
+    maxQueueSize = conf.getInt(
+        TezConfiguration.YARN_ATS_EVENT_QUEUE_MAX_SIZE,
+        TezConfiguration.YARN_ATS_EVENT_QUEUE_MAX_SIZE_DEFAULT);
     if (maxTimeToWaitOnShutdown < 0) {
       waitForeverOnShutdown = true;
     }
@@ -106,7 +124,10 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
             if (eventsProcessed != 0 && !events.isEmpty()) {
               LOG.info("Event queue stats"
                   + ", eventsProcessedSinceLastUpdate=" + eventsProcessed
-                  + ", eventQueueSize=" + eventQueue.size());
+                  + ", eventQueueSize=" + eventQueue.size()
+                  + ", maxEventQueueBacklog=" + maxEventQueueBacklog.get()
+                  + ", droppedEvents=" + droppedEventsCount.get()
+                  + ", publishLatencies=[" + publishLatencies + "]");
             }
             eventCounter = 0;
             eventsProcessed = 0;
@@ -180,14 +201,27 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
       LOG.warn("Did not finish flushing eventQueue before stopping ATSService"
           + ", eventQueueBacklog=" + eventQueue.size());
     }
+    LOG.info("ATSService publish stats"
+        + ", maxEventQueueBacklog=" + maxEventQueueBacklog.get()
+        + ", droppedEvents=" + droppedEventsCount.get()
+        + ", publishLatencies=[" + publishLatencies + "]");
     timelineClient.stop();
   }
 
   private void getEventBatch(List<DAGHistoryEvent> events) throws InterruptedException {
     events.clear();
     int counter = 0;
+    long lingerEndTime = -1;
     while (counter < maxEventsPerBatch) {
-      DAGHistoryEvent event = eventQueue.poll(maxPollingTimeMillis, TimeUnit.MILLISECONDS);
+      long pollingTime = maxPollingTimeMillis;
+      if (lingerEndTime >= 0) {
+        long lingerTimeLeft = lingerEndTime - System.currentTimeMillis();
+        if (lingerTimeLeft <= 0) {
+          break;
+        }
+        pollingTime = Math.min(pollingTime, lingerTimeLeft);
+      }
+      DAGHistoryEvent event = eventQueue.poll(pollingTime, TimeUnit.MILLISECONDS);
       if (event == null) {
         break;
       }
@@ -196,6 +230,9 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
       }
       ++counter;
       events.add(event);
+      if (counter == 1 && maxBatchLingerMillis >= 0) {
+        lingerEndTime = System.currentTimeMillis() + maxBatchLingerMillis;
+      }
       if (event.getHistoryEvent().getEventType().equals(HistoryEventType.DAG_SUBMITTED)) {
         // Special case this as it might be a large payload
         break;
@@ -205,7 +242,40 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
 
 
   public void handle(DAGHistoryEvent event) {
+    // The queue itself is unbounded so that the dispatcher never blocks and DAG and vertex
+    // events are never lost. Only task, attempt and container events count against the limit.
+    if (maxQueueSize > 0 && isDroppable(event) && eventQueue.size() >= maxQueueSize) {
+      long dropped = droppedEventsCount.incrementAndGet();
+      if (dropped % 1000 == 1) {
+        LOG.warn("ATSService event queue full, dropping task and container events"
+            + ", eventQueueSize=" + eventQueue.size()
+            + ", droppedEvents=" + dropped);
+      }
+      return;
+    }
     eventQueue.add(event);
+    updateMaxEventQueueBacklog(eventQueue.size());
+  }
+
+  private void updateMaxEventQueueBacklog(int backlog) {
+    int max = maxEventQueueBacklog.get();
+    while (backlog > max && !maxEventQueueBacklog.compareAndSet(max, backlog)) {
+      max = maxEventQueueBacklog.get();
+    }
+  }
+
+  private boolean isDroppable(DAGHistoryEvent event) {
+    switch (event.getHistoryEvent().getEventType()) {
+      case TASK_STARTED:
+      case TASK_FINISHED:
+      case TASK_ATTEMPT_STARTED:
+      case TASK_ATTEMPT_FINISHED:
+      case CONTAINER_LAUNCHED:
+      case CONTAINER_STOPPED:
+        return true;
+      default:
+        return false;
+    }
   }
 
   private boolean isValidEvent(DAGHistoryEvent event) {
@@ -243,15 +313,18 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
 
 
   private void handleEvents(List<DAGHistoryEvent> events) {
-    TimelineEntity[] entities = new TimelineEntity[events.size()];
-    for (int i = 0; i < events.size(); ++i) {
-      entities[i] = HistoryEventTimelineConversion.convertToTimelineEntity(
-          events.get(i).getHistoryEvent());
+    List<TimelineEntity> entityList = new ArrayList<TimelineEntity>(events.size());
+    for (DAGHistoryEvent event : events) {
+      entityList.add(HistoryEventTimelineConversion.convertToTimelineEntity(
+          event.getHistoryEvent()));
     }
+    TimelineEntity[] entities = coalesceEntities(entityList);
 
     if (LOG.isDebugEnabled()) {
-      LOG.debug("Sending event batch to Timeline, batchSize=" + events.size());
+      LOG.debug("Sending event batch to Timeline, batchSize=" + events.size()
+          + ", numEntities=" + entities.length);
     }
+    long startTime = System.currentTimeMillis();
     try {
       TimelinePutResponse response =
           timelineClient.putEntities(entities);
@@ -263,8 +336,8 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
           if (err.getErrorCode() != 0) {
             LOG.warn("Could not post history event to ATS"
                 + ", atsPutError=" + err.getErrorCode()
-                + ", entityId=" + entities[i].getEntityId()
-                + ", eventType=" + events.get(i).getHistoryEvent().getEventType());
+                + ", entityId=" + err.getEntityId()
+                + ", entityType=" + err.getEntityType());
           }
         }
       }
@@ -273,6 +346,50 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
     } catch (Exception e) {
       LOG.warn("Could not handle history events", e);
     }
+    publishLatencies.record(System.currentTimeMillis() - startTime);
+  }
+
+  /**
+   * Merge the entities of a batch which refer to the same entity, so that every entity is sent
+   * once per batch. Events, filters and related entities are combined, and for other info the
+   * later value wins.
+   */
+  @VisibleForTesting
+  static TimelineEntity[] coalesceEntities(List<TimelineEntity> entities) {
+    Map<String, TimelineEntity> coalesced = new LinkedHashMap<String, TimelineEntity>();
+    for (TimelineEntity entity : entities) {
+      String key = entity.getEntityType() + "/" + entity.getEntityId();
+      TimelineEntity existing = coalesced.get(key);
+      if (existing == null) {
+        coalesced.put(key, entity);
+        continue;
+      }
+      existing.addEvents(entity.getEvents());
+      existing.addPrimaryFilters(entity.getPrimaryFilters());
+      existing.addRelatedEntities(entity.getRelatedEntities());
+      existing.addOtherInfo(entity.getOtherInfo());
+      if (existing.getStartTime() == null
+          || (entity.getStartTime() != null
+              && entity.getStartTime() < existing.getStartTime())) {
+        existing.setStartTime(entity.getStartTime());
+      }
+    }
+    return coalesced.values().toArray(new TimelineEntity[coalesced.size()]);
+  }
+
+  @VisibleForTesting
+  int getMaxEventQueueBacklog() {
+    return maxEventQueueBacklog.get();
+  }
+
+  @VisibleForTesting
+  long getDroppedEventsCount() {
+    return droppedEventsCount.get();
+  }
+
+  @VisibleForTesting
+  LatencyHistogram getPublishLatencies() {
+    return publishLatencies;
   }
 
 }
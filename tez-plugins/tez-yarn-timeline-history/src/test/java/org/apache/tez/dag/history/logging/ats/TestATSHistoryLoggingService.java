@@ -18,18 +18,29 @@
 
 package org.apache.tez.dag.history.logging.ats;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.timeline.TimelineEntity;
+import org.apache.hadoop.yarn.api.records.timeline.TimelineEvent;
 import org.apache.hadoop.yarn.client.api.TimelineClient;
 import org.apache.hadoop.yarn.util.SystemClock;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.app.dag.DAGState;
 import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.history.events.DAGFinishedEvent;
 import org.apache.tez.dag.history.events.DAGStartedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
 import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -93,13 +104,8 @@ public class TestATSHistoryLoggingService {
 
   @Test(timeout=20000)
   public void testATSHistoryLoggingServiceShutdown() {
-    TezDAGID tezDAGID = TezDAGID.getInstance(
-        ApplicationId.newInstance(100l, 1), 1);
-    DAGHistoryEvent historyEvent = new DAGHistoryEvent(tezDAGID,
-        new DAGStartedEvent(tezDAGID, 1001l, "user1", "dagName1"));
-
     for (int i = 0; i < 100; ++i) {
-      atsHistoryLoggingService.handle(historyEvent);
+      atsHistoryLoggingService.handle(createDAGStartedEvent(i));
     }
 
     try {
@@ -119,13 +125,8 @@ public class TestATSHistoryLoggingService {
 
   @Test(timeout=20000)
   public void testATSEventBatching() {
-    TezDAGID tezDAGID = TezDAGID.getInstance(
-        ApplicationId.newInstance(100l, 1), 1);
-    DAGHistoryEvent historyEvent = new DAGHistoryEvent(tezDAGID,
-        new DAGStartedEvent(tezDAGID, 1001l, "user1", "dagName1"));
-
     for (int i = 0; i < 100; ++i) {
-      atsHistoryLoggingService.handle(historyEvent);
+      atsHistoryLoggingService.handle(createDAGStartedEvent(i));
     }
 
     try {
@@ -140,4 +141,105 @@ public class TestATSHistoryLoggingService {
     Assert.assertEquals(atsEntitiesCounter/2, atsInvokeCounter);
   }
 
+  @Test(timeout=5000)
+  public void testEntityCoalescing() {
+    TimelineEntity started = createEntity("dag_1", 10l, "DAG_STARTED", "RUNNING");
+    TimelineEntity finished = createEntity("dag_1", null, "DAG_FINISHED", "SUCCEEDED");
+    TimelineEntity other = createEntity("dag_2", 20l, "DAG_STARTED", "RUNNING");
+
+    TimelineEntity[] entities = ATSHistoryLoggingService.coalesceEntities(
+        Arrays.asList(started, other, finished));
+    Assert.assertEquals(2, entities.length);
+    Assert.assertEquals("dag_1", entities[0].getEntityId());
+    Assert.assertEquals(2, entities[0].getEvents().size());
+    Assert.assertEquals(Long.valueOf(10l), entities[0].getStartTime());
+    Assert.assertEquals("SUCCEEDED", entities[0].getOtherInfo().get("status"));
+    Assert.assertEquals("dag_2", entities[1].getEntityId());
+    Assert.assertEquals(1, entities[1].getEvents().size());
+  }
+
+  @Test(timeout=5000)
+  public void testEventQueueOverflow() {
+    ATSHistoryLoggingService service = new ATSHistoryLoggingService();
+    service.setAppContext(appContext);
+    Configuration queueConf = new Configuration(false);
+    queueConf.setInt(TezConfiguration.YARN_ATS_EVENT_QUEUE_MAX_SIZE, 2);
+    service.init(queueConf);
+
+    TezDAGID tezDAGID = TezDAGID.getInstance(
+        ApplicationId.newInstance(100l, 1), 1);
+    TezTaskID taskID = TezTaskID.getInstance(TezVertexID.getInstance(tezDAGID, 1), 1);
+    for (int i = 0; i < 3; ++i) {
+      service.handle(new DAGHistoryEvent(tezDAGID,
+          new TaskStartedEvent(taskID, "v1", 1001l, 1002l)));
+    }
+    // Events beyond the queue limit are dropped, not queued
+    Assert.assertEquals(1, service.getDroppedEventsCount());
+    Assert.assertEquals(2, service.getMaxEventQueueBacklog());
+  }
+
+  @Test(timeout=5000)
+  public void testDAGFinishedKeptWhenQueueFull() throws Exception {
+    ATSHistoryLoggingService service = new ATSHistoryLoggingService();
+    service.setAppContext(appContext);
+    Configuration queueConf = new Configuration(false);
+    queueConf.setInt(TezConfiguration.YARN_ATS_EVENT_QUEUE_MAX_SIZE, 1);
+    service.init(queueConf);
+    service.timelineClient = mock(TimelineClient.class);
+    final List<String> publishedEventTypes = new ArrayList<String>();
+    when(service.timelineClient.putEntities(
+        Matchers.<TimelineEntity[]>anyVararg())).thenAnswer(
+        new Answer<Object>() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            for (Object entity : invocation.getArguments()) {
+              for (TimelineEvent event : ((TimelineEntity) entity).getEvents()) {
+                publishedEventTypes.add(event.getEventType());
+              }
+            }
+            return null;
+          }
+        }
+    );
+
+    TezDAGID tezDAGID = TezDAGID.getInstance(
+        ApplicationId.newInstance(100l, 1), 1);
+    TezTaskID taskID = TezTaskID.getInstance(TezVertexID.getInstance(tezDAGID, 1), 1);
+    // Not drained, so the queue stays saturated with task events
+    for (int i = 0; i < 2; ++i) {
+      service.handle(new DAGHistoryEvent(tezDAGID,
+          new TaskStartedEvent(taskID, "v1", 1001l, 1002l)));
+    }
+    service.handle(new DAGHistoryEvent(tezDAGID,
+        new DAGFinishedEvent(tezDAGID, 1001l, 1003l, DAGState.SUCCEEDED, null, null,
+            "user1", "dagName1", null)));
+    Assert.assertEquals(1, service.getDroppedEventsCount());
+    Assert.assertEquals(2, service.getMaxEventQueueBacklog());
+
+    // Flushed on stop
+    service.stop();
+    Assert.assertTrue(publishedEventTypes.contains(HistoryEventType.DAG_FINISHED.name()));
+  }
+
+  private DAGHistoryEvent createDAGStartedEvent(int dagId) {
+    TezDAGID tezDAGID = TezDAGID.getInstance(
+        ApplicationId.newInstance(100l, 1), dagId);
+    return new DAGHistoryEvent(tezDAGID,
+        new DAGStartedEvent(tezDAGID, 1001l, "user1", "dagName1"));
+  }
+
+  private TimelineEntity createEntity(String entityId, Long startTime, String eventType,
+      String status) {
+    TimelineEntity entity = new TimelineEntity();
+    entity.setEntityId(entityId);
+    entity.setEntityType("TEZ_DAG_ID");
+    entity.setStartTime(startTime);
+    TimelineEvent event = new TimelineEvent();
+    event.setEventType(eventType);
+    event.setTimestamp(1001l);
+    entity.addEvent(event);
+    entity.addOtherInfo("status", status);
+    return entity;
+  }
+
 }
@@ -28,6 +28,7 @@ import org.apache.hadoop.security.Credentials;
 import org.apache.tez.runtime.api.impl.TaskSpec;
 
 import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
 
 public class ContainerTask implements Writable {
 
@@ -36,17 +37,25 @@ public class ContainerTask implements Writable {
   private Map<String, TezLocalResource> additionalResources;
   private Credentials credentials;
   private boolean credentialsChanged;
+  private ByteString payloadBaseConf;
 
   public ContainerTask() {
   }
 
   public ContainerTask(TaskSpec taskSpec, boolean shouldDie,
       Map<String, TezLocalResource> additionalResources, Credentials credentials, boolean credentialsChanged) {
+    this(taskSpec, shouldDie, additionalResources, credentials, credentialsChanged, null);
+  }
+
+  public ContainerTask(TaskSpec taskSpec, boolean shouldDie,
+      Map<String, TezLocalResource> additionalResources, Credentials credentials,
+      boolean credentialsChanged, ByteString payloadBaseConf) {
     this.taskSpec = taskSpec;
     this.shouldDie = shouldDie;
     this.additionalResources = additionalResources;
     this.credentials = credentials;
     this.credentialsChanged = credentialsChanged;
+    this.payloadBaseConf = payloadBaseConf;
   }
 
   public TaskSpec getTaskSpec() {
@@ -69,6 +78,14 @@ public class ContainerTask implements Writable {
     return this.credentialsChanged;
   }
 
+  /**
+   * @return the payload base configuration of the dag the task belongs to. Only sent along with
+   *         changed credentials, i.e. once per dag the container runs tasks for.
+   */
+  public ByteString getPayloadBaseConf() {
+    return this.payloadBaseConf;
+  }
+
   @Override
   public void write(DataOutput out) throws IOException {
     out.writeBoolean(shouldDie);
@@ -93,6 +110,12 @@ public class ContainerTask implements Writable {
       if (credentials != null) {
         credentials.write(out);
       }
+      out.writeBoolean(payloadBaseConf != null);
+      if (payloadBaseConf != null) {
+        byte[] bytes = payloadBaseConf.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
     }
   }
 
@@ -121,6 +144,12 @@ public class ContainerTask implements Writable {
         credentials = new Credentials();
         credentials.readFields(in);
       }
+      boolean hasPayloadBaseConf = in.readBoolean();
+      if (hasPayloadBaseConf) {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        payloadBaseConf = ByteString.copyFrom(bytes);
+      }
     }
   }
 
@@ -25,17 +25,30 @@ import java.io.IOException;
 import org.apache.hadoop.io.Writable;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.runtime.api.Event;
+import org.apache.tez.runtime.api.impl.CountersUpdate;
 
 public class TaskStatusUpdateEvent extends Event implements Writable {
 
   private TezCounters tezCounters;
+  private CountersUpdate countersUpdate;
   private float progress;
 
   public TaskStatusUpdateEvent() {
   }
 
   public TaskStatusUpdateEvent(TezCounters tezCounters, float progress) {
+    this(tezCounters, null, progress);
+  }
+
+  /**
+   * @param tezCounters all counters of the task, or null
+   * @param countersUpdate update of the counters sent earlier by the task, or null
+   * @param progress progress of the task
+   */
+  public TaskStatusUpdateEvent(TezCounters tezCounters, CountersUpdate countersUpdate,
+      float progress) {
     this.tezCounters = tezCounters;
+    this.countersUpdate = countersUpdate;
     this.progress = progress;
   }
 
@@ -43,6 +56,10 @@ public class TaskStatusUpdateEvent extends Event implements Writable {
     return tezCounters;
   }
 
+  public CountersUpdate getCountersUpdate() {
+    return countersUpdate;
+  }
+
   public float getProgress() {
     return progress;
   }
@@ -56,6 +73,12 @@ public class TaskStatusUpdateEvent extends Event implements Writable {
     } else {
       out.writeBoolean(false);
     }
+    if (countersUpdate != null) {
+      out.writeBoolean(true);
+      countersUpdate.write(out);
+    } else {
+      out.writeBoolean(false);
+    }
   }
 
   @Override
@@ -65,6 +88,10 @@ public class TaskStatusUpdateEvent extends Event implements Writable {
       tezCounters = new TezCounters();
       tezCounters.readFields(in);
     }
+    if (in.readBoolean()) {
+      countersUpdate = new CountersUpdate();
+      countersUpdate.readFields(in);
+    }
   }
 
 }
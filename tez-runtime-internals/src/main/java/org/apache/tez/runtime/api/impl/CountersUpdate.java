@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.api.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.util.StringInterner;
+
+/**
+ * Compact update of the counters of a task, created by {@link CountersUpdateEncoder}.
+ * <p/>
+ * Counters are identified by ids which are assigned by the task. The group and counter names of
+ * an id are sent once, in the first update containing the counter. Values are only sent for
+ * counters which changed since the previous update. A full update contains all counters, along
+ * with their names, and replaces all counters known for the task.
+ */
+@Private
+public class CountersUpdate implements Writable {
+
+  private static final String[] EMPTY_NAMES = new String[0];
+  private static final int[] EMPTY_IDS = new int[0];
+  private static final long[] EMPTY_VALUES = new long[0];
+
+  private boolean full;
+  private int firstNewId;
+  private String[] newGroupNames = EMPTY_NAMES;
+  private String[] newCounterNames = EMPTY_NAMES;
+  private int[] ids = EMPTY_IDS;
+  private long[] values = EMPTY_VALUES;
+
+  public CountersUpdate() {
+  }
+
+  public CountersUpdate(boolean full, int firstNewId, String[] newGroupNames,
+      String[] newCounterNames, int[] ids, long[] values) {
+    this.full = full;
+    this.firstNewId = firstNewId;
+    this.newGroupNames = newGroupNames;
+    this.newCounterNames = newCounterNames;
+    this.ids = ids;
+    this.values = values;
+  }
+
+  /**
+   * @return true if the update contains all counters of the task
+   */
+  public boolean isFull() {
+    return full;
+  }
+
+  /**
+   * @return the id of the first counter defined in this update. The counters defined in this
+   *         update have consecutive ids.
+   */
+  public int getFirstNewId() {
+    return firstNewId;
+  }
+
+  public String[] getNewGroupNames() {
+    return newGroupNames;
+  }
+
+  public String[] getNewCounterNames() {
+    return newCounterNames;
+  }
+
+  /**
+   * @return the ids of the counters whose values are sent in this update
+   */
+  public int[] getIds() {
+    return ids;
+  }
+
+  /**
+   * @return the current values of the counters returned by {@link #getIds()}
+   */
+  public long[] getValues() {
+    return values;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeBoolean(full);
+    WritableUtils.writeVInt(out, firstNewId);
+    WritableUtils.writeVInt(out, newGroupNames.length);
+    String prevGroupName = null;
+    for (int i = 0; i < newGroupNames.length; i++) {
+      // Counters are defined group by group, so the group name is only written when it changes.
+      boolean sameGroup = newGroupNames[i].equals(prevGroupName);
+      out.writeBoolean(sameGroup);
+      if (!sameGroup) {
+        Text.writeString(out, newGroupNames[i]);
+      }
+      Text.writeString(out, newCounterNames[i]);
+      prevGroupName = newGroupNames[i];
+    }
+    WritableUtils.writeVInt(out, ids.length);
+    for (int i = 0; i < ids.length; i++) {
+      WritableUtils.writeVInt(out, ids[i]);
+      WritableUtils.writeVLong(out, values[i]);
+    }
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    full = in.readBoolean();
+    firstNewId = WritableUtils.readVInt(in);
+    int numNewCounters = WritableUtils.readVInt(in);
+    newGroupNames = new String[numNewCounters];
+    newCounterNames = new String[numNewCounters];
+    String prevGroupName = null;
+    for (int i = 0; i < numNewCounters; i++) {
+      boolean sameGroup = in.readBoolean();
+      newGroupNames[i] = sameGroup ? prevGroupName : StringInterner.weakIntern(Text.readString(in));
+      newCounterNames[i] = StringInterner.weakIntern(Text.readString(in));
+      prevGroupName = newGroupNames[i];
+    }
+    int numValues = WritableUtils.readVInt(in);
+    ids = new int[numValues];
+    values = new long[numValues];
+    for (int i = 0; i < numValues; i++) {
+      ids[i] = WritableUtils.readVInt(in);
+      values[i] = WritableUtils.readVLong(in);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "full=" + full + ", firstNewId=" + firstNewId
+        + ", numNewCounters=" + newGroupNames.length + ", numValues=" + ids.length;
+  }
+}
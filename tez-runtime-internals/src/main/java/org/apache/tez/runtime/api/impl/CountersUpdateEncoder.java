@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.api.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.tez.common.counters.CounterGroup;
+import org.apache.tez.common.counters.TezCounter;
+import org.apache.tez.common.counters.TezCounters;
+
+/**
+ * Creates {@link CountersUpdate}s for the counters of a task. Assigns an id to every counter,
+ * and keeps the values last sent, so that an update only contains the counters which changed.
+ * <p/>
+ * Values are sent as absolute values, not as differences to the previous update, so applying an
+ * update twice, or out of order with respect to a full update, does not corrupt the counters.
+ */
+@Private
+public class CountersUpdateEncoder {
+
+  private final Map<String, Map<String, Integer>> counterIds =
+      new HashMap<String, Map<String, Integer>>();
+  private final List<String> groupNames = new ArrayList<String>();
+  private final List<String> counterNames = new ArrayList<String>();
+  private long[] sentValues = new long[64];
+
+  /**
+   * @param counters the current counters of the task
+   * @param full whether to include all counters in the update, instead of the changed ones
+   * @return the update to send
+   */
+  public synchronized CountersUpdate encode(TezCounters counters, boolean full) {
+    int firstNewId = groupNames.size();
+    int numCounters = 0;
+    int[] ids;
+    long[] values;
+    synchronized (counters) {
+      ids = new int[counters.countCounters()];
+      values = new long[ids.length];
+      for (CounterGroup group : counters) {
+        for (TezCounter counter : group) {
+          int id = getId(group.getName(), counter.getName());
+          long value = counter.getValue();
+          if (full || id >= firstNewId || sentValues[id] != value) {
+            if (numCounters == ids.length) {
+              // Counters were added while iterating
+              ids = Arrays.copyOf(ids, numCounters * 2 + 1);
+              values = Arrays.copyOf(values, ids.length);
+            }
+            ids[numCounters] = id;
+            values[numCounters] = value;
+            numCounters++;
+            sentValues[id] = value;
+          }
+        }
+      }
+    }
+    int firstDefinedId = full ? 0 : firstNewId;
+    int numDefined = groupNames.size() - firstDefinedId;
+    String[] newGroupNames = groupNames.subList(firstDefinedId, groupNames.size())
+        .toArray(new String[numDefined]);
+    String[] newCounterNames = counterNames.subList(firstDefinedId, counterNames.size())
+        .toArray(new String[numDefined]);
+    return new CountersUpdate(full, firstDefinedId, newGroupNames, newCounterNames,
+        Arrays.copyOf(ids, numCounters), Arrays.copyOf(values, numCounters));
+  }
+
+  private int getId(String groupName, String counterName) {
+    Map<String, Integer> groupIds = counterIds.get(groupName);
+    if (groupIds == null) {
+      groupIds = new HashMap<String, Integer>();
+      counterIds.put(groupName, groupIds);
+    }
+    Integer id = groupIds.get(counterName);
+    if (id == null) {
+      id = groupNames.size();
+      groupIds.put(counterName, id);
+      groupNames.add(groupName);
+      counterNames.add(counterName);
+      if (id == sentValues.length) {
+        sentValues = Arrays.copyOf(sentValues, sentValues.length * 2);
+      }
+    }
+    return id;
+  }
+}
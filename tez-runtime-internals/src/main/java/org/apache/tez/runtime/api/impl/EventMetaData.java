@@ -22,8 +22,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Arrays;
 
 import javax.annotation.Nullable;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.util.StringInterner;
 import org.apache.tez.dag.records.TezTaskAttemptID;
@@ -62,6 +64,12 @@ public class EventMetaData implements Writable {
    */
   private TezTaskAttemptID taskAttemptID;
 
+  /**
+   * Serialized form, cached since the same meta data is sent along with every copy of an event
+   * routed to the destination tasks.
+   */
+  private volatile byte[] serialized;
+
   public EventMetaData() {
   }
 
@@ -94,6 +102,17 @@ public class EventMetaData implements Writable {
 
   @Override
   public void write(DataOutput out) throws IOException {
+    byte[] bytes = serialized;
+    if (bytes == null) {
+      DataOutputBuffer buffer = new DataOutputBuffer();
+      writeFields(buffer);
+      bytes = Arrays.copyOf(buffer.getData(), buffer.getLength());
+      serialized = bytes;
+    }
+    out.write(bytes);
+  }
+
+  private void writeFields(DataOutput out) throws IOException {
     out.writeInt(producerConsumerType.ordinal());
     if (taskVertexName != null) {
       out.writeBoolean(true);
@@ -117,6 +136,7 @@ public class EventMetaData implements Writable {
 
   @Override
   public void readFields(DataInput in) throws IOException {
+    serialized = null;
     producerConsumerType = EventProducerConsumerType.values()[in.readInt()];
     if (in.readBoolean()) {
       taskVertexName = StringInterner.weakIntern(in.readUTF());
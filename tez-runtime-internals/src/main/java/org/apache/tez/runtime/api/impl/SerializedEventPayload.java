@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.api.impl;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.tez.runtime.api.events.EventProtos.DataMovementEventProto;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Serialized user payload of a data movement event. Shared by the copies of an event which are
+ * routed to different destination tasks, so that the payload is serialized once instead of once
+ * per destination. The indices and version, which differ per destination, are serialized
+ * separately by {@link TezEvent}.
+ */
+@Private
+public class SerializedEventPayload {
+
+  private final ByteBuffer userPayload;
+  private volatile byte[] bytes;
+
+  public SerializedEventPayload(@Nullable ByteBuffer userPayload) {
+    this.userPayload = userPayload == null ? null : userPayload.duplicate();
+  }
+
+  /**
+   * @return a serialized {@link DataMovementEventProto} which only has the user payload set,
+   *         created on the first invocation
+   */
+  public byte[] getBytes() {
+    byte[] result = bytes;
+    if (result == null) {
+      // Concurrent invocations may serialize more than once, with the same result.
+      DataMovementEventProto.Builder builder = DataMovementEventProto.newBuilder();
+      if (userPayload != null) {
+        builder.setUserPayload(ByteString.copyFrom(userPayload.duplicate()));
+      }
+      result = builder.build().toByteArray();
+      bytes = result;
+    }
+    return result;
+  }
+}
@@ -56,6 +56,10 @@ public class TezEvent implements Writable {
 
   private EventMetaData destinationInfo;
 
+  // Payload serialized once for all destinations of a routed data movement event. Not sent over
+  // the wire as such.
+  private SerializedEventPayload serializedPayload;
+
   public TezEvent() {
   }
 
@@ -112,6 +116,18 @@ public class TezEvent implements Writable {
     return eventType;
   }
 
+  public SerializedEventPayload getSerializedPayload() {
+    return serializedPayload;
+  }
+
+  /**
+   * Set the shared serialized form of the payload of a data movement event. Must hold the same
+   * payload as the event.
+   */
+  public void setSerializedPayload(SerializedEventPayload serializedPayload) {
+    this.serializedPayload = serializedPayload;
+  }
+
   private void serializeEvent(DataOutput out) throws IOException {
     if (event == null) {
       out.writeBoolean(false);
@@ -123,6 +139,19 @@ public class TezEvent implements Writable {
       // TODO NEWTEZ convert to PB
       TaskStatusUpdateEvent sEvt = (TaskStatusUpdateEvent) event;
       sEvt.write(out);
+    } else if (eventType.equals(EventType.DATA_MOVEMENT_EVENT) && serializedPayload != null) {
+      // Only the indices and version are serialized per event. Protobuf merges concatenated
+      // messages when parsing, so the result is read like a single message.
+      DataMovementEvent dmEvt = (DataMovementEvent) event;
+      byte[] payloadBytes = serializedPayload.getBytes();
+      byte[] indexBytes = DataMovementEventProto.newBuilder()
+          .setSourceIndex(dmEvt.getSourceIndex())
+          .setTargetIndex(dmEvt.getTargetIndex())
+          .setVersion(dmEvt.getVersion())
+          .build().toByteArray();
+      out.writeInt(payloadBytes.length + indexBytes.length);
+      out.write(payloadBytes);
+      out.write(indexBytes);
     } else {
       byte[] eventBytes = null;
       switch (eventType) {
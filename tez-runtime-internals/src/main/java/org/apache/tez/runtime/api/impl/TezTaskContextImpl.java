@@ -194,7 +194,7 @@ public abstract class TezTaskContextImpl implements TaskContext {
 
   @Override
   public long getTotalMemoryAvailableToTask() {
-    return Runtime.getRuntime().maxMemory();
+    return MemoryDistributor.getTotalMemoryAvailableToTask(conf);
   }
   
   protected void signalFatalError(Throwable t, String message, EventMetaData sourceInfo) {
@@ -80,7 +80,7 @@ public class MemoryDistributor {
 
     this.numTotalInputs = numTotalInputs;
     this.numTotalOutputs = numTotalOutputs;
-    this.totalJvmMemory = Runtime.getRuntime().maxMemory();
+    this.totalJvmMemory = getTotalMemoryAvailableToTask(conf);
     this.requestList = Collections.synchronizedList(new LinkedList<RequestorInfo>());
     LOG.info("InitialMemoryDistributor (isEnabled=" + isEnabled + ") invoked with: numInputs="
         + numTotalInputs + ", numOutputs=" + numTotalOutputs
@@ -89,6 +89,22 @@ public class MemoryDistributor {
 
 
   
+  /**
+   * @return the share of the JVM heap available to a single task. In local mode, tasks run
+   *         inline in the AM and share its heap with the other inline tasks. Otherwise a task
+   *         has the JVM to itself.
+   */
+  public static long getTotalMemoryAvailableToTask(Configuration conf) {
+    int concurrentTasks = 1;
+    if (conf.getBoolean(TezConfiguration.TEZ_LOCAL_MODE,
+        TezConfiguration.TEZ_LOCAL_MODE_DEFAULT)) {
+      concurrentTasks = Math.max(1, conf.getInt(
+          TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS,
+          TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS_DEFAULT));
+    }
+    return Runtime.getRuntime().maxMemory() / concurrentTasks;
+  }
+
   /**
    * Used by the Tez framework to request memory on behalf of user requests.
    */
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.api.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.runtime.api.events.DataMovementEvent;
+import org.apache.tez.runtime.api.impl.EventMetaData.EventProducerConsumerType;
+import org.junit.Test;
+
+public class TestTezEvent {
+
+  @Test(timeout = 5000)
+  public void testSerializedPayload() throws IOException {
+    byte[] payload = "payload".getBytes();
+    SerializedEventPayload serializedPayload =
+        new SerializedEventPayload(ByteBuffer.wrap(payload));
+    EventMetaData sourceInfo = new EventMetaData(EventProducerConsumerType.OUTPUT, "src",
+        "dest", createAttemptId());
+    EventMetaData destinationInfo = new EventMetaData(EventProducerConsumerType.INPUT, "dest",
+        "src", null);
+
+    for (int i = 0; i < 3; i++) {
+      TezEvent tezEvent = new TezEvent(
+          DataMovementEvent.create(1, i, 2, ByteBuffer.wrap(payload)), sourceInfo);
+      tezEvent.setDestinationInfo(destinationInfo);
+      tezEvent.setSerializedPayload(serializedPayload);
+
+      TezEvent readEvent = writeAndRead(tezEvent);
+      DataMovementEvent dmEvent = (DataMovementEvent) readEvent.getEvent();
+      assertEquals(1, dmEvent.getSourceIndex());
+      assertEquals(i, dmEvent.getTargetIndex());
+      assertEquals(2, dmEvent.getVersion());
+      byte[] readPayload = new byte[dmEvent.getUserPayload().remaining()];
+      dmEvent.getUserPayload().get(readPayload);
+      assertArrayEquals(payload, readPayload);
+      assertEquals(sourceInfo.toString(), readEvent.getSourceInfo().toString());
+      assertEquals(destinationInfo.toString(), readEvent.getDestinationInfo().toString());
+    }
+    // Payload is serialized once
+    assertSame(serializedPayload.getBytes(), serializedPayload.getBytes());
+  }
+
+  @Test(timeout = 5000)
+  public void testSerializedPayloadMatchesRegularSerialization() throws IOException {
+    ByteBuffer payload = ByteBuffer.wrap("payload".getBytes());
+    EventMetaData sourceInfo = new EventMetaData(EventProducerConsumerType.OUTPUT, "src",
+        "dest", createAttemptId());
+    TezEvent regularEvent = new TezEvent(DataMovementEvent.create(3, 4, 5, payload), sourceInfo);
+    TezEvent cachedEvent = new TezEvent(DataMovementEvent.create(3, 4, 5, payload), sourceInfo);
+    cachedEvent.setSerializedPayload(new SerializedEventPayload(payload));
+
+    DataMovementEvent regular = (DataMovementEvent) writeAndRead(regularEvent).getEvent();
+    DataMovementEvent cached = (DataMovementEvent) writeAndRead(cachedEvent).getEvent();
+    assertEquals(regular.getSourceIndex(), cached.getSourceIndex());
+    assertEquals(regular.getTargetIndex(), cached.getTargetIndex());
+    assertEquals(regular.getVersion(), cached.getVersion());
+    assertEquals(regular.getUserPayload(), cached.getUserPayload());
+  }
+
+  private TezEvent writeAndRead(TezEvent tezEvent) throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    tezEvent.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    TezEvent readEvent = new TezEvent();
+    readEvent.readFields(in);
+    return readEvent;
+  }
+
+  private TezTaskAttemptID createAttemptId() {
+    TezVertexID vertexId = TezVertexID.getInstance(TezDAGID.getInstance("1000", 1, 1), 1);
+    return TezTaskAttemptID.getInstance(TezTaskID.getInstance(vertexId, 0), 0);
+  }
+}
@@ -46,6 +46,20 @@ public class TestMemoryDistributor {
         ScalingAllocator.class.getName());
   }
   
+  @Test(timeout = 5000)
+  public void testMemoryAvailableToConcurrentTasks() {
+    long maxMemory = Runtime.getRuntime().maxMemory();
+    assertEquals(maxMemory, MemoryDistributor.getTotalMemoryAvailableToTask(conf));
+
+    // Inline tasks only share the heap in local mode
+    Configuration concurrentConf = new Configuration(conf);
+    concurrentConf.setInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS, 4);
+    assertEquals(maxMemory, MemoryDistributor.getTotalMemoryAvailableToTask(concurrentConf));
+    concurrentConf.setBoolean(TezConfiguration.TEZ_LOCAL_MODE, true);
+    assertEquals(maxMemory / 4,
+        MemoryDistributor.getTotalMemoryAvailableToTask(concurrentConf));
+  }
+
   @Test(timeout = 5000)
   public void testScalingNoProcessor() {
     MemoryDistributor dist = new MemoryDistributor(2, 1, conf);
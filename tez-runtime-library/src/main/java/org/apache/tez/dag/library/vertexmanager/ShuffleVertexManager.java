@@ -51,6 +51,7 @@ import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
 import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 import org.apache.tez.runtime.api.events.VertexManagerEvent;
+import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.ShuffleEdgeManagerConfigPayloadProto;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.VertexManagerEventPayloadProto;
 
@@ -58,6 +59,7 @@ import javax.annotation.Nullable;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -141,6 +143,9 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
   @VisibleForTesting
   int bipartiteSources = 0;
   long completedSourceTasksOutputSize = 0;
+  // Output size of each partition, summed over the completed source tasks which reported them
+  long[] completedSourceTasksPartitionSizes = null;
+  int numPartitionSizesReceived = 0;
 
   class SourceVertexInfo {
     EdgeProperty edgeProperty;
@@ -165,6 +170,9 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
     int basePartitionRange;
     int remainderRangeForLastShuffler;
     int numSourceTasks;
+    // Destination task i consumes partitions [offsets[i], offsets[i+1]). Only set when the
+    // ranges have different widths, otherwise ranges are derived from basePartitionRange.
+    int[] partitionRangeOffsets;
 
     public CustomShuffleEdgeManager(EdgeManagerPluginContext context) {
       super(context);
@@ -190,19 +198,44 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
       this.numDestinationTasks = config.numDestinationTasks;
       this.basePartitionRange = config.basePartitionRange;
       this.remainderRangeForLastShuffler = config.remainderRangeForLastShuffler;
+      this.partitionRangeOffsets = config.partitionRangeOffsets;
       this.numSourceTasks = getContext().getSourceVertexNumTasks();
       Preconditions.checkState(this.numDestinationTasks == getContext().getDestinationVertexNumTasks());
+      Preconditions.checkState(partitionRangeOffsets == null
+          || partitionRangeOffsets.length == numDestinationTasks + 1);
     }
 
-    @Override
-    public int getNumDestinationTaskPhysicalInputs(int destinationTaskIndex) {
-      int partitionRange = 1;
+    private int getPartitionRange(int destinationTaskIndex) {
+      if (partitionRangeOffsets != null) {
+        return partitionRangeOffsets[destinationTaskIndex + 1]
+            - partitionRangeOffsets[destinationTaskIndex];
+      }
       if(destinationTaskIndex < numDestinationTasks-1) {
-        partitionRange = basePartitionRange;
+        return basePartitionRange;
       } else {
-        partitionRange = remainderRangeForLastShuffler;
+        return remainderRangeForLastShuffler;
+      }
+    }
+
+    private int getFirstPartition(int destinationTaskIndex) {
+      if (partitionRangeOffsets != null) {
+        return partitionRangeOffsets[destinationTaskIndex];
       }
-      return numSourceTasks * partitionRange;
+      return destinationTaskIndex * basePartitionRange;
+    }
+
+    private int getDestinationTaskIndex(int partition) {
+      if (partitionRangeOffsets != null) {
+        // ranges are never empty, so offsets are strictly increasing
+        int pos = Arrays.binarySearch(partitionRangeOffsets, partition);
+        return pos >= 0 ? pos : -pos - 2;
+      }
+      return partition/basePartitionRange;
+    }
+
+    @Override
+    public int getNumDestinationTaskPhysicalInputs(int destinationTaskIndex) {
+      return numSourceTasks * getPartitionRange(destinationTaskIndex);
     }
 
     @Override
@@ -215,18 +248,13 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
         int sourceTaskIndex, int sourceOutputIndex, 
         Map<Integer, List<Integer>> destinationTaskAndInputIndices) {
       int sourceIndex = event.getSourceIndex();
-      int destinationTaskIndex = sourceIndex/basePartitionRange;
-      int partitionRange = 1;
-      if(destinationTaskIndex < numDestinationTasks-1) {
-        partitionRange = basePartitionRange;
-      } else {
-        partitionRange = remainderRangeForLastShuffler;
-      }
+      int destinationTaskIndex = getDestinationTaskIndex(sourceIndex);
+      int partitionRange = getPartitionRange(destinationTaskIndex);
       
       // all inputs from a source task are next to each other in original order
       int targetIndex = 
           sourceTaskIndex * partitionRange 
-          + sourceIndex % partitionRange;
+          + (sourceIndex - getFirstPartition(destinationTaskIndex));
       
       destinationTaskAndInputIndices.put(new Integer(destinationTaskIndex),
           Collections.singletonList(new Integer(targetIndex)));
@@ -235,49 +263,28 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
     @Override
     public void routeInputSourceTaskFailedEventToDestination(int sourceTaskIndex, 
         Map<Integer, List<Integer>> destinationTaskAndInputIndices) {
-      if (remainderRangeForLastShuffler < basePartitionRange) {
-        int startOffset = sourceTaskIndex * basePartitionRange;
-        List<Integer> allIndices = Lists.newArrayListWithCapacity(basePartitionRange);
-        for (int i=0; i<basePartitionRange; ++i) {
-          allIndices.add(startOffset + i);
-        }
-        List<Integer> inputIndices = Collections.unmodifiableList(allIndices);
-        for (int i=0; i<numDestinationTasks-1; ++i) {
-          destinationTaskAndInputIndices.put(i, inputIndices);
-        }
-        
-        
-        startOffset = sourceTaskIndex * remainderRangeForLastShuffler;
-        allIndices = Lists.newArrayListWithCapacity(remainderRangeForLastShuffler);
-        for (int i=0; i<remainderRangeForLastShuffler; ++i) {
-          allIndices.add(startOffset+i);
-        }
-        inputIndices = Collections.unmodifiableList(allIndices);
-        destinationTaskAndInputIndices.put(numDestinationTasks-1, inputIndices);
-      } else {
-        // all tasks have same pattern
-        int startOffset = sourceTaskIndex * basePartitionRange;        
-        List<Integer> allIndices = Lists.newArrayListWithCapacity(basePartitionRange);
-        for (int i=0; i<basePartitionRange; ++i) {
-          allIndices.add(startOffset + i);
-        }
-        List<Integer> inputIndices = Collections.unmodifiableList(allIndices);
-        for (int i=0; i<numDestinationTasks; ++i) {
-          destinationTaskAndInputIndices.put(i, inputIndices);
+      // destination tasks with the same range width share the same input indices
+      Map<Integer, List<Integer>> inputIndicesByRange = Maps.newHashMap();
+      for (int i=0; i<numDestinationTasks; ++i) {
+        int partitionRange = getPartitionRange(i);
+        List<Integer> inputIndices = inputIndicesByRange.get(partitionRange);
+        if (inputIndices == null) {
+          int startOffset = sourceTaskIndex * partitionRange;
+          List<Integer> allIndices = Lists.newArrayListWithCapacity(partitionRange);
+          for (int j=0; j<partitionRange; ++j) {
+            allIndices.add(startOffset + j);
+          }
+          inputIndices = Collections.unmodifiableList(allIndices);
+          inputIndicesByRange.put(partitionRange, inputIndices);
         }
+        destinationTaskAndInputIndices.put(i, inputIndices);
       }
     }
 
     @Override
     public int routeInputErrorEventToSource(InputReadErrorEvent event,
         int destinationTaskIndex, int destinationFailedInputIndex) {
-      int partitionRange = 1;
-      if(destinationTaskIndex < numDestinationTasks-1) {
-        partitionRange = basePartitionRange;
-      } else {
-        partitionRange = remainderRangeForLastShuffler;
-      }
-      return destinationFailedInputIndex/partitionRange;
+      return destinationFailedInputIndex/getPartitionRange(destinationTaskIndex);
     }
 
     @Override
@@ -291,36 +298,52 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
     int numDestinationTasks;
     int basePartitionRange;
     int remainderRangeForLastShuffler;
+    int[] partitionRangeOffsets;
 
     private CustomShuffleEdgeManagerConfig(int numSourceTaskOutputs,
         int numDestinationTasks,
         int basePartitionRange,
-        int remainderRangeForLastShuffler) {
+        int remainderRangeForLastShuffler,
+        @Nullable int[] partitionRangeOffsets) {
       this.numSourceTaskOutputs = numSourceTaskOutputs;
       this.numDestinationTasks = numDestinationTasks;
       this.basePartitionRange = basePartitionRange;
       this.remainderRangeForLastShuffler = remainderRangeForLastShuffler;
+      this.partitionRangeOffsets = partitionRangeOffsets;
     }
 
     public UserPayload toUserPayload() {
-      return UserPayload.create(
-          ByteBuffer.wrap(ShuffleEdgeManagerConfigPayloadProto.newBuilder()
+      ShuffleEdgeManagerConfigPayloadProto.Builder builder =
+          ShuffleEdgeManagerConfigPayloadProto.newBuilder()
               .setNumSourceTaskOutputs(numSourceTaskOutputs)
               .setNumDestinationTasks(numDestinationTasks)
               .setBasePartitionRange(basePartitionRange)
-              .setRemainderRangeForLastShuffler(remainderRangeForLastShuffler)
-              .build().toByteArray()));
+              .setRemainderRangeForLastShuffler(remainderRangeForLastShuffler);
+      if (partitionRangeOffsets != null) {
+        for (int offset : partitionRangeOffsets) {
+          builder.addPartitionRangeOffsets(offset);
+        }
+      }
+      return UserPayload.create(ByteBuffer.wrap(builder.build().toByteArray()));
     }
 
     public static CustomShuffleEdgeManagerConfig fromUserPayload(
         UserPayload payload) throws InvalidProtocolBufferException {
       ShuffleEdgeManagerConfigPayloadProto proto =
           ShuffleEdgeManagerConfigPayloadProto.parseFrom(ByteString.copyFrom(payload.getPayload()));
+      int[] partitionRangeOffsets = null;
+      if (proto.getPartitionRangeOffsetsCount() > 0) {
+        partitionRangeOffsets = new int[proto.getPartitionRangeOffsetsCount()];
+        for (int i = 0; i < partitionRangeOffsets.length; i++) {
+          partitionRangeOffsets[i] = proto.getPartitionRangeOffsets(i);
+        }
+      }
       return new CustomShuffleEdgeManagerConfig(
           proto.getNumSourceTaskOutputs(),
           proto.getNumDestinationTasks(),
           proto.getBasePartitionRange(),
-          proto.getRemainderRangeForLastShuffler());
+          proto.getRemainderRangeForLastShuffler(),
+          partitionRangeOffsets);
 
     }
   }
@@ -382,6 +405,20 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
       long sourceTaskOutputSize = proto.getOutputSize();
       numVertexManagerEventsReceived++;
       completedSourceTasksOutputSize += sourceTaskOutputSize;
+      if (proto.hasPartitionSizes() && !proto.getPartitionSizes().isEmpty()) {
+        ByteString partitionSizes = proto.getPartitionSizes();
+        if (completedSourceTasksPartitionSizes == null) {
+          completedSourceTasksPartitionSizes = new long[partitionSizes.size()];
+        }
+        // sources with a different number of partitions cannot be combined
+        if (partitionSizes.size() == completedSourceTasksPartitionSizes.length) {
+          for (int i = 0; i < completedSourceTasksPartitionSizes.length; i++) {
+            completedSourceTasksPartitionSizes[i] +=
+                ShuffleUtils.decodePartitionSize(partitionSizes.byteAt(i));
+          }
+          numPartitionSizesReceived++;
+        }
+      }
       if (LOG.isDebugEnabled()) {
         LOG.debug("Received info of output size: " + sourceTaskOutputSize 
             + " numInfoReceived: " + numVertexManagerEventsReceived
@@ -465,7 +502,28 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
     if(desiredTaskParallelism >= currentParallelism) {
       return true;
     }
-    
+
+    int[] partitionRangeOffsets = null;
+    if (numPartitionSizesReceived == numVertexManagerEventsReceived
+        && completedSourceTasksPartitionSizes != null
+        && completedSourceTasksPartitionSizes.length == currentParallelism) {
+      partitionRangeOffsets = computePartitionRangeOffsets(desiredTaskParallelism);
+    }
+    if (partitionRangeOffsets != null) {
+      int finalTaskParallelism = partitionRangeOffsets.length - 1;
+      LOG.info("Reduce auto parallelism for vertex: " + getContext().getVertexName()
+          + " to " + finalTaskParallelism + " from " + pendingTasks.size()
+          + " using partition sizes. Expected output: " + expectedTotalSourceTasksOutputSize
+          + " based on actual output: " + completedSourceTasksOutputSize
+          + " from " + numVertexManagerEventsReceived + " vertex manager events. "
+          + " desiredTaskInputSize: " + desiredTaskInputDataSize);
+      if (finalTaskParallelism < currentParallelism) {
+        reconfigureVertex(new CustomShuffleEdgeManagerConfig(currentParallelism,
+            finalTaskParallelism, 0, 0, partitionRangeOffsets));
+      }
+      return true;
+    }
+
     // most shufflers will be assigned this range
     int basePartitionRange = currentParallelism/desiredTaskParallelism;
     
@@ -491,29 +549,74 @@ public class ShuffleVertexManager extends VertexManagerPlugin {
           
     if(finalTaskParallelism < currentParallelism) {
       // final parallelism is less than actual parallelism
-      Map<String, EdgeManagerPluginDescriptor> edgeManagers =
-          new HashMap<String, EdgeManagerPluginDescriptor>(bipartiteSources);
-      Iterable<Map.Entry<String, SourceVertexInfo>> bipartiteItr = getBipartiteInfo();
-      for(Map.Entry<String, SourceVertexInfo> entry : bipartiteItr) {
-        String vertex = entry.getKey();
-        // use currentParallelism for numSourceTasks to maintain original state
-        // for the source tasks
-        CustomShuffleEdgeManagerConfig edgeManagerConfig =
-            new CustomShuffleEdgeManagerConfig(
-                currentParallelism, finalTaskParallelism, basePartitionRange,
-                ((remainderRangeForLastShuffler > 0) ?
-                    remainderRangeForLastShuffler : basePartitionRange));
-        EdgeManagerPluginDescriptor edgeManagerDescriptor =
-            EdgeManagerPluginDescriptor.create(CustomShuffleEdgeManager.class.getName());
-        edgeManagerDescriptor.setUserPayload(edgeManagerConfig.toUserPayload());
-        edgeManagers.put(vertex, edgeManagerDescriptor);
-      }
-      
-      getContext().setVertexParallelism(finalTaskParallelism, null, edgeManagers, null);
-      updatePendingTasks();
+      // use currentParallelism for numSourceTasks to maintain original state
+      // for the source tasks
+      reconfigureVertex(new CustomShuffleEdgeManagerConfig(
+          currentParallelism, finalTaskParallelism, basePartitionRange,
+          ((remainderRangeForLastShuffler > 0) ?
+              remainderRangeForLastShuffler : basePartitionRange), null));
     }
     return true;
   }
+
+  private void reconfigureVertex(CustomShuffleEdgeManagerConfig edgeManagerConfig) {
+    Map<String, EdgeManagerPluginDescriptor> edgeManagers =
+        new HashMap<String, EdgeManagerPluginDescriptor>(bipartiteSources);
+    Iterable<Map.Entry<String, SourceVertexInfo>> bipartiteItr = getBipartiteInfo();
+    for(Map.Entry<String, SourceVertexInfo> entry : bipartiteItr) {
+      String vertex = entry.getKey();
+      EdgeManagerPluginDescriptor edgeManagerDescriptor =
+          EdgeManagerPluginDescriptor.create(CustomShuffleEdgeManager.class.getName());
+      edgeManagerDescriptor.setUserPayload(edgeManagerConfig.toUserPayload());
+      edgeManagers.put(vertex, edgeManagerDescriptor);
+    }
+
+    getContext().setVertexParallelism(edgeManagerConfig.numDestinationTasks, null,
+        edgeManagers, null);
+    updatePendingTasks();
+  }
+
+  /**
+   * Groups consecutive partitions into ranges of roughly equal size, based on the partition
+   * sizes reported by the completed source tasks. A partition larger than the target size gets
+   * a task of its own, while small partitions are packed together. The number of ranges may
+   * therefore exceed the desired parallelism when the partitions are skewed.
+   *
+   * @return the first partition of each range followed by the number of partitions, or null if
+   *         the sizes do not allow for at least minTaskParallelism ranges
+   */
+  @VisibleForTesting
+  int[] computePartitionRangeOffsets(int desiredTaskParallelism) {
+    long[] partitionSizes = completedSourceTasksPartitionSizes;
+    long totalSize = 0;
+    for (long partitionSize : partitionSizes) {
+      totalSize += partitionSize;
+    }
+    long targetRangeSize = Math.max(1,
+        (totalSize + desiredTaskParallelism - 1) / desiredTaskParallelism);
+
+    List<Integer> offsets = Lists.newArrayList();
+    offsets.add(0);
+    long rangeSize = 0;
+    for (int partition = 0; partition < partitionSizes.length; partition++) {
+      if (partition > offsets.get(offsets.size() - 1)
+          && rangeSize + partitionSizes[partition] > targetRangeSize) {
+        offsets.add(partition);
+        rangeSize = 0;
+      }
+      rangeSize += partitionSizes[partition];
+    }
+    offsets.add(partitionSizes.length);
+
+    if (offsets.size() - 1 < minTaskParallelism) {
+      return null;
+    }
+    int[] result = new int[offsets.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = offsets.get(i);
+    }
+    return result;
+  }
   
   void schedulePendingTasks(int numTasksToSchedule) {
     // determine parallelism before scheduling the first time
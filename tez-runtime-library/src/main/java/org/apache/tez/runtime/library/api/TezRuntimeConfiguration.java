@@ -200,6 +200,74 @@ public class TezRuntimeConfiguration {
   public static final boolean TEZ_RUNTIME_SHUFFLE_ENABLE_SSL_DEFAULT = false;
 
 
+  /**
+   * Maximum rate, in bytes per second, at which the fetchers of a single shuffle input read
+   * data. A value of 0 or less disables the limit.
+   */
+  public static final String TEZ_RUNTIME_SHUFFLE_FETCH_BANDWIDTH_BYTES_PER_SEC =
+      TEZ_RUNTIME_PREFIX + "shuffle.fetch.bandwidth.bytes-per-sec";
+  public static final long TEZ_RUNTIME_SHUFFLE_FETCH_BANDWIDTH_BYTES_PER_SEC_DEFAULT = 0;
+
+  /**
+   * Maximum rate, in bytes per second, at which all the shuffle inputs running in a container
+   * read data. The limit is shared by concurrent inputs and by tasks of a reused container, and
+   * is set up by the first input which needs it. A value of 0 or less disables the limit.
+   */
+  public static final String TEZ_RUNTIME_SHUFFLE_FETCH_CONTAINER_BANDWIDTH_BYTES_PER_SEC =
+      TEZ_RUNTIME_PREFIX + "shuffle.fetch.container.bandwidth.bytes-per-sec";
+  public static final long TEZ_RUNTIME_SHUFFLE_FETCH_CONTAINER_BANDWIDTH_BYTES_PER_SEC_DEFAULT = 0;
+
+  /**
+   * Maximum number of concurrent shuffle connections from a container to a single remote host.
+   * Helps avoid incast on popular source hosts. A value of 0 or less disables the limit.
+   */
+  public static final String TEZ_RUNTIME_SHUFFLE_FETCH_MAX_CONNECTIONS_PER_HOST =
+      TEZ_RUNTIME_PREFIX + "shuffle.fetch.max.connections.per-host";
+  public static final int TEZ_RUNTIME_SHUFFLE_FETCH_MAX_CONNECTIONS_PER_HOST_DEFAULT = 0;
+
+  /**
+   * Whether ordered inputs fetch all the partitions they need from a host over a single
+   * connection, by requesting a partition range (reduce=start-end) instead of one partition per
+   * request. Useful when auto-reduce has assigned several partitions to each consumer.
+   * Requires a shuffle service which accepts partition ranges and responds with one segment per
+   * map and partition.
+   */
+  public static final String TEZ_RUNTIME_SHUFFLE_FETCH_PARTITION_RANGE_ENABLED =
+      TEZ_RUNTIME_PREFIX + "shuffle.fetch.partition-range.enabled";
+  public static final boolean TEZ_RUNTIME_SHUFFLE_FETCH_PARTITION_RANGE_ENABLED_DEFAULT = false;
+
+  /**
+   * Maximum size of the container level cache of inputs fetched into memory by unordered
+   * inputs. Subsequent tasks in a reused container which consume the same source outputs (e.g.
+   * broadcast edges) are served from the cache instead of fetching again. The cache is in
+   * addition to the memory allocated to tasks. A value of 0 or less disables the cache.
+   */
+  public static final String TEZ_RUNTIME_SHUFFLE_INPUT_CACHE_MAX_SIZE_BYTES =
+      TEZ_RUNTIME_PREFIX + "shuffle.input.cache.max-size-bytes";
+  public static final long TEZ_RUNTIME_SHUFFLE_INPUT_CACHE_MAX_SIZE_BYTES_DEFAULT = 0;
+
+  /**
+   * Whether the off-heap hash table built by UnorderedKVHashTableInput is shared with
+   * subsequent tasks of the same vertex running in the container. Tasks finding a shared table do
+   * not fetch their input at all. Only takes effect for inputs of broadcast edges, where all
+   * tasks consume the same data, i.e. inputs configured with
+   * UnorderedKVEdgeConfig#createDefaultBroadcastEdgeProperty or
+   * UnorderedKVEdgeConfig#getBroadcastInputPayload.
+   */
+  public static final String TEZ_RUNTIME_HASHTABLE_INPUT_SHARE_ENABLED =
+      TEZ_RUNTIME_PREFIX + "hashtable.input.share.enabled";
+  public static final boolean TEZ_RUNTIME_HASHTABLE_INPUT_SHARE_ENABLED_DEFAULT = false;
+
+  /**
+   * Set in the input payload by the edge configs for inputs of broadcast edges.
+   */
+  @Private
+  public static final String TEZ_RUNTIME_INTERNAL_BROADCAST_INPUT =
+      TEZ_RUNTIME_PREFIX + "internal.broadcast-input";
+  @Private
+  public static final boolean TEZ_RUNTIME_INTERNAL_BROADCAST_INPUT_DEFAULT = false;
+
+
   public static final String TEZ_RUNTIME_SHUFFLE_FETCH_BUFFER_PERCENT = TEZ_RUNTIME_PREFIX +
       "shuffle.fetch.buffer.percent";
   public static final float TEZ_RUNTIME_SHUFFLE_FETCH_BUFFER_PERCENT_DEFAULT =
@@ -258,6 +326,16 @@ public class TezRuntimeConfiguration {
           "empty.partitions.info-via-events.enabled";
   public static final boolean TEZ_RUNTIME_EMPTY_PARTITION_INFO_VIA_EVENTS_ENABLED_DEFAULT = true;
 
+  /**
+   * Boolean value. Whether sorted partitioned outputs report the size of each partition to the
+   * vertex manager of the consumer vertex, which allows automatic parallelism to balance skewed
+   * partitions across tasks. Sizes are approximated to one byte per partition, so the event grows
+   * with the number of partitions. Disable for outputs with a very large number of partitions.
+   */
+  public static final String TEZ_RUNTIME_REPORT_PARTITION_STATS =
+      TEZ_RUNTIME_PREFIX + "report.partition.stats";
+  public static final boolean TEZ_RUNTIME_REPORT_PARTITION_STATS_DEFAULT = true;
+
   @Private
   public static final String TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_ENABLED =
       TEZ_RUNTIME_PREFIX + "transfer.data-via-events.enabled";
@@ -270,6 +348,18 @@ public class TezRuntimeConfiguration {
   @Private
   public static final int TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_MAX_SIZE_DEFAULT = 200 << 10; // 200KB
 
+  /**
+   * Maximum total size of a partitioned output for its data to be sent via events, when
+   * transfer.data-via-events is enabled. The data of all partitions is routed to every consumer,
+   * so this is expected to be much smaller than transfer.data-via-events.max-size.
+   */
+  @Private
+  public static final String TEZ_RUNTIME_TRANSFER_PARTITIONED_DATA_VIA_EVENTS_MAX_SIZE =
+      TEZ_RUNTIME_PREFIX + "transfer.partitioned.data-via-events.max-size";
+  @Private
+  public static final int TEZ_RUNTIME_TRANSFER_PARTITIONED_DATA_VIA_EVENTS_MAX_SIZE_DEFAULT =
+      16 << 10; // 16KB
+
   /**
    * If the shuffle input is on the local host bypass the http fetch and access the files directly
    */
@@ -332,6 +422,13 @@ public class TezRuntimeConfiguration {
     tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_READ_TIMEOUT);
     tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_BUFFER_SIZE);
     tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_ENABLE_SSL);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_FETCH_BANDWIDTH_BYTES_PER_SEC);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_FETCH_CONTAINER_BANDWIDTH_BYTES_PER_SEC);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_FETCH_MAX_CONNECTIONS_PER_HOST);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_FETCH_PARTITION_RANGE_ENABLED);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_INPUT_CACHE_MAX_SIZE_BYTES);
+    tezRuntimeKeys.add(TEZ_RUNTIME_HASHTABLE_INPUT_SHARE_ENABLED);
+    tezRuntimeKeys.add(TEZ_RUNTIME_INTERNAL_BROADCAST_INPUT);
     tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_FETCH_BUFFER_PERCENT);
     tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_MEMORY_LIMIT_PERCENT);
     tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_MERGE_PERCENT);
@@ -347,8 +444,10 @@ public class TezRuntimeConfiguration {
     tezRuntimeKeys.add(TEZ_RUNTIME_COMPRESS_CODEC);
     tezRuntimeKeys.add(TEZ_RUNTIME_KEY_SECONDARY_COMPARATOR_CLASS);
     tezRuntimeKeys.add(TEZ_RUNTIME_EMPTY_PARTITION_INFO_VIA_EVENTS_ENABLED);
+    tezRuntimeKeys.add(TEZ_RUNTIME_REPORT_PARTITION_STATS);
     tezRuntimeKeys.add(TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_ENABLED);
     tezRuntimeKeys.add(TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_MAX_SIZE);
+    tezRuntimeKeys.add(TEZ_RUNTIME_TRANSFER_PARTITIONED_DATA_VIA_EVENTS_MAX_SIZE);
     tezRuntimeKeys.add(TEZ_RUNTIME_RECORDS_BEFORE_PROGRESS);
     tezRuntimeKeys.add(TEZ_RUNTIME_OPTIMIZE_LOCAL_FETCH);
     tezRuntimeKeys.add(TEZ_RUNTIME_OPTIMIZE_SHARED_FETCH);
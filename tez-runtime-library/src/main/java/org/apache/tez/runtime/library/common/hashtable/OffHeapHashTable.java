@@ -0,0 +1,289 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common.hashtable;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.io.WritableComparator;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Open addressing hash table of serialized keys and values, held in direct (off-heap) buffers.
+ * <p/>
+ * Records are appended to a single data buffer, and the slots of the table only hold the hash of
+ * a key and the offset of its latest record. Records with the same key are chained, so that
+ * duplicate keys are supported. The table is probed with the serialized form of a key, and
+ * records are referred to by their offset in the data buffer.
+ * <p/>
+ * The table is not thread safe while it is being built. Once built, it may be probed by multiple
+ * threads concurrently. The memory is released once the table is no longer referenced.
+ */
+@Private
+public class OffHeapHashTable {
+
+  /** Returned when there are no (more) records */
+  public static final int NO_RECORD = -1;
+
+  // Record layout: offset of the next record with the same key, key length, value length,
+  // followed by the key and value bytes.
+  private static final int RECORD_HEADER_SIZE = 12;
+  private static final int NEXT_OFFSET = 0;
+  private static final int KEY_LENGTH_OFFSET = 4;
+  private static final int VALUE_LENGTH_OFFSET = 8;
+
+  // Slot layout: hash of the key, offset of the latest record + 1. 0 marks an empty slot.
+  private static final int SLOT_SIZE = 8;
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private ByteBuffer slots;
+  private int numSlots;
+  private int resizeThreshold;
+
+  private ByteBuffer data;
+  private int dataSize = 0;
+
+  private int numKeys = 0;
+  private int numRecords = 0;
+
+  /**
+   * @param expectedKeys number of distinct keys the table is sized for initially
+   * @param initialDataSize initial size of the buffer holding the records, in bytes
+   */
+  public OffHeapHashTable(int expectedKeys, int initialDataSize) {
+    Preconditions.checkArgument(expectedKeys > 0, "expectedKeys must be positive");
+    Preconditions.checkArgument(initialDataSize > 0, "initialDataSize must be positive");
+    int capacity = Integer.highestOneBit(Math.max((int) (expectedKeys / LOAD_FACTOR), 2) - 1) << 1;
+    allocateSlots(capacity);
+    this.data = ByteBuffer.allocateDirect(initialDataSize);
+  }
+
+  /**
+   * Add a record to the table. Records with a key which already exists are returned before the
+   * existing ones when probing.
+   */
+  public void put(byte[] key, int keyOffset, int keyLength, byte[] value, int valueOffset,
+      int valueLength) {
+    if (numKeys >= resizeThreshold) {
+      allocateSlots(numSlots << 1);
+    }
+    int hash = hash(key, keyOffset, keyLength);
+    int slot = findSlot(hash, key, keyOffset, keyLength);
+    int slotPosition = slot * SLOT_SIZE;
+    int existingRecord = slots.getInt(slotPosition + 4) - 1;
+
+    int record = appendRecord(existingRecord, key, keyOffset, keyLength, value, valueOffset,
+        valueLength);
+    if (existingRecord == NO_RECORD) {
+      slots.putInt(slotPosition, hash);
+      numKeys++;
+    }
+    slots.putInt(slotPosition + 4, record + 1);
+    numRecords++;
+  }
+
+  /**
+   * @return the latest record for the key, or {@link #NO_RECORD} if the key does not exist
+   */
+  public int getFirstRecord(byte[] key, int keyOffset, int keyLength) {
+    int hash = hash(key, keyOffset, keyLength);
+    int slot = findSlot(hash, key, keyOffset, keyLength);
+    return slots.getInt(slot * SLOT_SIZE + 4) - 1;
+  }
+
+  public boolean containsKey(byte[] key, int keyOffset, int keyLength) {
+    return getFirstRecord(key, keyOffset, keyLength) != NO_RECORD;
+  }
+
+  /**
+   * @return the next record with the same key, or {@link #NO_RECORD} if there are no more
+   */
+  public int getNextRecord(int record) {
+    return data.getInt(record + NEXT_OFFSET);
+  }
+
+  /**
+   * Iterate over all records in the table, in the order they were added.
+   *
+   * @param record the previous record, or {@link #NO_RECORD} to start at the first one
+   * @return the record after the given one, or {@link #NO_RECORD} if there are no more
+   */
+  public int scan(int record) {
+    int next;
+    if (record == NO_RECORD) {
+      next = 0;
+    } else {
+      next = record + RECORD_HEADER_SIZE + getKeyLength(record) + getValueLength(record);
+    }
+    return next < dataSize ? next : NO_RECORD;
+  }
+
+  public int getKeyLength(int record) {
+    return data.getInt(record + KEY_LENGTH_OFFSET);
+  }
+
+  public int getValueLength(int record) {
+    return data.getInt(record + VALUE_LENGTH_OFFSET);
+  }
+
+  /**
+   * Copy the serialized key of a record into the given array, which must have space for
+   * {@link #getKeyLength(int)} bytes.
+   */
+  public void getKey(int record, byte[] dst, int dstOffset) {
+    copy(record + RECORD_HEADER_SIZE, dst, dstOffset, getKeyLength(record));
+  }
+
+  /**
+   * Copy the serialized value of a record into the given array, which must have space for
+   * {@link #getValueLength(int)} bytes.
+   */
+  public void getValue(int record, byte[] dst, int dstOffset) {
+    copy(record + RECORD_HEADER_SIZE + getKeyLength(record), dst, dstOffset,
+        getValueLength(record));
+  }
+
+  public int getNumKeys() {
+    return numKeys;
+  }
+
+  public int getNumRecords() {
+    return numRecords;
+  }
+
+  /**
+   * @return the off-heap memory allocated by the table, in bytes
+   */
+  public long getAllocatedBytes() {
+    return (long) slots.capacity() + data.capacity();
+  }
+
+  private void copy(int position, byte[] dst, int dstOffset, int length) {
+    // Working on a duplicate, since the position of the shared buffer must not be modified by
+    // concurrent readers.
+    ByteBuffer src = data.duplicate();
+    src.position(position);
+    src.get(dst, dstOffset, length);
+  }
+
+  private int appendRecord(int nextRecord, byte[] key, int keyOffset, int keyLength,
+      byte[] value, int valueOffset, int valueLength) {
+    long recordSize = (long) RECORD_HEADER_SIZE + keyLength + valueLength;
+    ensureDataCapacity(recordSize);
+    int record = dataSize;
+    data.position(record);
+    data.putInt(nextRecord);
+    data.putInt(keyLength);
+    data.putInt(valueLength);
+    data.put(key, keyOffset, keyLength);
+    data.put(value, valueOffset, valueLength);
+    dataSize += (int) recordSize;
+    return record;
+  }
+
+  private void ensureDataCapacity(long recordSize) {
+    long required = dataSize + recordSize;
+    if (required <= data.capacity()) {
+      return;
+    }
+    if (required > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Hash table data exceeds " + Integer.MAX_VALUE
+          + " bytes, numRecords=" + numRecords);
+    }
+    int newCapacity = (int) Math.min(Math.max((long) data.capacity() << 1, required),
+        Integer.MAX_VALUE);
+    ByteBuffer newData = ByteBuffer.allocateDirect(newCapacity);
+    ByteBuffer src = data.duplicate();
+    src.position(0);
+    src.limit(dataSize);
+    newData.put(src);
+    data = newData;
+  }
+
+  private void allocateSlots(int capacity) {
+    ByteBuffer oldSlots = slots;
+    int oldNumSlots = numSlots;
+    slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+    numSlots = capacity;
+    resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    if (oldSlots == null) {
+      return;
+    }
+    // Rehash using the stored hashes, without touching the records.
+    int mask = numSlots - 1;
+    for (int i = 0; i < oldNumSlots; i++) {
+      int recordRef = oldSlots.getInt(i * SLOT_SIZE + 4);
+      if (recordRef == 0) {
+        continue;
+      }
+      int hash = oldSlots.getInt(i * SLOT_SIZE);
+      int slot = hash & mask;
+      while (slots.getInt(slot * SLOT_SIZE + 4) != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots.putInt(slot * SLOT_SIZE, hash);
+      slots.putInt(slot * SLOT_SIZE + 4, recordRef);
+    }
+  }
+
+  /**
+   * @return the slot holding the key, or the empty slot where it would be inserted
+   */
+  private int findSlot(int hash, byte[] key, int keyOffset, int keyLength) {
+    int mask = numSlots - 1;
+    int slot = hash & mask;
+    while (true) {
+      int slotPosition = slot * SLOT_SIZE;
+      int recordRef = slots.getInt(slotPosition + 4);
+      if (recordRef == 0) {
+        return slot;
+      }
+      if (slots.getInt(slotPosition) == hash
+          && keyEquals(recordRef - 1, key, keyOffset, keyLength)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean keyEquals(int record, byte[] key, int keyOffset, int keyLength) {
+    if (getKeyLength(record) != keyLength) {
+      return false;
+    }
+    int position = record + RECORD_HEADER_SIZE;
+    for (int i = 0; i < keyLength; i++) {
+      if (data.get(position + i) != key[keyOffset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(byte[] key, int keyOffset, int keyLength) {
+    int h = WritableComparator.hashBytes(key, keyOffset, keyLength);
+    // Spread the bits, since the slot is picked using the low order bits only.
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
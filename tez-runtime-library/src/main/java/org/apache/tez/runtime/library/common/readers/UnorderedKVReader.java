@@ -109,14 +109,31 @@ public class UnorderedKVReader<K, V> extends KeyValueReader {
    */
   @Override  
   public boolean next() throws IOException {
-    if (readNextFromCurrentReader()) {
+    return next(true);
+  }
+
+  /**
+   * Moves to the next key/value pair, without deserializing it. The serialized key and value are
+   * available via {@link #getCurrentRawKey()} and {@link #getCurrentRawValue()}, and are only
+   * valid till the next invocation.
+   *
+   * @return true if another key/value pair exists, false if there are no more.
+   * @throws IOException
+   *           if an error occurs
+   */
+  public boolean nextRaw() throws IOException {
+    return next(false);
+  }
+
+  private boolean next(boolean deserialize) throws IOException {
+    if (readNextFromCurrentReader(deserialize)) {
       inputRecordCounter.increment(1);
       numRecordsRead++;
       return true;
     } else {
       boolean nextInputExists = moveToNextInput();
       while (nextInputExists) {
-        if(readNextFromCurrentReader()) {
+        if(readNextFromCurrentReader(deserialize)) {
           inputRecordCounter.increment(1);
           numRecordsRead++;
           return true;
@@ -138,12 +155,21 @@ public class UnorderedKVReader<K, V> extends KeyValueReader {
     return value;
   }
 
+  public DataInputBuffer getCurrentRawKey() {
+    return keyIn;
+  }
+
+  public DataInputBuffer getCurrentRawValue() {
+    return valIn;
+  }
+
   /**
    * Tries reading the next key and value from the current reader.
+   * @param deserialize whether the key and value should be deserialized
    * @return true if the current reader has more records
    * @throws IOException
    */
-  private boolean readNextFromCurrentReader() throws IOException {
+  private boolean readNextFromCurrentReader(boolean deserialize) throws IOException {
     // Initial reader.
     if (this.currentReader == null) {
       return false;
@@ -151,8 +177,10 @@ public class UnorderedKVReader<K, V> extends KeyValueReader {
       boolean hasMore = this.currentReader.nextRawKey(keyIn);
       if (hasMore) {
         this.currentReader.nextRawValue(valIn);
-        this.key = keyDeserializer.deserialize(this.key);
-        this.value = valDeserializer.deserialize(this.value);
+        if (deserialize) {
+          this.key = keyDeserializer.deserialize(this.key);
+          this.value = valDeserializer.deserialize(this.value);
+        }
         return true;
       }
       return false;
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common.shuffle;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.runtime.api.InputContext;
+import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Container level cache of inputs which were fetched into memory. Allows subsequent tasks in a
+ * reused container, which consume the same outputs of a source vertex (typically over a
+ * broadcast edge), to avoid fetching and decompressing the data again.
+ * <p/>
+ * Entries are keyed by source vertex, source attempt (via its unique path component) and the
+ * physical partition consumed. The cache is held in the {@link ObjectRegistry} with a DAG
+ * life-cycle, and the least recently used entries are evicted once the configured size is
+ * exceeded. Cached data is shared with the tasks reading it and is never modified.
+ */
+@Private
+public class FetchedInputCache {
+
+  private static final Log LOG = LogFactory.getLog(FetchedInputCache.class);
+
+  private static final String CACHE_KEY = FetchedInputCache.class.getName();
+
+  /** Cache which does not hold any data */
+  public static final FetchedInputCache DISABLED = new FetchedInputCache(0);
+
+  /**
+   * Inputs served from the cache are not accounted against the memory of the task, so none of
+   * the callbacks need to release anything.
+   */
+  private static final FetchedInputCallback NO_OP_CALLBACK = new FetchedInputCallback() {
+    @Override
+    public void fetchComplete(FetchedInput fetchedInput) {
+    }
+
+    @Override
+    public void fetchFailed(FetchedInput fetchedInput) {
+    }
+
+    @Override
+    public void freeResources(FetchedInput fetchedInput) {
+    }
+  };
+
+  private final long maxSizeBytes;
+  private long usedBytes = 0;
+  // Access ordered, eldest entry is the least recently used one.
+  private final LinkedHashMap<String, CachedInput> entries =
+      new LinkedHashMap<String, CachedInput>(16, 0.75f, true);
+
+  @VisibleForTesting
+  FetchedInputCache(long maxSizeBytes) {
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Get the cache for the container, creating it if required.
+   * @return the cache, or {@link #DISABLED} if caching is not configured
+   */
+  public static FetchedInputCache create(Configuration conf, InputContext inputContext) {
+    long maxSizeBytes = conf.getLong(
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_INPUT_CACHE_MAX_SIZE_BYTES,
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_INPUT_CACHE_MAX_SIZE_BYTES_DEFAULT);
+    if (maxSizeBytes <= 0) {
+      return DISABLED;
+    }
+    ObjectRegistry objectRegistry = inputContext.getObjectRegistry();
+    FetchedInputCache cache;
+    // Synchronizing on the registry to make the lookup and insert atomic across inputs.
+    synchronized (objectRegistry) {
+      cache = (FetchedInputCache) objectRegistry.get(CACHE_KEY);
+      if (cache == null) {
+        cache = new FetchedInputCache(maxSizeBytes);
+        objectRegistry.cacheForDAG(CACHE_KEY, cache);
+      }
+    }
+    LOG.info("Using fetched input cache for " + inputContext.getSourceVertexName()
+        + ", maxSizeBytes=" + cache.maxSizeBytes + ", usedBytes=" + cache.getUsedBytes());
+    return cache;
+  }
+
+  public boolean isEnabled() {
+    return maxSizeBytes > 0;
+  }
+
+  /**
+   * @return a new, pending input holding the data from the cache, which the caller has to
+   *         commit or abort, or null if the input is not cached
+   */
+  public synchronized FetchedInput get(String sourceVertexName,
+      InputAttemptIdentifier srcAttemptIdentifier, int partition) {
+    if (!isEnabled()) {
+      return null;
+    }
+    CachedInput cachedInput = entries.get(
+        createKey(sourceVertexName, srcAttemptIdentifier, partition));
+    if (cachedInput == null) {
+      return null;
+    }
+    return new MemoryFetchedInput(cachedInput.data, cachedInput.compressedSize,
+        srcAttemptIdentifier, NO_OP_CALLBACK);
+  }
+
+  /**
+   * Add the data of a committed input to the cache, evicting the least recently used entries to
+   * make space. Data larger than the cache is ignored.
+   */
+  public synchronized void put(String sourceVertexName,
+      InputAttemptIdentifier srcAttemptIdentifier, int partition, byte[] data,
+      long compressedSize) {
+    if (data.length > maxSizeBytes) {
+      return;
+    }
+    String key = createKey(sourceVertexName, srcAttemptIdentifier, partition);
+    CachedInput previous = entries.put(key, new CachedInput(data, compressedSize));
+    if (previous != null) {
+      usedBytes -= previous.data.length;
+    }
+    usedBytes += data.length;
+    Iterator<Map.Entry<String, CachedInput>> iter = entries.entrySet().iterator();
+    while (usedBytes > maxSizeBytes && iter.hasNext()) {
+      Map.Entry<String, CachedInput> eldest = iter.next();
+      if (eldest.getKey().equals(key)) {
+        continue;
+      }
+      usedBytes -= eldest.getValue().data.length;
+      iter.remove();
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Evicted " + eldest.getKey() + " from the fetched input cache");
+      }
+    }
+  }
+
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  @VisibleForTesting
+  synchronized int getNumEntries() {
+    return entries.size();
+  }
+
+  private static String createKey(String sourceVertexName,
+      InputAttemptIdentifier srcAttemptIdentifier, int partition) {
+    // The path component identifies the source attempt and its output uniquely.
+    return sourceVertexName + "/" + srcAttemptIdentifier.getPathComponent() + "/" + partition;
+  }
+
+  private static class CachedInput {
+    private final byte[] data;
+    private final long compressedSize;
+
+    CachedInput(byte[] data, long compressedSize) {
+      this.data = data;
+      this.compressedSize = compressedSize;
+    }
+  }
+}
@@ -108,6 +108,7 @@ public class Fetcher implements Callable<FetchResult> {
   
   private HttpConnection httpConnection;
   private HttpConnectionParams httpConnectionParams;
+  private ShuffleBandwidthGovernor bandwidthGovernor = ShuffleBandwidthGovernor.DISABLED;
 
   private final boolean localDiskFetchEnabled;
   private final boolean sharedFetchEnabled;
@@ -401,7 +402,8 @@ public class Fetcher implements Callable<FetchResult> {
       this.url = ShuffleUtils.constructInputURL(baseURI.toString(), attempts,
           httpConnectionParams.getKeepAlive());
 
-      httpConnection = new HttpConnection(url, httpConnectionParams, logIdentifier, jobTokenSecretMgr);
+      httpConnection = new HttpConnection(url, httpConnectionParams, logIdentifier,
+          jobTokenSecretMgr, bandwidthGovernor);
       httpConnection.connect();
     } catch (IOException e) {
       // ioErrs.increment(1);
@@ -450,6 +452,22 @@ public class Fetcher implements Callable<FetchResult> {
 
   @VisibleForTesting
   protected HostFetchResult doHttpFetch(CachingCallBack callback) {
+    try {
+      bandwidthGovernor.acquireConnection(host);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.info("Interrupted while waiting for a connection slot to " + host + ". Returning "
+          + remaining.size() + " inputs");
+      return new HostFetchResult(new FetchResult(host, port, partition, remaining), null, false);
+    }
+    try {
+      return doHttpFetchWithConnectionSlot(callback);
+    } finally {
+      bandwidthGovernor.releaseConnection(host);
+    }
+  }
+
+  private HostFetchResult doHttpFetchWithConnectionSlot(CachingCallBack callback) {
 
     HostFetchResult connectionsWithRetryResult = setupConnection(srcAttempts);
     if (connectionsWithRetryResult != null) {
@@ -920,6 +938,11 @@ public class Fetcher implements Callable<FetchResult> {
       return this;
     }
 
+    public FetcherBuilder setBandwidthGovernor(ShuffleBandwidthGovernor bandwidthGovernor) {
+      fetcher.bandwidthGovernor = bandwidthGovernor;
+      return this;
+    }
+
     public FetcherBuilder setCompressionParameters(CompressionCodec codec) {
       fetcher.codec = codec;
       return this;
@@ -70,6 +70,7 @@ public class HttpConnection {
   private String msgToEncode;
 
   private final HttpConnectionParams httpConnParams;
+  private final ShuffleBandwidthGovernor bandwidthGovernor;
   private final Stopwatch stopWatch;
 
   /**
@@ -83,9 +84,27 @@ public class HttpConnection {
    */
   public HttpConnection(URL url, HttpConnectionParams connParams,
       String logIdentifier, JobTokenSecretManager jobTokenSecretManager) throws IOException {
+    this(url, connParams, logIdentifier, jobTokenSecretManager, ShuffleBandwidthGovernor.DISABLED);
+  }
+
+  /**
+   * HttpConnection whose reads are accounted against the rate limits of a
+   * {@link ShuffleBandwidthGovernor}
+   *
+   * @param url
+   * @param connParams
+   * @param logIdentifier
+   * @param jobTokenSecretManager
+   * @param bandwidthGovernor
+   * @throws IOException
+   */
+  public HttpConnection(URL url, HttpConnectionParams connParams,
+      String logIdentifier, JobTokenSecretManager jobTokenSecretManager,
+      ShuffleBandwidthGovernor bandwidthGovernor) throws IOException {
     this.logIdentifier = logIdentifier;
     this.jobTokenSecretMgr = jobTokenSecretManager;
     this.httpConnParams = connParams;
+    this.bandwidthGovernor = bandwidthGovernor;
     this.url = url;
     this.stopWatch = new Stopwatch();
     if (LOG.isDebugEnabled()) {
@@ -251,9 +270,10 @@ public class HttpConnection {
     stopWatch.reset().start();
     DataInputStream input = null;
     if (connectionSucceeed) {
+      // Throttle below the buffer, so that limits are applied on bufferSize sized reads.
       input =
           new DataInputStream(new BufferedInputStream(
-            connection.getInputStream(), httpConnParams.bufferSize));
+            bandwidthGovernor.wrap(connection.getInputStream()), httpConnParams.bufferSize));
     }
     if (LOG.isDebugEnabled()) {
       LOG.debug("Time taken to getInputStream (connect) " + url +
@@ -38,6 +38,18 @@ public class MemoryFetchedInput extends FetchedInput {
     this.byteStream = new BoundedByteArrayOutputStream((int) actualSize);
   }
 
+  /**
+   * Create an input over data which has already been fetched, e.g. by a previous task.
+   * The data is not copied and must not be modified.
+   */
+  public MemoryFetchedInput(byte[] data, long compressedSize,
+      InputAttemptIdentifier inputAttemptIdentifier,
+      FetchedInputCallback callbackHandler) {
+    super(Type.MEMORY, data.length, compressedSize, inputAttemptIdentifier, callbackHandler);
+    this.byteStream = new BoundedByteArrayOutputStream(data, 0, data.length) {
+    };
+  }
+
   @Override
   public OutputStream getOutputStream() {
     return byteStream;
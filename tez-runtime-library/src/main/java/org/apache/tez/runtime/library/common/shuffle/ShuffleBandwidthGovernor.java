@@ -0,0 +1,329 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common.shuffle;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.runtime.api.InputContext;
+import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Governs the network usage of the fetchers belonging to a shuffle input.
+ * <ul>
+ * <li>A token bucket limits the rate at which the fetchers of the input read data.</li>
+ * <li>A token bucket shared by all inputs in the container limits the aggregate rate.</li>
+ * <li>A per remote host semaphore, shared by all inputs in the container, caps the number of
+ * concurrent connections to a single source host.</li>
+ * </ul>
+ * Container level state is held in the {@link ObjectRegistry} with a session life-cycle, so that
+ * it is shared by concurrent inputs as well as by subsequent tasks in a reused container.
+ * Time spent waiting on any of the limits is reported via {@link TaskCounter}s.
+ */
+@Private
+public class ShuffleBandwidthGovernor {
+
+  private static final Log LOG = LogFactory.getLog(ShuffleBandwidthGovernor.class);
+
+  private static final String CONTAINER_BUCKET_KEY =
+      ShuffleBandwidthGovernor.class.getName() + ".containerBucket";
+  private static final String HOST_LIMITER_KEY =
+      ShuffleBandwidthGovernor.class.getName() + ".hostLimiter";
+
+  /** Governor which does not apply any limits */
+  public static final ShuffleBandwidthGovernor DISABLED =
+      new ShuffleBandwidthGovernor(null, null, null, null);
+
+  private final TokenBucket inputBucket;
+  private final TokenBucket containerBucket;
+  private final HostConnectionLimiter hostLimiter;
+
+  private final TezCounter throttledBytesCounter;
+  private final TezCounter throttleStallCounter;
+  private final TezCounter hostWaitCounter;
+
+  @VisibleForTesting
+  ShuffleBandwidthGovernor(TokenBucket inputBucket, TokenBucket containerBucket,
+      HostConnectionLimiter hostLimiter, TezCounters counters) {
+    this.inputBucket = inputBucket;
+    this.containerBucket = containerBucket;
+    this.hostLimiter = hostLimiter;
+    if (counters != null) {
+      this.throttledBytesCounter = counters.findCounter(TaskCounter.SHUFFLE_BYTES_THROTTLED);
+      this.throttleStallCounter = counters.findCounter(TaskCounter.SHUFFLE_THROTTLE_STALL_MILLIS);
+      this.hostWaitCounter =
+          counters.findCounter(TaskCounter.SHUFFLE_HOST_CONNECTION_WAIT_MILLIS);
+    } else {
+      Preconditions.checkArgument(inputBucket == null && containerBucket == null &&
+          hostLimiter == null, "Counters are required when limits are configured");
+      this.throttledBytesCounter = null;
+      this.throttleStallCounter = null;
+      this.hostWaitCounter = null;
+    }
+  }
+
+  /**
+   * Create a governor for a shuffle input, based on the configuration of the input.
+   * @return a governor, or {@link #DISABLED} if no limits are configured
+   */
+  public static ShuffleBandwidthGovernor create(Configuration conf, InputContext inputContext) {
+    long inputRate = conf.getLong(
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_BANDWIDTH_BYTES_PER_SEC,
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_BANDWIDTH_BYTES_PER_SEC_DEFAULT);
+    long containerRate = conf.getLong(
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_CONTAINER_BANDWIDTH_BYTES_PER_SEC,
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_CONTAINER_BANDWIDTH_BYTES_PER_SEC_DEFAULT);
+    int maxConnectionsPerHost = conf.getInt(
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_MAX_CONNECTIONS_PER_HOST,
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_MAX_CONNECTIONS_PER_HOST_DEFAULT);
+
+    if (inputRate <= 0 && containerRate <= 0 && maxConnectionsPerHost <= 0) {
+      return DISABLED;
+    }
+
+    TokenBucket inputBucket = inputRate > 0 ? new TokenBucket(inputRate) : null;
+    TokenBucket containerBucket = null;
+    HostConnectionLimiter hostLimiter = null;
+    ObjectRegistry objectRegistry = inputContext.getObjectRegistry();
+    // Synchronizing on the registry to make the lookup and insert atomic across inputs.
+    synchronized (objectRegistry) {
+      if (containerRate > 0) {
+        containerBucket = (TokenBucket) objectRegistry.get(CONTAINER_BUCKET_KEY);
+        if (containerBucket == null) {
+          containerBucket = new TokenBucket(containerRate);
+          objectRegistry.cacheForSession(CONTAINER_BUCKET_KEY, containerBucket);
+        }
+      }
+      if (maxConnectionsPerHost > 0) {
+        hostLimiter = (HostConnectionLimiter) objectRegistry.get(HOST_LIMITER_KEY);
+        if (hostLimiter == null) {
+          hostLimiter = new HostConnectionLimiter(maxConnectionsPerHost);
+          objectRegistry.cacheForSession(HOST_LIMITER_KEY, hostLimiter);
+        }
+      }
+    }
+    LOG.info("Shuffle bandwidth governor for " + inputContext.getSourceVertexName()
+        + ": inputBytesPerSec=" + inputRate
+        + ", containerBytesPerSec=" + (containerBucket == null ? 0 : containerBucket.getRate())
+        + ", maxConnectionsPerHost="
+        + (hostLimiter == null ? 0 : hostLimiter.getMaxConnectionsPerHost()));
+    return new ShuffleBandwidthGovernor(inputBucket, containerBucket, hostLimiter,
+        inputContext.getCounters());
+  }
+
+  public boolean isEnabled() {
+    return inputBucket != null || containerBucket != null || hostLimiter != null;
+  }
+
+  /**
+   * Block until a connection to the specified host is allowed. Every successful invocation
+   * must be matched by a call to {@link #releaseConnection(String)}.
+   */
+  public void acquireConnection(String host) throws InterruptedException {
+    if (hostLimiter == null) {
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    hostLimiter.acquire(host);
+    long waitTime = System.currentTimeMillis() - startTime;
+    if (waitTime > 0) {
+      hostWaitCounter.increment(waitTime);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Waited " + waitTime + " ms for a connection slot to " + host);
+      }
+    }
+  }
+
+  public void releaseConnection(String host) {
+    if (hostLimiter != null) {
+      hostLimiter.release(host);
+    }
+  }
+
+  /**
+   * Account for bytes read from the network, sleeping if any of the rate limits is exceeded.
+   */
+  public void acquireBytes(long bytes) throws InterruptedException {
+    if (bytes <= 0 || (inputBucket == null && containerBucket == null)) {
+      return;
+    }
+    long waitTime = 0;
+    if (inputBucket != null) {
+      waitTime = inputBucket.reserve(bytes);
+    }
+    if (containerBucket != null) {
+      waitTime = Math.max(waitTime, containerBucket.reserve(bytes));
+    }
+    if (waitTime > 0) {
+      throttledBytesCounter.increment(bytes);
+      Thread.sleep(waitTime);
+      throttleStallCounter.increment(waitTime);
+    }
+  }
+
+  /**
+   * Wrap a stream so that data read from it is accounted against the rate limits.
+   */
+  public InputStream wrap(InputStream in) {
+    if (inputBucket == null && containerBucket == null) {
+      return in;
+    }
+    return new ThrottledInputStream(in);
+  }
+
+  private class ThrottledInputStream extends FilterInputStream {
+
+    ThrottledInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        throttle(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        throttle(n);
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      throttle(skipped);
+      return skipped;
+    }
+
+    private void throttle(long bytes) throws InterruptedIOException {
+      try {
+        acquireBytes(bytes);
+      } catch (InterruptedException e) {
+        InterruptedIOException ioe =
+            new InterruptedIOException("Interrupted while throttling shuffle input");
+        ioe.initCause(e);
+        throw ioe;
+      }
+    }
+  }
+
+  /**
+   * Token bucket which allows bursts of up to one second worth of data. Callers reserve the
+   * bytes they consumed, possibly taking the bucket into debt, and are told how long to wait
+   * before the reservation is covered. Waiting happens outside the bucket lock.
+   */
+  @VisibleForTesting
+  static class TokenBucket {
+    private final long bytesPerSec;
+    private final long capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(long bytesPerSec) {
+      Preconditions.checkArgument(bytesPerSec > 0, "Rate must be positive");
+      this.bytesPerSec = bytesPerSec;
+      this.capacity = bytesPerSec;
+      this.tokens = capacity;
+      this.lastRefillNanos = System.nanoTime();
+    }
+
+    long getRate() {
+      return bytesPerSec;
+    }
+
+    /**
+     * @return time in milliseconds the caller should wait before using the bytes
+     */
+    synchronized long reserve(long bytes) {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * bytesPerSec / 1e9);
+      lastRefillNanos = now;
+      tokens -= bytes;
+      if (tokens >= 0) {
+        return 0;
+      }
+      return (long) Math.ceil(-tokens * 1000 / bytesPerSec);
+    }
+  }
+
+  @VisibleForTesting
+  static class HostConnectionLimiter {
+    private final int maxConnectionsPerHost;
+    private final ConcurrentMap<String, Semaphore> hostPermits =
+        new ConcurrentHashMap<String, Semaphore>();
+
+    HostConnectionLimiter(int maxConnectionsPerHost) {
+      Preconditions.checkArgument(maxConnectionsPerHost > 0,
+          "Max connections per host must be positive");
+      this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    int getMaxConnectionsPerHost() {
+      return maxConnectionsPerHost;
+    }
+
+    private Semaphore getPermits(String host) {
+      Semaphore permits = hostPermits.get(host);
+      if (permits == null) {
+        permits = new Semaphore(maxConnectionsPerHost, true);
+        Semaphore old = hostPermits.putIfAbsent(host, permits);
+        if (old != null) {
+          permits = old;
+        }
+      }
+      return permits;
+    }
+
+    void acquire(String host) throws InterruptedException {
+      getPermits(host).acquire();
+    }
+
+    void release(String host) {
+      getPermits(host).release();
+    }
+
+    @VisibleForTesting
+    int getAvailableConnections(String host) {
+      return getPermits(host).availablePermits();
+    }
+  }
+}
@@ -24,13 +24,18 @@ import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.crypto.SecretKey;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DataInputByteBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.IOUtils;
@@ -41,9 +46,14 @@ import org.apache.tez.common.security.JobTokenSecretManager;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
 import org.apache.tez.runtime.library.common.sort.impl.IFile;
+import org.apache.tez.runtime.library.common.sort.impl.TezIndexRecord;
+import org.apache.tez.runtime.library.common.sort.impl.TezSpillRecord;
 import org.apache.tez.runtime.library.common.shuffle.HttpConnection.HttpConnectionParams;
 import org.apache.tez.runtime.library.common.shuffle.HttpConnection.HttpConnectionParamsBuilder;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataMovementEventPayloadProto;
+import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataProto;
+
+import com.google.protobuf.ByteString;
 
 public class ShuffleUtils {
 
@@ -68,6 +78,89 @@ public class ShuffleUtils {
     return bb;
   }
 
+  /**
+   * Add the data of each non-empty partition of the final output to the event payload, if the
+   * total size of the output does not exceed maxSize. Consumers which find the data for their
+   * partition in the payload do not need to fetch it.
+   *
+   * @return true if the data was added to the payload
+   */
+  public static boolean setPartitionDataInPayload(
+      DataMovementEventPayloadProto.Builder payloadBuilder, TezSpillRecord spillRecord,
+      FileSystem rfs, Path outputFile, long maxSize, Log LOG) throws IOException {
+    long totalSize = 0;
+    for (int i = 0; i < spillRecord.size(); i++) {
+      totalSize += spillRecord.getIndex(i).getPartLength();
+      if (totalSize > maxSize) {
+        return false;
+      }
+    }
+    FSDataInputStream in = rfs.open(outputFile);
+    try {
+      for (int i = 0; i < spillRecord.size(); i++) {
+        TezIndexRecord indexRecord = spillRecord.getIndex(i);
+        if (indexRecord.getPartLength() == 0 || !indexRecord.hasData()) {
+          continue;
+        }
+        byte[] data = new byte[(int) indexRecord.getPartLength()];
+        in.readFully(indexRecord.getStartOffset(), data);
+        payloadBuilder.addPartitionData(DataProto.newBuilder()
+            .setPartitionId(i)
+            .setRawLength((int) indexRecord.getRawLength())
+            .setCompressedLength((int) indexRecord.getPartLength())
+            .setData(ByteString.copyFrom(data)));
+      }
+    } finally {
+      in.close();
+    }
+    LOG.info("Serialized data of " + payloadBuilder.getPartitionDataCount()
+        + " partitions into DataMovementEvent, dataSize: " + totalSize);
+    return true;
+  }
+
+  /**
+   * @return the data for the partition sent along with the event, or null if the partition has
+   *         no data. Only valid if the payload carries partition data.
+   */
+  public static DataProto getPartitionData(DataMovementEventPayloadProto shufflePayload,
+      int partitionId) {
+    for (DataProto dataProto : shufflePayload.getPartitionDataList()) {
+      if (dataProto.getPartitionId() == partitionId) {
+        return dataProto;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Encode a partition size into a single byte, as one of logarithmic buckets half a power of
+   * two wide. Sizes decoded by {@link #decodePartitionSize(byte)} are within 25% of the actual
+   * size.
+   */
+  public static byte encodePartitionSize(long size) {
+    if (size <= 0) {
+      return 0;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(size);
+    int upperHalf = exponent > 0 && (size & (1L << (exponent - 1))) != 0 ? 1 : 0;
+    return (byte) (2 * exponent + upperHalf + 1);
+  }
+
+  /**
+   * @return the middle of the bucket the size was encoded into by
+   *         {@link #encodePartitionSize(long)}
+   */
+  public static long decodePartitionSize(byte bucket) {
+    int value = bucket & 0xff;
+    if (value == 0) {
+      return 0;
+    }
+    int exponent = (value - 1) / 2;
+    long powerOfTwo = 1L << exponent;
+    long lowerBound = (value - 1) % 2 == 0 ? powerOfTwo : powerOfTwo + (powerOfTwo >> 1);
+    return lowerBound + (powerOfTwo >> 2);
+  }
+
   public static int deserializeShuffleProviderMetaData(ByteBuffer meta)
       throws IOException {
     DataInputByteBuffer in = new DataInputByteBuffer();
@@ -147,6 +240,18 @@ public class ShuffleUtils {
   
   public static StringBuilder constructBaseURIForShuffleHandler(String hostIdentifier,
       int partition, String appId, boolean sslShuffle) {
+    return constructBaseURIForShuffleHandler(hostIdentifier, partition, partition, appId,
+        sslShuffle);
+  }
+
+  /**
+   * Construct the base URI for fetching a contiguous range of partitions over a single
+   * connection. The range is encoded as reduce=startPartition-endPartition, which requires a
+   * shuffle service that understands partition ranges. A range with a single partition yields
+   * the regular URI.
+   */
+  public static StringBuilder constructBaseURIForShuffleHandler(String hostIdentifier,
+      int startPartition, int endPartition, String appId, boolean sslShuffle) {
     final String http_protocol = (sslShuffle) ? "https://" : "http://";
     StringBuilder sb = new StringBuilder(http_protocol);
     sb.append(hostIdentifier);
@@ -154,7 +259,10 @@ public class ShuffleUtils {
     sb.append("mapOutput?job=");
     sb.append(appId.replace("application", "job"));
     sb.append("&reduce=");
-    sb.append(String.valueOf(partition));
+    sb.append(String.valueOf(startPartition));
+    if (endPartition > startPartition) {
+      sb.append("-").append(String.valueOf(endPartition));
+    }
     sb.append("&map=");
     return sb;
   }
@@ -162,8 +270,14 @@ public class ShuffleUtils {
   public static URL constructInputURL(String baseURI, 
       List<InputAttemptIdentifier> inputs, boolean keepAlive) throws MalformedURLException {
     StringBuilder url = new StringBuilder(baseURI);
+    // Inputs for different partitions of the same source attempt share a path component,
+    // which needs to be requested only once.
+    Set<String> pathComponents = new HashSet<String>();
     boolean first = true;
     for (InputAttemptIdentifier input : inputs) {
+      if (!pathComponents.add(input.getPathComponent())) {
+        continue;
+      }
       if (first) {
         first = false;
         url.append(input.getPathComponent());
@@ -233,6 +347,9 @@ public class ShuffleUtils {
     if (dmProto.hasData()) {
       sb.append(", ").append("hasDataInEvent: " + dmProto.hasData());
     }
+    if (dmProto.getPartitionDataCount() > 0) {
+      sb.append(", ").append("partitionsWithDataInEvent: " + dmProto.getPartitionDataCount());
+    }
     sb.append("]");
     return sb.toString();
   }
@@ -126,15 +126,29 @@ public class ShuffleInputEventHandlerImpl implements ShuffleEventHandler {
         dme.getTargetIndex(), dme.getVersion(),
         shufflePayload.getPathComponent(), (useSharedInputs && srcIndex == 0));
 
-    if (shufflePayload.hasData()) {
-      DataProto dataProto = shufflePayload.getData();
+    DataProto dataProto = null;
+    if (shufflePayload.getPartitionDataCount() > 0) {
+      // Small partitioned output - the data for all partitions is part of the event
+      dataProto = ShuffleUtils.getPartitionData(shufflePayload, srcIndex);
+      if (dataProto == null) {
+        shuffleManager.addCompletedInputWithNoData(
+            new InputAttemptIdentifier(dme.getTargetIndex(), dme.getVersion()));
+        return;
+      }
+    } else if (shufflePayload.hasData()) {
+      dataProto = shufflePayload.getData();
+    }
+
+    if (dataProto != null) {
       FetchedInput fetchedInput = inputAllocator.allocate(dataProto.getRawLength(),
           dataProto.getCompressedLength(), srcAttemptIdentifier);
       moveDataToFetchedInput(dataProto, fetchedInput, hostIdentifier);
       shuffleManager.addCompletedInputWithData(srcAttemptIdentifier, fetchedInput);
     } else {
-      shuffleManager.addKnownInput(shufflePayload.getHost(),
-          shufflePayload.getPort(), srcAttemptIdentifier, srcIndex);
+      if (!shuffleManager.addCachedInput(srcAttemptIdentifier, srcIndex)) {
+        shuffleManager.addKnownInput(shufflePayload.getHost(),
+            shufflePayload.getPort(), srcAttemptIdentifier, srcIndex);
+      }
     }
 
   }
@@ -67,11 +67,14 @@ import org.apache.tez.runtime.library.common.TezRuntimeUtils;
 import org.apache.tez.runtime.library.common.shuffle.FetchResult;
 import org.apache.tez.runtime.library.common.shuffle.FetchedInput;
 import org.apache.tez.runtime.library.common.shuffle.FetchedInputAllocator;
+import org.apache.tez.runtime.library.common.shuffle.FetchedInputCache;
 import org.apache.tez.runtime.library.common.shuffle.Fetcher;
 import org.apache.tez.runtime.library.common.shuffle.FetcherCallback;
 import org.apache.tez.runtime.library.common.shuffle.HttpConnection;
 import org.apache.tez.runtime.library.common.shuffle.HttpConnection.HttpConnectionParams;
 import org.apache.tez.runtime.library.common.shuffle.InputHost;
+import org.apache.tez.runtime.library.common.shuffle.MemoryFetchedInput;
+import org.apache.tez.runtime.library.common.shuffle.ShuffleBandwidthGovernor;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 import org.apache.tez.runtime.library.common.shuffle.FetchedInput.Type;
 import org.apache.tez.runtime.library.common.shuffle.Fetcher.FetcherBuilder;
@@ -150,6 +153,12 @@ public class ShuffleManager implements FetcherCallback {
   
   private volatile Throwable shuffleError;
   private final HttpConnectionParams httpConnectionParams;
+  private final ShuffleBandwidthGovernor bandwidthGovernor;
+  private final FetchedInputCache inputCache;
+  // Partition of each input being fetched, required to add fetched inputs to the cache
+  private final ConcurrentMap<InputAttemptIdentifier, Integer> inputPartitions =
+      new ConcurrentHashMap<InputAttemptIdentifier, Integer>();
+  private final TezCounter bytesFromCacheCounter;
   
 
   private final LocalDirAllocator localDirAllocator;
@@ -219,6 +228,10 @@ public class ShuffleManager implements FetcherCallback {
     this.jobTokenSecretMgr = new JobTokenSecretManager(shuffleSecret);
     httpConnectionParams =
         ShuffleUtils.constructHttpShuffleConnectionParams(conf);
+    this.bandwidthGovernor = ShuffleBandwidthGovernor.create(conf, inputContext);
+    this.inputCache = FetchedInputCache.create(conf, inputContext);
+    this.bytesFromCacheCounter =
+        inputContext.getCounters().findCounter(TaskCounter.SHUFFLE_BYTES_FROM_CACHE);
 
     this.localFs = (RawLocalFileSystem) FileSystem.getLocal(conf).getRaw();
 
@@ -236,6 +249,8 @@ public class ShuffleManager implements FetcherCallback {
         + ifileReadAhead + ", ifileReadAheadLength=" + ifileReadAheadLength +", "
         + "localDiskFetchEnabled=" + localDiskFetchEnabled + ", "
         + "sharedFetchEnabled=" + sharedFetchEnabled + ", "
+        + "bandwidthGovernorEnabled=" + bandwidthGovernor.isEnabled() + ", "
+        + "inputCacheEnabled=" + inputCache.isEnabled() + ", "
         + httpConnectionParams.toString());
   }
 
@@ -352,6 +367,7 @@ public class ShuffleManager implements FetcherCallback {
       fetcherBuilder.setCompressionParameters(codec);
     }
     fetcherBuilder.setIFileParams(ifileReadAhead, ifileReadAheadLength);
+    fetcherBuilder.setBandwidthGovernor(bandwidthGovernor);
 
     // Remove obsolete inputs from the list being given to the fetcher. Also
     // remove from the obsolete list.
@@ -397,6 +413,9 @@ public class ShuffleManager implements FetcherCallback {
       LOG.debug("Adding input: " + srcAttemptIdentifier + ", to host: " + host);
     }
     host.addKnownInput(srcAttemptIdentifier);
+    if (inputCache.isEnabled()) {
+      inputPartitions.put(srcAttemptIdentifier, srcPhysicalIndex);
+    }
     lock.lock();
     try {
       boolean added = pendingHosts.offer(host);
@@ -411,6 +430,26 @@ public class ShuffleManager implements FetcherCallback {
     }
   }
 
+  /**
+   * Complete an input with data from the container level input cache, if it is cached.
+   * @return true if the input was found in the cache, false if it needs to be fetched
+   */
+  public boolean addCachedInput(InputAttemptIdentifier srcAttemptIdentifier,
+      int srcPhysicalIndex) throws IOException {
+    FetchedInput fetchedInput = inputCache.get(inputContext.getSourceVertexName(),
+        srcAttemptIdentifier, srcPhysicalIndex);
+    if (fetchedInput == null) {
+      return false;
+    }
+    LOG.info("Using cached data for " + srcAttemptIdentifier + ", size: "
+        + fetchedInput.getActualSize());
+    if (addCompletedInput(srcAttemptIdentifier, fetchedInput)) {
+      // Only count data which is used, not copies of an already completed input
+      bytesFromCacheCounter.increment(fetchedInput.getActualSize());
+    }
+    return true;
+  }
+
   public void addCompletedInputWithNoData(
       InputAttemptIdentifier srcAttemptIdentifier) {
     InputIdentifier inputIdentifier = srcAttemptIdentifier.getInputIdentifier();
@@ -436,10 +475,19 @@ public class ShuffleManager implements FetcherCallback {
   public void addCompletedInputWithData(
       InputAttemptIdentifier srcAttemptIdentifier, FetchedInput fetchedInput)
       throws IOException {
-    InputIdentifier inputIdentifier = srcAttemptIdentifier.getInputIdentifier();
-
     LOG.info("Received Data via Event: " + srcAttemptIdentifier + " to "
         + fetchedInput.getType());
+    addCompletedInput(srcAttemptIdentifier, fetchedInput);
+  }
+
+  /**
+   * Commit and register an input which was received without a fetch, unless the input already
+   * completed.
+   * @return true if the input was committed, false if it was a copy of a completed input
+   */
+  private boolean addCompletedInput(InputAttemptIdentifier srcAttemptIdentifier,
+      FetchedInput fetchedInput) throws IOException {
+    InputIdentifier inputIdentifier = srcAttemptIdentifier.getInputIdentifier();
     // Count irrespective of whether this is a copy of an already fetched input
     lock.lock();
     try {
@@ -470,6 +518,20 @@ public class ShuffleManager implements FetcherCallback {
         lock.unlock();
       }
     }
+    return committed;
+  }
+
+  private void cacheFetchedInput(InputAttemptIdentifier srcAttemptIdentifier,
+      FetchedInput fetchedInput) {
+    if (!inputCache.isEnabled() || fetchedInput.getType() != Type.MEMORY) {
+      return;
+    }
+    Integer partition = inputPartitions.remove(srcAttemptIdentifier);
+    if (partition != null) {
+      inputCache.put(inputContext.getSourceVertexName(), srcAttemptIdentifier,
+          partition.intValue(), ((MemoryFetchedInput) fetchedInput).getBytes(),
+          fetchedInput.getCompressedSize());
+    }
   }
 
   public synchronized void obsoleteKnownInput(InputAttemptIdentifier srcAttemptIdentifier) {
@@ -516,6 +578,7 @@ public class ShuffleManager implements FetcherCallback {
             bytesShuffledDirectDiskCounter.increment(fetchedBytes);
           }
           decompressedDataSizeCounter.increment(decompressedLength);
+          cacheFetchedInput(srcAttemptIdentifier, fetchedInput);
 
           registerCompletedInput(fetchedInput);
           lock.lock();
@@ -23,6 +23,7 @@ import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -34,6 +35,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.LocalDirAllocator;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.tez.common.TezUtilsInternal;
 import org.apache.hadoop.yarn.api.ApplicationConstants;
@@ -49,6 +51,7 @@ import org.apache.tez.runtime.library.common.sort.impl.TezSpillRecord;
 import org.apache.tez.runtime.library.exceptions.FetcherReadTimeoutException;
 import org.apache.tez.runtime.library.common.shuffle.HttpConnection;
 import org.apache.tez.runtime.library.common.shuffle.HttpConnection.HttpConnectionParams;
+import org.apache.tez.runtime.library.common.shuffle.ShuffleBandwidthGovernor;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -77,6 +80,12 @@ class FetcherOrderedGrouped extends Thread {
   private final String logIdentifier;
   private static int nextId = 0;
   private int currentPartition = -1;
+  // Last partition of the range being fetched. Same as currentPartition unless the host
+  // serves a range of partitions.
+  private int currentPartitionEnd = -1;
+  // Source attempts requested from the current host, used to skip the segments of
+  // partitions in the range which are not required.
+  private Set<String> currentPathComponents;
 
   // Decompression of map-outputs
   private final CompressionCodec codec;
@@ -94,6 +103,8 @@ class FetcherOrderedGrouped extends Thread {
 
   HttpConnection httpConnection;
   HttpConnectionParams httpConnectionParams;
+  private final ShuffleBandwidthGovernor bandwidthGovernor;
+  private final String applicationId;
 
   // Initiative value is 0, which means it hasn't retried yet.
   private long retryStartTime = 0;
@@ -106,6 +117,20 @@ class FetcherOrderedGrouped extends Thread {
                                CompressionCodec codec,
                                InputContext inputContext, Configuration conf,
                                boolean localDiskFetchEnabled) throws IOException {
+    this(httpConnectionParams, scheduler, merger, metrics, shuffle, jobTokenSecretMgr,
+        ifileReadAhead, ifileReadAheadLength, codec, inputContext, conf, localDiskFetchEnabled,
+        ShuffleBandwidthGovernor.DISABLED);
+  }
+
+  public FetcherOrderedGrouped(HttpConnectionParams httpConnectionParams,
+                               ShuffleScheduler scheduler, MergeManager merger,
+                               ShuffleClientMetrics metrics,
+                               Shuffle shuffle, JobTokenSecretManager jobTokenSecretMgr,
+                               boolean ifileReadAhead, int ifileReadAheadLength,
+                               CompressionCodec codec,
+                               InputContext inputContext, Configuration conf,
+                               boolean localDiskFetchEnabled,
+                               ShuffleBandwidthGovernor bandwidthGovernor) throws IOException {
     setDaemon(true);
     this.scheduler = scheduler;
     this.merger = merger;
@@ -137,6 +162,8 @@ class FetcherOrderedGrouped extends Thread {
     this.conf = conf;
 
     this.localDiskFetchEnabled = localDiskFetchEnabled;
+    this.bandwidthGovernor = bandwidthGovernor;
+    this.applicationId = String.valueOf(inputContext.getApplicationId());
 
     this.logIdentifier = "fetcher [" + TezUtilsInternal
         .cleanVertexName(inputContext.getSourceVertexName()) + "] #" + id;
@@ -163,8 +190,13 @@ class FetcherOrderedGrouped extends Thread {
               hostname.equals(System.getenv(ApplicationConstants.Environment.NM_HOST.toString()))) {
             setupLocalDiskFetch(host);
           } else {
-            // Shuffle
-            copyFromHost(host);
+            // Shuffle, once a connection slot to the host is available
+            bandwidthGovernor.acquireConnection(hostname);
+            try {
+              copyFromHost(host);
+            } finally {
+              bandwidthGovernor.releaseConnection(hostname);
+            }
           }
         } finally {
           cleanupCurrentConnection(false);
@@ -226,16 +258,22 @@ class FetcherOrderedGrouped extends Thread {
     // Get completed maps on 'host'
     List<InputAttemptIdentifier> srcAttempts = scheduler.getMapsForHost(host);
     currentPartition = host.getPartitionId();
+    currentPartitionEnd = currentPartition;
     
     // Sanity check to catch hosts with only 'OBSOLETE' maps, 
     // especially at the tail of large jobs
     if (srcAttempts.size() == 0) {
       return;
     }
+
+    if (host.isPartitionRange()) {
+      setupPartitionRange(srcAttempts);
+    }
     
     if(LOG.isDebugEnabled()) {
       LOG.debug("Fetcher " + id + " going to fetch from " + host + " for: "
-        + srcAttempts + ", partitionId: " + currentPartition);
+        + srcAttempts + ", partitionId: " + currentPartition
+        + (currentPartitionEnd > currentPartition ? "-" + currentPartitionEnd : ""));
     }
     
     // List of maps to be fetched yet
@@ -309,15 +347,36 @@ class FetcherOrderedGrouped extends Thread {
     }
   }
 
+  private void setupPartitionRange(List<InputAttemptIdentifier> srcAttempts) {
+    currentPartition = Integer.MAX_VALUE;
+    currentPartitionEnd = -1;
+    currentPathComponents = new HashSet<String>();
+    for (InputAttemptIdentifier srcAttempt : srcAttempts) {
+      currentPathComponents.add(srcAttempt.getPathComponent());
+      int partition = scheduler.getPartitionForInput(srcAttempt);
+      currentPartition = Math.min(currentPartition, partition);
+      currentPartitionEnd = Math.max(currentPartitionEnd, partition);
+    }
+  }
+
+  private String getBaseUrl(MapHost host) {
+    if (!host.isPartitionRange()) {
+      return host.getBaseUrl();
+    }
+    return ShuffleUtils.constructBaseURIForShuffleHandler(host.getHostIdentifier(),
+        currentPartition, currentPartitionEnd, applicationId,
+        httpConnectionParams.isSSLShuffleEnabled()).toString();
+  }
+
   @VisibleForTesting
   boolean setupConnection(MapHost host, List<InputAttemptIdentifier> attempts)
       throws IOException {
     boolean connectSucceeded = false;
     try {
-      URL url = ShuffleUtils.constructInputURL(host.getBaseUrl(), attempts,
+      URL url = ShuffleUtils.constructInputURL(getBaseUrl(host), attempts,
           httpConnectionParams.getKeepAlive());
       httpConnection = new HttpConnection(url, httpConnectionParams,
-          logIdentifier, jobTokenSecretManager);
+          logIdentifier, jobTokenSecretManager, bandwidthGovernor);
       connectSucceeded = httpConnection.connect();
 
       if (stopped) {
@@ -383,6 +442,7 @@ class FetcherOrderedGrouped extends Thread {
     try {
       long startTime = System.currentTimeMillis();
       int forReduce = -1;
+      String mapId = null;
       //Read the shuffle header
       try {
         ShuffleHeader header = new ShuffleHeader();
@@ -404,6 +464,7 @@ class FetcherOrderedGrouped extends Thread {
         compressedLength = header.compressedLength;
         decompressedLength = header.uncompressedLength;
         forReduce = header.forReduce;
+        mapId = header.mapId;
       } catch (IllegalArgumentException e) {
         if (!stopped) {
           badIdErrs.increment(1);
@@ -418,6 +479,19 @@ class FetcherOrderedGrouped extends Thread {
         }
       }
 
+      // A range fetch returns every partition in the range for each requested map, including
+      // the ones which are not required by this input. Skip over them.
+      if (isUnrequiredRangeSegment(compressedLength, forReduce, mapId, srcAttemptId)) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Skipping " + compressedLength + " bytes of " + mapId + " for partition "
+              + forReduce + " which are not required");
+        }
+        // Not tracked as a fetch of any specific input, in case the skip fails.
+        srcAttemptId = null;
+        IOUtils.skipFully(input, compressedLength);
+        return null;
+      }
+
       // Do some basic sanity verification
       if (!verifySanity(compressedLength, decompressedLength, forReduce,
           remaining, srcAttemptId)) {
@@ -560,6 +634,22 @@ class FetcherOrderedGrouped extends Thread {
     }
   }
   
+  /**
+   * Whether a segment received for a range of partitions is an extra one, which the fetcher
+   * does not need: a partition in the current range, of an input which is no longer pending
+   * from this host.
+   */
+  private boolean isUnrequiredRangeSegment(long compressedLength, int forReduce, String mapId,
+      InputAttemptIdentifier srcAttemptId) {
+    if (currentPartitionEnd == currentPartition || compressedLength < 0) {
+      return false;
+    }
+    // Anything else which is unexpected is handled as an error by verifySanity
+    return forReduce >= currentPartition && forReduce <= currentPartitionEnd
+        && currentPathComponents.contains(mapId)
+        && (srcAttemptId == null || !remaining.contains(srcAttemptId));
+  }
+
   /**
    * Do some basic verification on the input received -- Being defensive
    * @param compressedLength
@@ -581,11 +671,12 @@ class FetcherOrderedGrouped extends Thread {
 
     // partitionId verification. Isn't availalbe here because it is encoded into
     // URI
-    if (forReduce != currentPartition) {
+    if (forReduce < currentPartition || forReduce > currentPartitionEnd) {
       wrongReduceErrs.increment(1);
       LOG.warn(getName() + " data for the wrong partition map: " + srcAttemptId + " len: "
           + compressedLength + " decomp len: " + decompressedLength + " for partition " + forReduce
-          + ", expected partition: " + currentPartition);
+          + ", expected partition: " + currentPartition
+          + (currentPartitionEnd > currentPartition ? "-" + currentPartitionEnd : ""));
       return false;
     }
 
@@ -612,6 +703,7 @@ class FetcherOrderedGrouped extends Thread {
     // Get completed maps on 'host'
     List<InputAttemptIdentifier> srcAttempts = scheduler.getMapsForHost(host);
     currentPartition = host.getPartitionId();
+    currentPartitionEnd = currentPartition;
 
     // Sanity check to catch hosts with only 'OBSOLETE' maps,
     // especially at the tail of large jobs
@@ -640,8 +732,10 @@ class FetcherOrderedGrouped extends Thread {
           long startTime = System.currentTimeMillis();
           Path filename = getShuffleInputFileName(srcAttemptId.getPathComponent(), null);
 
+          int partition = host.isPartitionRange() ?
+              scheduler.getPartitionForInput(srcAttemptId) : currentPartition;
           TezIndexRecord indexRecord = getIndexRecord(srcAttemptId.getPathComponent(),
-              currentPartition);
+              partition);
 
           mapOutput = getMapOutputForDirectDiskFetch(srcAttemptId, filename, indexRecord);
           long endTime = System.currentTimeMillis();
@@ -33,6 +33,12 @@ class MapHost {
     PENALIZED           // Host penalized due to shuffle failures
   }
   
+  /**
+   * Partition id used for hosts from which all required partitions are fetched over a single
+   * connection, as a range of partitions.
+   */
+  public static final int PARTITION_RANGE = -1;
+
   private State state = State.IDLE;
   private final String hostIdentifier;
   private final int partitionId;
@@ -60,6 +66,10 @@ class MapHost {
     return partitionId;
   }
 
+  public boolean isPartitionRange() {
+    return partitionId == PARTITION_RANGE;
+  }
+
   public State getState() {
     return state;
   }
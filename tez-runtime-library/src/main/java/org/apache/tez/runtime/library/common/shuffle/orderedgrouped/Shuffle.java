@@ -57,6 +57,7 @@ import org.apache.tez.runtime.library.common.sort.impl.TezRawKeyValueIterator;
 import org.apache.tez.runtime.library.exceptions.InputAlreadyClosedException;
 import org.apache.tez.runtime.library.common.shuffle.HttpConnection;
 import org.apache.tez.runtime.library.common.shuffle.HttpConnection.HttpConnectionParams;
+import org.apache.tez.runtime.library.common.shuffle.ShuffleBandwidthGovernor;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 
 import com.google.common.base.Preconditions;
@@ -107,6 +108,7 @@ public class Shuffle implements ExceptionReporter {
   
   private final List<FetcherOrderedGrouped> fetchers;
   private final HttpConnectionParams httpConnectionParams;
+  private final ShuffleBandwidthGovernor bandwidthGovernor;
   
   private AtomicBoolean isShutDown = new AtomicBoolean(false);
   private AtomicBoolean fetchersClosed = new AtomicBoolean(false);
@@ -119,6 +121,7 @@ public class Shuffle implements ExceptionReporter {
     this.conf = conf;
     this.httpConnectionParams =
         ShuffleUtils.constructHttpShuffleConnectionParams(conf);
+    this.bandwidthGovernor = ShuffleBandwidthGovernor.create(conf, inputContext);
     this.metrics = new ShuffleClientMetrics(inputContext.getDAGName(),
         inputContext.getTaskVertexName(), inputContext.getTaskIndex(),
         this.conf, UserGroupInformation.getCurrentUser().getShortUserName());
@@ -213,6 +216,10 @@ public class Shuffle implements ExceptionReporter {
     eventHandler= new ShuffleInputEventHandlerOrderedGrouped(
         inputContext,
         scheduler,
+        merger,
+        codec,
+        ifileReadAhead,
+        ifileReadAheadLength,
         sslShuffle);
     
     ExecutorService rawExecutor = Executors.newFixedThreadPool(1, new ThreadFactoryBuilder()
@@ -325,7 +332,7 @@ public class Shuffle implements ExceptionReporter {
           FetcherOrderedGrouped
               fetcher = new FetcherOrderedGrouped(httpConnectionParams, scheduler, merger,
             metrics, Shuffle.this, jobTokenSecretMgr, ifileReadAhead, ifileReadAheadLength,
-            codec, inputContext, conf, localDiskFetchEnabled);
+            codec, inputContext, conf, localDiskFetchEnabled, bandwidthGovernor);
           fetchers.add(fetcher);
           fetcher.start();
         }
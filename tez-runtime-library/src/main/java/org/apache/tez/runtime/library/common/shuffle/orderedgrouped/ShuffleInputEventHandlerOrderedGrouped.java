@@ -27,6 +27,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.protobuf.ByteString;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.common.TezUtilsInternal;
 import org.apache.tez.dag.api.TezUncheckedException;
@@ -37,6 +38,7 @@ import org.apache.tez.runtime.api.events.InputFailedEvent;
 import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataMovementEventPayloadProto;
+import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataProto;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 
@@ -47,13 +49,31 @@ public class ShuffleInputEventHandlerOrderedGrouped {
   private final ShuffleScheduler scheduler;
   private final InputContext inputContext;
 
+  // Used to take in data sent along with events. Id does not clash with the fetchers.
+  private static final int EVENT_FETCHER_ID = 0;
+
   private int maxMapRuntime = 0;
   private final boolean sslShuffle;
+  private final MergeManager merger;
+  private final CompressionCodec codec;
+  private final boolean ifileReadAhead;
+  private final int ifileReadAheadLength;
 
   public ShuffleInputEventHandlerOrderedGrouped(InputContext inputContext,
                                                 ShuffleScheduler scheduler, boolean sslShuffle) {
+    this(inputContext, scheduler, null, null, false, 0, sslShuffle);
+  }
+
+  public ShuffleInputEventHandlerOrderedGrouped(InputContext inputContext,
+                                                ShuffleScheduler scheduler, MergeManager merger,
+                                                CompressionCodec codec, boolean ifileReadAhead,
+                                                int ifileReadAheadLength, boolean sslShuffle) {
     this.inputContext = inputContext;
     this.scheduler = scheduler;
+    this.merger = merger;
+    this.codec = codec;
+    this.ifileReadAhead = ifileReadAhead;
+    this.ifileReadAheadLength = ifileReadAheadLength;
     this.sslShuffle = sslShuffle;
   }
 
@@ -113,11 +133,55 @@ public class ShuffleInputEventHandlerOrderedGrouped {
         new InputAttemptIdentifier(dmEvent.getTargetIndex(), dmEvent.getVersion(),
             shufflePayload.getPathComponent());
 
+    if (shufflePayload.getPartitionDataCount() > 0 && merger != null) {
+      // Small partitioned output - the data for all partitions is part of the event
+      DataProto dataProto = ShuffleUtils.getPartitionData(shufflePayload, partitionId);
+      if (dataProto == null) {
+        scheduler.copySucceeded(
+            new InputAttemptIdentifier(dmEvent.getTargetIndex(), dmEvent.getVersion()),
+            null, 0, 0, 0, null);
+        return;
+      }
+      if (moveDataToMapOutput(srcAttemptIdentifier, dataProto)) {
+        return;
+      }
+      // Fetch it like any other output if the merger cannot take it in right now
+    }
+
     URI baseUri = getBaseURI(shufflePayload.getHost(), shufflePayload.getPort(), partitionId);
     scheduler.addKnownMapOutput(shufflePayload.getHost(), shufflePayload.getPort(),
         partitionId, baseUri.toString(), srcAttemptIdentifier);
   }
   
+  private boolean moveDataToMapOutput(InputAttemptIdentifier srcAttemptIdentifier,
+      DataProto dataProto) throws IOException {
+    long startTime = System.currentTimeMillis();
+    MapOutput mapOutput = merger.reserve(srcAttemptIdentifier, dataProto.getRawLength(),
+        dataProto.getCompressedLength(), EVENT_FETCHER_ID);
+    if (mapOutput.getType() == MapOutput.Type.WAIT) {
+      LOG.info("Merger unable to accept data sent via event for " + srcAttemptIdentifier
+          + ", fetching instead");
+      return false;
+    }
+    try {
+      if (mapOutput.getType() == MapOutput.Type.MEMORY) {
+        ShuffleUtils.shuffleToMemory(mapOutput.getMemory(), dataProto.getData().newInput(),
+            dataProto.getRawLength(), dataProto.getCompressedLength(), codec, ifileReadAhead,
+            ifileReadAheadLength, LOG, srcAttemptIdentifier.toString());
+      } else {
+        ShuffleUtils.shuffleToDisk(mapOutput.getDisk(), inputContext.getSourceVertexName(),
+            dataProto.getData().newInput(), dataProto.getCompressedLength(), LOG,
+            srcAttemptIdentifier.toString());
+      }
+    } catch (IOException e) {
+      mapOutput.abort();
+      throw e;
+    }
+    scheduler.copySucceeded(srcAttemptIdentifier, null, dataProto.getCompressedLength(),
+        dataProto.getRawLength(), System.currentTimeMillis() - startTime, mapOutput);
+    return true;
+  }
+
   private void processTaskFailedEvent(InputFailedEvent ifEvent) {
     InputAttemptIdentifier taIdentifier = new InputAttemptIdentifier(ifEvent.getTargetIndex(), ifEvent.getVersion());
     scheduler.obsoleteInput(taIdentifier);
@@ -68,6 +68,9 @@ class ShuffleScheduler {
   private Map<String, MapHost> mapLocations = new HashMap<String, MapHost>();
   //TODO Clean this and other maps at some point
   private ConcurrentMap<String, InputAttemptIdentifier> pathToIdentifierMap = new ConcurrentHashMap<String, InputAttemptIdentifier>(); 
+  // Partition of each known input. Only required when a host serves a range of partitions.
+  private ConcurrentMap<InputAttemptIdentifier, Integer> inputPartitions =
+      new ConcurrentHashMap<InputAttemptIdentifier, Integer>();
   private Set<MapHost> pendingHosts = new HashSet<MapHost>();
   private Set<InputAttemptIdentifier> obsoleteInputs = new HashSet<InputAttemptIdentifier>();
   
@@ -93,6 +96,7 @@ class ShuffleScheduler {
   private long lastProgressTime;
 
   private int maxTaskOutputAtOnce;
+  private final boolean partitionRangeFetchEnabled;
   private int maxFetchFailuresBeforeReporting;
   private boolean reportReadErrorImmediately = true; 
   private int maxFailedUniqueFetches = 5;
@@ -144,6 +148,9 @@ class ShuffleScheduler {
     this.maxTaskOutputAtOnce = Math.max(1, conf.getInt(
             TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_MAX_TASK_OUTPUT_AT_ONCE,
             TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_MAX_TASK_OUTPUT_AT_ONCE_DEFAULT));
+    this.partitionRangeFetchEnabled = conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_PARTITION_RANGE_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_PARTITION_RANGE_ENABLED_DEFAULT);
     
     this.skippedInputCounter = inputContext.getCounters().findCounter(TaskCounter.NUM_SKIPPED_INPUTS);
 
@@ -385,16 +392,20 @@ class ShuffleScheduler {
                                              String hostUrl,
                                              InputAttemptIdentifier srcAttempt) {
     String hostPort = (inputHostName + ":" + String.valueOf(port));
-    String identifier = MapHost.createIdentifier(hostPort, partitionId);
+    // With range fetches, all partitions available on a host are fetched over the same
+    // connection. The URL is constructed by the fetcher once the range is known.
+    int hostPartitionId = partitionRangeFetchEnabled ? MapHost.PARTITION_RANGE : partitionId;
+    String identifier = MapHost.createIdentifier(hostPort, hostPartitionId);
     MapHost host = mapLocations.get(identifier);
     if (host == null) {
-      host = new MapHost(partitionId, hostPort, hostUrl);
+      host = new MapHost(hostPartitionId, hostPort, partitionRangeFetchEnabled ? null : hostUrl);
       assert identifier.equals(host.getIdentifier());
       mapLocations.put(identifier, host);
     }
     host.addKnownMap(srcAttempt);
     pathToIdentifierMap.put(
         getIdentifierFromPathAndReduceId(srcAttempt.getPathComponent(), partitionId), srcAttempt);
+    inputPartitions.put(srcAttempt, partitionId);
 
     // Mark the host as pending
     if (host.getState() == MapHost.State.PENDING) {
@@ -442,6 +453,14 @@ class ShuffleScheduler {
     return pathToIdentifierMap.get(getIdentifierFromPathAndReduceId(path, reduceId));
   }
   
+  /**
+   * @return the partition which was reported for the specified input, or -1 if it is not known
+   */
+  public int getPartitionForInput(InputAttemptIdentifier srcAttempt) {
+    Integer partitionId = inputPartitions.get(srcAttempt);
+    return partitionId == null ? -1 : partitionId.intValue();
+  }
+
   private boolean inputShouldBeConsumed(InputAttemptIdentifier id) {
     return (!obsoleteInputs.contains(id) && 
              !isInputFinished(id.getInputIdentifier().getInputIndex()));
@@ -516,6 +535,7 @@ class ShuffleScheduler {
     obsoleteInputs.clear();
     pendingHosts.clear();
     pathToIdentifierMap.clear();
+    inputPartitions.clear();
   }
 
   /**
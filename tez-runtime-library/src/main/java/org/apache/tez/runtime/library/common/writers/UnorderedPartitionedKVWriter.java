@@ -107,6 +107,8 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
   private final ListeningExecutorService spillExecutor;
 
   private final int[] numRecordsPerPartition;
+  private final boolean dataViaEventsEnabled;
+  private final int dataViaEventsMaxSize;
   private volatile long spilledSize = 0;
 
   /**
@@ -168,6 +170,13 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
 
     outputLargeRecordsCounter = outputContext.getCounters().findCounter(
         TaskCounter.OUTPUT_LARGE_RECORDS);
+
+    dataViaEventsEnabled = conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_ENABLED_DEFAULT);
+    dataViaEventsMaxSize = conf.getInt(
+        TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_PARTITIONED_DATA_VIA_EVENTS_MAX_SIZE,
+        TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_PARTITIONED_DATA_VIA_EVENTS_MAX_SIZE_DEFAULT);
   }
 
   private void computeNumBuffersAndSize(int bufferLimit) {
@@ -488,6 +497,12 @@ public class UnorderedPartitionedKVWriter extends BaseUnorderedPartitionedKVWrit
       payloadBuidler.setHost(host);
       payloadBuidler.setPort(shufflePort);
       payloadBuidler.setPathComponent(outputContext.getUniqueIdentifier());
+      if (dataViaEventsEnabled) {
+        TezSpillRecord spillRecord =
+            new TezSpillRecord(outputFileHandler.getOutputIndexFile(), conf);
+        ShuffleUtils.setPartitionDataInPayload(payloadBuidler, spillRecord, rfs,
+            outputFileHandler.getOutputFile(), dataViaEventsMaxSize, LOG);
+      }
     }
 
     CompositeDataMovementEvent cDme = CompositeDataMovementEvent.create(0, numPartitions,
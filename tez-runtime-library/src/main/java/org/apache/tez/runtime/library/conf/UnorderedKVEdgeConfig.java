@@ -82,6 +82,18 @@ public class UnorderedKVEdgeConfig extends HadoopKeyValuesBasedBaseEdgeConfig {
     return inputConf.toUserPayload();
   }
 
+  /**
+   * Get the payload of the input when used on a broadcast edge. Required instead of
+   * {@link #getInputPayload()} for custom broadcast edge properties, for inputs which share
+   * their data across tasks, such as
+   * {@link org.apache.tez.runtime.library.input.UnorderedKVHashTableInput}.
+   *
+   * @return the input payload
+   */
+  public UserPayload getBroadcastInputPayload() {
+    return inputConf.toBroadcastUserPayload();
+  }
+
   @Override
   public String getOutputHistoryText() {
     return outputConf.toHistoryText();
@@ -113,7 +125,7 @@ public class UnorderedKVEdgeConfig extends HadoopKeyValuesBasedBaseEdgeConfig {
         OutputDescriptor.create(
             getOutputClassName()).setUserPayload(getOutputPayload()),
         InputDescriptor.create(
-            getInputClassName()).setUserPayload(getInputPayload()));
+            getInputClassName()).setUserPayload(getBroadcastInputPayload()));
     Utils.setEdgePropertyHistoryText(this, edgeProperty);
     return edgeProperty;
   }
@@ -170,6 +170,21 @@ public class UnorderedKVInputConfig {
     }
   }
 
+  /**
+   * Get a UserPayload representation of the Configuration, marked as the input of a broadcast
+   * edge
+   */
+  @InterfaceAudience.Private
+  UserPayload toBroadcastUserPayload() {
+    Configuration broadcastConf = new Configuration(conf);
+    broadcastConf.setBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_INTERNAL_BROADCAST_INPUT, true);
+    try {
+      return TezUtils.createUserPayloadFromConf(broadcastConf);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @InterfaceAudience.Private
   public void fromUserPayload(UserPayload payload) {
     try {
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.input;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.serializer.Deserializer;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.tez.common.TezUtils;
+import org.apache.tez.runtime.api.Event;
+import org.apache.tez.runtime.api.InputContext;
+import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.library.api.KeyValueReader;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.apache.tez.runtime.library.common.ConfigUtils;
+import org.apache.tez.runtime.library.common.hashtable.OffHeapHashTable;
+import org.apache.tez.runtime.library.common.readers.UnorderedKVReader;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * {@link UnorderedKVHashTableInput} shuffles its data like {@link UnorderedKVInput}, and
+ * materializes it into an {@link OffHeapHashTable} of serialized keys and values, which can be
+ * probed with the serialized form of a key. It is meant for the small side of map-side joins,
+ * typically consumed over a broadcast edge.
+ * <p/>
+ * If {@link TezRuntimeConfiguration#TEZ_RUNTIME_HASHTABLE_INPUT_SHARE_ENABLED} is set, and the
+ * input is configured for a broadcast edge, the table is shared with subsequent tasks of the same
+ * vertex in the container. These tasks do not fetch their input, and do not hold a copy of the
+ * table.
+ * <p/>
+ * The table is held in direct memory, which is not accounted against the memory of the task.
+ */
+@Public
+public class UnorderedKVHashTableInput extends UnorderedKVInput {
+
+  private static final Log LOG = LogFactory.getLog(UnorderedKVHashTableInput.class);
+
+  private static final int INITIAL_EXPECTED_KEYS = 1024;
+  private static final int INITIAL_DATA_SIZE = 1024 * 1024;
+
+  private Configuration conf;
+  private boolean shareEnabled;
+  private String sharedTableKey;
+  private OffHeapHashTable hashTable;
+  // Whether the table was obtained from an earlier task, in which case no data is fetched.
+  private boolean usingSharedTable = false;
+
+  public UnorderedKVHashTableInput(InputContext inputContext, int numPhysicalInputs) {
+    super(inputContext, numPhysicalInputs);
+  }
+
+  @Override
+  public synchronized List<Event> initialize() throws Exception {
+    this.conf = TezUtils.createConfFromUserPayload(getContext().getUserPayload());
+    this.shareEnabled = conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_HASHTABLE_INPUT_SHARE_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_HASHTABLE_INPUT_SHARE_ENABLED_DEFAULT);
+    if (shareEnabled && !conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_INTERNAL_BROADCAST_INPUT,
+        TezRuntimeConfiguration.TEZ_RUNTIME_INTERNAL_BROADCAST_INPUT_DEFAULT)) {
+      // Tasks of other edge types consume different data, and cannot share a table.
+      LOG.warn("Not sharing hash table for input from " + getContext().getSourceVertexName()
+          + ", since the input is not configured for a broadcast edge");
+      shareEnabled = false;
+    }
+    this.sharedTableKey = UnorderedKVHashTableInput.class.getName() + "."
+        + getContext().getTaskVertexName() + "." + getContext().getSourceVertexName();
+    return super.initialize();
+  }
+
+  @Override
+  public synchronized void start() throws IOException {
+    if (usingSharedTable) {
+      return;
+    }
+    if (shareEnabled && getNumPhysicalInputs() > 0) {
+      hashTable = (OffHeapHashTable) getContext().getObjectRegistry().get(sharedTableKey);
+      if (hashTable != null) {
+        LOG.info("Using shared hash table for input from " + getContext().getSourceVertexName()
+            + ", numKeys=" + hashTable.getNumKeys() + ", numRecords="
+            + hashTable.getNumRecords());
+        usingSharedTable = true;
+        getContext().inputIsReady();
+        return;
+      }
+    }
+    super.start();
+  }
+
+  @Override
+  public void handleEvents(List<Event> inputEvents) throws IOException {
+    synchronized (this) {
+      if (usingSharedTable) {
+        // Data is already available in the shared table.
+        return;
+      }
+    }
+    super.handleEvents(inputEvents);
+  }
+
+  /**
+   * Get the hash table with the data of this input, building it on the first invocation. This
+   * blocks till all data has been fetched.
+   */
+  public synchronized OffHeapHashTable getHashTable() throws Exception {
+    if (hashTable == null) {
+      hashTable = buildHashTable();
+    }
+    return hashTable;
+  }
+
+  /**
+   * @return a reader over all records in the hash table
+   */
+  @Override
+  public synchronized KeyValueReader getReader() throws Exception {
+    return new HashTableKVReader<Object, Object>(getHashTable(), conf);
+  }
+
+  @Override
+  public synchronized List<Event> close() throws Exception {
+    hashTable = null;
+    return super.close();
+  }
+
+  private OffHeapHashTable buildHashTable() throws Exception {
+    long startTime = System.currentTimeMillis();
+    OffHeapHashTable table = new OffHeapHashTable(INITIAL_EXPECTED_KEYS, INITIAL_DATA_SIZE);
+    // Without physical inputs, there is no data and the reader is not an UnorderedKVReader
+    if (getNumPhysicalInputs() > 0) {
+      KeyValueReader reader = super.getReader();
+      Preconditions.checkState(reader instanceof UnorderedKVReader,
+          "Cannot build hash table for input from %s, unexpected reader: %s",
+          getContext().getSourceVertexName(), reader);
+      UnorderedKVReader<?, ?> kvReader = (UnorderedKVReader<?, ?>) reader;
+      while (kvReader.nextRaw()) {
+        DataInputBuffer key = kvReader.getCurrentRawKey();
+        DataInputBuffer value = kvReader.getCurrentRawValue();
+        table.put(key.getData(), key.getPosition(), key.getLength() - key.getPosition(),
+            value.getData(), value.getPosition(), value.getLength() - value.getPosition());
+      }
+    }
+    LOG.info("Built hash table for input from " + getContext().getSourceVertexName()
+        + " in " + (System.currentTimeMillis() - startTime) + " ms, numKeys="
+        + table.getNumKeys() + ", numRecords=" + table.getNumRecords() + ", allocatedBytes="
+        + table.getAllocatedBytes());
+
+    if (shareEnabled) {
+      ObjectRegistry objectRegistry = getContext().getObjectRegistry();
+      // Synchronizing on the registry to make the lookup and insert atomic across tasks.
+      synchronized (objectRegistry) {
+        OffHeapHashTable existing = (OffHeapHashTable) objectRegistry.get(sharedTableKey);
+        if (existing != null) {
+          return existing;
+        }
+        objectRegistry.cacheForDAG(sharedTableKey, table);
+      }
+    }
+    return table;
+  }
+
+  private static class HashTableKVReader<K, V> extends KeyValueReader {
+
+    private final OffHeapHashTable table;
+    private final Deserializer<K> keyDeserializer;
+    private final Deserializer<V> valDeserializer;
+    private final DataInputBuffer keyIn = new DataInputBuffer();
+    private final DataInputBuffer valIn = new DataInputBuffer();
+    private byte[] keyBytes = new byte[0];
+    private byte[] valBytes = new byte[0];
+
+    private int record = OffHeapHashTable.NO_RECORD;
+    private boolean done = false;
+    private K key;
+    private V value;
+
+    HashTableKVReader(OffHeapHashTable table, Configuration conf) throws IOException {
+      this.table = table;
+      Class<K> keyClass = ConfigUtils.getIntermediateInputKeyClass(conf);
+      Class<V> valClass = ConfigUtils.getIntermediateInputValueClass(conf);
+      SerializationFactory serializationFactory = new SerializationFactory(conf);
+      this.keyDeserializer = serializationFactory.getDeserializer(keyClass);
+      this.keyDeserializer.open(keyIn);
+      this.valDeserializer = serializationFactory.getDeserializer(valClass);
+      this.valDeserializer.open(valIn);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      if (done) {
+        return false;
+      }
+      record = table.scan(record);
+      if (record == OffHeapHashTable.NO_RECORD) {
+        done = true;
+        return false;
+      }
+      int keyLength = table.getKeyLength(record);
+      int valLength = table.getValueLength(record);
+      if (keyBytes.length < keyLength) {
+        keyBytes = new byte[keyLength];
+      }
+      if (valBytes.length < valLength) {
+        valBytes = new byte[valLength];
+      }
+      table.getKey(record, keyBytes, 0);
+      table.getValue(record, valBytes, 0);
+      keyIn.reset(keyBytes, keyLength);
+      valIn.reset(valBytes, valLength);
+      key = keyDeserializer.deserialize(key);
+      value = valDeserializer.deserialize(value);
+      return true;
+    }
+
+    @Override
+    public Object getCurrentKey() throws IOException {
+      Preconditions.checkState(record != OffHeapHashTable.NO_RECORD, "No current record");
+      return key;
+    }
+
+    @Override
+    public Object getCurrentValue() throws IOException {
+      Preconditions.checkState(record != OffHeapHashTable.NO_RECORD, "No current record");
+      return value;
+    }
+  }
+}
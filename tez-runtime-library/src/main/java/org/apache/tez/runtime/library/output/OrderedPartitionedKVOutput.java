@@ -31,6 +31,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceAudience.Public;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.yarn.api.ApplicationConstants;
 import org.apache.tez.common.TezCommonUtils;
@@ -77,6 +78,9 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
   private long startTime;
   private long endTime;
   private boolean sendEmptyPartitionDetails;
+  private boolean dataViaEventsEnabled;
+  private boolean reportPartitionStats;
+  private int dataViaEventsMaxSize;
   private final AtomicBoolean isStarted = new AtomicBoolean(false);
 
   public OrderedPartitionedKVOutput(OutputContext outputContext, int numPhysicalOutputs) {
@@ -99,6 +103,15 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
     sendEmptyPartitionDetails = this.conf.getBoolean(
         TezRuntimeConfiguration.TEZ_RUNTIME_EMPTY_PARTITION_INFO_VIA_EVENTS_ENABLED,
         TezRuntimeConfiguration.TEZ_RUNTIME_EMPTY_PARTITION_INFO_VIA_EVENTS_ENABLED_DEFAULT);
+    reportPartitionStats = this.conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_REPORT_PARTITION_STATS,
+        TezRuntimeConfiguration.TEZ_RUNTIME_REPORT_PARTITION_STATS_DEFAULT);
+    dataViaEventsEnabled = this.conf.getBoolean(
+        TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_ENABLED_DEFAULT);
+    dataViaEventsMaxSize = this.conf.getInt(
+        TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_PARTITIONED_DATA_VIA_EVENTS_MAX_SIZE,
+        TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_PARTITIONED_DATA_VIA_EVENTS_MAX_SIZE_DEFAULT);
     return Collections.emptyList();
   }
 
@@ -158,9 +171,12 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
         .newBuilder();
 
     boolean outputGenerated = true;
-    if (sendEmptyPartitionDetails) {
+    TezSpillRecord spillRecord = null;
+    if (sendEmptyPartitionDetails || dataViaEventsEnabled || reportPartitionStats) {
       Path indexFile = sorter.getMapOutput().getOutputIndexFile();
-      TezSpillRecord spillRecord = new TezSpillRecord(indexFile, conf);
+      spillRecord = new TezSpillRecord(indexFile, conf);
+    }
+    if (sendEmptyPartitionDetails) {
       BitSet emptyPartitionDetails = new BitSet();
       int emptyPartitions = 0;
       for(int i=0;i<spillRecord.size();i++) {
@@ -190,6 +206,11 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
       payloadBuilder.setHost(host);
       payloadBuilder.setPort(shufflePort);
       payloadBuilder.setPathComponent(getContext().getUniqueIdentifier());
+      if (dataViaEventsEnabled) {
+        ShuffleUtils.setPartitionDataInPayload(payloadBuilder, spillRecord,
+            FileSystem.getLocal(conf).getRaw(), sorter.getMapOutput().getOutputFile(),
+            dataViaEventsMaxSize, LOG);
+      }
     }
 
     payloadBuilder.setRunDuration((int) ((endTime - startTime) / 1000));
@@ -201,6 +222,15 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
     VertexManagerEventPayloadProto.Builder vmBuilder = VertexManagerEventPayloadProto
         .newBuilder();
     vmBuilder.setOutputSize(outputSize);
+    if (reportPartitionStats) {
+      // Lets the vertex manager balance skewed partitions when reducing parallelism
+      byte[] partitionSizes = new byte[spillRecord.size()];
+      for (int i = 0; i < spillRecord.size(); i++) {
+        partitionSizes[i] =
+            ShuffleUtils.encodePartitionSize(spillRecord.getIndex(i).getRawLength());
+      }
+      vmBuilder.setPartitionSizes(ByteString.copyFrom(partitionSizes));
+    }
     VertexManagerEvent vmEvent = VertexManagerEvent.create(
         getContext().getDestinationVertexName(), vmBuilder.build().toByteString().asReadOnlyByteBuffer());
 
@@ -236,6 +266,9 @@ public class OrderedPartitionedKVOutput extends AbstractLogicalOutput {
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_COMPRESS);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_COMPRESS_CODEC);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_EMPTY_PARTITION_INFO_VIA_EVENTS_ENABLED);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_REPORT_PARTITION_STATS);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_DATA_VIA_EVENTS_ENABLED);
+    confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_TRANSFER_PARTITIONED_DATA_VIA_EVENTS_MAX_SIZE);
     confKeys.add(TezRuntimeConfiguration.TEZ_RUNTIME_CONVERT_USER_PAYLOAD_TO_HISTORY_TEXT);
     confKeys.add(TezConfiguration.TEZ_COUNTERS_MAX);
     confKeys.add(TezConfiguration.TEZ_COUNTERS_GROUP_NAME_MAX_LENGTH);
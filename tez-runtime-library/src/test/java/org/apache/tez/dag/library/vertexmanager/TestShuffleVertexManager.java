@@ -19,6 +19,7 @@
 package org.apache.tez.dag.library.vertexmanager;
 
 import com.google.common.collect.Maps;
+import com.google.protobuf.ByteString;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.tez.common.ReflectionUtils;
@@ -40,9 +41,11 @@ import org.apache.tez.dag.api.event.VertexState;
 import org.apache.tez.dag.api.event.VertexStateUpdate;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
 import org.apache.tez.runtime.api.events.VertexManagerEvent;
+import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.VertexManagerEventPayloadProto;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -460,6 +463,92 @@ public class TestShuffleVertexManager {
     }
   }
   
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Test(timeout = 5000)
+  public void testShuffleVertexManagerAutoParallelismWithPartitionSizes() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(ShuffleVertexManager.TEZ_SHUFFLE_VERTEX_MANAGER_ENABLE_AUTO_PARALLEL, true);
+    conf.setLong(ShuffleVertexManager.TEZ_SHUFFLE_VERTEX_MANAGER_DESIRED_TASK_INPUT_SIZE, 1000L);
+
+    String mockSrcVertexId1 = "Vertex1";
+    final String mockManagedVertexId = "Vertex2";
+    HashMap<String, EdgeProperty> mockInputVertices = new HashMap<String, EdgeProperty>();
+    mockInputVertices.put(mockSrcVertexId1, EdgeProperty.create(
+        EdgeProperty.DataMovementType.SCATTER_GATHER,
+        EdgeProperty.DataSourceType.PERSISTED,
+        SchedulingType.SEQUENTIAL,
+        OutputDescriptor.create("out"),
+        InputDescriptor.create("in")));
+
+    VertexManagerPluginContext mockContext = mock(VertexManagerPluginContext.class);
+    when(mockContext.getInputVertexEdgeProperties()).thenReturn(mockInputVertices);
+    when(mockContext.getVertexName()).thenReturn(mockManagedVertexId);
+    when(mockContext.getVertexNumTasks(mockManagedVertexId)).thenReturn(6);
+    when(mockContext.getVertexNumTasks(mockSrcVertexId1)).thenReturn(2);
+
+    ShuffleVertexManager manager = createManager(conf, mockContext, 1.0f, 1.0f);
+    manager.onVertexStarted(null);
+    manager.onVertexStateUpdated(new VertexStateUpdate(mockSrcVertexId1, VertexState.CONFIGURED));
+
+    // partition 0 is hot, the others are small
+    VertexManagerEventPayloadProto.Builder builder = VertexManagerEventPayloadProto.newBuilder()
+        .setOutputSize(700L);
+    long[] partitionSizes = new long[] {600, 10, 10, 10, 10, 60};
+    byte[] encodedSizes = new byte[partitionSizes.length];
+    for (int i = 0; i < partitionSizes.length; i++) {
+      encodedSizes[i] = ShuffleUtils.encodePartitionSize(partitionSizes[i]);
+    }
+    builder.setPartitionSizes(ByteString.copyFrom(encodedSizes));
+    VertexManagerEvent vmEvent = VertexManagerEvent.create(mockManagedVertexId,
+        builder.build().toByteString().asReadOnlyByteBuffer());
+    manager.onVertexManagerEventReceived(vmEvent);
+    manager.onSourceTaskCompleted(mockSrcVertexId1, new Integer(0));
+    manager.onVertexManagerEventReceived(vmEvent);
+    manager.onSourceTaskCompleted(mockSrcVertexId1, new Integer(1));
+    Assert.assertEquals(2, manager.numPartitionSizesReceived);
+
+    // equal width ranges would give the hot partition two other partitions to process
+    Assert.assertArrayEquals(new int[] {0, 1, 6}, manager.computePartitionRangeOffsets(2));
+    ArgumentCaptor<Map> edgeManagersCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(mockContext, times(1)).setVertexParallelism(eq(2), any(VertexLocationHint.class),
+        edgeManagersCaptor.capture(), anyMap());
+
+    final UserPayload userPayload = ((Map<String, EdgeManagerPluginDescriptor>)
+        edgeManagersCaptor.getValue()).get(mockSrcVertexId1).getUserPayload();
+    EdgeManagerPluginContext emContext = mock(EdgeManagerPluginContext.class);
+    when(emContext.getUserPayload()).thenReturn(userPayload);
+    when(emContext.getSourceVertexNumTasks()).thenReturn(2);
+    when(emContext.getDestinationVertexNumTasks()).thenReturn(2);
+    EdgeManagerPlugin edgeManager = new ShuffleVertexManager.CustomShuffleEdgeManager(emContext);
+    edgeManager.initialize();
+
+    Assert.assertEquals(6, edgeManager.getNumSourceTaskPhysicalOutputs(0));
+    Assert.assertEquals(2, edgeManager.getNumDestinationTaskPhysicalInputs(0));
+    Assert.assertEquals(10, edgeManager.getNumDestinationTaskPhysicalInputs(1));
+
+    Map<Integer, List<Integer>> targets = Maps.newHashMap();
+    DataMovementEvent dmEvent = DataMovementEvent.create(0, ByteBuffer.wrap(new byte[0]));
+    edgeManager.routeDataMovementEventToDestination(dmEvent, 1, dmEvent.getSourceIndex(), targets);
+    Assert.assertEquals(1, targets.size());
+    Assert.assertEquals(1, targets.get(0).get(0).intValue());
+    targets.clear();
+    dmEvent = DataMovementEvent.create(3, ByteBuffer.wrap(new byte[0]));
+    edgeManager.routeDataMovementEventToDestination(dmEvent, 1, dmEvent.getSourceIndex(), targets);
+    Assert.assertEquals(1, targets.size());
+    // second source task, third partition of the range starting at partition 1
+    Assert.assertEquals(7, targets.get(1).get(0).intValue());
+    Assert.assertEquals(1, edgeManager.routeInputErrorEventToSource(null, 1, 7));
+
+    targets.clear();
+    edgeManager.routeInputSourceTaskFailedEventToDestination(1, targets);
+    Assert.assertEquals(2, targets.size());
+    Assert.assertEquals(1, targets.get(0).size());
+    Assert.assertEquals(1, targets.get(0).get(0).intValue());
+    Assert.assertEquals(5, targets.get(1).size());
+    Assert.assertEquals(5, targets.get(1).get(0).intValue());
+    Assert.assertEquals(9, targets.get(1).get(4).intValue());
+  }
+
   @SuppressWarnings({ "unchecked", "rawtypes" })
   @Test(timeout = 5000)
   public void testShuffleVertexManagerSlowStart() {
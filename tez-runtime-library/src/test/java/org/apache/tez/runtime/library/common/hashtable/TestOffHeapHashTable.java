@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common.hashtable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestOffHeapHashTable {
+
+  @Test(timeout = 10000)
+  public void testPutAndProbe() {
+    // Small initial sizes, to force the slots and data to grow.
+    OffHeapHashTable table = new OffHeapHashTable(1, 16);
+    int numKeys = 10000;
+    for (int i = 0; i < numKeys; i++) {
+      byte[] key = bytes("key" + i);
+      byte[] value = bytes("value" + i);
+      table.put(key, 0, key.length, value, 0, value.length);
+    }
+    assertEquals(numKeys, table.getNumKeys());
+    assertEquals(numKeys, table.getNumRecords());
+
+    for (int i = 0; i < numKeys; i++) {
+      byte[] key = bytes("key" + i);
+      int record = table.getFirstRecord(key, 0, key.length);
+      assertTrue(record != OffHeapHashTable.NO_RECORD);
+      assertArrayEquals(key, getKey(table, record));
+      assertArrayEquals(bytes("value" + i), getValue(table, record));
+      assertEquals(OffHeapHashTable.NO_RECORD, table.getNextRecord(record));
+    }
+    byte[] missing = bytes("key" + numKeys);
+    assertFalse(table.containsKey(missing, 0, missing.length));
+  }
+
+  @Test(timeout = 5000)
+  public void testKeyOffsets() {
+    OffHeapHashTable table = new OffHeapHashTable(16, 1024);
+    byte[] buffer = bytes("xxkeyyy");
+    table.put(buffer, 2, 3, buffer, 5, 2);
+    byte[] key = bytes("key");
+    int record = table.getFirstRecord(key, 0, key.length);
+    assertArrayEquals(bytes("yy"), getValue(table, record));
+    assertFalse(table.containsKey(buffer, 1, 3));
+  }
+
+  @Test(timeout = 5000)
+  public void testDuplicateKeys() {
+    OffHeapHashTable table = new OffHeapHashTable(16, 1024);
+    byte[] key = bytes("key");
+    for (int i = 0; i < 3; i++) {
+      byte[] value = bytes("value" + i);
+      table.put(key, 0, key.length, value, 0, value.length);
+    }
+    byte[] emptyKey = new byte[0];
+    table.put(emptyKey, 0, 0, emptyKey, 0, 0);
+    assertEquals(2, table.getNumKeys());
+    assertEquals(4, table.getNumRecords());
+
+    // Latest records are returned first.
+    int record = table.getFirstRecord(key, 0, key.length);
+    for (int i = 2; i >= 0; i--) {
+      assertArrayEquals(bytes("value" + i), getValue(table, record));
+      record = table.getNextRecord(record);
+    }
+    assertEquals(OffHeapHashTable.NO_RECORD, record);
+
+    record = table.getFirstRecord(emptyKey, 0, 0);
+    assertEquals(0, table.getKeyLength(record));
+    assertEquals(0, table.getValueLength(record));
+  }
+
+  @Test(timeout = 5000)
+  public void testScan() {
+    OffHeapHashTable table = new OffHeapHashTable(16, 1024);
+    assertEquals(OffHeapHashTable.NO_RECORD, table.scan(OffHeapHashTable.NO_RECORD));
+
+    Set<String> expected = new HashSet<String>();
+    for (int i = 0; i < 100; i++) {
+      byte[] key = bytes("key" + (i % 10));
+      byte[] value = bytes("value" + i);
+      table.put(key, 0, key.length, value, 0, value.length);
+      expected.add("value" + i);
+    }
+    Set<String> scanned = new HashSet<String>();
+    int record = table.scan(OffHeapHashTable.NO_RECORD);
+    while (record != OffHeapHashTable.NO_RECORD) {
+      scanned.add(new String(getValue(table, record)));
+      record = table.scan(record);
+    }
+    assertEquals(expected, scanned);
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes();
+  }
+
+  private static byte[] getKey(OffHeapHashTable table, int record) {
+    byte[] key = new byte[table.getKeyLength(record)];
+    table.getKey(record, key, 0);
+    return key;
+  }
+
+  private static byte[] getValue(OffHeapHashTable table, int record) {
+    byte[] value = new byte[table.getValueLength(record)];
+    table.getValue(record, value, 0);
+    return value;
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common.shuffle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.runtime.api.InputContext;
+import org.apache.tez.runtime.common.objectregistry.ObjectRegistryImpl;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
+import org.junit.Test;
+
+public class TestFetchedInputCache {
+
+  private static final String SOURCE = "source";
+
+  @Test(timeout = 5000)
+  public void testDisabledByDefault() {
+    FetchedInputCache cache = FetchedInputCache.create(new Configuration(false),
+        createInputContext(new ObjectRegistryImpl()));
+    assertSame(FetchedInputCache.DISABLED, cache);
+    assertFalse(cache.isEnabled());
+    assertNull(cache.get(SOURCE, createIdentifier(0), 0));
+  }
+
+  @Test(timeout = 5000)
+  public void testGetAndPut() throws Exception {
+    FetchedInputCache cache = new FetchedInputCache(100);
+    InputAttemptIdentifier input0 = createIdentifier(0);
+    byte[] data = new byte[] {1, 2, 3};
+    cache.put(SOURCE, input0, 0, data, 2);
+
+    // Different partition or source vertex of the same attempt is not cached
+    assertNull(cache.get(SOURCE, input0, 1));
+    assertNull(cache.get("otherSource", input0, 0));
+
+    FetchedInput fetchedInput = cache.get(SOURCE, input0, 0);
+    assertNotNull(fetchedInput);
+    assertEquals(FetchedInput.Type.MEMORY, fetchedInput.getType());
+    assertEquals(3, fetchedInput.getActualSize());
+    assertEquals(2, fetchedInput.getCompressedSize());
+    // Data is shared, not copied
+    assertSame(data, ((MemoryFetchedInput) fetchedInput).getBytes());
+    fetchedInput.commit();
+    fetchedInput.free();
+    assertNotNull(cache.get(SOURCE, input0, 0));
+  }
+
+  @Test(timeout = 5000)
+  public void testLruEviction() {
+    FetchedInputCache cache = new FetchedInputCache(100);
+    cache.put(SOURCE, createIdentifier(0), 0, new byte[40], 40);
+    cache.put(SOURCE, createIdentifier(1), 0, new byte[40], 40);
+    // Access the first entry, making the second one the least recently used
+    assertNotNull(cache.get(SOURCE, createIdentifier(0), 0));
+    cache.put(SOURCE, createIdentifier(2), 0, new byte[40], 40);
+
+    assertEquals(2, cache.getNumEntries());
+    assertEquals(80, cache.getUsedBytes());
+    assertNotNull(cache.get(SOURCE, createIdentifier(0), 0));
+    assertNull(cache.get(SOURCE, createIdentifier(1), 0));
+    assertNotNull(cache.get(SOURCE, createIdentifier(2), 0));
+
+    // Inputs larger than the cache are ignored
+    cache.put(SOURCE, createIdentifier(3), 0, new byte[101], 101);
+    assertNull(cache.get(SOURCE, createIdentifier(3), 0));
+    assertEquals(80, cache.getUsedBytes());
+  }
+
+  @Test(timeout = 5000)
+  public void testSharedAcrossInputs() {
+    Configuration conf = new Configuration(false);
+    conf.setLong(TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_INPUT_CACHE_MAX_SIZE_BYTES, 1000);
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    FetchedInputCache cache1 = FetchedInputCache.create(conf, createInputContext(objectRegistry));
+    FetchedInputCache cache2 = FetchedInputCache.create(conf, createInputContext(objectRegistry));
+    assertSame(cache1, cache2);
+
+    cache1.put(SOURCE, createIdentifier(0), 0, new byte[10], 10);
+    assertNotNull(cache2.get(SOURCE, createIdentifier(0), 0));
+  }
+
+  private InputAttemptIdentifier createIdentifier(int inputIndex) {
+    return new InputAttemptIdentifier(inputIndex, 0,
+        InputAttemptIdentifier.PATH_PREFIX + "_" + inputIndex);
+  }
+
+  private InputContext createInputContext(ObjectRegistryImpl objectRegistry) {
+    InputContext inputContext = mock(InputContext.class);
+    doReturn(objectRegistry).when(inputContext).getObjectRegistry();
+    doReturn(SOURCE).when(inputContext).getSourceVertexName();
+    return inputContext;
+  }
+}
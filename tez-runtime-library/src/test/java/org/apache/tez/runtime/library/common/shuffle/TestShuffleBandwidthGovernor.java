@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common.shuffle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.runtime.api.InputContext;
+import org.apache.tez.runtime.common.objectregistry.ObjectRegistryImpl;
+import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.apache.tez.runtime.library.common.shuffle.ShuffleBandwidthGovernor.HostConnectionLimiter;
+import org.apache.tez.runtime.library.common.shuffle.ShuffleBandwidthGovernor.TokenBucket;
+import org.junit.Test;
+
+public class TestShuffleBandwidthGovernor {
+
+  @Test(timeout = 5000)
+  public void testDisabledByDefault() {
+    InputContext inputContext = createInputContext(new ObjectRegistryImpl(), new TezCounters());
+    ShuffleBandwidthGovernor governor =
+        ShuffleBandwidthGovernor.create(new Configuration(false), inputContext);
+    assertSame(ShuffleBandwidthGovernor.DISABLED, governor);
+    assertFalse(governor.isEnabled());
+    InputStream in = new ByteArrayInputStream(new byte[10]);
+    assertSame(in, governor.wrap(in));
+  }
+
+  @Test(timeout = 5000)
+  public void testRateLimit() throws Exception {
+    TezCounters counters = new TezCounters();
+    ShuffleBandwidthGovernor governor =
+        new ShuffleBandwidthGovernor(new TokenBucket(1000), null, null, counters);
+    assertTrue(governor.isEnabled());
+
+    InputStream in = governor.wrap(new ByteArrayInputStream(new byte[1500]));
+    byte[] buf = new byte[1500];
+    // The initial burst is served without any wait.
+    assertEquals(1000, in.read(buf, 0, 1000));
+    assertEquals(0, counters.findCounter(TaskCounter.SHUFFLE_BYTES_THROTTLED).getValue());
+
+    long start = System.currentTimeMillis();
+    assertEquals(500, in.read(buf, 0, 500));
+    long elapsed = System.currentTimeMillis() - start;
+    assertTrue("Expected a wait of about 500ms, waited " + elapsed, elapsed >= 400);
+    assertEquals(500, counters.findCounter(TaskCounter.SHUFFLE_BYTES_THROTTLED).getValue());
+    assertTrue(counters.findCounter(TaskCounter.SHUFFLE_THROTTLE_STALL_MILLIS).getValue() >= 400);
+  }
+
+  @Test(timeout = 5000)
+  public void testTokenBucketDebt() {
+    TokenBucket bucket = new TokenBucket(100);
+    assertEquals(0, bucket.reserve(100));
+    long firstWait = bucket.reserve(100);
+    long secondWait = bucket.reserve(100);
+    assertTrue(firstWait > 0 && firstWait <= 1000);
+    // A second reservation queues behind the first one.
+    assertTrue(secondWait > firstWait);
+  }
+
+  @Test(timeout = 5000)
+  public void testContainerStateShared() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setLong(
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_CONTAINER_BANDWIDTH_BYTES_PER_SEC, 1000);
+    conf.setInt(TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_MAX_CONNECTIONS_PER_HOST, 1);
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    TezCounters counters1 = new TezCounters();
+    TezCounters counters2 = new TezCounters();
+
+    ShuffleBandwidthGovernor governor1 =
+        ShuffleBandwidthGovernor.create(conf, createInputContext(objectRegistry, counters1));
+    ShuffleBandwidthGovernor governor2 =
+        ShuffleBandwidthGovernor.create(conf, createInputContext(objectRegistry, counters2));
+    assertTrue(governor1.isEnabled());
+
+    // Container bucket is shared - the second governor sees the debt of the first one.
+    governor1.acquireBytes(1000);
+    long start = System.currentTimeMillis();
+    governor2.acquireBytes(200);
+    assertTrue(System.currentTimeMillis() - start >= 150);
+    assertEquals(0, counters1.findCounter(TaskCounter.SHUFFLE_BYTES_THROTTLED).getValue());
+    assertEquals(200, counters2.findCounter(TaskCounter.SHUFFLE_BYTES_THROTTLED).getValue());
+
+    // Per host limit is shared as well.
+    HostConnectionLimiter limiter = (HostConnectionLimiter) objectRegistry.get(
+        ShuffleBandwidthGovernor.class.getName() + ".hostLimiter");
+    governor1.acquireConnection("host1");
+    assertEquals(0, limiter.getAvailableConnections("host1"));
+    assertEquals(1, limiter.getAvailableConnections("host2"));
+    governor1.releaseConnection("host1");
+    assertEquals(1, limiter.getAvailableConnections("host1"));
+  }
+
+  @Test(timeout = 5000)
+  public void testConnectionsPerHost() throws Exception {
+    TezCounters counters = new TezCounters();
+    final ShuffleBandwidthGovernor governor =
+        new ShuffleBandwidthGovernor(null, null, new HostConnectionLimiter(1), counters);
+    governor.acquireConnection("host1");
+
+    final CountDownLatch acquired = new CountDownLatch(1);
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          governor.acquireConnection("host1");
+          acquired.countDown();
+          governor.releaseConnection("host1");
+        } catch (InterruptedException e) {
+          // Test will fail on the latch
+        }
+      }
+    };
+    waiter.start();
+    assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+    governor.releaseConnection("host1");
+    assertTrue(acquired.await(2000, TimeUnit.MILLISECONDS));
+    waiter.join();
+    assertTrue(
+        counters.findCounter(TaskCounter.SHUFFLE_HOST_CONNECTION_WAIT_MILLIS).getValue() >= 150);
+  }
+
+  private InputContext createInputContext(ObjectRegistryImpl objectRegistry,
+      TezCounters counters) {
+    InputContext inputContext = mock(InputContext.class);
+    doReturn(objectRegistry).when(inputContext).getObjectRegistry();
+    doReturn(counters).when(inputContext).getCounters();
+    doReturn("sourceVertex").when(inputContext).getSourceVertexName();
+    return inputContext;
+  }
+}
@@ -18,11 +18,19 @@
 
 package org.apache.tez.runtime.library.common.shuffle.impl;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -33,8 +41,11 @@ import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.InputContext;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
 import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
+import org.apache.tez.runtime.library.common.shuffle.DiskFetchedInput;
+import org.apache.tez.runtime.library.common.shuffle.FetchedInput;
 import org.apache.tez.runtime.library.common.shuffle.FetchedInputAllocator;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataMovementEventPayloadProto;
+import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataProto;
 import org.junit.Test;
 
 import com.google.protobuf.ByteString;
@@ -134,6 +145,49 @@ public class TestShuffleInputEventHandlerImpl {
     verify(shuffleManager).addKnownInput(eq(HOST), eq(PORT), eq(expectedIdentifier2), eq(0));
   }
   
+  @Test
+  public void testPartitionDataInEvent() throws IOException {
+    InputContext inputContext = mock(InputContext.class);
+    ShuffleManager shuffleManager = mock(ShuffleManager.class);
+    FetchedInputAllocator inputAllocator = mock(FetchedInputAllocator.class);
+
+    ShuffleInputEventHandlerImpl handler = new ShuffleInputEventHandlerImpl(inputContext,
+        shuffleManager, inputAllocator, null, false, 0);
+
+    // Partition 1 has data, partition 2 is empty.
+    DataMovementEventPayloadProto.Builder builder = DataMovementEventPayloadProto.newBuilder();
+    builder.setHost(HOST);
+    builder.setPort(PORT);
+    builder.setPathComponent(PATH_COMPONENT);
+    builder.addPartitionData(DataProto.newBuilder().setPartitionId(0).setRawLength(4)
+        .setCompressedLength(4).setData(ByteString.copyFrom(new byte[] {0, 0, 0, 0})));
+    builder.addPartitionData(DataProto.newBuilder().setPartitionId(1).setRawLength(3)
+        .setCompressedLength(3).setData(ByteString.copyFrom(new byte[] {1, 2, 3})));
+    ByteBuffer payload = builder.build().toByteString().asReadOnlyByteBuffer();
+
+    int taskIndex = 1;
+    InputAttemptIdentifier expectedIdentifier = new InputAttemptIdentifier(taskIndex, 0,
+        PATH_COMPONENT);
+    DiskFetchedInput fetchedInput = mock(DiskFetchedInput.class);
+    ByteArrayOutputStream fetchedData = new ByteArrayOutputStream();
+    doReturn(FetchedInput.Type.DISK).when(fetchedInput).getType();
+    doReturn(fetchedData).when(fetchedInput).getOutputStream();
+    doReturn(expectedIdentifier).when(fetchedInput).getInputAttemptIdentifier();
+    doReturn(fetchedInput).when(inputAllocator).allocate(3, 3, expectedIdentifier);
+
+    List<Event> eventList = new LinkedList<Event>();
+    eventList.add(DataMovementEvent.create(1, taskIndex, 0, payload));
+    eventList.add(DataMovementEvent.create(2, taskIndex + 1, 0, payload));
+    handler.handleEvents(eventList);
+
+    verify(shuffleManager).addCompletedInputWithData(eq(expectedIdentifier), eq(fetchedInput));
+    assertArrayEquals(new byte[] {1, 2, 3}, fetchedData.toByteArray());
+    verify(shuffleManager).addCompletedInputWithNoData(
+        eq(new InputAttemptIdentifier(taskIndex + 1, 0)));
+    verify(shuffleManager, never()).addKnownInput(anyString(), anyInt(),
+        any(InputAttemptIdentifier.class), anyInt());
+  }
+
   private Event createDataMovementEvent(int srcIndex, int targetIndex,
       ByteString emptyPartitionByteString) {
     DataMovementEventPayloadProto.Builder builder = DataMovementEventPayloadProto.newBuilder();
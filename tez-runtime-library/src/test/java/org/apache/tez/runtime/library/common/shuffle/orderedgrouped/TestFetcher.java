@@ -29,13 +29,16 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -295,4 +298,75 @@ public class TestFetcher {
 
   }
 
+  @Test(timeout = 5000)
+  public void testPartitionRangeFetch() throws Exception {
+    Configuration conf = new TezConfiguration();
+    ShuffleScheduler scheduler = mock(ShuffleScheduler.class);
+    MergeManager merger = mock(MergeManager.class);
+    ShuffleClientMetrics metrics = mock(ShuffleClientMetrics.class);
+    Shuffle shuffle = mock(Shuffle.class);
+    InputContext inputContext = mock(InputContext.class);
+    when(inputContext.getCounters()).thenReturn(new TezCounters());
+    when(inputContext.getSourceVertexName()).thenReturn("");
+
+    HttpConnection.HttpConnectionParams httpConnectionParams =
+        ShuffleUtils.constructHttpShuffleConnectionParams(conf);
+    FetcherOrderedGrouped fetcher = spy(
+        new FetcherOrderedGrouped(httpConnectionParams, scheduler, merger, metrics, shuffle, null,
+            false, 0, null, inputContext, conf, false));
+
+    MapHost host = new MapHost(MapHost.PARTITION_RANGE, HOST + ":" + PORT, null);
+    String path0 = InputAttemptIdentifier.PATH_PREFIX + "pathComponent_0";
+    String path1 = InputAttemptIdentifier.PATH_PREFIX + "pathComponent_1";
+    // Partition 2 is required from the first source, partition 3 from the second one.
+    InputAttemptIdentifier input0 = new InputAttemptIdentifier(0, 0, path0);
+    InputAttemptIdentifier input1 = new InputAttemptIdentifier(1, 0, path1);
+    List<InputAttemptIdentifier> srcAttempts = Arrays.asList(input0, input1);
+    doReturn(srcAttempts).when(scheduler).getMapsForHost(host);
+    doReturn(2).when(scheduler).getPartitionForInput(input0);
+    doReturn(3).when(scheduler).getPartitionForInput(input1);
+    doReturn(input0).when(scheduler).getIdentifierForFetchedOutput(path0, 2);
+    doReturn(input1).when(scheduler).getIdentifierForFetchedOutput(path1, 3);
+    doReturn(true).when(fetcher).setupConnection(host, srcAttempts);
+
+    // The response carries both partitions of the range for each source.
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(response);
+    writeSegment(out, path0, 2, 10);
+    writeSegment(out, path0, 3, 20);
+    writeSegment(out, path1, 2, 30);
+    writeSegment(out, path1, 3, 40);
+    out.close();
+    fetcher.input = new DataInputStream(new ByteArrayInputStream(response.toByteArray()));
+
+    doAnswer(new Answer<MapOutput>() {
+      @Override
+      public MapOutput answer(InvocationOnMock invocation) throws Throwable {
+        Object[] args = invocation.getArguments();
+        MapOutput mapOutput = mock(MapOutput.class);
+        doReturn(MapOutput.Type.DISK).when(mapOutput).getType();
+        doReturn(args[0]).when(mapOutput).getAttemptIdentifier();
+        doReturn(new ByteArrayOutputStream()).when(mapOutput).getDisk();
+        return mapOutput;
+      }
+    }).when(merger).reserve(any(InputAttemptIdentifier.class), anyLong(), anyLong(), anyInt());
+
+    fetcher.copyFromHost(host);
+
+    verify(scheduler).copySucceeded(eq(input0), eq(host), eq(10l), eq(10l), anyLong(),
+        any(MapOutput.class));
+    verify(scheduler).copySucceeded(eq(input1), eq(host), eq(40l), eq(40l), anyLong(),
+        any(MapOutput.class));
+    verify(scheduler, never()).copyFailed(any(InputAttemptIdentifier.class), any(MapHost.class),
+        anyBoolean(), anyBoolean());
+    verify(scheduler, never()).putBackKnownMapOutput(any(MapHost.class),
+        any(InputAttemptIdentifier.class));
+  }
+
+  private void writeSegment(DataOutputStream out, String pathComponent, int partition,
+      int length) throws IOException {
+    new ShuffleHeader(pathComponent, length, length, partition).write(out);
+    out.write(new byte[length]);
+  }
+
 }
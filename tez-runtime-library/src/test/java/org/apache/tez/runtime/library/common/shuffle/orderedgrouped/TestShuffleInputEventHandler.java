@@ -1,6 +1,10 @@
 package org.apache.tez.runtime.library.common.shuffle.orderedgrouped;
 
 import com.google.protobuf.ByteString;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.common.TezUtilsInternal;
@@ -9,19 +13,29 @@ import org.apache.tez.runtime.api.InputContext;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
 import org.apache.tez.runtime.api.events.InputFailedEvent;
 import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
+import org.apache.tez.runtime.library.common.sort.impl.IFile;
 import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads;
+import org.apache.tez.runtime.library.shuffle.impl.ShuffleUserPayloads.DataProto;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -161,6 +175,73 @@ public class TestShuffleInputEventHandler {
         eq(expectedIdentifier));
   }
 
+  @Test
+  public void testPartitionDataInEvent() throws IOException {
+    InputContext inputContext = createTezInputContext();
+    MergeManager merger = mock(MergeManager.class);
+    ShuffleInputEventHandlerOrderedGrouped handlerWithMerger =
+        new ShuffleInputEventHandlerOrderedGrouped(inputContext, scheduler, merger, null, false,
+            0, false);
+
+    // Partition 0 has data, as written by the output
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    FSDataOutputStream outStream = new FSDataOutputStream(out, null);
+    IFile.Writer writer = new IFile.Writer(new Configuration(), outStream, Text.class,
+        Text.class, null, null, null);
+    writer.append(new Text("key1"), new Text("value1"));
+    writer.append(new Text("key2"), new Text("value2"));
+    writer.close();
+    outStream.close();
+    int rawLength = (int) writer.getRawLength();
+    int compressedLength = (int) writer.getCompressedLength();
+
+    ShuffleUserPayloads.DataMovementEventPayloadProto.Builder builder =
+        ShuffleUserPayloads.DataMovementEventPayloadProto.newBuilder();
+    builder.setHost(HOST);
+    builder.setPort(PORT);
+    builder.setPathComponent(PATH_COMPONENT);
+    builder.setRunDuration(10);
+    builder.addPartitionData(DataProto.newBuilder().setPartitionId(0).setRawLength(rawLength)
+        .setCompressedLength(compressedLength).setData(ByteString.copyFrom(out.toByteArray())));
+
+    int srcIdx = 0;
+    int targetIdx = 1;
+    InputAttemptIdentifier expectedIdentifier = new InputAttemptIdentifier(targetIdx, 0,
+        PATH_COMPONENT);
+    MapOutput mapOutput = MapOutput.createMemoryMapOutput(expectedIdentifier, merger,
+        rawLength, true);
+    doReturn(mapOutput).when(merger).reserve(eq(expectedIdentifier), eq((long) rawLength),
+        eq((long) compressedLength), anyInt());
+
+    List<Event> events = new LinkedList<Event>();
+    events.add(DataMovementEvent.create(srcIdx, targetIdx, 0,
+        builder.build().toByteString().asReadOnlyByteBuffer()));
+    handlerWithMerger.handleEvents(events);
+
+    verify(scheduler).copySucceeded(eq(expectedIdentifier), any(MapHost.class),
+        eq((long) compressedLength), eq((long) rawLength), anyLong(), eq(mapOutput));
+    verify(scheduler, never()).addKnownMapOutput(anyString(), anyInt(), anyInt(), anyString(),
+        any(InputAttemptIdentifier.class));
+
+    // The map output holds the records sent with the event
+    IFile.Reader reader = new InMemoryReader(null, expectedIdentifier, mapOutput.getMemory(), 0,
+        mapOutput.getMemory().length);
+    DataInputBuffer keyIn = new DataInputBuffer();
+    DataInputBuffer valueIn = new DataInputBuffer();
+    Text key = new Text();
+    Text value = new Text();
+    for (int i = 1; i <= 2; i++) {
+      assertTrue(reader.nextRawKey(keyIn));
+      reader.nextRawValue(valueIn);
+      key.readFields(keyIn);
+      value.readFields(valueIn);
+      assertEquals("key" + i, key.toString());
+      assertEquals("value" + i, value.toString());
+    }
+    assertFalse(reader.nextRawKey(keyIn));
+    reader.close();
+  }
+
   private ByteString createEmptyPartitionByteString(int... emptyPartitions) throws IOException {
     BitSet bitSet = new BitSet();
     for (int i : emptyPartitions) {
@@ -21,19 +21,23 @@
 package org.apache.tez.runtime.library.conf;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.tez.common.TezUtils;
 import org.apache.tez.dag.api.EdgeManagerPluginDescriptor;
 import org.apache.tez.dag.api.EdgeProperty;
+import org.apache.tez.dag.api.UserPayload;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.junit.Test;
 
@@ -209,5 +213,24 @@ public class TestUnorderedKVEdgeConfig {
 
   }
 
+  @Test (timeout=2000)
+  public void testBroadcastInputMarked() throws IOException {
+    UnorderedKVEdgeConfig kvEdgeConfig =
+        UnorderedKVEdgeConfig.newBuilder("KEY", "VALUE").build();
+
+    EdgeProperty broadcastEdgeProperty = kvEdgeConfig.createDefaultBroadcastEdgeProperty();
+    assertTrue(isBroadcastInput(broadcastEdgeProperty.getEdgeDestination().getUserPayload()));
+    assertTrue(isBroadcastInput(kvEdgeConfig.getBroadcastInputPayload()));
+
+    EdgeProperty oneToOneEdgeProperty = kvEdgeConfig.createDefaultOneToOneEdgeProperty();
+    assertFalse(isBroadcastInput(oneToOneEdgeProperty.getEdgeDestination().getUserPayload()));
+    assertFalse(isBroadcastInput(kvEdgeConfig.getInputPayload()));
+  }
+
+  private boolean isBroadcastInput(UserPayload payload) throws IOException {
+    Configuration conf = TezUtils.createConfFromUserPayload(payload);
+    return conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_INTERNAL_BROADCAST_INPUT, false);
+  }
+
 
 }
@@ -34,6 +34,7 @@ import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.MemoryUpdateCallback;
 import org.apache.tez.runtime.api.OutputContext;
 import org.apache.tez.runtime.api.events.CompositeDataMovementEvent;
+import org.apache.tez.runtime.api.events.VertexManagerEvent;
 import org.apache.tez.runtime.library.api.KeyValuesWriter;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
 import org.apache.tez.runtime.library.common.MemoryUpdateCallbackHandler;
@@ -210,6 +211,12 @@ public class TestOnFileSortedOutput {
     assertEquals(HOST, payload.getHost());
     assertEquals(PORT, payload.getPort());
     assertEquals(UniqueID, payload.getPathComponent());
+
+    ShuffleUserPayloads.VertexManagerEventPayloadProto vmPayload =
+        ShuffleUserPayloads.VertexManagerEventPayloadProto.parseFrom(
+            ByteString.copyFrom(((VertexManagerEvent) eventList.get(0)).getUserPayload()));
+    // One byte per partition
+    assertEquals(partitions, vmPayload.getPartitionSizes().size());
   }
 
   @Test